@@ -0,0 +1,110 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.benchmarks;
+
+import com.kumuluz.ee.metrics.api.CounterImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter updates under contention, compared to a single shared {@link AtomicLong}.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar CounterBenchmark
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CounterBenchmark {
+
+    private CounterImpl counter;
+    private AtomicLong atomicCounter;
+
+    @Setup
+    public void setup() {
+        counter = new CounterImpl();
+        atomicCounter = new AtomicLong();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void inc_01_threads() {
+        counter.inc();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void inc_08_threads() {
+        counter.inc();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void inc_64_threads() {
+        counter.inc();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void incDec_01_threads() {
+        counter.inc();
+        counter.dec();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void incDec_08_threads() {
+        counter.inc();
+        counter.dec();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void incDec_64_threads() {
+        counter.inc();
+        counter.dec();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long atomicInc_01_threads() {
+        return atomicCounter.incrementAndGet();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long atomicInc_08_threads() {
+        return atomicCounter.incrementAndGet();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long atomicInc_64_threads() {
+        return atomicCounter.incrementAndGet();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.json.MetricsModule;
+import com.kumuluz.ee.metrics.prometheus.ExpositionFormat;
+import com.kumuluz.ee.metrics.prometheus.PrometheusMetricWriter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a registry in the Prometheus text, Prometheus protobuf and JSON formats.
+ *
+ * The registry contains an equal mix of counters, gauges, meters, histograms and timers. Output is discarded, so only
+ * the serialization is measured. Allocation rates are reported with the GC profiler:
+ * java -jar benchmarks/target/benchmarks.jar ExpositionBenchmark -prof gc
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpositionBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    private int metricCount;
+
+    private MetricRegistryImpl registry;
+    private ObjectWriter jsonWriter;
+
+    @Setup
+    public void setup(KumuluzEEState kumuluzEE) {
+        registry = new MetricRegistryImpl();
+        for (int i = 0; i < metricCount; i++) {
+            String name = "benchmark.metric" + i;
+            switch (i % 5) {
+                case 0:
+                    registry.counter(name).inc(i);
+                    break;
+                case 1:
+                    long value = i;
+                    registry.register(new Metadata(name, MetricType.GAUGE), (LongGauge) () -> value);
+                    break;
+                case 2:
+                    registry.meter(name).mark(i);
+                    break;
+                case 3:
+                    registry.histogram(name).update(i);
+                    break;
+                default:
+                    registry.timer(name).update(i, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        jsonWriter = new ObjectMapper().registerModule(new MetricsModule(false)).writer();
+    }
+
+    @Benchmark
+    public long prometheus() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        new PrometheusMetricWriter(outputStream).write("application", registry);
+        return outputStream.count;
+    }
+
+    @Benchmark
+    public long protobuf() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        new PrometheusMetricWriter(outputStream, ExpositionFormat.PROTOBUF).write("application", registry);
+        return outputStream.count;
+    }
+
+    @Benchmark
+    public long json() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        jsonWriter.writeValue(outputStream, registry);
+        return outputStream.count;
+    }
+
+    static class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
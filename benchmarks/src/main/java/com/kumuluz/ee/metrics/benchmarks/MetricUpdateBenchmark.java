@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.benchmarks;
+
+import com.kumuluz.ee.metrics.api.HistogramImpl;
+import com.kumuluz.ee.metrics.api.MeterImpl;
+import com.kumuluz.ee.metrics.api.TimerImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meter, timer and histogram updates under contention.
+ *
+ * Timers and histograms use the reservoir, configured with kumuluzee.metrics.reservoir (e.g.
+ * -Dkumuluzee.metrics.reservoir=hdr). Allocation rates are reported with the GC profiler:
+ * java -jar benchmarks/target/benchmarks.jar MetricUpdateBenchmark -prof gc
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricUpdateBenchmark {
+
+    private MeterImpl meter;
+    private TimerImpl timer;
+    private HistogramImpl histogram;
+
+    @Setup
+    public void setup(KumuluzEEState kumuluzEE) {
+        meter = new MeterImpl();
+        timer = new TimerImpl();
+        histogram = new HistogramImpl();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void mark_01_threads() {
+        meter.mark();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void mark_08_threads() {
+        meter.mark();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void mark_64_threads() {
+        meter.mark();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void timerUpdate_01_threads() {
+        timer.update(nextValue(), TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void timerUpdate_08_threads() {
+        timer.update(nextValue(), TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void timerUpdate_64_threads() {
+        timer.update(nextValue(), TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void histogramUpdate_01_threads() {
+        histogram.update(nextValue());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void histogramUpdate_08_threads() {
+        histogram.update(nextValue());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void histogramUpdate_64_threads() {
+        histogram.update(nextValue());
+    }
+
+    // varying values, so the reservoirs are not updated with a constant
+    private static long nextValue() {
+        return ThreadLocalRandom.current().nextLong(1_000L, 10_000_000L);
+    }
+}
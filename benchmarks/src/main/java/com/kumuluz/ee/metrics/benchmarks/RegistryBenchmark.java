@@ -0,0 +1,103 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.benchmarks;
+
+import com.kumuluz.ee.metrics.api.CounterImpl;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Get-or-create of metrics in {@link MetricRegistryImpl}.
+ *
+ * Lookups of existing metrics are the common case (e.g. registry.counter(name).inc() in application code), creation
+ * is measured together with the removal of the created metric, so the registry does not grow.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistryBenchmark {
+
+    @Param({"100", "10000"})
+    private int registrySize;
+
+    private MetricRegistryImpl registry;
+    private String[] names;
+    private Metadata[] metadata;
+
+    @Setup
+    public void setup(KumuluzEEState kumuluzEE) {
+        registry = new MetricRegistryImpl();
+        names = new String[registrySize];
+        metadata = new Metadata[registrySize];
+        for (int i = 0; i < registrySize; i++) {
+            names[i] = "benchmark.counter" + i;
+            metadata[i] = new Metadata(names[i], MetricType.COUNTER);
+            registry.counter(metadata[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Counter existingByName_01_threads() {
+        return registry.counter(names[nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Counter existingByName_08_threads() {
+        return registry.counter(names[nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Counter existingByMetadata_01_threads() {
+        return registry.counter(metadata[nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Counter existingByMetadata_08_threads() {
+        return registry.counter(metadata[nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean registerAndRemove() {
+        registry.register(new Metadata("benchmark.created", MetricType.COUNTER), new CounterImpl());
+        return registry.remove("benchmark.created");
+    }
+
+    private int nextIndex() {
+        return ThreadLocalRandom.current().nextInt(registrySize);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.benchmarks;
+
+import com.kumuluz.ee.metrics.producers.MetricRegistryProducer;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.enterprise.inject.spi.CDI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the TimedInterceptor, compared to calls of the same method without interceptors.
+ *
+ * The bean is obtained from CDI, so the measured call goes through the interceptor chain of the container. The
+ * application registry is filled with additional counters, to check that the per-call overhead does not depend on the
+ * number of registered metrics.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimedInterceptorBenchmark {
+
+    @Param({"0", "10000"})
+    private int registeredMetrics;
+
+    private TimedBean interceptedBean;
+    private TimedBean plainBean;
+
+    private long value;
+
+    @Setup
+    public void setup(KumuluzEEState kumuluzEE) {
+        MetricRegistry registry = MetricRegistryProducer.getApplicationRegistry();
+        for (int i = 0; i < registeredMetrics; i++) {
+            registry.counter(String.format("benchmark.registered.%05d", i));
+        }
+
+        interceptedBean = CDI.current().select(TimedBean.class).get();
+        plainBean = new TimedBean();
+    }
+
+    @Benchmark
+    public long timed() {
+        return interceptedBean.timed(value);
+    }
+
+    @Benchmark
+    public long notIntercepted() {
+        return interceptedBean.plain(value);
+    }
+
+    @Benchmark
+    public long plainCall() {
+        return plainBean.timed(value);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.benchmarks;
+
+import com.kumuluz.ee.metrics.api.HdrHistogramReservoir;
+import com.kumuluz.ee.metrics.api.TimerImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing of a call with the allocation-free fast path (used by the TimedInterceptor), with a Microprofile timer
+ * context and with a Dropwizard timer context.
+ *
+ * The timers use the HdrHistogram reservoir, which does not allocate on updates, so the allocation rate reported by the
+ * GC profiler (gc.alloc.rate.norm) is the allocation of the timing itself:
+ * java -jar benchmarks/target/benchmarks.jar TimerBenchmark -prof gc
+ *
+ * Escape analysis is disabled. In this benchmark the JIT could inline the whole call and remove the contexts, which
+ * does not happen behind the interceptor chain of the container.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:-DoEscapeAnalysis")
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+
+    private TimerImpl timer;
+    private com.codahale.metrics.Timer dropwizardTimer;
+
+    @Setup
+    public void setup() {
+        timer = new TimerImpl(new com.codahale.metrics.Timer(new HdrHistogramReservoir(2, 60, TimeUnit.SECONDS)));
+        dropwizardTimer = new com.codahale.metrics.Timer(new HdrHistogramReservoir(2, 60, TimeUnit.SECONDS));
+    }
+
+    @Benchmark
+    public long fastPath() {
+        long startTime = timer.startTiming();
+        return timer.stopTiming(startTime);
+    }
+
+    @Benchmark
+    public long context() {
+        return timer.time().stop();
+    }
+
+    @Benchmark
+    public long dropwizardContext() {
+        return dropwizardTimer.time().stop();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.benchmarks;
+
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.prometheus.PrometheusMetricWriter;
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.eclipse.microprofile.metrics.Timer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prometheus exposition of a registry, which only contains timers with filled reservoirs.
+ *
+ * Snapshots of the reservoirs are the dominant cost of such scrapes, so the snapshots are also measured on their own.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimerExpositionBenchmark {
+
+    // larger than the default reservoir size, so the reservoirs are full
+    private static final int UPDATES_PER_TIMER = 2000;
+
+    @Param({"5000"})
+    private int timerCount;
+
+    private MetricRegistryImpl registry;
+    private List<Timer> timers;
+
+    @Setup
+    public void setup(KumuluzEEState kumuluzEE) {
+        registry = new MetricRegistryImpl();
+        timers = new ArrayList<>(timerCount);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < timerCount; i++) {
+            Timer timer = registry.timer("benchmark.timer" + i);
+            for (int j = 0; j < UPDATES_PER_TIMER; j++) {
+                timer.update(random.nextLong(1000, 1000000), TimeUnit.NANOSECONDS);
+            }
+            timers.add(timer);
+        }
+    }
+
+    @Benchmark
+    public long prometheus() throws IOException {
+        ExpositionBenchmark.CountingOutputStream outputStream = new ExpositionBenchmark.CountingOutputStream();
+        new PrometheusMetricWriter(outputStream).write("application", registry);
+        return outputStream.count;
+    }
+
+    @Benchmark
+    public double snapshots() {
+        double sum = 0;
+        for (Timer timer : timers) {
+            Snapshot snapshot = timer.getSnapshot();
+            sum += snapshot.get99thPercentile();
+        }
+        return sum;
+    }
+}
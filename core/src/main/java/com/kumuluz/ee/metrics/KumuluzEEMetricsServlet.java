@@ -23,40 +23,99 @@ package com.kumuluz.ee.metrics;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.metrics.api.MetricAdapter;
 import com.kumuluz.ee.metrics.json.MetricsModule;
+import com.kumuluz.ee.metrics.prometheus.ExpositionFormat;
 import com.kumuluz.ee.metrics.prometheus.PrometheusMetricWriter;
+import com.kumuluz.ee.metrics.utils.CompressingOutputStream;
+import com.kumuluz.ee.metrics.utils.ExpositionCache;
 import com.kumuluz.ee.metrics.utils.RequestInfo;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 /**
  * Servlet, which exposes metrics in JSON and Prometheus format.
  *
+ * Prometheus metrics are exposed in the OpenMetrics or the protobuf format, if the request accepts it, and in the
+ * Prometheus text format otherwise.
+ *
+ * If kumuluzee.metrics.servlet.cache-ttl-ms is set, rendered responses are cached for the given time and shared between
+ * concurrent requests for the same format and path.
+ *
+ * Metrics of all registries or of a single registry can be filtered with the name[] and tag query parameters (see
+ * {@link RequestInfo}).
+ *
+ * Responses are compressed with gzip or deflate if the client accepts it and the response is larger than the
+ * configured minimum size (kumuluzee.metrics.servlet.compression.*).
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
  */
 public class KumuluzEEMetricsServlet extends HttpServlet {
 
+    private static final Logger log = Logger.getLogger(KumuluzEEMetricsServlet.class.getName());
+
     private static final String APPLICATION_JSON = "application/json";
 
+    private static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+
+    private static final String PROMETHEUS_ERROR = "Error exporting Prometheus metrics.";
+    private static final String JSON_ERROR = "Error exporting JSON metrics.";
+
     private ObjectMapper metricMapper;
     private ObjectMapper metadataMapper;
 
+    private ExpositionCache expositionCache;
+
+    private boolean compressionEnabled;
+    private int compressionLevel;
+    private int compressionMinSize;
+
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
 
         this.metricMapper = new ObjectMapper().registerModule(new MetricsModule(false));
         this.metadataMapper = new ObjectMapper().registerModule(new MetricsModule(true));
+
+        int cacheTtl = ConfigurationUtil.getInstance().getInteger("kumuluzee.metrics.servlet.cache-ttl-ms")
+                .orElse(0);
+        int cacheMaxEntries = ConfigurationUtil.getInstance()
+                .getInteger("kumuluzee.metrics.servlet.cache-max-entries").orElse(100);
+        this.expositionCache = (cacheTtl > 0) ? new ExpositionCache(cacheTtl, cacheMaxEntries) : null;
+
+        this.compressionEnabled = ConfigurationUtil.getInstance()
+                .getBoolean("kumuluzee.metrics.servlet.compression.enabled").orElse(true);
+        this.compressionLevel = ConfigurationUtil.getInstance()
+                .getInteger("kumuluzee.metrics.servlet.compression.level").orElse(Deflater.DEFAULT_COMPRESSION);
+        this.compressionMinSize = ConfigurationUtil.getInstance()
+                .getInteger("kumuluzee.metrics.servlet.compression.min-size").orElse(DEFAULT_COMPRESSION_MIN_SIZE);
+
+        // invalid values would make every compressed response fail
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            log.severe("Invalid compression level " + compressionLevel + ", using the default level instead.");
+            this.compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        }
+        if (compressionMinSize < 0) {
+            log.severe("Invalid compression minimum size " + compressionMinSize + ", using " +
+                    DEFAULT_COMPRESSION_MIN_SIZE + " instead.");
+            this.compressionMinSize = DEFAULT_COMPRESSION_MIN_SIZE;
+        }
     }
 
     @Override
@@ -72,7 +131,13 @@ public class KumuluzEEMetricsServlet extends HttpServlet {
                     response.setContentType(APPLICATION_JSON);
                     break;
                 case PROMETHEUS:
-                    response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+                    response.setContentType(ExpositionFormat.PROMETHEUS.getContentType());
+                    break;
+                case OPENMETRICS:
+                    response.setContentType(ExpositionFormat.OPENMETRICS.getContentType());
+                    break;
+                case PROTOBUF:
+                    response.setContentType(ExpositionFormat.PROTOBUF.getContentType());
                     break;
             }
 
@@ -83,55 +148,32 @@ public class KumuluzEEMetricsServlet extends HttpServlet {
                 case NO_CONTENT:
                     response.setStatus(HttpServletResponse.SC_NO_CONTENT);
                     return;
+                case BAD_REQUEST:
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    return;
             }
 
             response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
 
-            if(requestInfo.getRequestType() == RequestInfo.RequestType.PROMETHEUS) {
-                PrintWriter writer = response.getWriter();
-                PrometheusMetricWriter prometheusMetricWriter = new PrometheusMetricWriter(writer);
+            if (expositionCache != null) {
+                serviceCached(request, response, requestInfo);
+            } else if (requestInfo.isPrometheusRequest()) {
+                response.setStatus(HttpServletResponse.SC_OK);
 
                 try {
-                    switch (requestInfo.getMetricsRequested()) {
-                        case ALL:
-                            prometheusMetricWriter.write(requestInfo.getRequestedRegistries());
-                            break;
-                        case REGISTRY:
-                            prometheusMetricWriter.write(requestInfo.getSingleRequestedRegistryName(),
-                                    requestInfo.getSingleRequestedRegistry());
-                            break;
-                        case METRIC:
-                            prometheusMetricWriter.write(requestInfo.getSingleRequestedRegistryName(),
-                                    requestInfo.getSingleRequestedRegistry(), requestInfo.getMetricName());
-                            break;
-                    }
+                    writePrometheus(requestInfo, getOutputStream(request, response));
                 } catch (IOException e) {
-                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Error exporting Prometheus metrics.");
+                    // output is streamed, error can only be reported if nothing was sent yet
+                    if (!response.isCommitted()) {
+                        response.sendError(HttpServletResponse.SC_BAD_REQUEST, PROMETHEUS_ERROR);
+                    }
                 }
-
-                response.setStatus(HttpServletResponse.SC_OK);
             } else {
-                Object value = null;
-                switch (requestInfo.getMetricsRequested()) {
-                    case ALL:
-                        value = requestInfo.getRequestedRegistries();
-                        break;
-                    case REGISTRY:
-                        value = requestInfo.getSingleRequestedRegistry();
-                        break;
-                    case METRIC:
-                        if(requestInfo.getRequestType() == RequestInfo.RequestType.JSON_METADATA) {
-                            value = Collections.singletonMap(requestInfo.getMetricName(), requestInfo.getMetadata());
-                        } else {
-                            value = Collections.singletonMap(requestInfo.getMetricName(), requestInfo.getMetric());
-                        }
-                        break;
-                }
-                try (ServletOutputStream output = response.getOutputStream()) {
-                    this.getWriter(request, requestInfo.getRequestType()).writeValue(output, value);
+                try (OutputStream output = getOutputStream(request, response)) {
+                    writeJson(request, requestInfo, output);
                     response.setStatus(HttpServletResponse.SC_OK);
                 } catch (Exception e) {
-                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Error exporting JSON metrics.");
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, JSON_ERROR);
                 }
             }
         } else {
@@ -139,8 +181,147 @@ public class KumuluzEEMetricsServlet extends HttpServlet {
         }
     }
 
+    private void serviceCached(HttpServletRequest request, HttpServletResponse response, RequestInfo requestInfo)
+            throws IOException {
+        boolean prometheus = requestInfo.isPrometheusRequest();
+
+        byte[] exposition;
+        try {
+            exposition = expositionCache.get(getCacheKey(request, requestInfo), () -> {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                if (prometheus) {
+                    writePrometheus(requestInfo, output);
+                } else {
+                    writeJson(request, requestInfo, output);
+                }
+                return output.toByteArray();
+            });
+        } catch (IOException | RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, prometheus ? PROMETHEUS_ERROR : JSON_ERROR);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        try (OutputStream output = getOutputStream(request, response)) {
+            if (!(output instanceof CompressingOutputStream)) {
+                response.setContentLength(exposition.length);
+            }
+            output.write(exposition);
+        }
+    }
+
+    private OutputStream getOutputStream(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!compressionEnabled) {
+            return response.getOutputStream();
+        }
+
+        return CompressingOutputStream.forRequest(request, response, compressionLevel, compressionMinSize);
+    }
+
+    private String getCacheKey(HttpServletRequest request, RequestInfo requestInfo) {
+        String key = requestInfo.getRequestType() + " " + request.getRequestURI();
+        if (!requestInfo.isPrometheusRequest() && isPrettyPrintOff(request)) {
+            key += " pretty=false";
+        }
+        if (requestInfo.getMetricSelector() != null) {
+            // canonical selector, so unrelated parameters and their order do not fragment the cache, and length
+            // prefixed, so different selections do not share a key
+            key += " " + requestInfo.getMetricSelector().getKey();
+        }
+
+        return key;
+    }
+
+    private void writePrometheus(RequestInfo requestInfo, OutputStream output) throws IOException {
+        ExpositionFormat format;
+        switch (requestInfo.getRequestType()) {
+            case OPENMETRICS:
+                format = ExpositionFormat.OPENMETRICS;
+                break;
+            case PROTOBUF:
+                format = ExpositionFormat.PROTOBUF;
+                break;
+            default:
+                format = ExpositionFormat.PROMETHEUS;
+        }
+        PrometheusMetricWriter prometheusMetricWriter = new PrometheusMetricWriter(output, format);
+
+        if (requestInfo.getMetricSelector() != null) {
+            prometheusMetricWriter.writeSelected(requestInfo.selectMetrics());
+            return;
+        }
+
+        switch (requestInfo.getMetricsRequested()) {
+            case ALL:
+                prometheusMetricWriter.write(requestInfo.getRequestedRegistries());
+                break;
+            case REGISTRY:
+                prometheusMetricWriter.write(requestInfo.getSingleRequestedRegistryName(),
+                        requestInfo.getSingleRequestedRegistry());
+                break;
+            case METRIC:
+                prometheusMetricWriter.write(requestInfo.getSingleRequestedRegistryName(),
+                        requestInfo.getSingleRequestedRegistry(), requestInfo.getMetricName());
+                break;
+        }
+    }
+
+    private void writeJson(HttpServletRequest request, RequestInfo requestInfo, OutputStream output)
+            throws IOException {
+        if (requestInfo.getMetricSelector() != null) {
+            this.getWriter(request, requestInfo.getRequestType()).writeValue(output, getSelectedJson(requestInfo));
+            return;
+        }
+
+        Object value = null;
+        switch (requestInfo.getMetricsRequested()) {
+            case ALL:
+                value = requestInfo.getRequestedRegistries();
+                break;
+            case REGISTRY:
+                value = requestInfo.getSingleRequestedRegistry();
+                break;
+            case METRIC:
+                if(requestInfo.getRequestType() == RequestInfo.RequestType.JSON_METADATA) {
+                    value = Collections.singletonMap(requestInfo.getMetricName(), requestInfo.getMetadata());
+                } else {
+                    value = Collections.singletonMap(requestInfo.getMetricName(), requestInfo.getMetric());
+                }
+                break;
+        }
+
+        this.getWriter(request, requestInfo.getRequestType()).writeValue(output, value);
+    }
+
+    /*
+     * Selected metrics have the same layout as unfiltered ones: metrics of a single registry are not nested.
+     */
+    private Object getSelectedJson(RequestInfo requestInfo) {
+        boolean forMetadata = requestInfo.getRequestType() == RequestInfo.RequestType.JSON_METADATA;
+
+        Map<String, Map<String, Object>> registries = new LinkedHashMap<>();
+        for (Map.Entry<String, SortedMap<String, MetricAdapter>> registry :
+                requestInfo.selectMetrics().entrySet()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (Map.Entry<String, MetricAdapter> entry : registry.getValue().entrySet()) {
+                values.put(entry.getKey(), forMetadata ? entry.getValue().getMetadata() : entry.getValue().getMetric());
+            }
+            registries.put(registry.getKey(), values);
+        }
+
+        if (requestInfo.getMetricsRequested() == RequestInfo.MetricsRequested.REGISTRY) {
+            return registries.isEmpty() ? Collections.emptyMap() : registries.values().iterator().next();
+        }
+        return registries;
+    }
+
+    private boolean isPrettyPrintOff(HttpServletRequest request) {
+        return "false".equals(request.getParameter("pretty"));
+    }
+
     private ObjectWriter getWriter(HttpServletRequest request, RequestInfo.RequestType requestType) {
-        boolean prettyPrintOff = "false".equals(request.getParameter("pretty"));
+        boolean prettyPrintOff = isPrettyPrintOff(request);
         ObjectMapper mapper = (requestType == RequestInfo.RequestType.JSON_METADATA) ? this.metadataMapper : this.metricMapper;
 
         return prettyPrintOff ? mapper.writer() : mapper.writerWithDefaultPrettyPrinter();
@@ -266,8 +266,10 @@ public class MetricsExtension implements Extension {
         }
     }
 
+    @SuppressWarnings("deprecation")
     private org.eclipse.microprofile.metrics.Metric convertMetric(Metric metric, MetricType type) {
         if (metric instanceof Counter) {
+            // the count is kept by the Dropwizard counter of the metric set
             return new CounterImpl((Counter) metric);
         } else if (metric instanceof com.codahale.metrics.Histogram) {
             return new HistogramImpl((com.codahale.metrics.Histogram) metric);
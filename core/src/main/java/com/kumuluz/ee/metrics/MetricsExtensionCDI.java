@@ -21,7 +21,9 @@
 package com.kumuluz.ee.metrics;
 
 import com.kumuluz.ee.metrics.interceptors.utils.AnnotatedTypeDecorator;
+import com.kumuluz.ee.metrics.interceptors.utils.BeanMetricsPlan;
 import com.kumuluz.ee.metrics.interceptors.utils.GaugeBeanBinding;
+import com.kumuluz.ee.metrics.interceptors.utils.MetricsIndex;
 import com.kumuluz.ee.metrics.interceptors.utils.RegisterMetricsBinding;
 import com.kumuluz.ee.metrics.producers.MetricRegistryProducer;
 import com.kumuluz.ee.metrics.utils.AnnotationMetadata;
@@ -45,7 +47,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 /**
- * Registers metrics from producer fields and producer methods.
+ * Registers metrics from producer fields and producer methods, and metrics of beans, contained in the metrics index.
  *
  * @author Urban Malc
  * @author Aljaž Blažej
@@ -57,6 +59,8 @@ public class MetricsExtensionCDI implements Extension {
 
     private List<ProducerMemberRegistration> producerMembers = new LinkedList<>();
 
+    private List<Class<?>> indexedBeans = new LinkedList<>();
+
     private static final AnnotationLiteral<Default> DEFAULT = new AnnotationLiteral<Default>(){};
 
     private static final AnnotationLiteral<GaugeBeanBinding> GAUGE_BEAN_BINDING =
@@ -70,12 +74,25 @@ public class MetricsExtensionCDI implements Extension {
         AnnotatedTypeDecorator<X> decoratedType = new AnnotatedTypeDecorator<>(pat.getAnnotatedType(),
                 REGISTER_METRICS_BINDING);
         pat.setAnnotatedType(decoratedType);
+
+        // reflection scan is done once per class, before any instance is constructed
+        BeanMetricsPlan.forClass(pat.getAnnotatedType().getJavaClass());
     }
 
     private <X> void registerGauges(@Observes @WithAnnotations({Gauge.class}) ProcessAnnotatedType<X> pat) {
         AnnotatedTypeDecorator<X> decoratedType = new AnnotatedTypeDecorator<>(pat.getAnnotatedType(),
                 GAUGE_BEAN_BINDING);
         pat.setAnnotatedType(decoratedType);
+
+        // reflection scan is done once per class, before any instance is constructed
+        BeanMetricsPlan.forClass(pat.getAnnotatedType().getJavaClass());
+    }
+
+    private void indexedBean(@Observes ProcessManagedBean<?> pmb) {
+        Class<?> bean = pmb.getAnnotatedBeanClass().getJavaClass();
+        if (MetricsIndex.getInstance().contains(bean)) {
+            indexedBeans.add(bean);
+        }
     }
 
     private void metricProducerField(@Observes ProcessProducerField<? extends Metric, ?> ppf) {
@@ -110,6 +127,11 @@ public class MetricsExtensionCDI implements Extension {
                         registration.getMember().getBaseType(), registration.getBean()));
             }
         }
+
+        // metrics of indexed beans are registered eagerly, instead of on the first bean construct
+        for (Class<?> bean : indexedBeans) {
+            BeanMetricsPlan.forClass(bean).registerMethodMetrics(applicationRegistry);
+        }
     }
 
     private static boolean hasInjectionPoints(AnnotatedMember<?> member) {
@@ -33,17 +33,42 @@ public class ContextImpl implements Timer.Context {
 
     private com.codahale.metrics.Timer.Context context;
 
+    private TimerImpl timer;
+    private long startTime;
+
     public ContextImpl(com.codahale.metrics.Timer.Context context) {
         this.context = context;
     }
 
+    public ContextImpl(TimerImpl timer, long startTime) {
+        this.timer = timer;
+        this.startTime = startTime;
+    }
+
     @Override
     public long stop() {
-        return context.stop();
+        if (context != null) {
+            return context.stop();
+        }
+
+        return timer.stopTiming(startTime);
+    }
+
+    /**
+     * Stops the measurement and samples an exemplar, see {@link TimerImpl#stopTimingWithExemplar(long)}.
+     *
+     * @return elapsed time in nanoseconds
+     */
+    public long stopWithExemplar() {
+        if (context != null) {
+            return context.stop();
+        }
+
+        return timer.stopTimingWithExemplar(startTime);
     }
 
     @Override
     public void close() {
-        context.close();
+        stop();
     }
 }
@@ -22,47 +22,87 @@ package com.kumuluz.ee.metrics.api;
 
 import org.eclipse.microprofile.metrics.Counter;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Microprofile Counter implementation.
  *
+ * The count is kept in a {@link LongAdder}, which spreads concurrent updates over separate cells, so counters updated
+ * from many threads do not contend on a single value.
+ *
+ * The counter can hold the latest sampled {@link Exemplar}, which is recorded with {@link #incWithExemplar()}.
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
  */
 public class CounterImpl implements Counter {
 
-    private com.codahale.metrics.Counter counter;
+    private final LongAdder count;
+    private final com.codahale.metrics.Counter counter;
+    private volatile Exemplar exemplar;
 
     public CounterImpl() {
-        this.counter = new com.codahale.metrics.Counter();
+        this.count = new LongAdder();
+        this.counter = null;
     }
 
+    /**
+     * Creates a counter, which forwards updates to the given Dropwizard counter.
+     *
+     * @deprecated counters keep their own count, use {@link #CounterImpl()} instead
+     */
+    @Deprecated
     public CounterImpl(com.codahale.metrics.Counter counter) {
+        this.count = null;
         this.counter = counter;
     }
 
     @Override
     public void inc() {
-        this.counter.inc();
+        inc(1);
     }
 
     @Override
     public void inc(long l) {
-        this.counter.inc(l);
+        if (counter != null) {
+            counter.inc(l);
+        } else {
+            this.count.add(l);
+        }
+    }
+
+    /**
+     * Increments the counter and samples an exemplar for the increment, if exemplars are enabled.
+     */
+    public void incWithExemplar() {
+        inc(1);
+
+        Exemplar sampled = ExemplarSampler.getInstance().sample(exemplar, 1);
+        if (sampled != null) {
+            this.exemplar = sampled;
+        }
+    }
+
+    /**
+     * @return latest exemplar or null
+     */
+    public Exemplar getExemplar() {
+        return exemplar;
     }
 
     @Override
     public void dec() {
-        this.counter.dec();
+        inc(-1);
     }
 
     @Override
     public void dec(long l) {
-        this.counter.dec(l);
+        inc(-l);
     }
 
     @Override
     public long getCount() {
-        return this.counter.getCount();
+        return counter != null ? counter.getCount() : this.count.sum();
     }
 }
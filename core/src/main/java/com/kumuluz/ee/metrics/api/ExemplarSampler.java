@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.api;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+
+import java.util.logging.Logger;
+
+/**
+ * Decides when exemplars are recorded and obtains their trace ids from the configured {@link TraceIdSupplier}.
+ *
+ * The supplier is set with the kumuluzee.metrics.exemplars.trace-id-supplier key (fully qualified name of a class with
+ * a public no-argument constructor) or with {@link #setTraceIdSupplier(TraceIdSupplier)}. Exemplars are disabled if no
+ * supplier is set. An exemplar is only replaced once it is older than kumuluzee.metrics.exemplars.min-interval-ms, so
+ * the supplier is not called and no exemplar is allocated for most observations.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ExemplarSampler {
+
+    private static final Logger log = Logger.getLogger(ExemplarSampler.class.getName());
+
+    // OpenMetrics limits the length of exemplar labels to 128 characters, including the trace_id label name
+    private static final int MAX_TRACE_ID_LENGTH = 120;
+
+    private static ExemplarSampler instance = null;
+
+    private volatile TraceIdSupplier traceIdSupplier;
+    private long minIntervalMillis;
+
+    private ExemplarSampler() {
+        ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+
+        this.minIntervalMillis = configurationUtil.getLong("kumuluzee.metrics.exemplars.min-interval-ms")
+                .orElse(1000L);
+        configurationUtil.get("kumuluzee.metrics.exemplars.trace-id-supplier")
+                .ifPresent(className -> this.traceIdSupplier = createTraceIdSupplier(className.trim()));
+    }
+
+    public static ExemplarSampler getInstance() {
+        if (instance == null) {
+            instance = new ExemplarSampler();
+        }
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return traceIdSupplier != null;
+    }
+
+    /**
+     * Sets the supplier of trace ids, replacing the configured one.
+     *
+     * @param traceIdSupplier supplier of trace ids or null, to disable exemplars
+     */
+    public void setTraceIdSupplier(TraceIdSupplier traceIdSupplier) {
+        this.traceIdSupplier = traceIdSupplier;
+    }
+
+    /**
+     * Returns a new exemplar for the observed value, if the previous exemplar is due to be replaced and a trace is
+     * active on the current thread.
+     *
+     * @param previous current exemplar or null
+     * @param value observed value in the recorded unit
+     * @return new exemplar or null, if the previous exemplar should be kept
+     */
+    public Exemplar sample(Exemplar previous, double value) {
+        TraceIdSupplier supplier = this.traceIdSupplier;
+        if (supplier == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (previous != null && now - previous.getTimestamp() < minIntervalMillis) {
+            return null;
+        }
+
+        String traceId = supplier.getTraceId();
+        if (traceId == null || traceId.isEmpty() || traceId.length() > MAX_TRACE_ID_LENGTH) {
+            return null;
+        }
+
+        return new Exemplar(traceId, value, now);
+    }
+
+    private static TraceIdSupplier createTraceIdSupplier(String className) {
+        try {
+            Class<?> clazz = Class.forName(className, true, Thread.currentThread().getContextClassLoader());
+            if (TraceIdSupplier.class.isAssignableFrom(clazz)) {
+                return clazz.asSubclass(TraceIdSupplier.class).newInstance();
+            }
+            log.severe("Trace id supplier " + className + " does not implement " + TraceIdSupplier.class.getName() +
+                    ", exemplars are disabled.");
+        } catch (ReflectiveOperationException e) {
+            log.severe("Could not create trace id supplier " + className + ", exemplars are disabled: " + e);
+        }
+
+        return null;
+    }
+}
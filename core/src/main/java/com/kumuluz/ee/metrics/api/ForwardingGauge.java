@@ -22,38 +22,165 @@ package com.kumuluz.ee.metrics.api;
 
 import org.eclipse.microprofile.metrics.Gauge;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.*;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Forwards getValue calls to the object method.
  *
+ * The method is bound once to a generated accessor ({@link LambdaMetafactory}), so calls do not go through reflection.
+ * Methods, which the generated accessor cannot link to (e.g. non-public methods), are called through a
+ * {@link MethodHandle}. On both paths, exceptions thrown by the method are wrapped in an
+ * {@link IllegalStateException} and errors are rethrown. Gauges for methods returning long or double are created with
+ * {@link #forMethod(Method, Object)} and implement {@link LongGauge} or {@link DoubleGauge}.
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
  */
 public class ForwardingGauge implements Gauge {
 
-    private final Method method;
+    private static final Logger log = Logger.getLogger(ForwardingGauge.class.getName());
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
 
     private final Object object;
 
+    private final Function<Object, Object> accessor;
+
     public ForwardingGauge(Method method, Object object) {
-        this.method = method;
         this.object = object;
-        method.setAccessible(true);
+        this.accessor = bind(method, Function.class, "apply", Object.class);
+    }
+
+    /**
+     * Creates a gauge, which forwards calls to the given method. Methods returning long or double are bound to gauges
+     * with primitive values.
+     *
+     * @param method gauge method
+     * @param object object, on which the method is called
+     * @return gauge
+     */
+    public static Gauge<?> forMethod(Method method, Object object) {
+        if (method.getReturnType() == long.class) {
+            ToLongFunction<Object> accessor = bind(method, ToLongFunction.class, "applyAsLong", long.class);
+            return (LongGauge) () -> accessor.applyAsLong(object);
+        } else if (method.getReturnType() == double.class) {
+            ToDoubleFunction<Object> accessor = bind(method, ToDoubleFunction.class, "applyAsDouble", double.class);
+            return (DoubleGauge) () -> accessor.applyAsDouble(object);
+        }
+
+        return new ForwardingGauge(method, object);
     }
 
     @Override
     public Object getValue() {
-        return invokeMethod(method, object);
+        return accessor.apply(object);
     }
 
-    private static Object invokeMethod(Method method, Object object) {
+    /*
+     * Creates an instance of the functional interface, which calls the method on its argument.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T bind(Method method, Class<?> functionalInterface, String interfaceMethod,
+                              Class<?> returnType) {
+        MethodHandle handle;
         try {
-            return method.invoke(object);
-        } catch (IllegalAccessException | InvocationTargetException cause) {
-            throw new IllegalStateException("Error while calling method [" + method + "]", cause);
+            method.setAccessible(true);
+            handle = LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Error while binding method [" + method + "]", e);
         }
+
+        if (Modifier.isStatic(method.getModifiers())) {
+            // object is ignored for static methods
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+
+        Object generated = canGenerateAccessor(method) ?
+                generateAccessor(method, handle, functionalInterface, interfaceMethod, returnType) : null;
+        MethodHandle adapted = handle.asType(MethodType.methodType(returnType, Object.class));
+
+        // both paths wrap exceptions of the method in the same way
+        if (returnType == long.class) {
+            ToLongFunction<Object> function = (ToLongFunction<Object>) generated;
+            return (T) (ToLongFunction<Object>) target -> {
+                try {
+                    return function != null ? function.applyAsLong(target) : (long) adapted.invokeExact(target);
+                } catch (Throwable cause) {
+                    throw invocationException(method, cause);
+                }
+            };
+        } else if (returnType == double.class) {
+            ToDoubleFunction<Object> function = (ToDoubleFunction<Object>) generated;
+            return (T) (ToDoubleFunction<Object>) target -> {
+                try {
+                    return function != null ? function.applyAsDouble(target) : (double) adapted.invokeExact(target);
+                } catch (Throwable cause) {
+                    throw invocationException(method, cause);
+                }
+            };
+        }
+
+        Function<Object, Object> function = (Function<Object, Object>) generated;
+        return (T) (Function<Object, Object>) target -> {
+            try {
+                return function != null ? function.apply(target) : adapted.invokeExact(target);
+            } catch (Throwable cause) {
+                throw invocationException(method, cause);
+            }
+        };
+    }
+
+    /*
+     * Returns the generated accessor or null, if it could not be generated and the method handle has to be used.
+     */
+    private static Object generateAccessor(Method method, MethodHandle handle, Class<?> functionalInterface,
+                                           String interfaceMethod, Class<?> returnType) {
+        try {
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, interfaceMethod,
+                    MethodType.methodType(functionalInterface),
+                    MethodType.methodType(returnType, Object.class),
+                    handle,
+                    MethodType.methodType(returnType, method.getDeclaringClass()));
+            return site.getTarget().invoke();
+        } catch (Throwable e) {
+            log.log(Level.FINE, "Could not generate accessor for method [" + method +
+                    "], using a method handle instead", e);
+            return null;
+        }
+    }
+
+    /*
+     * Generated accessors are linked from this class, so the method has to be public and its class visible to the
+     * class loader of this class.
+     */
+    private static boolean canGenerateAccessor(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(declaringClass.getModifiers()) ||
+                Modifier.isStatic(method.getModifiers())) {
+            return false;
+        }
+
+        try {
+            return Class.forName(declaringClass.getName(), false, ForwardingGauge.class.getClassLoader()) ==
+                    declaringClass;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static RuntimeException invocationException(Method method, Throwable cause) {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+
+        return new IllegalStateException("Error while calling method [" + method + "]", cause);
     }
 }
@@ -0,0 +1,234 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.api;
+
+import org.eclipse.microprofile.metrics.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-only copies of metrics, which hold the values of the metric at the time of the copy.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+final class FrozenMetrics {
+
+    private FrozenMetrics() {
+    }
+
+    /**
+     * Returns the copy of the metric. Metrics of unknown types and gauges, which fail to evaluate, are returned as
+     * they are, so the error is reported by whoever reads them.
+     */
+    static Metric freeze(Metric metric) {
+        try {
+            if (metric instanceof LongGauge) {
+                long value = ((LongGauge) metric).getLongValue();
+                return (LongGauge) () -> value;
+            } else if (metric instanceof DoubleGauge) {
+                double value = ((DoubleGauge) metric).getDoubleValue();
+                return (DoubleGauge) () -> value;
+            } else if (metric instanceof Gauge) {
+                Object value = ((Gauge<?>) metric).getValue();
+                return (Gauge<Object>) () -> value;
+            }
+        } catch (RuntimeException e) {
+            return metric;
+        }
+
+        if (metric instanceof Counter) {
+            return new FrozenCounter(((Counter) metric).getCount());
+        } else if (metric instanceof Meter) {
+            return new FrozenMeter((Meter) metric);
+        } else if (metric instanceof Histogram) {
+            return new FrozenHistogram((Histogram) metric);
+        } else if (metric instanceof Timer) {
+            return new FrozenTimer((Timer) metric);
+        }
+
+        return metric;
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Metric copy is read-only");
+    }
+
+    private static class FrozenCounter implements Counter {
+
+        private final long count;
+
+        private FrozenCounter(long count) {
+            this.count = count;
+        }
+
+        @Override
+        public void inc() {
+            throw readOnly();
+        }
+
+        @Override
+        public void inc(long n) {
+            throw readOnly();
+        }
+
+        @Override
+        public void dec() {
+            throw readOnly();
+        }
+
+        @Override
+        public void dec(long n) {
+            throw readOnly();
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private static class FrozenMetered implements Metered {
+
+        private final long count;
+        private final double meanRate;
+        private final double oneMinuteRate;
+        private final double fiveMinuteRate;
+        private final double fifteenMinuteRate;
+
+        private FrozenMetered(Metered metered) {
+            this.count = metered.getCount();
+            this.meanRate = metered.getMeanRate();
+            this.oneMinuteRate = metered.getOneMinuteRate();
+            this.fiveMinuteRate = metered.getFiveMinuteRate();
+            this.fifteenMinuteRate = metered.getFifteenMinuteRate();
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public double getFifteenMinuteRate() {
+            return fifteenMinuteRate;
+        }
+
+        @Override
+        public double getFiveMinuteRate() {
+            return fiveMinuteRate;
+        }
+
+        @Override
+        public double getMeanRate() {
+            return meanRate;
+        }
+
+        @Override
+        public double getOneMinuteRate() {
+            return oneMinuteRate;
+        }
+    }
+
+    private static class FrozenMeter extends FrozenMetered implements Meter {
+
+        private FrozenMeter(Meter meter) {
+            super(meter);
+        }
+
+        @Override
+        public void mark() {
+            throw readOnly();
+        }
+
+        @Override
+        public void mark(long n) {
+            throw readOnly();
+        }
+    }
+
+    private static class FrozenHistogram implements Histogram {
+
+        private final long count;
+        private final Snapshot snapshot;
+
+        private FrozenHistogram(Histogram histogram) {
+            this.count = histogram.getCount();
+            this.snapshot = histogram.getSnapshot();
+        }
+
+        @Override
+        public void update(int value) {
+            throw readOnly();
+        }
+
+        @Override
+        public void update(long value) {
+            throw readOnly();
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public Snapshot getSnapshot() {
+            return snapshot;
+        }
+    }
+
+    private static class FrozenTimer extends FrozenMetered implements Timer {
+
+        private final Snapshot snapshot;
+
+        private FrozenTimer(Timer timer) {
+            super(timer);
+            this.snapshot = timer.getSnapshot();
+        }
+
+        @Override
+        public void update(long duration, TimeUnit unit) {
+            throw readOnly();
+        }
+
+        @Override
+        public <T> T time(Callable<T> event) {
+            throw readOnly();
+        }
+
+        @Override
+        public void time(Runnable event) {
+            throw readOnly();
+        }
+
+        @Override
+        public Context time() {
+            throw readOnly();
+        }
+
+        @Override
+        public Snapshot getSnapshot() {
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.api;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reservoir backed by HdrHistogram.
+ *
+ * Values are recorded into a {@link Recorder}, which is wait-free for the recording threads. Snapshots contain values
+ * recorded in the current and in the previous window, so they cover between one and two windows. Memory usage is
+ * bounded and depends only on the value range and the number of significant digits, not on the number of values.
+ *
+ * Recorded values are assigned to windows when a snapshot is taken, since the recorder does not keep the time of the
+ * values. If no snapshot is taken for two windows or more, older windows are discarded, but all values recorded since
+ * the previous snapshot are assigned to the current window, so the next snapshot can contain values older than two
+ * windows. Reporters and scrapes take snapshots regularly, so this only affects the first snapshot after an idle
+ * period.
+ *
+ * Negative values are recorded as 0.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class HdrHistogramReservoir implements Reservoir {
+
+    private final Recorder recorder;
+    private final long windowNanos;
+    private final Clock clock;
+
+    private final Histogram intervalHistogram;
+    private Histogram currentWindow;
+    private Histogram previousWindow;
+    private long windowStart;
+
+    public HdrHistogramReservoir(int numberOfSignificantValueDigits, long window, TimeUnit windowUnit) {
+        this(numberOfSignificantValueDigits, window, windowUnit, Clock.defaultClock());
+    }
+
+    HdrHistogramReservoir(int numberOfSignificantValueDigits, long window, TimeUnit windowUnit, Clock clock) {
+        this.recorder = new Recorder(numberOfSignificantValueDigits);
+        this.windowNanos = windowUnit.toNanos(window);
+        this.clock = clock;
+
+        this.intervalHistogram = new Histogram(numberOfSignificantValueDigits);
+        this.currentWindow = new Histogram(numberOfSignificantValueDigits);
+        this.previousWindow = new Histogram(numberOfSignificantValueDigits);
+        this.windowStart = clock.getTick();
+    }
+
+    /**
+     * Returns the number of values in the current and the previous window. Recorded values are moved into the current
+     * window first, which costs about as much as a snapshot, except that the histogram is not copied.
+     */
+    @Override
+    public synchronized int size() {
+        updateWindows();
+        return (int) Math.min(currentWindow.getTotalCount() + previousWindow.getTotalCount(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void update(long value) {
+        recorder.recordValue(value < 0 ? 0 : value);
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        Histogram histogram;
+        synchronized (this) {
+            updateWindows();
+
+            histogram = currentWindow.copy();
+            histogram.add(previousWindow);
+        }
+
+        return new HdrSnapshot(histogram);
+    }
+
+    /*
+     * Rotates the windows and moves the values, recorded since the previous call, into the current window.
+     */
+    private void updateWindows() {
+        recorder.getIntervalHistogramInto(intervalHistogram);
+
+        long now = clock.getTick();
+        if (now - windowStart >= 2 * windowNanos) {
+            // no snapshots were taken for more than a window, previous values are too old
+            previousWindow.reset();
+            currentWindow.reset();
+            windowStart = now;
+        } else if (now - windowStart >= windowNanos) {
+            Histogram oldest = previousWindow;
+            previousWindow = currentWindow;
+            currentWindow = oldest;
+            currentWindow.reset();
+            windowStart += windowNanos;
+        }
+        currentWindow.add(intervalHistogram);
+    }
+
+    private static class HdrSnapshot extends Snapshot {
+
+        private final Histogram histogram;
+
+        private HdrSnapshot(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+                throw new IllegalArgumentException(quantile + " is not in [0..1]");
+            }
+
+            return histogram.getValueAtPercentile(quantile * 100);
+        }
+
+        @Override
+        public long[] getValues() {
+            long[] values = new long[size()];
+            int i = 0;
+            for (HistogramIterationValue value : histogram.recordedValues()) {
+                long count = value.getCountAddedInThisIterationStep();
+                for (long j = 0; j < count && i < values.length; j++) {
+                    values[i++] = histogram.highestEquivalentValue(value.getValueIteratedTo());
+                }
+            }
+
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(histogram.getTotalCount(), Integer.MAX_VALUE);
+        }
+
+        @Override
+        public long getMax() {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getMaxValue();
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getMean();
+        }
+
+        @Override
+        public long getMin() {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getMinValue();
+        }
+
+        @Override
+        public double getStdDev() {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getStdDeviation();
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (long value : getValues()) {
+                    out.printf("%d%n", value);
+                }
+            }
+        }
+    }
+}
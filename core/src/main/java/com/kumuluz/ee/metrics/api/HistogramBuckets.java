@@ -0,0 +1,140 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.api;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cumulative fixed-bucket counters, kept by histograms and timers in addition to their reservoirs.
+ *
+ * Unlike reservoir percentiles, bucket counts can be aggregated across instances. Each recorded value increments a
+ * single bucket counter and the sum without locking, the cumulative counts are only computed when they are read.
+ *
+ * Each bucket can also hold the latest sampled {@link Exemplar}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class HistogramBuckets {
+
+    private final long[] upperBounds;
+    // one counter per upper bound and the last one for values above all bounds
+    private final LongAdder[] counts;
+    private final LongAdder sum;
+    private final AtomicReferenceArray<Exemplar> exemplars;
+
+    /**
+     * @param upperBounds inclusive upper bounds of the buckets in the recorded unit, in strictly increasing order
+     */
+    public HistogramBuckets(long[] upperBounds) {
+        for (int i = 1; i < upperBounds.length; i++) {
+            if (upperBounds[i] <= upperBounds[i - 1]) {
+                throw new IllegalArgumentException("Bucket upper bounds must be in strictly increasing order.");
+            }
+        }
+
+        this.upperBounds = upperBounds.clone();
+        this.counts = new LongAdder[upperBounds.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+        this.sum = new LongAdder();
+        this.exemplars = new AtomicReferenceArray<>(counts.length);
+    }
+
+    public void update(long value) {
+        int index = indexOf(value);
+        counts[index].increment();
+        sum.add(value);
+    }
+
+    /**
+     * Records the value and offers an exemplar for its bucket to the sampler.
+     *
+     * @param value recorded value
+     * @param sampler exemplar sampler
+     */
+    public void update(long value, ExemplarSampler sampler) {
+        int index = indexOf(value);
+        counts[index].increment();
+        sum.add(value);
+
+        Exemplar exemplar = sampler.sample(exemplars.get(index), value);
+        if (exemplar != null) {
+            exemplars.set(index, exemplar);
+        }
+    }
+
+    private int indexOf(long value) {
+        int index = Arrays.binarySearch(upperBounds, value);
+        if (index < 0) {
+            // value is between two bounds, it is counted in the bucket of the larger one
+            index = -index - 1;
+        }
+
+        return index;
+    }
+
+    /**
+     * @return number of buckets with a finite upper bound
+     */
+    public int size() {
+        return upperBounds.length;
+    }
+
+    public long getUpperBound(int index) {
+        return upperBounds[index];
+    }
+
+    /**
+     * Returns the number of recorded values, less than or equal to each upper bound. The last element is the total
+     * number of recorded values.
+     *
+     * @return cumulative counts, one more than {@link #size()}
+     */
+    public long[] getCumulativeCounts() {
+        long[] cumulativeCounts = new long[counts.length];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i].sum();
+            cumulativeCounts[i] = count;
+        }
+
+        return cumulativeCounts;
+    }
+
+    /**
+     * @param index index of the bucket, {@link #size()} for the bucket above all bounds
+     * @return latest exemplar of the bucket or null
+     */
+    public Exemplar getExemplar(int index) {
+        return exemplars.get(index);
+    }
+
+    /**
+     * @return sum of the recorded values in the recorded unit
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.api;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Creates bucket counters for histograms and timers, as configured with the kumuluzee.metrics.histogram-buckets list.
+ *
+ * Each list item contains a name-pattern (regular expression, matched against the whole metric name) and optional
+ * comma separated boundaries. Boundaries of timers are given in seconds and boundaries of histograms in the recorded
+ * unit. The first matching item is used. Metrics, which do not match any item, do not keep bucket counters.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class HistogramBucketsFactory {
+
+    private static final Logger log = Logger.getLogger(HistogramBucketsFactory.class.getName());
+
+    private static final String DEFAULT_TIMER_BOUNDARIES = "0.005,0.01,0.025,0.05,0.1,0.25,0.5,1,2.5,5,10";
+    private static final String DEFAULT_HISTOGRAM_BOUNDARIES = "1,5,10,50,100,500,1000,5000,10000,50000,100000";
+
+    private static final int NANOSECONDS_SCALE = 9;
+
+    private static HistogramBucketsFactory instance = null;
+
+    private List<Rule> rules;
+
+    private HistogramBucketsFactory() {
+        ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+
+        this.rules = new ArrayList<>();
+
+        String bucketsKey = "kumuluzee.metrics.histogram-buckets[%d]";
+        Optional<String> namePattern;
+        int i = 0;
+        while ((namePattern = configurationUtil.get(String.format(bucketsKey + ".name-pattern", i))).isPresent()) {
+            String boundaries = configurationUtil.get(String.format(bucketsKey + ".boundaries", i)).orElse(null);
+            try {
+                rules.add(new Rule(Pattern.compile(namePattern.get().trim()), boundaries));
+            } catch (PatternSyntaxException e) {
+                log.severe("Invalid histogram buckets name pattern " + namePattern.get() + ": " + e.getMessage());
+            }
+
+            i++;
+        }
+    }
+
+    public static HistogramBucketsFactory getInstance() {
+        if (instance == null) {
+            instance = new HistogramBucketsFactory();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Creates bucket counters for a timer, which record durations in nanoseconds.
+     *
+     * @param name name of the timer
+     * @return new bucket counters or null, if buckets are not enabled for the timer
+     */
+    public HistogramBuckets forTimer(String name) {
+        Rule rule = findRule(name);
+        if (rule == null) {
+            return null;
+        }
+
+        return create(name, rule.getBoundaries(), DEFAULT_TIMER_BOUNDARIES, NANOSECONDS_SCALE);
+    }
+
+    /**
+     * Creates bucket counters for a histogram.
+     *
+     * @param name name of the histogram
+     * @return new bucket counters or null, if buckets are not enabled for the histogram
+     */
+    public HistogramBuckets forHistogram(String name) {
+        Rule rule = findRule(name);
+        if (rule == null) {
+            return null;
+        }
+
+        return create(name, rule.getBoundaries(), DEFAULT_HISTOGRAM_BOUNDARIES, 0);
+    }
+
+    private Rule findRule(String name) {
+        for (Rule rule : rules) {
+            if (rule.getNamePattern().matcher(name).matches()) {
+                return rule;
+            }
+        }
+
+        return null;
+    }
+
+    private static HistogramBuckets create(String name, String boundaries, String defaultBoundaries, int scale) {
+        if (boundaries != null) {
+            try {
+                return new HistogramBuckets(parseBoundaries(boundaries, scale));
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                log.severe("Invalid histogram bucket boundaries " + boundaries + " for " + name +
+                        ", using the default boundaries instead: " + e.getMessage());
+            }
+        }
+
+        return new HistogramBuckets(parseBoundaries(defaultBoundaries, scale));
+    }
+
+    private static long[] parseBoundaries(String boundaries, int scale) {
+        String[] values = boundaries.split(",");
+        long[] upperBounds = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            upperBounds[i] = new BigDecimal(values[i].trim()).movePointRight(scale).longValueExact();
+        }
+
+        return upperBounds;
+    }
+
+    private static class Rule {
+
+        private final Pattern namePattern;
+        private final String boundaries;
+
+        private Rule(Pattern namePattern, String boundaries) {
+            this.namePattern = namePattern;
+            this.boundaries = boundaries;
+        }
+
+        private Pattern getNamePattern() {
+            return namePattern;
+        }
+
+        private String getBoundaries() {
+            return boundaries;
+        }
+    }
+}
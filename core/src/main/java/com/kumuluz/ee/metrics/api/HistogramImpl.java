@@ -20,13 +20,14 @@
 */
 package com.kumuluz.ee.metrics.api;
 
-import com.codahale.metrics.ExponentiallyDecayingReservoir;
 import org.eclipse.microprofile.metrics.Histogram;
 import org.eclipse.microprofile.metrics.Snapshot;
 
 /**
  * Microprofile Histogram implementation.
  *
+ * If {@link HistogramBuckets} are given, values are also counted in the buckets.
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
@@ -34,23 +35,33 @@ import org.eclipse.microprofile.metrics.Snapshot;
 public class HistogramImpl implements Histogram {
 
     private com.codahale.metrics.Histogram histogram;
+    private final HistogramBuckets buckets;
 
     public HistogramImpl() {
-        this.histogram = new com.codahale.metrics.Histogram(new ExponentiallyDecayingReservoir());
+        this((HistogramBuckets) null);
+    }
+
+    public HistogramImpl(HistogramBuckets buckets) {
+        this.histogram = new com.codahale.metrics.Histogram(ReservoirFactory.getInstance().create());
+        this.buckets = buckets;
     }
 
     public HistogramImpl(com.codahale.metrics.Histogram histogram) {
         this.histogram = histogram;
+        this.buckets = null;
     }
 
     @Override
     public void update(int i) {
-        this.histogram.update(i);
+        update((long) i);
     }
 
     @Override
     public void update(long l) {
         this.histogram.update(l);
+        if (buckets != null) {
+            buckets.update(l);
+        }
     }
 
     @Override
@@ -62,4 +73,11 @@ public class HistogramImpl implements Histogram {
     public Snapshot getSnapshot() {
         return new SnapshotImpl(this.histogram.getSnapshot());
     }
+
+    /**
+     * @return bucket counters of the histogram or null, if the histogram does not keep them
+     */
+    public HistogramBuckets getBuckets() {
+        return buckets;
+    }
 }
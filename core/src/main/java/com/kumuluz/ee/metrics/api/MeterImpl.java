@@ -25,6 +25,8 @@ import org.eclipse.microprofile.metrics.Meter;
 /**
  * Microprofile Meter implementation.
  *
+ * The meter can hold the latest sampled {@link Exemplar}, which is recorded with {@link #markWithExemplar()}.
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
@@ -32,6 +34,7 @@ import org.eclipse.microprofile.metrics.Meter;
 public class MeterImpl implements Meter {
 
     private com.codahale.metrics.Meter meter;
+    private volatile Exemplar exemplar;
 
     public MeterImpl() {
         this.meter = new com.codahale.metrics.Meter();
@@ -51,6 +54,25 @@ public class MeterImpl implements Meter {
         this.meter.mark(l);
     }
 
+    /**
+     * Marks the occurrence of an event and samples an exemplar for it, if exemplars are enabled.
+     */
+    public void markWithExemplar() {
+        this.meter.mark();
+
+        Exemplar sampled = ExemplarSampler.getInstance().sample(exemplar, 1);
+        if (sampled != null) {
+            this.exemplar = sampled;
+        }
+    }
+
+    /**
+     * @return latest exemplar or null
+     */
+    public Exemplar getExemplar() {
+        return exemplar;
+    }
+
     @Override
     public long getCount() {
         return this.meter.getCount();
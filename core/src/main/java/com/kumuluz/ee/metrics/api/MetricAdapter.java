@@ -21,6 +21,7 @@
 package com.kumuluz.ee.metrics.api;
 
 import com.codahale.metrics.Metric;
+import com.kumuluz.ee.metrics.prometheus.PrometheusMetadata;
 import org.eclipse.microprofile.metrics.Metadata;
 
 /**
@@ -34,10 +35,13 @@ public class MetricAdapter implements Metric {
 
     private org.eclipse.microprofile.metrics.Metric metric;
     private Metadata metadata;
+    private PrometheusMetadata prometheusMetadata;
 
-    public MetricAdapter(org.eclipse.microprofile.metrics.Metric metric, Metadata metadata) {
+    public MetricAdapter(org.eclipse.microprofile.metrics.Metric metric, Metadata metadata,
+                         PrometheusMetadata prometheusMetadata) {
         this.metric = metric;
         this.metadata = metadata;
+        this.prometheusMetadata = prometheusMetadata;
     }
 
     public org.eclipse.microprofile.metrics.Metric getMetric() {
@@ -47,4 +51,8 @@ public class MetricAdapter implements Metric {
     public Metadata getMetadata() {
         return metadata;
     }
+
+    public PrometheusMetadata getPrometheusMetadata() {
+        return prometheusMetadata;
+    }
 }
@@ -21,25 +21,60 @@
 package com.kumuluz.ee.metrics.api;
 
 import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.metrics.prometheus.PrometheusMetadata;
 import com.kumuluz.ee.metrics.utils.ServiceConfigInfo;
 import org.eclipse.microprofile.metrics.Timer;
 import org.eclipse.microprofile.metrics.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Microprofile MetricRegistry implementation.
  *
+ * Metrics are kept in concurrent maps, sorted by name. Besides the map of all metrics, a separate index is kept for
+ * each metric type, so typed lookups and get-or-create calls do not need to traverse or copy the registry. Lookups
+ * are lock-free, the indexes are updated under a lock after the map of all metrics changes.
+ *
+ * Exposition specific metadata (e.g. sanitized Prometheus names) is computed once, when the metric is registered.
+ *
+ * The sorted map of all metrics also serves as the name index for filtered scrapes (see {@link MetricSelector}).
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
  */
 public class MetricRegistryImpl extends MetricRegistry {
 
-    private com.codahale.metrics.MetricRegistry metricRegistry;
+    private final Type type;
+
+    private final ConcurrentSkipListMap<String, MetricAdapter> metrics;
+
+    private final ConcurrentSkipListMap<String, Gauge> gauges;
+    private final ConcurrentSkipListMap<String, Counter> counters;
+    private final ConcurrentSkipListMap<String, Histogram> histograms;
+    private final ConcurrentSkipListMap<String, Meter> meters;
+    private final ConcurrentSkipListMap<String, Timer> timers;
+
+    private final AtomicLong removalCount;
+
+    private final Object indexLock = new Object();
 
     public MetricRegistryImpl() {
-        this.metricRegistry = new com.codahale.metrics.MetricRegistry();
+        this(Type.APPLICATION);
+    }
+
+    public MetricRegistryImpl(Type type) {
+        this.type = type;
+        this.metrics = new ConcurrentSkipListMap<>();
+        this.gauges = new ConcurrentSkipListMap<>();
+        this.counters = new ConcurrentSkipListMap<>();
+        this.histograms = new ConcurrentSkipListMap<>();
+        this.meters = new ConcurrentSkipListMap<>();
+        this.timers = new ConcurrentSkipListMap<>();
+        this.removalCount = new AtomicLong();
     }
 
     @Override
@@ -58,33 +93,21 @@ public class MetricRegistryImpl extends MetricRegistry {
     }
 
     @Override
-    public synchronized <T extends Metric> T register(Metadata metadata, T t) throws IllegalArgumentException {
-        // add default tags
-        ServiceConfigInfo configInfo = ServiceConfigInfo.getInstance();
-        if(configInfo.shouldAddToTags()) {
-            metadata.addTag("environment=" + configInfo.getEnvironment());
-            metadata.addTag("serviceName=" + configInfo.getServiceName());
-            metadata.addTag("serviceVersion=" + configInfo.getServiceVersion());
-            metadata.addTag("instanceId=" + configInfo.getInstanceId());
-        }
-
-        Optional<String> tagsFromConfig = ConfigurationUtil.getInstance().get("MP_METRICS_TAGS");
-        tagsFromConfig.ifPresent(metadata::addTags);
-
-        try {
-            metricRegistry.register(metadata.getName(), new MetricAdapter(t, metadata));
-        } catch (IllegalArgumentException e) {
-            com.codahale.metrics.Metric m = metricRegistry.getMetrics().get(metadata.getName());
-            if (m instanceof MetricAdapter) {
-                Metadata existingMetadata = ((MetricAdapter) m).getMetadata();
-                if (existingMetadata.isReusable() && metadata.isReusable() &&
-                        existingMetadata.getTypeRaw().equals(metadata.getTypeRaw())) {
-                    return t;
-                } else {
-                    throw e;
-                }
+    public <T extends Metric> T register(Metadata metadata, T t) throws IllegalArgumentException {
+        addDefaultTags(metadata);
+
+        MetricAdapter existing = metrics.putIfAbsent(metadata.getName(), createAdapter(t, metadata));
+        if (existing != null) {
+            Metadata existingMetadata = existing.getMetadata();
+            if (existingMetadata.isReusable() && metadata.isReusable() &&
+                    existingMetadata.getTypeRaw().equals(metadata.getTypeRaw())) {
+                return t;
+            } else {
+                throw new IllegalArgumentException("A metric named " + metadata.getName() + " already exists");
             }
         }
+
+        updateIndexes(metadata.getName());
         return t;
     }
 
@@ -94,14 +117,13 @@ public class MetricRegistryImpl extends MetricRegistry {
     }
 
     @Override
-    public synchronized Counter counter(Metadata metadata) {
-        Map<String, com.codahale.metrics.Metric> metrics = metricRegistry.getMetrics();
-        if(metrics.containsKey(metadata.getName()) && metrics.get(metadata.getName()) instanceof MetricAdapter
-                && ((MetricAdapter)metrics.get(metadata.getName())).getMetric() instanceof Counter) {
-            return (Counter)((MetricAdapter)metrics.get(metadata.getName())).getMetric();
+    public Counter counter(Metadata metadata) {
+        Counter counter = counters.get(metadata.getName());
+        if (counter != null) {
+            return counter;
         }
 
-        return register(metadata, new CounterImpl());
+        return getOrAdd(metadata, Counter.class, CounterImpl::new);
     }
 
     @Override
@@ -110,14 +132,14 @@ public class MetricRegistryImpl extends MetricRegistry {
     }
 
     @Override
-    public synchronized Histogram histogram(Metadata metadata) {
-        Map<String, com.codahale.metrics.Metric> metrics = metricRegistry.getMetrics();
-        if(metrics.containsKey(metadata.getName()) && metrics.get(metadata.getName()) instanceof MetricAdapter
-                && ((MetricAdapter)metrics.get(metadata.getName())).getMetric() instanceof Histogram) {
-            return (Histogram)((MetricAdapter)metrics.get(metadata.getName())).getMetric();
+    public Histogram histogram(Metadata metadata) {
+        Histogram histogram = histograms.get(metadata.getName());
+        if (histogram != null) {
+            return histogram;
         }
 
-        return register(metadata, new HistogramImpl());
+        return getOrAdd(metadata, Histogram.class,
+                () -> new HistogramImpl(HistogramBucketsFactory.getInstance().forHistogram(metadata.getName())));
     }
 
     @Override
@@ -126,14 +148,13 @@ public class MetricRegistryImpl extends MetricRegistry {
     }
 
     @Override
-    public synchronized Meter meter(Metadata metadata) {
-        Map<String, com.codahale.metrics.Metric> metrics = metricRegistry.getMetrics();
-        if(metrics.containsKey(metadata.getName()) && metrics.get(metadata.getName()) instanceof MetricAdapter
-                && ((MetricAdapter)metrics.get(metadata.getName())).getMetric() instanceof Meter) {
-            return (Meter)((MetricAdapter)metrics.get(metadata.getName())).getMetric();
+    public Meter meter(Metadata metadata) {
+        Meter meter = meters.get(metadata.getName());
+        if (meter != null) {
+            return meter;
         }
 
-        return register(metadata, new MeterImpl());
+        return getOrAdd(metadata, Meter.class, MeterImpl::new);
     }
 
     @Override
@@ -142,29 +163,42 @@ public class MetricRegistryImpl extends MetricRegistry {
     }
 
     @Override
-    public synchronized Timer timer(Metadata metadata) {
-        Map<String, com.codahale.metrics.Metric> metrics = metricRegistry.getMetrics();
-        if(metrics.containsKey(metadata.getName()) && metrics.get(metadata.getName()) instanceof MetricAdapter
-                && ((MetricAdapter)metrics.get(metadata.getName())).getMetric() instanceof Timer) {
-            return (Timer)((MetricAdapter)metrics.get(metadata.getName())).getMetric();
+    public Timer timer(Metadata metadata) {
+        Timer timer = timers.get(metadata.getName());
+        if (timer != null) {
+            return timer;
         }
 
-        return register(metadata, new TimerImpl());
+        return getOrAdd(metadata, Timer.class,
+                () -> new TimerImpl(HistogramBucketsFactory.getInstance().forTimer(metadata.getName())));
     }
 
     @Override
     public boolean remove(String name) {
-        return this.metricRegistry.remove(name);
+        MetricAdapter removed = metrics.remove(name);
+        if (removed == null) {
+            return false;
+        }
+
+        updateIndexes(name);
+        removalCount.incrementAndGet();
+        return true;
     }
 
     @Override
     public void removeMatching(MetricFilter metricFilter) {
-        this.metricRegistry.removeMatching(new MetricFilterAdapter(metricFilter));
+        for (Map.Entry<String, MetricAdapter> entry : metrics.entrySet()) {
+            if (metricFilter.matches(entry.getKey(), entry.getValue().getMetric()) &&
+                    metrics.remove(entry.getKey(), entry.getValue())) {
+                updateIndexes(entry.getKey());
+                removalCount.incrementAndGet();
+            }
+        }
     }
 
     @Override
     public SortedSet<String> getNames() {
-        return this.metricRegistry.getNames();
+        return Collections.unmodifiableSortedSet(metrics.navigableKeySet());
     }
 
     @Override
@@ -174,16 +208,7 @@ public class MetricRegistryImpl extends MetricRegistry {
 
     @Override
     public SortedMap<String, Gauge> getGauges(MetricFilter metricFilter) {
-        Map<String, com.codahale.metrics.Metric> metrics = this.metricRegistry.getMetrics();
-        SortedMap<String, Gauge> gauges = new TreeMap<>();
-        for(Map.Entry<String, com.codahale.metrics.Metric> entry : metrics.entrySet()) {
-            com.codahale.metrics.Metric m = entry.getValue();
-            if(m instanceof MetricAdapter && ((MetricAdapter)m).getMetric() instanceof Gauge &&
-                    metricFilter.matches(entry.getKey(), ((MetricAdapter)m).getMetric())) {
-                gauges.put(entry.getKey(), (Gauge)((MetricAdapter)m).getMetric());
-            }
-        }
-        return gauges;
+        return filter(gauges, metricFilter);
     }
 
     @Override
@@ -193,16 +218,7 @@ public class MetricRegistryImpl extends MetricRegistry {
 
     @Override
     public SortedMap<String, Counter> getCounters(MetricFilter metricFilter) {
-        Map<String, com.codahale.metrics.Metric> metrics = this.metricRegistry.getMetrics();
-        SortedMap<String, Counter> counters = new TreeMap<>();
-        for(Map.Entry<String, com.codahale.metrics.Metric> entry : metrics.entrySet()) {
-            com.codahale.metrics.Metric m = entry.getValue();
-            if(m instanceof MetricAdapter && ((MetricAdapter)m).getMetric() instanceof Counter &&
-                    metricFilter.matches(entry.getKey(), ((MetricAdapter)m).getMetric())) {
-                counters.put(entry.getKey(), (Counter)((MetricAdapter)m).getMetric());
-            }
-        }
-        return counters;
+        return filter(counters, metricFilter);
     }
 
     @Override
@@ -212,16 +228,7 @@ public class MetricRegistryImpl extends MetricRegistry {
 
     @Override
     public SortedMap<String, Histogram> getHistograms(MetricFilter metricFilter) {
-        Map<String, com.codahale.metrics.Metric> metrics = this.metricRegistry.getMetrics();
-        SortedMap<String, Histogram> histograms = new TreeMap<>();
-        for(Map.Entry<String, com.codahale.metrics.Metric> entry : metrics.entrySet()) {
-            com.codahale.metrics.Metric m = entry.getValue();
-            if(m instanceof MetricAdapter && ((MetricAdapter)m).getMetric() instanceof Histogram &&
-                    metricFilter.matches(entry.getKey(), ((MetricAdapter)m).getMetric())) {
-                histograms.put(entry.getKey(), (Histogram)((MetricAdapter)m).getMetric());
-            }
-        }
-        return histograms;
+        return filter(histograms, metricFilter);
     }
 
     @Override
@@ -231,16 +238,7 @@ public class MetricRegistryImpl extends MetricRegistry {
 
     @Override
     public SortedMap<String, Meter> getMeters(MetricFilter metricFilter) {
-        Map<String, com.codahale.metrics.Metric> metrics = this.metricRegistry.getMetrics();
-        SortedMap<String, Meter> meters = new TreeMap<>();
-        for(Map.Entry<String, com.codahale.metrics.Metric> entry : metrics.entrySet()) {
-            com.codahale.metrics.Metric m = entry.getValue();
-            if(m instanceof MetricAdapter && ((MetricAdapter)m).getMetric() instanceof Meter &&
-                    metricFilter.matches(entry.getKey(), ((MetricAdapter)m).getMetric())) {
-                meters.put(entry.getKey(), (Meter)((MetricAdapter)m).getMetric());
-            }
-        }
-        return meters;
+        return filter(meters, metricFilter);
     }
 
     @Override
@@ -250,41 +248,193 @@ public class MetricRegistryImpl extends MetricRegistry {
 
     @Override
     public SortedMap<String, Timer> getTimers(MetricFilter metricFilter) {
-        Map<String, com.codahale.metrics.Metric> metrics = this.metricRegistry.getMetrics();
-        SortedMap<String, Timer> timers = new TreeMap<>();
-        for(Map.Entry<String, com.codahale.metrics.Metric> entry : metrics.entrySet()) {
-            com.codahale.metrics.Metric m = entry.getValue();
-            if(m instanceof MetricAdapter && ((MetricAdapter)m).getMetric() instanceof Timer &&
-                    metricFilter.matches(entry.getKey(), ((MetricAdapter)m).getMetric())) {
-                timers.put(entry.getKey(), (Timer)((MetricAdapter)m).getMetric());
-            }
-        }
-        return timers;
+        return filter(timers, metricFilter);
     }
 
     @Override
     public Map<String, Metric> getMetrics() {
-        Map<String, com.codahale.metrics.Metric> metrics = this.metricRegistry.getMetrics();
         Map<String, Metric> metricsWrapped = new HashMap<>();
-        for(Map.Entry<String, com.codahale.metrics.Metric> entry : metrics.entrySet()) {
-            com.codahale.metrics.Metric m = entry.getValue();
-            if(m instanceof MetricAdapter) {
-                metricsWrapped.put(entry.getKey(), ((MetricAdapter)m).getMetric());
-            }
+        for(Map.Entry<String, MetricAdapter> entry : metrics.entrySet()) {
+            metricsWrapped.put(entry.getKey(), entry.getValue().getMetric());
         }
         return metricsWrapped;
     }
 
     @Override
     public Map<String, Metadata> getMetadata() {
-        Map<String, com.codahale.metrics.Metric> metrics = this.metricRegistry.getMetrics();
         Map<String, Metadata> metadata = new HashMap<>();
-        for(Map.Entry<String, com.codahale.metrics.Metric> entry : metrics.entrySet()) {
-            com.codahale.metrics.Metric m = entry.getValue();
-            if(m instanceof MetricAdapter) {
-                metadata.put(entry.getKey(), ((MetricAdapter)m).getMetadata());
-            }
+        for(Map.Entry<String, MetricAdapter> entry : metrics.entrySet()) {
+            metadata.put(entry.getKey(), entry.getValue().getMetadata());
         }
         return metadata;
     }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of metrics, removed from the registry. Metric instances, obtained from the registry, are still
+     * registered as long as the count does not change.
+     */
+    public long getRemovalCount() {
+        return removalCount.get();
+    }
+
+    /**
+     * Returns a read-only view of the registered metrics, together with their metadata, sorted by name.
+     *
+     * @return metric adapters, mapped by metric name
+     */
+    public SortedMap<String, MetricAdapter> getMetricAdapters() {
+        return Collections.unmodifiableSortedMap(metrics);
+    }
+
+    /**
+     * Returns a registry with read-only copies of the metrics, which hold their current counts, rates, snapshots and
+     * gauge values. Metadata is shared with this registry.
+     *
+     * @return registry with copies of the metrics
+     */
+    public MetricRegistryImpl snapshot() {
+        MetricRegistryImpl copy = new MetricRegistryImpl(type);
+        for (Map.Entry<String, MetricAdapter> entry : metrics.entrySet()) {
+            MetricAdapter adapter = entry.getValue();
+            Metric metric = FrozenMetrics.freeze(adapter.getMetric());
+
+            copy.metrics.put(entry.getKey(), new MetricAdapter(metric, adapter.getMetadata(),
+                    adapter.getPrometheusMetadata()));
+            copy.updateIndexes(entry.getKey());
+        }
+
+        return copy;
+    }
+
+    /**
+     * Returns the metrics, selected by the selector, together with their metadata, sorted by name.
+     *
+     * Metrics are kept sorted by name, so each name pattern only visits the names starting with its literal prefix
+     * and literal names are looked up directly. Cost of the selection depends on the number of visited names and not
+     * on the size of the registry.
+     *
+     * @return selected metric adapters, mapped by metric name
+     */
+    public SortedMap<String, MetricAdapter> getMetricAdapters(MetricSelector selector) {
+        SortedMap<String, MetricAdapter> selected = new TreeMap<>();
+
+        if (selector.getNamePatternCount() == 0) {
+            for (Map.Entry<String, MetricAdapter> entry : metrics.entrySet()) {
+                addIfSelected(selected, selector, entry.getKey(), entry.getValue());
+            }
+            return selected;
+        }
+
+        for (int i = 0; i < selector.getNamePatternCount(); i++) {
+            String prefix = selector.getNamePrefix(i);
+
+            if (selector.isLiteralName(i)) {
+                MetricAdapter adapter = metrics.get(prefix);
+                if (adapter != null) {
+                    addIfSelected(selected, selector, prefix, adapter);
+                }
+                continue;
+            }
+
+            for (Map.Entry<String, MetricAdapter> entry : metrics.tailMap(prefix).entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) {
+                    break;
+                }
+                addIfSelected(selected, selector, entry.getKey(), entry.getValue());
+            }
+        }
+
+        return selected;
+    }
+
+    /*
+     * Get-or-create, which only locks to update the indexes. The new metric is only published if no metric with the
+     * same name was registered in the meantime, otherwise the existing metric is returned.
+     */
+    private <T extends Metric> T getOrAdd(Metadata metadata, Class<T> type, Supplier<T> metricSupplier) {
+        addDefaultTags(metadata);
+
+        T metric = metricSupplier.get();
+        MetricAdapter existing = metrics.putIfAbsent(metadata.getName(), createAdapter(metric, metadata));
+        if (existing == null) {
+            updateIndexes(metadata.getName());
+            return metric;
+        }
+
+        if (type.isInstance(existing.getMetric())) {
+            return type.cast(existing.getMetric());
+        }
+
+        throw new IllegalArgumentException("A metric named " + metadata.getName() + " already exists");
+    }
+
+    private MetricAdapter createAdapter(Metric metric, Metadata metadata) {
+        return new MetricAdapter(metric, metadata, new PrometheusMetadata(type.getName(), metadata,
+                System.currentTimeMillis()));
+    }
+
+    private void addDefaultTags(Metadata metadata) {
+        ServiceConfigInfo configInfo = ServiceConfigInfo.getInstance();
+        if(configInfo.shouldAddToTags()) {
+            metadata.addTag("environment=" + configInfo.getEnvironment());
+            metadata.addTag("serviceName=" + configInfo.getServiceName());
+            metadata.addTag("serviceVersion=" + configInfo.getServiceVersion());
+            metadata.addTag("instanceId=" + configInfo.getInstanceId());
+        }
+
+        Optional<String> tagsFromConfig = ConfigurationUtil.getInstance().get("MP_METRICS_TAGS");
+        tagsFromConfig.ifPresent(metadata::addTags);
+    }
+
+    /*
+     * Brings the typed indexes in line with the metric, which is currently registered under the name. Called after
+     * every change of the metrics map. Updates are serialized, so the last update after concurrent registrations and
+     * removals of the same name sees the final state and stale metrics cannot remain in the indexes.
+     */
+    private void updateIndexes(String name) {
+        synchronized (indexLock) {
+            MetricAdapter adapter = metrics.get(name);
+            Metric metric = adapter == null ? null : adapter.getMetric();
+
+            updateIndex(gauges, name, metric instanceof Gauge ? (Gauge) metric : null);
+            updateIndex(counters, name, metric instanceof Counter ? (Counter) metric : null);
+            updateIndex(histograms, name, metric instanceof Histogram ? (Histogram) metric : null);
+            updateIndex(meters, name, metric instanceof Meter ? (Meter) metric : null);
+            updateIndex(timers, name, metric instanceof Timer ? (Timer) metric : null);
+        }
+    }
+
+    private static <T extends Metric> void updateIndex(Map<String, T> index, String name, T metric) {
+        if (metric == null) {
+            index.remove(name);
+        } else {
+            index.put(name, metric);
+        }
+    }
+
+    private static void addIfSelected(SortedMap<String, MetricAdapter> selected, MetricSelector selector,
+                                      String name, MetricAdapter adapter) {
+        if (!selected.containsKey(name) && selector.matches(name, adapter.getMetadata())) {
+            selected.put(name, adapter);
+        }
+    }
+
+    private static <T extends Metric> SortedMap<String, T> filter(ConcurrentSkipListMap<String, T> index,
+                                                                  MetricFilter metricFilter) {
+        if (metricFilter == MetricFilter.ALL) {
+            return Collections.unmodifiableSortedMap(index);
+        }
+
+        SortedMap<String, T> filtered = new TreeMap<>();
+        for (Map.Entry<String, T> entry : index.entrySet()) {
+            if (metricFilter.matches(entry.getKey(), entry.getValue())) {
+                filtered.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return filtered;
+    }
 }
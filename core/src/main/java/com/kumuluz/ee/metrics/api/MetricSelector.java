@@ -0,0 +1,218 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.api;
+
+import org.eclipse.microprofile.metrics.Metadata;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Selection of metrics by name and tags.
+ *
+ * A metric is selected, if its whole name matches any of the name patterns (or there are no name patterns) and it has
+ * all of the required tags. Patterns are compiled once, together with their literal prefixes, which are used by
+ * {@link MetricRegistryImpl#getMetricAdapters(MetricSelector)} to only visit the names that can match.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class MetricSelector {
+
+    private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String QUANTIFIERS = "?*+{";
+
+    private final Pattern[] namePatterns;
+    private final String[] namePrefixes;
+    private final boolean[] literalNames;
+    private final Map<String, String> tags;
+
+    /**
+     * @param nameRegexes regular expressions, matched against the whole metric name
+     * @param tags        required tags
+     * @throws java.util.regex.PatternSyntaxException if any of the regular expressions is invalid
+     */
+    public MetricSelector(List<String> nameRegexes, Map<String, String> tags) {
+        this.namePatterns = new Pattern[nameRegexes.size()];
+        this.namePrefixes = new String[nameRegexes.size()];
+        this.literalNames = new boolean[nameRegexes.size()];
+        for (int i = 0; i < namePatterns.length; i++) {
+            String regex = nameRegexes.get(i);
+            namePatterns[i] = Pattern.compile(regex);
+            namePrefixes[i] = literalPrefix(regex);
+            literalNames[i] = namePrefixes[i].equals(regex);
+        }
+
+        this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+    }
+
+    /**
+     * Parses a tag in the key:value format.
+     *
+     * @throws IllegalArgumentException if the tag does not contain a colon or its key is empty
+     */
+    public static Map.Entry<String, String> parseTag(String tag) {
+        int separator = tag.indexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Tag " + tag + " is not in the key:value format.");
+        }
+
+        return new AbstractMap.SimpleImmutableEntry<>(tag.substring(0, separator), tag.substring(separator + 1));
+    }
+
+    public boolean matches(String name, Metadata metadata) {
+        return matchesName(name) && matchesTags(metadata);
+    }
+
+    public boolean matchesName(String name) {
+        if (namePatterns.length == 0) {
+            return true;
+        }
+
+        for (int i = 0; i < namePatterns.length; i++) {
+            if (name.startsWith(namePrefixes[i]) && namePatterns[i].matcher(name).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean matchesTags(Metadata metadata) {
+        if (tags.isEmpty()) {
+            return true;
+        }
+
+        Map<String, String> metricTags = metadata.getTags();
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!tag.getValue().equals(metricTags.get(tag.getKey()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return number of name patterns, 0 if metrics are only selected by tags
+     */
+    public int getNamePatternCount() {
+        return namePatterns.length;
+    }
+
+    /**
+     * @return literal prefix, shared by all names, matched by the pattern; empty if there is none
+     */
+    public String getNamePrefix(int index) {
+        return namePrefixes[index];
+    }
+
+    /**
+     * @return true, if the pattern only matches the name, equal to its prefix
+     */
+    public boolean isLiteralName(int index) {
+        return literalNames[index];
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * Returns the key of the selector. Each pattern, tag key and tag value is prefixed with its length, so different
+     * selectors never have the same key, even if patterns contain query parameter separators.
+     *
+     * @return key, which is equal for selectors with the same name patterns and tags
+     */
+    public String getKey() {
+        StringBuilder key = new StringBuilder();
+        for (Pattern namePattern : namePatterns) {
+            appendKeyComponent(key, 'n', namePattern.pattern());
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            appendKeyComponent(key, 't', tag.getKey());
+            appendKeyComponent(key, 'v', tag.getValue());
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * @return selector in the query parameter format, e.g. name[]=requests.*&tag=method:GET
+     */
+    @Override
+    public String toString() {
+        StringBuilder query = new StringBuilder();
+        for (Pattern namePattern : namePatterns) {
+            query.append(query.length() == 0 ? "" : "&").append("name[]=").append(namePattern.pattern());
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            query.append(query.length() == 0 ? "" : "&").append("tag=").append(tag.getKey()).append(':')
+                    .append(tag.getValue());
+        }
+
+        return query.toString();
+    }
+
+    private static void appendKeyComponent(StringBuilder key, char type, String value) {
+        key.append(type).append(value.length()).append(':').append(value);
+    }
+
+    /*
+     * Literal characters at the start of the regex, before the first meta character. A character, followed by a
+     * quantifier, is optional and is not part of the prefix. Alternations may start with anything, so they have no
+     * prefix.
+     */
+    private static String literalPrefix(String regex) {
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int lastLiteralStart = 0;
+        // names are always matched as a whole, so a leading anchor can be skipped
+        for (int i = regex.startsWith("^") ? 1 : 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (QUANTIFIERS.indexOf(c) >= 0) {
+                prefix.setLength(lastLiteralStart);
+                break;
+            }
+
+            if (c == '\\' && i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                // escaped meta character, e.g. \.
+                lastLiteralStart = prefix.length();
+                prefix.append(regex.charAt(++i));
+            } else if (META_CHARACTERS.indexOf(c) >= 0) {
+                break;
+            } else {
+                lastLiteralStart = prefix.length();
+                prefix.append(c);
+            }
+        }
+
+        return prefix.toString();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.api;
+
+import com.codahale.metrics.*;
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Creates reservoirs for histograms and timers, as configured with the kumuluzee.metrics.reservoir key.
+ *
+ * Supported values are hdr, exponential (default), sliding-time-window, uniform or a fully qualified name of a class,
+ * implementing {@link Reservoir} with a public no-argument constructor.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ReservoirFactory {
+
+    private static final Logger log = Logger.getLogger(ReservoirFactory.class.getName());
+
+    private static final String HDR = "hdr";
+    private static final String EXPONENTIAL = "exponential";
+    private static final String SLIDING_TIME_WINDOW = "sliding-time-window";
+    private static final String UNIFORM = "uniform";
+
+    private static final int DEFAULT_UNIFORM_SIZE = 1028;
+
+    private static ReservoirFactory instance = null;
+
+    private String reservoirType;
+    private long windowSeconds;
+    private int size;
+    private int hdrDigits;
+    private Class<? extends Reservoir> reservoirClass;
+
+    private ReservoirFactory() {
+        ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+
+        this.reservoirType = configurationUtil.get("kumuluzee.metrics.reservoir").orElse(EXPONENTIAL).trim();
+        this.windowSeconds = configurationUtil.getInteger("kumuluzee.metrics.reservoir-window-s").orElse(60);
+        this.size = configurationUtil.getInteger("kumuluzee.metrics.reservoir-size").orElse(DEFAULT_UNIFORM_SIZE);
+        this.hdrDigits = configurationUtil.getInteger("kumuluzee.metrics.reservoir-hdr-digits").orElse(2);
+
+        switch (reservoirType) {
+            case HDR:
+                if (!isHdrHistogramAvailable()) {
+                    log.severe("HdrHistogram is not on the classpath, using the exponential reservoir instead.");
+                    this.reservoirType = EXPONENTIAL;
+                }
+                break;
+            case EXPONENTIAL:
+            case SLIDING_TIME_WINDOW:
+            case UNIFORM:
+                break;
+            default:
+                this.reservoirClass = loadReservoirClass(reservoirType);
+                if (this.reservoirClass == null) {
+                    this.reservoirType = EXPONENTIAL;
+                }
+        }
+    }
+
+    public static ReservoirFactory getInstance() {
+        if (instance == null) {
+            instance = new ReservoirFactory();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Creates a new reservoir of the configured type.
+     *
+     * @return new reservoir
+     */
+    public Reservoir create() {
+        switch (reservoirType) {
+            case HDR:
+                return new HdrHistogramReservoir(hdrDigits, windowSeconds, TimeUnit.SECONDS);
+            case SLIDING_TIME_WINDOW:
+                return new SlidingTimeWindowArrayReservoir(windowSeconds, TimeUnit.SECONDS);
+            case UNIFORM:
+                return new UniformReservoir(size);
+            case EXPONENTIAL:
+                return new ExponentiallyDecayingReservoir();
+            default:
+                try {
+                    return reservoirClass.newInstance();
+                } catch (InstantiationException | IllegalAccessException e) {
+                    log.severe("Could not create reservoir " + reservoirType + ": " + e.getMessage());
+                    return new ExponentiallyDecayingReservoir();
+                }
+        }
+    }
+
+    private static boolean isHdrHistogramAvailable() {
+        try {
+            Class.forName("org.HdrHistogram.Recorder", false, ReservoirFactory.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Class<? extends Reservoir> loadReservoirClass(String className) {
+        try {
+            Class<?> clazz = Class.forName(className, true, Thread.currentThread().getContextClassLoader());
+            if (Reservoir.class.isAssignableFrom(clazz)) {
+                return clazz.asSubclass(Reservoir.class);
+            }
+            log.severe("Reservoir " + className + " does not implement " + Reservoir.class.getName() +
+                    ", using the exponential reservoir instead.");
+        } catch (ClassNotFoundException e) {
+            log.severe("Unknown reservoir " + className + ", using the exponential reservoir instead.");
+        }
+
+        return null;
+    }
+}
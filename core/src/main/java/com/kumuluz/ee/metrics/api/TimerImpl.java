@@ -29,6 +29,11 @@ import java.util.concurrent.TimeUnit;
 /**
  * Microprofile Timer implementation.
  *
+ * Durations are measured with {@link System#nanoTime()} and recorded directly, without Dropwizard timer contexts.
+ * {@link #startTiming()} and {@link #stopTiming(long)} time a call without allocating a context at all.
+ *
+ * If {@link HistogramBuckets} are given, durations are also counted in the buckets in nanoseconds.
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
@@ -36,33 +41,98 @@ import java.util.concurrent.TimeUnit;
 public class TimerImpl implements Timer {
 
     private com.codahale.metrics.Timer timer;
+    private final HistogramBuckets buckets;
 
     public TimerImpl() {
-        this.timer = new com.codahale.metrics.Timer();
+        this((HistogramBuckets) null);
+    }
+
+    public TimerImpl(HistogramBuckets buckets) {
+        this.timer = new com.codahale.metrics.Timer(ReservoirFactory.getInstance().create());
+        this.buckets = buckets;
     }
 
     public TimerImpl(com.codahale.metrics.Timer timer) {
         this.timer = timer;
+        this.buckets = null;
     }
 
     @Override
     public void update(long l, TimeUnit timeUnit) {
         this.timer.update(l, timeUnit);
+        if (buckets != null && l >= 0) {
+            buckets.update(timeUnit.toNanos(l));
+        }
     }
 
     @Override
     public <T> T time(Callable<T> callable) throws Exception {
-        return this.timer.time(callable);
+        long startTime = startTiming();
+        try {
+            return callable.call();
+        } finally {
+            stopTiming(startTime);
+        }
     }
 
     @Override
     public void time(Runnable runnable) {
-        this.timer.time(runnable);
+        long startTime = startTiming();
+        try {
+            runnable.run();
+        } finally {
+            stopTiming(startTime);
+        }
     }
 
     @Override
     public Context time() {
-        return new ContextImpl(this.timer.time());
+        return new ContextImpl(this, startTiming());
+    }
+
+    /**
+     * Starts a measurement without creating a context.
+     *
+     * @return start time, which has to be passed to {@link #stopTiming(long)}
+     */
+    public long startTiming() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time, elapsed since the start of the measurement.
+     *
+     * @param startTime start time, returned by {@link #startTiming()}
+     * @return elapsed time in nanoseconds
+     */
+    public long stopTiming(long startTime) {
+        long elapsed = System.nanoTime() - startTime;
+        this.timer.update(elapsed, TimeUnit.NANOSECONDS);
+        if (buckets != null && elapsed >= 0) {
+            buckets.update(elapsed);
+        }
+        return elapsed;
+    }
+
+    /**
+     * Records the time, elapsed since the start of the measurement, and samples an exemplar for its bucket, if the
+     * timer keeps bucket counters and exemplars are enabled.
+     *
+     * @param startTime start time, returned by {@link #startTiming()}
+     * @return elapsed time in nanoseconds
+     */
+    public long stopTimingWithExemplar(long startTime) {
+        ExemplarSampler sampler = ExemplarSampler.getInstance();
+        if (buckets == null || !sampler.isEnabled()) {
+            return stopTiming(startTime);
+        }
+
+        long elapsed = System.nanoTime() - startTime;
+        this.timer.update(elapsed, TimeUnit.NANOSECONDS);
+        if (elapsed >= 0) {
+            buckets.update(elapsed, sampler);
+        }
+        return elapsed;
     }
 
     @Override
@@ -94,4 +164,11 @@ public class TimerImpl implements Timer {
     public Snapshot getSnapshot() {
         return new SnapshotImpl(this.timer.getSnapshot());
     }
+
+    /**
+     * @return bucket counters of the timer or null, if the timer does not keep them
+     */
+    public HistogramBuckets getBuckets() {
+        return buckets;
+    }
 }
@@ -20,6 +20,8 @@
 */
 package com.kumuluz.ee.metrics.filters;
 
+import com.kumuluz.ee.metrics.api.ContextImpl;
+import com.kumuluz.ee.metrics.api.MeterImpl;
 import com.kumuluz.ee.metrics.producers.MetricRegistryProducer;
 import org.eclipse.microprofile.metrics.*;
 
@@ -35,6 +37,9 @@ import java.util.stream.Collectors;
 /**
  * Filter used for web instrumentation.
  *
+ * Exemplars are sampled for requests, which complete on the request thread, since the trace id is not available on
+ * the threads completing asynchronous requests.
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
@@ -128,23 +133,35 @@ public class InstrumentedFilter implements Filter {
             if (!error && request.isAsyncStarted()) {
                 request.getAsyncContext().addListener(new AsyncResultListener(context));
             } else {
-                context.stop();
+                if (context instanceof ContextImpl) {
+                    ((ContextImpl) context).stopWithExemplar();
+                } else {
+                    context.stop();
+                }
                 activeRequests.dec();
                 if (error) {
-                    errorsMeter.mark();
+                    markWithExemplar(errorsMeter);
                 } else {
-                    markMeterForStatusCode(wrappedResponse.getStatus());
+                    markWithExemplar(getMeterForStatusCode(wrappedResponse.getStatus()));
                 }
             }
         }
     }
 
     private void markMeterForStatusCode(int status) {
+        getMeterForStatusCode(status).mark();
+    }
+
+    private Meter getMeterForStatusCode(int status) {
         final Meter metric = metersByStatusCode.get(status);
-        if (metric != null) {
-            metric.mark();
+        return metric != null ? metric : otherMeter;
+    }
+
+    private static void markWithExemplar(Meter meter) {
+        if (meter instanceof MeterImpl) {
+            ((MeterImpl) meter).markWithExemplar();
         } else {
-            otherMeter.mark();
+            meter.mark();
         }
     }
 
@@ -20,6 +20,7 @@
 */
 package com.kumuluz.ee.metrics.interceptors;
 
+import com.kumuluz.ee.metrics.api.CounterImpl;
 import com.kumuluz.ee.metrics.utils.AnnotationMetadata;
 import org.eclipse.microprofile.metrics.Counter;
 import org.eclipse.microprofile.metrics.Metadata;
@@ -36,6 +37,7 @@ import javax.interceptor.Interceptor;
 import javax.interceptor.InvocationContext;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Member;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Interceptor for Counted annotation.
@@ -49,14 +51,20 @@ import java.lang.reflect.Member;
 @Priority(Interceptor.Priority.LIBRARY_BEFORE)
 public class CountedInterceptor {
 
+    private static final ClassValue<ConcurrentMap<Member, CounterBinding>> countersByBean =
+            MetricBinding.newCache();
+
     @Inject
     private MetricRegistry applicationRegistry;
 
     private Bean<?> bean;
 
+    private ConcurrentMap<Member, CounterBinding> counters;
+
     @Inject
     private CountedInterceptor(@Intercepted Bean<?> bean) {
         this.bean = bean;
+        this.counters = countersByBean.get(bean.getBeanClass());
     }
 
     @AroundConstruct
@@ -71,22 +79,49 @@ public class CountedInterceptor {
 
     private <E extends Member & AnnotatedElement> Object applyInterceptor(InvocationContext context, E member)
             throws Exception {
-        Metadata metadata = AnnotationMetadata.buildMetadata(bean.getBeanClass(), member, Counted.class);
-        Counter counter = applicationRegistry.getCounters().get(metadata.getName());
-        if (counter == null) {
-            throw new IllegalStateException("No counter with name [" + metadata.getName() + "] found in registry ["
-                    + applicationRegistry + "]");
+        long removalCount = MetricBinding.removalCount(applicationRegistry);
+        CounterBinding binding = counters.get(member);
+        if (binding == null || !binding.isValid(removalCount)) {
+            binding = resolveCounter(member, removalCount);
+            counters.put(member, binding);
         }
 
-        counter.inc();
+        Counter counter = binding.getMetric();
+        if (binding.monotonic && counter instanceof CounterImpl) {
+            // exemplars are only meaningful for monotonic counters
+            ((CounterImpl) counter).incWithExemplar();
+        } else {
+            counter.inc();
+        }
 
         try {
             return context.proceed();
         } finally {
-            Counted annotation = AnnotationMetadata.getAnnotation(bean.getBeanClass(), member, Counted.class);
-            if(annotation != null && !annotation.monotonic()) {
+            if (!binding.monotonic) {
                 counter.dec();
             }
         }
     }
+
+    private <E extends Member & AnnotatedElement> CounterBinding resolveCounter(E member, long removalCount) {
+        Metadata metadata = AnnotationMetadata.buildMetadata(bean.getBeanClass(), member, Counted.class);
+        Counter counter = applicationRegistry.getCounters().get(metadata.getName());
+        if (counter == null) {
+            throw new IllegalStateException("No counter with name [" + metadata.getName() + "] found in registry ["
+                    + applicationRegistry + "]");
+        }
+
+        Counted annotation = AnnotationMetadata.getAnnotation(bean.getBeanClass(), member, Counted.class);
+        return new CounterBinding(counter, removalCount, annotation == null || annotation.monotonic());
+    }
+
+    private static class CounterBinding extends MetricBinding<Counter> {
+
+        private final boolean monotonic;
+
+        private CounterBinding(Counter counter, long removalCount, boolean monotonic) {
+            super(counter, removalCount);
+            this.monotonic = monotonic;
+        }
+    }
 }
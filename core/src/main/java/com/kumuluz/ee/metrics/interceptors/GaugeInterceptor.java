@@ -21,10 +21,9 @@
 package com.kumuluz.ee.metrics.interceptors;
 
 import com.kumuluz.ee.metrics.api.ForwardingGauge;
+import com.kumuluz.ee.metrics.interceptors.utils.BeanMetricsPlan;
 import com.kumuluz.ee.metrics.interceptors.utils.GaugeBeanBinding;
-import com.kumuluz.ee.metrics.utils.AnnotationMetadata;
 import org.eclipse.microprofile.metrics.Gauge;
-import org.eclipse.microprofile.metrics.Metadata;
 import org.eclipse.microprofile.metrics.MetricRegistry;
 
 import javax.annotation.Priority;
@@ -32,7 +31,6 @@ import javax.inject.Inject;
 import javax.interceptor.AroundConstruct;
 import javax.interceptor.Interceptor;
 import javax.interceptor.InvocationContext;
-import java.lang.reflect.Method;
 
 /**
  * Interceptor for Gauge annotation.
@@ -55,23 +53,27 @@ public class GaugeInterceptor {
     private Object gaugeBeanConstructor(InvocationContext context) throws Exception {
         Object target = context.proceed();
 
-        Class<?> type = context.getConstructor().getDeclaringClass();
+        BeanMetricsPlan plan = BeanMetricsPlan.forClass(context.getConstructor().getDeclaringClass());
 
-        do {
-            for (Method method : type.getDeclaredMethods()) {
-                if(method.isAnnotationPresent(org.eclipse.microprofile.metrics.annotation.Gauge.class)) {
-                    Metadata metadata = AnnotationMetadata.buildMetadata(type, method,
-                            org.eclipse.microprofile.metrics.annotation.Gauge.class);
-                    Gauge gauge = applicationRegistry.getGauges().get(metadata.getName());
-
-                    if (gauge == null) {
-                        applicationRegistry.register(metadata, new ForwardingGauge(method, context.getTarget()));
-                    }
-                }
+        // gauges are bound to the instance, which is constructed while they are not registered
+        for (BeanMetricsPlan.PlannedGauge plannedGauge : plan.getGauges()) {
+            if (applicationRegistry.getGauges().get(plannedGauge.getMetadata().getName()) == null) {
+                registerGauge(plannedGauge, context.getTarget());
             }
-            type = type.getSuperclass();
-        } while (!Object.class.equals(type));
+        }
 
         return target;
     }
+
+    private void registerGauge(BeanMetricsPlan.PlannedGauge plannedGauge, Object target) {
+        // concurrently constructed instances must not register the same gauge twice
+        synchronized (plannedGauge) {
+            Gauge gauge = applicationRegistry.getGauges().get(plannedGauge.getMetadata().getName());
+
+            if (gauge == null) {
+                applicationRegistry.register(plannedGauge.getMetadata(),
+                        ForwardingGauge.forMethod(plannedGauge.getMethod(), target));
+            }
+        }
+    }
 }
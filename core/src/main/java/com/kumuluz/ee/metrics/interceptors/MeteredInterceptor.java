@@ -36,6 +36,7 @@ import javax.interceptor.Interceptor;
 import javax.interceptor.InvocationContext;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Member;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Interceptor for Metered annotation.
@@ -49,14 +50,20 @@ import java.lang.reflect.Member;
 @Priority(Interceptor.Priority.LIBRARY_BEFORE)
 public class MeteredInterceptor {
 
+    private static final ClassValue<ConcurrentMap<Member, MetricBinding<Meter>>> metersByBean =
+            MetricBinding.newCache();
+
     @Inject
     private MetricRegistry applicationRegistry;
 
     private Bean<?> bean;
 
+    private ConcurrentMap<Member, MetricBinding<Meter>> meters;
+
     @Inject
     private MeteredInterceptor(@Intercepted Bean<?> bean) {
         this.bean = bean;
+        this.meters = metersByBean.get(bean.getBeanClass());
     }
 
     @AroundConstruct
@@ -71,6 +78,19 @@ public class MeteredInterceptor {
 
     private <E extends Member & AnnotatedElement> Object applyInterceptor(InvocationContext context, E member)
             throws Exception {
+        long removalCount = MetricBinding.removalCount(applicationRegistry);
+        MetricBinding<Meter> binding = meters.get(member);
+        if (binding == null || !binding.isValid(removalCount)) {
+            binding = new MetricBinding<>(resolveMeter(member), removalCount);
+            meters.put(member, binding);
+        }
+
+        binding.getMetric().mark();
+
+        return context.proceed();
+    }
+
+    private <E extends Member & AnnotatedElement> Meter resolveMeter(E member) {
         Metadata metadata = AnnotationMetadata.buildMetadata(bean.getBeanClass(), member, Metered.class);
         Meter meter = applicationRegistry.getMeters().get(metadata.getName());
         if (meter == null) {
@@ -78,8 +98,6 @@ public class MeteredInterceptor {
                     + applicationRegistry + "]");
         }
 
-        meter.mark();
-
-        return context.proceed();
+        return meter;
     }
 }
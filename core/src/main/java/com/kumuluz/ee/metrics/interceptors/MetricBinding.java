@@ -0,0 +1,83 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.interceptors;
+
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import java.lang.reflect.Member;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metric, resolved by an interceptor for an intercepted member.
+ *
+ * Bindings are cached per bean class in a {@link ClassValue}, so the cache does not keep classes of undeployed
+ * applications reachable. A binding is only valid until a metric is removed from the registry, after that the metric is
+ * resolved again, so removed metrics are not updated.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+class MetricBinding<T> {
+
+    private static final long NOT_CACHED = -1;
+
+    private final T metric;
+    private final long removalCount;
+
+    MetricBinding(T metric, long removalCount) {
+        this.metric = metric;
+        this.removalCount = removalCount;
+    }
+
+    T getMetric() {
+        return metric;
+    }
+
+    /**
+     * @param removalCount current removal count of the registry, returned by {@link #removalCount(MetricRegistry)}
+     * @return true, if no metric was removed from the registry since the binding was resolved
+     */
+    boolean isValid(long removalCount) {
+        return removalCount != NOT_CACHED && this.removalCount == removalCount;
+    }
+
+    /**
+     * Returns the removal count of the registry. Bindings of registries of other implementations are never valid.
+     */
+    static long removalCount(MetricRegistry registry) {
+        if (registry instanceof MetricRegistryImpl) {
+            return ((MetricRegistryImpl) registry).getRemovalCount();
+        }
+
+        return NOT_CACHED;
+    }
+
+    static <B extends MetricBinding<?>> ClassValue<ConcurrentMap<Member, B>> newCache() {
+        return new ClassValue<ConcurrentMap<Member, B>>() {
+            @Override
+            protected ConcurrentMap<Member, B> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+    }
+}
@@ -20,28 +20,15 @@
  */
 package com.kumuluz.ee.metrics.interceptors;
 
-import com.kumuluz.ee.metrics.api.CounterImpl;
-import com.kumuluz.ee.metrics.api.MeterImpl;
-import com.kumuluz.ee.metrics.api.TimerImpl;
+import com.kumuluz.ee.metrics.interceptors.utils.BeanMetricsPlan;
 import com.kumuluz.ee.metrics.interceptors.utils.RegisterMetricsBinding;
-import com.kumuluz.ee.metrics.utils.AnnotationMetadata;
-import org.eclipse.microprofile.metrics.Metadata;
 import org.eclipse.microprofile.metrics.MetricRegistry;
-import org.eclipse.microprofile.metrics.annotation.Counted;
-import org.eclipse.microprofile.metrics.annotation.Metered;
-import org.eclipse.microprofile.metrics.annotation.Timed;
 
 import javax.annotation.Priority;
 import javax.inject.Inject;
 import javax.interceptor.AroundConstruct;
 import javax.interceptor.Interceptor;
 import javax.interceptor.InvocationContext;
-import java.lang.reflect.AnnotatedElement;
-import java.lang.reflect.Member;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Interceptor for registering Timed, Metered and Counted annotations on bean construct.
@@ -55,51 +42,17 @@ import java.util.Set;
 @Priority(Interceptor.Priority.LIBRARY_BEFORE - 10)
 public class RegisterMetricsInterceptor {
 
-    private static final Set<Member> processedElements = new HashSet<>();
-
     @Inject
     private MetricRegistry registry;
 
     @AroundConstruct
     private Object registerMetrics(InvocationContext context) throws Exception {
         Class<?> bean = context.getConstructor().getDeclaringClass();
+        BeanMetricsPlan plan = BeanMetricsPlan.forClass(bean);
 
-        registerMetrics(bean, context.getConstructor());
-
-        Class<?> type = bean;
-        do {
-            for (Method method : type.getDeclaredMethods())
-                if (!method.isSynthetic() && !Modifier.isPrivate(method.getModifiers())) {
-                    registerMetrics(bean, method);
-                }
-            type = type.getSuperclass();
-        } while (!Object.class.equals(type));
+        plan.registerConstructorMetrics(context.getConstructor(), registry);
+        plan.registerMethodMetrics(registry);
 
         return context.proceed();
     }
-
-    private <E extends Member & AnnotatedElement> void registerMetrics(Class<?> bean, E element) {
-
-        synchronized (processedElements) {
-
-            if (processedElements.contains(element)) {
-                return;
-            }
-
-            if (AnnotationMetadata.getAnnotation(bean, element, Counted.class) != null) {
-                Metadata m = AnnotationMetadata.buildMetadata(bean, element, Counted.class);
-                registry.register(m, new CounterImpl());
-            }
-            if (AnnotationMetadata.getAnnotation(bean, element, Timed.class) != null) {
-                Metadata m = AnnotationMetadata.buildMetadata(bean, element, Timed.class);
-                registry.register(m, new TimerImpl());
-            }
-            if (AnnotationMetadata.getAnnotation(bean, element, Metered.class) != null) {
-                Metadata m = AnnotationMetadata.buildMetadata(bean, element, Metered.class);
-                registry.register(m, new MeterImpl());
-            }
-
-            processedElements.add(element);
-        }
-    }
 }
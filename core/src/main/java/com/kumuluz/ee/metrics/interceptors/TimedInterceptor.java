@@ -20,6 +20,7 @@
 */
 package com.kumuluz.ee.metrics.interceptors;
 
+import com.kumuluz.ee.metrics.api.TimerImpl;
 import com.kumuluz.ee.metrics.utils.AnnotationMetadata;
 import org.eclipse.microprofile.metrics.Metadata;
 import org.eclipse.microprofile.metrics.MetricRegistry;
@@ -36,6 +37,7 @@ import javax.interceptor.Interceptor;
 import javax.interceptor.InvocationContext;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Member;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Interceptor for Timed annotation.
@@ -49,14 +51,20 @@ import java.lang.reflect.Member;
 @Priority(Interceptor.Priority.LIBRARY_BEFORE)
 public class TimedInterceptor {
 
+    private static final ClassValue<ConcurrentMap<Member, MetricBinding<Timer>>> timersByBean =
+            MetricBinding.newCache();
+
     @Inject
     private MetricRegistry applicationRegistry;
 
     private Bean<?> bean;
 
+    private ConcurrentMap<Member, MetricBinding<Timer>> timers;
+
     @Inject
     private TimedInterceptor(@Intercepted Bean<?> bean) {
         this.bean = bean;
+        this.timers = timersByBean.get(bean.getBeanClass());
     }
 
     @AroundConstruct
@@ -71,11 +79,25 @@ public class TimedInterceptor {
 
     private <E extends Member & AnnotatedElement> Object applyInterceptor(InvocationContext context, E member)
             throws Exception {
-        Metadata metadata = AnnotationMetadata.buildMetadata(bean.getBeanClass(), member, Timed.class);
-        Timer timer = applicationRegistry.getTimers().get(metadata.getName());
-        if (timer == null) {
-            throw new IllegalStateException("No timer with name [" + metadata.getName() + "] found in registry ["
-                    + applicationRegistry + "]");
+        long removalCount = MetricBinding.removalCount(applicationRegistry);
+        MetricBinding<Timer> binding = timers.get(member);
+        if (binding == null || !binding.isValid(removalCount)) {
+            binding = new MetricBinding<>(resolveTimer(member), removalCount);
+            timers.put(member, binding);
+        }
+
+        Timer timer = binding.getMetric();
+
+        if (timer instanceof TimerImpl) {
+            // fast path without a timer context
+            TimerImpl timerImpl = (TimerImpl) timer;
+            long startTime = timerImpl.startTiming();
+
+            try {
+                return context.proceed();
+            } finally {
+                timerImpl.stopTimingWithExemplar(startTime);
+            }
         }
 
         Timer.Context timerContext = timer.time();
@@ -86,4 +108,15 @@ public class TimedInterceptor {
             timerContext.stop();
         }
     }
+
+    private <E extends Member & AnnotatedElement> Timer resolveTimer(E member) {
+        Metadata metadata = AnnotationMetadata.buildMetadata(bean.getBeanClass(), member, Timed.class);
+        Timer timer = applicationRegistry.getTimers().get(metadata.getName());
+        if (timer == null) {
+            throw new IllegalStateException("No timer with name [" + metadata.getName() + "] found in registry ["
+                    + applicationRegistry + "]");
+        }
+
+        return timer;
+    }
 }
@@ -0,0 +1,360 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.interceptors.utils;
+
+import com.kumuluz.ee.metrics.api.CounterImpl;
+import com.kumuluz.ee.metrics.api.HistogramBucketsFactory;
+import com.kumuluz.ee.metrics.api.MeterImpl;
+import com.kumuluz.ee.metrics.api.TimerImpl;
+import com.kumuluz.ee.metrics.utils.AnnotationMetadata;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.annotation.Counted;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+import org.eclipse.microprofile.metrics.annotation.Metered;
+import org.eclipse.microprofile.metrics.annotation.Timed;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Metrics, declared by a bean class.
+ *
+ * Plans are computed once per class (when the type is processed by the CDI extension), so the constructor
+ * interceptors do not have to scan the class hierarchy for every bean instance. Classes, contained in the
+ * {@link MetricsIndex}, are planned from the index, without scanning. Plans are cached in a {@link ClassValue}, so the
+ * cache does not keep classes of undeployed applications reachable.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class BeanMetricsPlan {
+
+    private static final Logger log = Logger.getLogger(BeanMetricsPlan.class.getName());
+
+    private static final ClassValue<BeanMetricsPlan> plans = new ClassValue<BeanMetricsPlan>() {
+        @Override
+        protected BeanMetricsPlan computeValue(Class<?> bean) {
+            return plan(bean);
+        }
+    };
+
+    // elements, inherited by multiple beans, are only registered once, kept by their declaring class
+    private static final ClassValue<ConcurrentMap<Member, Boolean>> registeredElements =
+            new ClassValue<ConcurrentMap<Member, Boolean>>() {
+                @Override
+                protected ConcurrentMap<Member, Boolean> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private final Map<Constructor<?>, Registration<PlannedMetric>> constructorMetrics;
+    private final Registration<PlannedMetric> methodMetrics;
+    private final List<PlannedGauge> gauges;
+
+    private BeanMetricsPlan(Map<Constructor<?>, Registration<PlannedMetric>> constructorMetrics,
+                            List<PlannedMetric> methodMetrics, List<PlannedGauge> gauges) {
+        this.constructorMetrics = constructorMetrics;
+        this.methodMetrics = new Registration<>(methodMetrics);
+        this.gauges = Collections.unmodifiableList(gauges);
+    }
+
+    private static BeanMetricsPlan plan(Class<?> bean) {
+        List<MetricsIndex.Entry> entries = MetricsIndex.getInstance().getEntries(bean);
+        if (entries != null) {
+            try {
+                return planFromIndex(bean, entries);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.log(Level.WARNING, "Metrics index of " + bean.getName() + " is out of date. " +
+                        "Metrics will be discovered by reflection.", e);
+            }
+        }
+
+        return planByReflection(bean);
+    }
+
+    static BeanMetricsPlan planByReflection(Class<?> bean) {
+        return new BeanMetricsPlan(planConstructorMetrics(bean), planMethodMetrics(bean), planGauges(bean));
+    }
+
+    /**
+     * Returns the plan for the bean class. The plan is computed, if it does not exist yet.
+     *
+     * @param bean bean class
+     * @return metrics plan
+     */
+    public static BeanMetricsPlan forClass(Class<?> bean) {
+        return plans.get(bean);
+    }
+
+    /**
+     * Registers Counted, Metered and Timed metrics, declared on the constructor or its class, if they have not been
+     * registered yet.
+     *
+     * @param constructor invoked constructor
+     * @param registry    metric registry
+     */
+    public void registerConstructorMetrics(Constructor<?> constructor, MetricRegistry registry) {
+        constructorMetrics.getOrDefault(constructor, Registration.empty())
+                .registerOnce(metrics -> register(metrics, registry));
+    }
+
+    /**
+     * Registers Counted, Metered and Timed metrics, declared on non-private methods of the class hierarchy, if they
+     * have not been registered yet.
+     *
+     * @param registry metric registry
+     */
+    public void registerMethodMetrics(MetricRegistry registry) {
+        methodMetrics.registerOnce(metrics -> register(metrics, registry));
+    }
+
+    /**
+     * Returns methods of the class hierarchy, annotated with Gauge.
+     *
+     * @return planned gauges
+     */
+    public List<PlannedGauge> getGauges() {
+        return gauges;
+    }
+
+    List<PlannedMetric> getConstructorMetrics(Constructor<?> constructor) {
+        return constructorMetrics.getOrDefault(constructor, Registration.empty()).items;
+    }
+
+    List<PlannedMetric> getMethodMetrics() {
+        return methodMetrics.items;
+    }
+
+    private static void register(List<PlannedMetric> metrics, MetricRegistry registry) {
+        for (PlannedMetric metric : metrics) {
+            // concurrent registrations of the same element wait for the first one to complete
+            ConcurrentMap<Member, Boolean> registered = registeredElements.get(metric.getElement().getDeclaringClass());
+            if (!registered.containsKey(metric.getElement())) {
+                registered.computeIfAbsent(metric.getElement(), element -> {
+                    registry.register(metric.getMetadata(), metric.createMetric());
+                    return Boolean.TRUE;
+                });
+            }
+        }
+    }
+
+    static BeanMetricsPlan planFromIndex(Class<?> bean, List<MetricsIndex.Entry> entries)
+            throws ReflectiveOperationException {
+        Map<Constructor<?>, List<PlannedMetric>> constructorMetrics = new HashMap<>();
+        List<PlannedMetric> methodMetrics = new ArrayList<>();
+        List<PlannedGauge> gauges = new ArrayList<>();
+
+        for (MetricsIndex.Entry entry : entries) {
+            Member member = entry.resolveMember(bean.getClassLoader());
+
+            if (entry.getType() == MetricType.GAUGE) {
+                gauges.add(new PlannedGauge((Method) member, entry.buildMetadata()));
+            } else if (entry.isConstructor()) {
+                constructorMetrics.computeIfAbsent((Constructor<?>) member, c -> new ArrayList<>())
+                        .add(new PlannedMetric(member, entry.buildMetadata(), getMetricFactory(entry.getType())));
+            } else {
+                methodMetrics.add(new PlannedMetric(member, entry.buildMetadata(),
+                        getMetricFactory(entry.getType())));
+            }
+        }
+
+        Map<Constructor<?>, Registration<PlannedMetric>> constructorRegistrations = new HashMap<>();
+        constructorMetrics.forEach((constructor, metrics) ->
+                constructorRegistrations.put(constructor, new Registration<>(metrics)));
+
+        return new BeanMetricsPlan(constructorRegistrations, methodMetrics, gauges);
+    }
+
+    private static Function<Metadata, ? extends Metric> getMetricFactory(MetricType type) {
+        switch (type) {
+            case COUNTER:
+                return metadata -> new CounterImpl();
+            case TIMER:
+                return metadata -> new TimerImpl(HistogramBucketsFactory.getInstance().forTimer(metadata.getName()));
+            case METERED:
+                return metadata -> new MeterImpl();
+            default:
+                throw new IllegalArgumentException("Unsupported metric type: " + type);
+        }
+    }
+
+    private static Map<Constructor<?>, Registration<PlannedMetric>> planConstructorMetrics(Class<?> bean) {
+        Map<Constructor<?>, Registration<PlannedMetric>> constructorMetrics = new HashMap<>();
+
+        for (Constructor<?> constructor : bean.getDeclaredConstructors()) {
+            List<PlannedMetric> metrics = new ArrayList<>();
+            planMetrics(metrics, bean, constructor);
+            if (!metrics.isEmpty()) {
+                constructorMetrics.put(constructor, new Registration<>(metrics));
+            }
+        }
+
+        return constructorMetrics;
+    }
+
+    private static List<PlannedMetric> planMethodMetrics(Class<?> bean) {
+        List<PlannedMetric> metrics = new ArrayList<>();
+
+        Class<?> type = bean;
+        do {
+            for (Method method : type.getDeclaredMethods()) {
+                if (!method.isSynthetic() && !Modifier.isPrivate(method.getModifiers())) {
+                    planMetrics(metrics, bean, method);
+                }
+            }
+            type = type.getSuperclass();
+        } while (type != null && !Object.class.equals(type));
+
+        return metrics;
+    }
+
+    private static <E extends Member & AnnotatedElement> void planMetrics(List<PlannedMetric> metrics, Class<?> bean,
+                                                                          E element) {
+        if (AnnotationMetadata.getAnnotation(bean, element, Counted.class) != null) {
+            metrics.add(new PlannedMetric(element, AnnotationMetadata.buildMetadata(bean, element, Counted.class),
+                    getMetricFactory(MetricType.COUNTER)));
+        }
+        if (AnnotationMetadata.getAnnotation(bean, element, Timed.class) != null) {
+            metrics.add(new PlannedMetric(element, AnnotationMetadata.buildMetadata(bean, element, Timed.class),
+                    getMetricFactory(MetricType.TIMER)));
+        }
+        if (AnnotationMetadata.getAnnotation(bean, element, Metered.class) != null) {
+            metrics.add(new PlannedMetric(element, AnnotationMetadata.buildMetadata(bean, element, Metered.class),
+                    getMetricFactory(MetricType.METERED)));
+        }
+    }
+
+    private static List<PlannedGauge> planGauges(Class<?> bean) {
+        List<PlannedGauge> gauges = new ArrayList<>();
+
+        Class<?> type = bean;
+        do {
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Gauge.class)) {
+                    gauges.add(new PlannedGauge(method, AnnotationMetadata.buildMetadata(type, method, Gauge.class)));
+                }
+            }
+            type = type.getSuperclass();
+        } while (type != null && !Object.class.equals(type));
+
+        return gauges;
+    }
+
+    /**
+     * Group of planned metrics, which are registered once.
+     *
+     * Once the registration has completed, {@link #registerOnce(Consumer)} returns without locking. Until then,
+     * concurrent callers wait, so no bean instance is used before its metrics are registered.
+     */
+    public static class Registration<T> {
+
+        private static final Registration<?> EMPTY = new Registration<>(Collections.emptyList());
+
+        private final List<T> items;
+        private volatile boolean registered;
+
+        private Registration(List<T> items) {
+            this.items = Collections.unmodifiableList(items);
+            this.registered = items.isEmpty();
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Registration<T> empty() {
+            return (Registration<T>) EMPTY;
+        }
+
+        public void registerOnce(Consumer<List<T>> registration) {
+            if (registered) {
+                return;
+            }
+
+            synchronized (this) {
+                if (!registered) {
+                    registration.accept(items);
+                    registered = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counted, Metered or Timed metric, declared on a constructor or a method.
+     */
+    public static class PlannedMetric {
+
+        private final Member element;
+        private final Metadata metadata;
+        private final Function<Metadata, ? extends Metric> metricFactory;
+
+        private PlannedMetric(Member element, Metadata metadata, Function<Metadata, ? extends Metric> metricFactory) {
+            this.element = element;
+            this.metadata = metadata;
+            this.metricFactory = metricFactory;
+        }
+
+        public Member getElement() {
+            return element;
+        }
+
+        public Metadata getMetadata() {
+            return metadata;
+        }
+
+        public Metric createMetric() {
+            return metricFactory.apply(metadata);
+        }
+    }
+
+    /**
+     * Method, annotated with Gauge.
+     */
+    public static class PlannedGauge {
+
+        private final Method method;
+        private final Metadata metadata;
+
+        private PlannedGauge(Method method, Metadata metadata) {
+            this.method = method;
+            this.metadata = metadata;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public Metadata getMetadata() {
+            return metadata;
+        }
+    }
+}
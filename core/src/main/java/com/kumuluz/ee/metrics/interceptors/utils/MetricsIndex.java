@@ -0,0 +1,294 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.interceptors.utils;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Member;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Metrics index, written at build time by the kumuluzee-metrics-processor annotation processor.
+ *
+ * Classes, which are not contained in the index, are discovered by reflection.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class MetricsIndex {
+
+    private static final Logger log = Logger.getLogger(MetricsIndex.class.getName());
+
+    public static final String INDEX_RESOURCE = "META-INF/kumuluzee/metrics.idx";
+
+    private static final String CONSTRUCTOR_NAME = "<init>";
+    private static final int MIN_FIELDS = 10;
+
+    private static volatile MetricsIndex instance;
+
+    private final Map<String, List<Entry>> entries;
+
+    private MetricsIndex(Map<String, List<Entry>> entries) {
+        this.entries = entries;
+    }
+
+    public static MetricsIndex getInstance() {
+        if (instance == null) {
+            synchronized (MetricsIndex.class) {
+                if (instance == null) {
+                    instance = load();
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Returns indexed metrics of the bean class.
+     *
+     * @param bean bean class
+     * @return indexed metrics or null, if the class is not indexed
+     */
+    public List<Entry> getEntries(Class<?> bean) {
+        return entries.get(bean.getName());
+    }
+
+    public boolean contains(Class<?> bean) {
+        return entries.containsKey(bean.getName());
+    }
+
+    private static MetricsIndex load() {
+        Map<String, List<Entry>> entries = new HashMap<>();
+
+        if (!ConfigurationUtil.getInstance().getBoolean("kumuluzee.metrics.index.enabled").orElse(true)) {
+            return new MetricsIndex(entries);
+        }
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = MetricsIndex.class.getClassLoader();
+        }
+
+        try {
+            Enumeration<URL> resources = classLoader.getResources(INDEX_RESOURCE);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                try {
+                    read(resource, entries);
+                } catch (IOException | RuntimeException e) {
+                    log.log(Level.WARNING, "Could not read metrics index " + resource +
+                            ". Metrics will be discovered by reflection.", e);
+                }
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Could not look up metrics indexes.", e);
+        }
+
+        if (!entries.isEmpty()) {
+            log.fine("Metrics index contains " + entries.size() + " classes.");
+        }
+
+        return new MetricsIndex(entries);
+    }
+
+    private static void read(URL resource, Map<String, List<Entry>> entries) throws IOException {
+        // entries are only added, after the whole resource has been read
+        Map<String, List<Entry>> resourceEntries = new HashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.openStream(),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                Entry entry = parseEntry(line);
+                resourceEntries.computeIfAbsent(entry.bean, bean -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        entries.putAll(resourceEntries);
+    }
+
+    static Entry parseEntry(String line) {
+        return new Entry(split(line));
+    }
+
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char escaped = line.charAt(++i);
+                switch (escaped) {
+                    case 't':
+                        field.append('\t');
+                        break;
+                    case 'n':
+                        field.append('\n');
+                        break;
+                    case 'r':
+                        field.append('\r');
+                        break;
+                    default:
+                        field.append(escaped);
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+
+        if (fields.size() < MIN_FIELDS) {
+            throw new IllegalArgumentException("Invalid metrics index entry: " + line);
+        }
+
+        return fields;
+    }
+
+    /**
+     * Indexed metric.
+     */
+    public static class Entry {
+
+        private final String bean;
+        private final MetricType type;
+        private final String declaringClass;
+        private final String memberName;
+        private final List<String> parameterTypes;
+        private final String name;
+        private final String displayName;
+        private final String description;
+        private final String unit;
+        private final boolean reusable;
+        private final List<String> tags;
+
+        private Entry(List<String> fields) {
+            this.bean = fields.get(0);
+            this.type = getType(fields.get(1));
+            this.declaringClass = fields.get(2);
+            this.memberName = fields.get(3);
+            this.parameterTypes = fields.get(4).isEmpty() ?
+                    Collections.emptyList() :
+                    Arrays.asList(fields.get(4).split(","));
+            this.name = fields.get(5);
+            this.displayName = fields.get(6);
+            this.description = fields.get(7);
+            this.unit = fields.get(8);
+            this.reusable = Boolean.parseBoolean(fields.get(9));
+            this.tags = fields.subList(MIN_FIELDS, fields.size());
+        }
+
+        private static MetricType getType(String kind) {
+            switch (kind) {
+                case "COUNTED":
+                    return MetricType.COUNTER;
+                case "TIMED":
+                    return MetricType.TIMER;
+                case "METERED":
+                    return MetricType.METERED;
+                case "GAUGE":
+                    return MetricType.GAUGE;
+                default:
+                    throw new IllegalArgumentException("Unknown metric kind: " + kind);
+            }
+        }
+
+        public MetricType getType() {
+            return type;
+        }
+
+        public boolean isConstructor() {
+            return CONSTRUCTOR_NAME.equals(memberName);
+        }
+
+        /**
+         * Resolves the annotated constructor or method.
+         *
+         * @param classLoader class loader of the bean class
+         * @return annotated member
+         * @throws ReflectiveOperationException if the member does not exist
+         */
+        public Member resolveMember(ClassLoader classLoader) throws ReflectiveOperationException {
+            Class<?> declaring = Class.forName(declaringClass, false, classLoader);
+            Executable[] candidates = isConstructor() ? declaring.getDeclaredConstructors() :
+                    declaring.getDeclaredMethods();
+
+            for (Executable candidate : candidates) {
+                if ((candidate instanceof Constructor || candidate.getName().equals(memberName)) &&
+                        hasParameterTypes(candidate)) {
+                    return candidate;
+                }
+            }
+
+            throw new NoSuchMethodException(declaringClass + "." + memberName + "(" +
+                    String.join(",", parameterTypes) + ")");
+        }
+
+        private boolean hasParameterTypes(Executable candidate) {
+            Class<?>[] types = candidate.getParameterTypes();
+            if (types.length != parameterTypes.size()) {
+                return false;
+            }
+            for (int i = 0; i < types.length; i++) {
+                if (!types[i].getName().equals(parameterTypes.get(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Builds new metadata of the metric.
+         *
+         * @return metadata
+         */
+        public Metadata buildMetadata() {
+            Metadata metadata = new Metadata(name, type);
+            tags.forEach(metadata::addTag);
+            metadata.setDisplayName(displayName);
+            metadata.setDescription(description);
+            metadata.setUnit(unit);
+            metadata.setReusable(reusable);
+
+            return metadata;
+        }
+    }
+}
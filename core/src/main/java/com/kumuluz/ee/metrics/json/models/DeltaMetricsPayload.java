@@ -0,0 +1,57 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.json.models;
+
+import org.eclipse.microprofile.metrics.Metric;
+
+import java.util.Map;
+
+/**
+ * Metrics payload, which contains only the metrics that changed since the previous report. Full payloads contain all
+ * metrics.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class DeltaMetricsPayload {
+
+    private Service service;
+    private boolean full;
+    private Map<String, Map<String, Metric>> registries;
+
+    public DeltaMetricsPayload(Map<String, Map<String, Metric>> registries, boolean full) {
+        this.service = new Service();
+        this.full = full;
+        this.registries = registries;
+    }
+
+    public Service getService() {
+        return service;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public Map<String, Map<String, Metric>> getRegistries() {
+        return registries;
+    }
+}
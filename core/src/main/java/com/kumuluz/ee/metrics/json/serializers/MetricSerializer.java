@@ -23,6 +23,8 @@ package com.kumuluz.ee.metrics.json.serializers;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.kumuluz.ee.metrics.api.DoubleGauge;
+import com.kumuluz.ee.metrics.api.LongGauge;
 import org.eclipse.microprofile.metrics.*;
 
 import java.io.IOException;
@@ -42,7 +44,11 @@ public class MetricSerializer extends StdSerializer<Metric> {
 
     @Override
     public void serialize(Metric metric, JsonGenerator json, SerializerProvider provider) throws IOException {
-        if(metric instanceof Gauge) {
+        if(metric instanceof LongGauge) {
+            json.writeNumber(((LongGauge) metric).getLongValue());
+        } else if(metric instanceof DoubleGauge) {
+            json.writeNumber(((DoubleGauge) metric).getDoubleValue());
+        } else if(metric instanceof Gauge) {
             json.writeObject(((Gauge) metric).getValue());
         } else if(metric instanceof Counter) {
             json.writeObject(((Counter) metric).getCount());
@@ -0,0 +1,181 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+import com.kumuluz.ee.metrics.utils.AsciiEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Bounded buffer, which encodes the exposition as UTF-8 and streams it to the output stream.
+ *
+ * The content is written to the output stream every time the buffer fills up, so the memory used by the exposition
+ * does not depend on the number of exported metrics.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ExpositionBuffer {
+
+    private static final int DEFAULT_SIZE = 8192;
+
+    private static final int MAX_UTF8_CHAR_LENGTH = 4;
+
+    private final OutputStream outputStream;
+    private final byte[] buffer;
+    private int position;
+
+    public ExpositionBuffer(OutputStream outputStream) {
+        this(outputStream, DEFAULT_SIZE);
+    }
+
+    public ExpositionBuffer(OutputStream outputStream, int size) {
+        if (size < AsciiEncoder.MAX_LONG_LENGTH) {
+            throw new IllegalArgumentException("Buffer size must be at least " + AsciiEncoder.MAX_LONG_LENGTH +
+                    " bytes.");
+        }
+
+        this.outputStream = outputStream;
+        this.buffer = new byte[size];
+        this.position = 0;
+    }
+
+    public ExpositionBuffer append(String value) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (position + MAX_UTF8_CHAR_LENGTH > buffer.length) {
+                flushBuffer();
+            }
+
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced the same way as in String.getBytes()
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        return this;
+    }
+
+    public ExpositionBuffer append(char value) throws IOException {
+        if (value < 0x80) {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) value;
+            return this;
+        }
+
+        return append(String.valueOf(value));
+    }
+
+    public ExpositionBuffer append(long value) throws IOException {
+        if (position + AsciiEncoder.MAX_LONG_LENGTH > buffer.length) {
+            flushBuffer();
+        }
+
+        position = AsciiEncoder.putLong(buffer, position, value);
+        return this;
+    }
+
+    /**
+     * Appends the value in the same format as {@link Double#toString(double)}.
+     */
+    public ExpositionBuffer append(double value) throws IOException {
+        // fast path for whole numbers (e.g. counts and byte sizes), which are common and can be written without
+        // allocation
+        if (AsciiEncoder.isJavaPlainIntegral(value)) {
+            return append((long) value).append('.').append('0');
+        }
+
+        return append(Double.toString(value));
+    }
+
+    /**
+     * Appends the number in the same format as {@link StringBuilder#append(Object)}.
+     */
+    public ExpositionBuffer append(Number value) throws IOException {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return append(value.longValue());
+        }
+        if (value instanceof Double) {
+            return append(value.doubleValue());
+        }
+
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Appends already encoded bytes.
+     */
+    public ExpositionBuffer write(byte[] bytes) throws IOException {
+        return write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Appends a range of already encoded bytes.
+     */
+    public ExpositionBuffer write(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.length - position) {
+            flushBuffer();
+            if (length > buffer.length) {
+                outputStream.write(bytes, offset, length);
+                return this;
+            }
+        }
+
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+        return this;
+    }
+
+    /**
+     * Writes buffered content to the output stream and flushes it.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        outputStream.flush();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+/**
+ * Formats, in which metrics can be exposed to Prometheus.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public enum ExpositionFormat {
+
+    /**
+     * Prometheus text format 0.0.4.
+     */
+    PROMETHEUS("text/plain; version=0.0.4; charset=utf-8"),
+
+    /**
+     * OpenMetrics text format 1.0.0, which adds units, creation timestamps and exemplars.
+     */
+    OPENMETRICS("application/openmetrics-text; version=1.0.0; charset=utf-8"),
+
+    /**
+     * Length-delimited io.prometheus.client.MetricFamily protocol buffers messages.
+     */
+    PROTOBUF("application/vnd.google.protobuf; proto=io.prometheus.client.MetricFamily; encoding=delimited");
+
+    private final String contentType;
+
+    ExpositionFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
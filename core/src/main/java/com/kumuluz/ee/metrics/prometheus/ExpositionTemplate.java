@@ -0,0 +1,81 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-rendered, UTF-8 encoded exposition of a single metric.
+ *
+ * The template holds everything that does not change between scrapes (TYPE and HELP lines, metric names, labels) as
+ * a list of prefixes. Each prefix is followed by a single value, which is the only part formatted during a scrape.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ExpositionTemplate {
+
+    private final byte[][] prefixes;
+
+    private ExpositionTemplate(byte[][] prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    public byte[] getPrefix(int index) {
+        return prefixes[index];
+    }
+
+    public int size() {
+        return prefixes.length;
+    }
+
+    /**
+     * Builder for the {@link ExpositionTemplate}. Text is appended until {@link #value()} marks the position of the
+     * next value.
+     */
+    public static class Builder {
+
+        private final List<byte[]> prefixes = new ArrayList<>();
+        private final StringBuilder current = new StringBuilder();
+
+        public Builder append(String text) {
+            current.append(text);
+            return this;
+        }
+
+        public Builder append(char c) {
+            current.append(c);
+            return this;
+        }
+
+        public Builder value() {
+            prefixes.add(current.toString().getBytes(StandardCharsets.UTF_8));
+            current.setLength(0);
+            return this;
+        }
+
+        public ExpositionTemplate build() {
+            return new ExpositionTemplate(prefixes.toArray(new byte[prefixes.size()][]));
+        }
+    }
+}
@@ -20,13 +20,32 @@
 */
 package com.kumuluz.ee.metrics.prometheus;
 
+import com.kumuluz.ee.metrics.api.CounterImpl;
+import com.kumuluz.ee.metrics.api.DoubleGauge;
+import com.kumuluz.ee.metrics.api.Exemplar;
+import com.kumuluz.ee.metrics.api.HistogramBuckets;
+import com.kumuluz.ee.metrics.api.HistogramImpl;
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.api.MeterImpl;
+import com.kumuluz.ee.metrics.api.TimerImpl;
 import org.eclipse.microprofile.metrics.*;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.logging.Logger;
 
 /**
  * Prometheus metrics builders.
  *
+ * The constant part of each metric's exposition is rendered once into an {@link ExpositionTemplate}, which is kept in
+ * the metric's {@link PrometheusMetadata}. On subsequent scrapes only the values are formatted.
+ *
+ * Timers and histograms with {@link HistogramBuckets} are exported as Prometheus histograms instead of summaries, so
+ * they can be aggregated across instances.
+ *
+ * In the OpenMetrics format, families are additionally described with UNIT lines, counters, summaries and histograms
+ * get a _created sample and counters, meters and histogram buckets carry their latest {@link Exemplar}.
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
@@ -36,138 +55,448 @@ public class PrometheusBuilder {
     private static final Logger log = Logger.getLogger(PrometheusBuilder.class.getName());
 
     private static final String QUANTILE = "quantile";
+    private static final String LE = "le";
+
+    private static final String TOTAL = "_total";
+    private static final String CREATED = "_created";
+
+    private static final double NANOSECONDS_TO_SECONDS = 0.000000001;
+
+    public static void buildGauge(ExpositionBuffer builder, Gauge<?> gauge, PrometheusMetadata metadata,
+                                  ExpositionFormat format) throws IOException {
+        double conversionFactor = metadata.getConversionFactor();
+
+        // primitive gauges are read without boxing
+        if (gauge instanceof LongGauge) {
+            long value = ((LongGauge) gauge).getLongValue();
+            if (Double.isNaN(conversionFactor)) {
+                writeValue(builder, getGaugeTemplate(metadata, format), 0, value);
+            } else {
+                writeValue(builder, getGaugeTemplate(metadata, format), 0, value * conversionFactor);
+            }
+            return;
+        } else if (gauge instanceof DoubleGauge) {
+            double value = ((DoubleGauge) gauge).getDoubleValue();
+            if (!Double.isNaN(conversionFactor)) {
+                value *= conversionFactor;
+            }
+            writeValue(builder, getGaugeTemplate(metadata, format), 0, value);
+            return;
+        }
 
-    public static void buildGauge(StringBuilder builder, String name, Gauge<?> gauge, String description,
-                                  Double conversionFactor, String tags, String appendUnit) {
         // Skip non number values
         Number gaugeValNumber;
         Object gaugeValue;
         gaugeValue = gauge.getValue();
 
         if (!Number.class.isInstance(gaugeValue)) {
-            log.info("Skipping Prometheus output for Gauge: " + name + " of type " + gauge.getValue().getClass());
+            log.info("Skipping Prometheus output for Gauge: " + metadata.getName() + " of type " +
+                    (gaugeValue == null ? null : gaugeValue.getClass()));
             return;
         }
         gaugeValNumber = (Number) gaugeValue;
         if (!(Double.isNaN(conversionFactor))) {
             gaugeValNumber = gaugeValNumber.doubleValue() * conversionFactor;
         }
-        getPromTypeLine(builder, name, "gauge", appendUnit);
-        getPromHelpLine(builder, name, description, appendUnit);
-        getPromValueLine(builder, name, gaugeValNumber, tags, appendUnit);
-    }
 
-    public static void buildCounter(StringBuilder builder, String name, Counter counter, String description,
-                                    String tags) {
-        getPromTypeLine(builder, name, "counter");
-        getPromHelpLine(builder, name, description);
-        getPromValueLine(builder, name, counter.getCount(), tags);
+        writeValue(builder, getGaugeTemplate(metadata, format), 0, gaugeValNumber);
     }
 
-    public static void buildTimer(StringBuilder builder, String name, Timer timer, String description, String tags) {
-        buildMetered(builder, name, timer, tags);
-        double conversionFactor = 0.000000001;
-        // Build Histogram
-        buildSampling(builder, name, timer, description, conversionFactor, tags, "_seconds");
+    private static ExpositionTemplate getGaugeTemplate(PrometheusMetadata metadata, ExpositionFormat format) {
+        ExpositionTemplate template = metadata.getTemplate(format);
+        if (template == null) {
+            String name = metadata.getName();
+            ExpositionTemplate.Builder templateBuilder = new ExpositionTemplate.Builder();
+            getPromTypeLine(templateBuilder, name, "gauge", metadata.getAppendUnit());
+            getPromUnitLine(templateBuilder, name, metadata.getAppendUnit(), format);
+            getPromHelpLine(templateBuilder, name, metadata.getDescription(), metadata.getAppendUnit());
+            getPromValueLine(templateBuilder, name, metadata.getTags(), metadata.getAppendUnit());
+            template = setTemplate(metadata, format, templateBuilder);
+        }
+
+        return template;
     }
 
-    public static void buildHistogram(StringBuilder builder, String name, Histogram histogram, String description,
-                                      Double conversionFactor, String tags, String appendUnit) {
-        // Build Histogram
-        buildSampling(builder, name, histogram, description, conversionFactor, tags, appendUnit);
+    public static void buildCounter(ExpositionBuffer builder, Counter counter, PrometheusMetadata metadata,
+                                    ExpositionFormat format) throws IOException {
+        ExpositionTemplate template = metadata.getTemplate(format);
+        if (template == null) {
+            String name = metadata.getName();
+            ExpositionTemplate.Builder templateBuilder = new ExpositionTemplate.Builder();
+            if (format == ExpositionFormat.OPENMETRICS) {
+                // OpenMetrics counter samples always have the _total suffix, which is not part of the family name
+                String family = name.endsWith(TOTAL) ? name.substring(0, name.length() - TOTAL.length()) : name;
+                buildCountingTemplate(templateBuilder, family, metadata.getDescription(), metadata.getTags(),
+                        metadata.getCreated(), format);
+            } else {
+                getPromTypeLine(templateBuilder, name, "counter");
+                getPromHelpLine(templateBuilder, name, metadata.getDescription());
+                getPromValueLine(templateBuilder, name, metadata.getTags());
+            }
+            template = setTemplate(metadata, format, templateBuilder);
+        }
+
+        int index;
+        if (format == ExpositionFormat.OPENMETRICS) {
+            Exemplar exemplar = counter instanceof CounterImpl ? ((CounterImpl) counter).getExemplar() : null;
+            index = writeValue(builder, template, 0, counter.getCount(), exemplar, Double.NaN);
+        } else {
+            index = writeValue(builder, template, 0, counter.getCount());
+        }
+        writeCreated(builder, template, index, metadata, format);
     }
 
-    public static void buildMeter(StringBuilder builder, String name, Meter meter, String description, String tags) {
-        buildCounting(builder, name, meter, description, tags);
-        buildMetered(builder, name, meter, tags);
+    public static void buildTimer(ExpositionBuffer builder, Timer timer, PrometheusMetadata metadata,
+                                  ExpositionFormat format) throws IOException {
+        HistogramBuckets buckets = timer instanceof TimerImpl ? ((TimerImpl) timer).getBuckets() : null;
+
+        ExpositionTemplate template = metadata.getTemplate(format);
+        if (template == null) {
+            ExpositionTemplate.Builder templateBuilder = new ExpositionTemplate.Builder();
+            buildMeteredTemplate(templateBuilder, metadata.getName(), metadata.getTags());
+            // Build Histogram
+            buildSamplingTemplate(templateBuilder, metadata, "_seconds", buckets, NANOSECONDS_TO_SECONDS, format);
+            template = setTemplate(metadata, format, templateBuilder);
+        }
+
+        int index = writeMetered(builder, template, 0, timer);
+        index = writeSampling(builder, template, index, timer, timer, NANOSECONDS_TO_SECONDS, buckets, format);
+        writeCreated(builder, template, index, metadata, format);
     }
 
-    private static void buildSampling(StringBuilder builder, String name, Sampling sampling, String description,
-                                      Double conversionFactor, String tags, String appendUnit) {
+    public static void buildHistogram(ExpositionBuffer builder, Histogram histogram, PrometheusMetadata metadata,
+                                      ExpositionFormat format) throws IOException {
+        HistogramBuckets buckets = histogram instanceof HistogramImpl ? ((HistogramImpl) histogram).getBuckets() : null;
+
+        ExpositionTemplate template = metadata.getTemplate(format);
+        if (template == null) {
+            ExpositionTemplate.Builder templateBuilder = new ExpositionTemplate.Builder();
+            // Build Histogram
+            buildSamplingTemplate(templateBuilder, metadata, metadata.getAppendUnit(), buckets,
+                    metadata.getConversionFactor(), format);
+            template = setTemplate(metadata, format, templateBuilder);
+        }
 
-        double meanVal = sampling.getSnapshot().getMean();
-        double maxVal = sampling.getSnapshot().getMax();
-        double minVal = sampling.getSnapshot().getMin();
-        double stdDevVal = sampling.getSnapshot().getStdDev();
-        double medianVal = sampling.getSnapshot().getMedian();
-        double percentile75th = sampling.getSnapshot().get75thPercentile();
-        double percentile95th = sampling.getSnapshot().get95thPercentile();
-        double percentile98th = sampling.getSnapshot().get98thPercentile();
-        double percentile99th = sampling.getSnapshot().get99thPercentile();
-        double percentile999th = sampling.getSnapshot().get999thPercentile();
+        int index = writeSampling(builder, template, 0, histogram, histogram, metadata.getConversionFactor(), buckets,
+                format);
+        writeCreated(builder, template, index, metadata, format);
+    }
 
-        if (!(Double.isNaN(conversionFactor))) {
-            meanVal = sampling.getSnapshot().getMean() * conversionFactor;
-            maxVal = sampling.getSnapshot().getMax() * conversionFactor;
-            minVal = sampling.getSnapshot().getMin() * conversionFactor;
-            stdDevVal = sampling.getSnapshot().getStdDev() * conversionFactor;
-            medianVal = sampling.getSnapshot().getMedian() * conversionFactor;
-            percentile75th = sampling.getSnapshot().get75thPercentile() * conversionFactor;
-            percentile95th = sampling.getSnapshot().get95thPercentile() * conversionFactor;
-            percentile98th = sampling.getSnapshot().get98thPercentile() * conversionFactor;
-            percentile99th = sampling.getSnapshot().get99thPercentile() * conversionFactor;
-            percentile999th = sampling.getSnapshot().get999thPercentile() * conversionFactor;
+    public static void buildMeter(ExpositionBuffer builder, Meter meter, PrometheusMetadata metadata,
+                                  ExpositionFormat format) throws IOException {
+        ExpositionTemplate template = metadata.getTemplate(format);
+        if (template == null) {
+            ExpositionTemplate.Builder templateBuilder = new ExpositionTemplate.Builder();
+            buildCountingTemplate(templateBuilder, metadata.getName(), metadata.getDescription(), metadata.getTags(),
+                    metadata.getCreated(), format);
+            buildMeteredTemplate(templateBuilder, metadata.getName(), metadata.getTags());
+            template = setTemplate(metadata, format, templateBuilder);
         }
 
+        int index;
+        if (format == ExpositionFormat.OPENMETRICS) {
+            Exemplar exemplar = meter instanceof MeterImpl ? ((MeterImpl) meter).getExemplar() : null;
+            index = writeValue(builder, template, 0, meter.getCount(), exemplar, Double.NaN);
+            index = writeCreated(builder, template, index, metadata, format);
+        } else {
+            index = writeValue(builder, template, 0, meter.getCount());
+        }
+        writeMetered(builder, template, index, meter);
+    }
+
+    private static ExpositionTemplate setTemplate(PrometheusMetadata metadata, ExpositionFormat format,
+                                                  ExpositionTemplate.Builder templateBuilder) {
+        ExpositionTemplate template = templateBuilder.build();
+        metadata.setTemplate(format, template);
+        return template;
+    }
+
+    private static void buildSamplingTemplate(ExpositionTemplate.Builder builder, PrometheusMetadata metadata,
+                                              String appendUnit, HistogramBuckets buckets, double conversionFactor,
+                                              ExpositionFormat format) {
+        String name = metadata.getName();
+        String description = metadata.getDescription();
+        String tags = metadata.getTags();
+
         String lineName = name + "_mean";
         getPromTypeLine(builder, lineName, "gauge", appendUnit);
-        getPromValueLine(builder, lineName, meanVal, tags, appendUnit);
+        getPromUnitLine(builder, lineName, appendUnit, format);
+        getPromValueLine(builder, lineName, tags, appendUnit);
         lineName = name + "_max";
         getPromTypeLine(builder, lineName, "gauge", appendUnit);
-        getPromValueLine(builder, lineName, maxVal, tags, appendUnit);
+        getPromUnitLine(builder, lineName, appendUnit, format);
+        getPromValueLine(builder, lineName, tags, appendUnit);
         lineName = name + "_min";
         getPromTypeLine(builder, lineName, "gauge", appendUnit);
-        getPromValueLine(builder, lineName, minVal, tags, appendUnit);
+        getPromUnitLine(builder, lineName, appendUnit, format);
+        getPromValueLine(builder, lineName, tags, appendUnit);
         lineName = name + "_stddev";
         getPromTypeLine(builder, lineName, "gauge", appendUnit);
-        getPromValueLine(builder, lineName, stdDevVal, tags, appendUnit);
+        getPromUnitLine(builder, lineName, appendUnit, format);
+        getPromValueLine(builder, lineName, tags, appendUnit);
+
+        if (buckets != null) {
+            buildBucketsTemplate(builder, name, description, tags, appendUnit, buckets, conversionFactor, format);
+        } else {
+            getPromTypeLine(builder, name, "summary", appendUnit);
+            getPromUnitLine(builder, name, appendUnit, format);
+            getPromHelpLine(builder, name, description, appendUnit);
+            getPromValueLine(builder, name, tags, appendUnit == null ? "_count" : appendUnit + "_count");
+            getPromValueLine(builder, name, tags, new Tag(QUANTILE, "0.5"), appendUnit);
+            getPromValueLine(builder, name, tags, new Tag(QUANTILE, "0.75"), appendUnit);
+            getPromValueLine(builder, name, tags, new Tag(QUANTILE, "0.95"), appendUnit);
+            getPromValueLine(builder, name, tags, new Tag(QUANTILE, "0.98"), appendUnit);
+            getPromValueLine(builder, name, tags, new Tag(QUANTILE, "0.99"), appendUnit);
+            getPromValueLine(builder, name, tags, new Tag(QUANTILE, "0.999"), appendUnit);
+        }
+
+        getPromCreatedLine(builder, name, tags, appendUnit, metadata.getCreated(), format);
+    }
 
-        getPromTypeLine(builder, name, "summary", appendUnit);
+    private static void buildBucketsTemplate(ExpositionTemplate.Builder builder, String name, String description,
+                                             String tags, String appendUnit, HistogramBuckets buckets,
+                                             double conversionFactor, ExpositionFormat format) {
+        String unit = appendUnit == null ? "" : appendUnit;
+
+        getPromTypeLine(builder, name, "histogram", appendUnit);
+        getPromUnitLine(builder, name, appendUnit, format);
         getPromHelpLine(builder, name, description, appendUnit);
-        if (Counting.class.isInstance(sampling)) {
-            getPromValueLine(builder, name, ((Counting) sampling).getCount(), tags,
-                    appendUnit == null ? "_count" : appendUnit + "_count");
+        for (int i = 0; i < buckets.size(); i++) {
+            getPromValueLine(builder, name, tags,
+                    new Tag(LE, formatUpperBound(buckets.getUpperBound(i), conversionFactor)), unit + "_bucket");
+        }
+        getPromValueLine(builder, name, tags, new Tag(LE, "+Inf"), unit + "_bucket");
+        getPromValueLine(builder, name, tags, unit + "_sum");
+        getPromValueLine(builder, name, tags, unit + "_count");
+    }
+
+    /*
+     * Upper bounds are formatted like Double.toString(), as other Prometheus clients do.
+     */
+    private static String formatUpperBound(long upperBound, double conversionFactor) {
+        return Double.toString(convertUpperBound(upperBound, conversionFactor));
+    }
+
+    /**
+     * Converts the upper bound of a bucket exactly, so the same boundary has the same value on every instance and in
+     * every format.
+     */
+    static double convertUpperBound(long upperBound, double conversionFactor) {
+        BigDecimal value = BigDecimal.valueOf(upperBound);
+        if (!Double.isNaN(conversionFactor)) {
+            value = value.multiply(BigDecimal.valueOf(conversionFactor));
         }
-        getPromValueLine(builder, name, medianVal, tags, new Tag(QUANTILE, "0.5"), appendUnit);
-        getPromValueLine(builder, name, percentile75th, tags, new Tag(QUANTILE, "0.75"), appendUnit);
-        getPromValueLine(builder, name, percentile95th, tags, new Tag(QUANTILE, "0.95"), appendUnit);
-        getPromValueLine(builder, name, percentile98th, tags, new Tag(QUANTILE, "0.98"), appendUnit);
-        getPromValueLine(builder, name, percentile99th, tags, new Tag(QUANTILE, "0.99"), appendUnit);
-        getPromValueLine(builder, name, percentile999th, tags, new Tag(QUANTILE, "0.999"), appendUnit);
+
+        return value.doubleValue();
     }
 
-    private static void buildCounting(StringBuilder builder, String name, Counting counting, String description,
-                                      String tags) {
-        String lineName = name + "_total";
-        getPromTypeLine(builder, lineName, "counter");
-        getPromHelpLine(builder, lineName, description);
-        getPromValueLine(builder, lineName, counting.getCount(), tags);
+    private static int writeSampling(ExpositionBuffer builder, ExpositionTemplate template, int index,
+                                     Sampling sampling, Counting counting, double conversionFactor,
+                                     HistogramBuckets buckets, ExpositionFormat format) throws IOException {
+
+        // take a single snapshot, so all the values are consistent and the reservoir is only copied once
+        Snapshot snapshot = sampling.getSnapshot();
+
+        index = writeSnapshotGauges(builder, template, index, snapshot, conversionFactor);
+        if (buckets != null) {
+            return writeBuckets(builder, template, index, buckets, conversionFactor, format);
+        }
+
+        double medianVal = snapshot.getMedian();
+        double percentile75th = snapshot.get75thPercentile();
+        double percentile95th = snapshot.get95thPercentile();
+        double percentile98th = snapshot.get98thPercentile();
+        double percentile99th = snapshot.get99thPercentile();
+        double percentile999th = snapshot.get999thPercentile();
+
+        if (!(Double.isNaN(conversionFactor))) {
+            medianVal *= conversionFactor;
+            percentile75th *= conversionFactor;
+            percentile95th *= conversionFactor;
+            percentile98th *= conversionFactor;
+            percentile99th *= conversionFactor;
+            percentile999th *= conversionFactor;
+        }
+
+        writeValue(builder, template, index++, counting.getCount());
+        writeValue(builder, template, index++, medianVal);
+        writeValue(builder, template, index++, percentile75th);
+        writeValue(builder, template, index++, percentile95th);
+        writeValue(builder, template, index++, percentile98th);
+        writeValue(builder, template, index++, percentile99th);
+        writeValue(builder, template, index++, percentile999th);
+
+        return index;
     }
 
-    private static void buildMetered(StringBuilder builder, String name, Metered metered,
-                                     String tags) {
+    private static int writeSnapshotGauges(ExpositionBuffer builder, ExpositionTemplate template, int index,
+                                           Snapshot snapshot, double conversionFactor) throws IOException {
+        double meanVal = snapshot.getMean();
+        double maxVal = snapshot.getMax();
+        double minVal = snapshot.getMin();
+        double stdDevVal = snapshot.getStdDev();
+
+        if (!(Double.isNaN(conversionFactor))) {
+            meanVal *= conversionFactor;
+            maxVal *= conversionFactor;
+            minVal *= conversionFactor;
+            stdDevVal *= conversionFactor;
+        }
+
+        writeValue(builder, template, index++, meanVal);
+        writeValue(builder, template, index++, maxVal);
+        writeValue(builder, template, index++, minVal);
+        writeValue(builder, template, index++, stdDevVal);
+
+        return index;
+    }
+
+    private static int writeBuckets(ExpositionBuffer builder, ExpositionTemplate template, int index,
+                                    HistogramBuckets buckets, double conversionFactor, ExpositionFormat format)
+            throws IOException {
+        long[] cumulativeCounts = buckets.getCumulativeCounts();
+        for (int i = 0; i < cumulativeCounts.length; i++) {
+            if (format == ExpositionFormat.OPENMETRICS) {
+                writeValue(builder, template, index++, cumulativeCounts[i], buckets.getExemplar(i), conversionFactor);
+            } else {
+                writeValue(builder, template, index++, cumulativeCounts[i]);
+            }
+        }
+
+        if (Double.isNaN(conversionFactor)) {
+            writeValue(builder, template, index++, buckets.getSum());
+        } else {
+            writeValue(builder, template, index++, buckets.getSum() * conversionFactor);
+        }
+        // count of the +Inf bucket, so it is consistent with the buckets
+        writeValue(builder, template, index++, cumulativeCounts[cumulativeCounts.length - 1]);
+
+        return index;
+    }
+
+    private static void buildCountingTemplate(ExpositionTemplate.Builder builder, String name, String description,
+                                              String tags, long created, ExpositionFormat format) {
+        if (format == ExpositionFormat.OPENMETRICS) {
+            getPromTypeLine(builder, name, "counter");
+            getPromHelpLine(builder, name, description);
+            getPromValueLine(builder, name, tags, TOTAL);
+            getPromCreatedLine(builder, name, tags, null, created, format);
+        } else {
+            String lineName = name + TOTAL;
+            getPromTypeLine(builder, lineName, "counter");
+            getPromHelpLine(builder, lineName, description);
+            getPromValueLine(builder, lineName, tags);
+        }
+    }
+
+    private static void buildMeteredTemplate(ExpositionTemplate.Builder builder, String name, String tags) {
         String lineName = name + "_rate_" + MetricUnits.PER_SECOND;
         getPromTypeLine(builder, lineName, "gauge");
-        getPromValueLine(builder, lineName, metered.getMeanRate(), tags);
+        getPromValueLine(builder, lineName, tags);
 
         lineName = name + "_one_min_rate_" + MetricUnits.PER_SECOND;
         getPromTypeLine(builder, lineName, "gauge");
-        getPromValueLine(builder, lineName, metered.getOneMinuteRate(), tags);
+        getPromValueLine(builder, lineName, tags);
 
         lineName = name + "_five_min_rate_" + MetricUnits.PER_SECOND;
         getPromTypeLine(builder, lineName, "gauge");
-        getPromValueLine(builder, lineName, metered.getFiveMinuteRate(), tags);
+        getPromValueLine(builder, lineName, tags);
 
         lineName = name + "_fifteen_min_rate_" + MetricUnits.PER_SECOND;
         getPromTypeLine(builder, lineName, "gauge");
-        getPromValueLine(builder, lineName, metered.getFifteenMinuteRate(), tags);
+        getPromValueLine(builder, lineName, tags);
+    }
+
+    private static int writeMetered(ExpositionBuffer builder, ExpositionTemplate template, int index,
+                                    Metered metered) throws IOException {
+        writeValue(builder, template, index++, metered.getMeanRate());
+        writeValue(builder, template, index++, metered.getOneMinuteRate());
+        writeValue(builder, template, index++, metered.getFiveMinuteRate());
+        writeValue(builder, template, index++, metered.getFifteenMinuteRate());
+
+        return index;
     }
 
-    private static void getPromValueLine(StringBuilder builder, String name, Number value, String tags) {
-        getPromValueLine(builder, name, value, tags, null);
+    private static int writeCreated(ExpositionBuffer builder, ExpositionTemplate template, int index,
+                                    PrometheusMetadata metadata, ExpositionFormat format) throws IOException {
+        if (!hasCreated(metadata.getCreated(), format)) {
+            return index;
+        }
+
+        builder.write(template.getPrefix(index));
+        appendTimestamp(builder, metadata.getCreated());
+        builder.append('\n');
+
+        return index + 1;
     }
 
-    private static void getPromValueLine(StringBuilder builder, String name, Number value, String tags, Tag quantile,
+    private static int writeValue(ExpositionBuffer builder, ExpositionTemplate template, int index, long value)
+            throws IOException {
+        builder.write(template.getPrefix(index)).append(value).append('\n');
+        return index + 1;
+    }
+
+    private static void writeValue(ExpositionBuffer builder, ExpositionTemplate template, int index, double value)
+            throws IOException {
+        builder.write(template.getPrefix(index)).append(value).append('\n');
+    }
+
+    private static void writeValue(ExpositionBuffer builder, ExpositionTemplate template, int index, Number value)
+            throws IOException {
+        builder.write(template.getPrefix(index)).append(value).append('\n');
+    }
+
+    private static int writeValue(ExpositionBuffer builder, ExpositionTemplate template, int index, long value,
+                                  Exemplar exemplar, double conversionFactor) throws IOException {
+        builder.write(template.getPrefix(index)).append(value);
+
+        if (exemplar != null) {
+            double exemplarValue = exemplar.getValue();
+            if (!Double.isNaN(conversionFactor)) {
+                exemplarValue *= conversionFactor;
+            }
+
+            builder.append(" # {trace_id=\"").append(escapeLabelValue(exemplar.getTraceId())).append("\"} ")
+                    .append(exemplarValue).append(' ');
+            appendTimestamp(builder, exemplar.getTimestamp());
+        }
+
+        builder.append('\n');
+        return index + 1;
+    }
+
+    /*
+     * Appends milliseconds since the epoch as seconds with a fraction.
+     */
+    private static void appendTimestamp(ExpositionBuffer builder, long millis) throws IOException {
+        long fraction = millis % 1000;
+        builder.append(millis / 1000).append('.');
+        if (fraction < 100) {
+            builder.append('0');
+        }
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        builder.append(fraction);
+    }
+
+    private static String escapeLabelValue(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static boolean hasCreated(long created, ExpositionFormat format) {
+        return format == ExpositionFormat.OPENMETRICS && created > 0;
+    }
+
+    private static void getPromValueLine(ExpositionTemplate.Builder builder, String name, String tags) {
+        getPromValueLine(builder, name, tags, null);
+    }
+
+    private static void getPromValueLine(ExpositionTemplate.Builder builder, String name, String tags, Tag quantile,
                                          String appendUnit) {
 
         if (tags == null || tags.isEmpty()) {
@@ -175,15 +504,13 @@ public class PrometheusBuilder {
         } else {
             tags = tags + "," + quantile.getKey() + "=\"" + quantile.getValue() + "\"";
         }
-        getPromValueLine(builder, name, value, tags, appendUnit);
+        getPromValueLine(builder, name, tags, appendUnit);
     }
 
-    private static void getPromValueLine(StringBuilder builder, String name, Number value, String tags,
+    private static void getPromValueLine(ExpositionTemplate.Builder builder, String name, String tags,
                                          String appendUnit) {
 
-        String metricName = getPrometheusMetricName(name);
-
-        builder.append(metricName);
+        builder.append(name);
 
         if (appendUnit != null) {
             builder.append(appendUnit);
@@ -193,17 +520,24 @@ public class PrometheusBuilder {
             builder.append("{").append(tags).append("}");
         }
 
-        builder.append(" ").append(value).append('\n');
+        builder.append(" ").value();
+    }
+
+    private static void getPromCreatedLine(ExpositionTemplate.Builder builder, String name, String tags,
+                                           String appendUnit, long created, ExpositionFormat format) {
+        if (hasCreated(created, format)) {
+            getPromValueLine(builder, name, tags, appendUnit == null ? CREATED : appendUnit + CREATED);
+        }
     }
 
-    private static void getPromHelpLine(StringBuilder builder, String name, String description) {
+    private static void getPromHelpLine(ExpositionTemplate.Builder builder, String name, String description) {
         getPromHelpLine(builder, name, description, null);
     }
 
-    private static void getPromHelpLine(StringBuilder builder, String name, String description, String appendUnit) {
-        String metricName = getPrometheusMetricName(name);
+    private static void getPromHelpLine(ExpositionTemplate.Builder builder, String name, String description,
+                                        String appendUnit) {
         if (description != null && !description.isEmpty()) {
-            builder.append("# HELP ").append(metricName);
+            builder.append("# HELP ").append(name);
 
             if (appendUnit != null) {
                 builder.append(appendUnit);
@@ -212,30 +546,25 @@ public class PrometheusBuilder {
         }
     }
 
-    private static void getPromTypeLine(StringBuilder builder, String name, String type) {
+    private static void getPromTypeLine(ExpositionTemplate.Builder builder, String name, String type) {
         getPromTypeLine(builder, name, type, null);
     }
 
-    private static void getPromTypeLine(StringBuilder builder, String name, String type, String appendUnit) {
-
-        String metricName = getPrometheusMetricName(name);
-        builder.append("# TYPE ").append(metricName);
+    private static void getPromTypeLine(ExpositionTemplate.Builder builder, String name, String type,
+                                        String appendUnit) {
+        builder.append("# TYPE ").append(name);
         if (appendUnit != null) {
             builder.append(appendUnit);
         }
         builder.append(" ").append(type).append("\n");
     }
 
-    /*
-     * Create the Prometheus metric name by sanitizing some characters
-     */
-    private static String getPrometheusMetricName(String name) {
-
-        String out = name.replaceAll("(?<!^|:)(\\p{Upper})(?=\\p{Lower})", "_$1");
-        out = out.replaceAll("(?<=\\p{Lower})(\\p{Upper})", "_$1").toLowerCase();
-        out = out.replaceAll("[-_.\\s]+", "_");
-        out = out.replaceAll("^_*(.*?)_*$", "$1");
-
-        return out;
+    private static void getPromUnitLine(ExpositionTemplate.Builder builder, String name, String appendUnit,
+                                        ExpositionFormat format) {
+        // the family name ends with the unit, which is appended with a leading underscore
+        if (format == ExpositionFormat.OPENMETRICS && appendUnit != null) {
+            builder.append("# UNIT ").append(name).append(appendUnit).append(" ").append(appendUnit.substring(1))
+                    .append("\n");
+        }
     }
 }
@@ -0,0 +1,254 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricUnits;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Prometheus representation of the metric metadata.
+ *
+ * Sanitized name, unit suffix and conversion factor are computed once, when the metric is registered, so they do not
+ * have to be worked out on every scrape.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class PrometheusMetadata {
+
+    private final static String APPENDEDSECONDS = "_seconds";
+    private final static String APPENDEDBYTES = "_bytes";
+    private final static String APPENDEDPERCENT = "_percent";
+
+    private static final Pattern CAMEL_CASE_WORD = Pattern.compile("(?<!^|:)(\\p{Upper})(?=\\p{Lower})");
+    private static final Pattern CAMEL_CASE_UPPER = Pattern.compile("(?<=\\p{Lower})(\\p{Upper})");
+    private static final Pattern SEPARATORS = Pattern.compile("[-_.\\s]+");
+    private static final Pattern SURROUNDING_UNDERSCORES = Pattern.compile("^_*(.*?)_*$");
+
+    private final String name;
+    private final String description;
+    private final String tags;
+    private final Map<String, String> tagMap;
+    private final double conversionFactor;
+    private final String appendUnit;
+    private final long created;
+
+    // built lazily on first scrape, lives as long as the registered metric
+    private volatile ExpositionTemplate template;
+    private volatile ExpositionTemplate openMetricsTemplate;
+    private volatile ProtobufTemplate protobufTemplate;
+
+    public PrometheusMetadata(String registryName, Metadata metadata) {
+        this(registryName, metadata, 0);
+    }
+
+    /**
+     * @param registryName name of the registry
+     * @param metadata metric metadata
+     * @param created time, when the metric was registered, in milliseconds since the epoch or 0, if unknown
+     */
+    public PrometheusMetadata(String registryName, Metadata metadata, long created) {
+        this.created = created;
+        this.name = getPrometheusMetricName(registryName + ":" + metadata.getName());
+
+        if (metadata.getDescription() == null || metadata.getDescription().trim().isEmpty()) {
+            this.description = "";
+        } else {
+            this.description = metadata.getDescription().trim();
+        }
+
+        this.tags = metadata.getTagsAsString();
+        this.tagMap = Collections.unmodifiableMap(new LinkedHashMap<>(metadata.getTags()));
+
+        //Unit determination / translation
+        String unit = metadata.getUnit();
+
+        if (unit == null || unit.trim().isEmpty() || unit.equals(MetricUnits.NONE)) {
+
+            conversionFactor = Double.NaN;
+            appendUnit = null;
+
+        } else if (unit.equals(MetricUnits.NANOSECONDS)) {
+
+            conversionFactor = 0.000000001;
+            appendUnit = APPENDEDSECONDS;
+
+        } else if (unit.equals(MetricUnits.MICROSECONDS)) {
+
+            conversionFactor = 0.000001;
+            appendUnit = APPENDEDSECONDS;
+
+        } else if (unit.equals(MetricUnits.MILLISECONDS)) {
+
+            conversionFactor = 0.001;
+            appendUnit = APPENDEDSECONDS;
+
+        } else if (unit.equals(MetricUnits.SECONDS)) {
+
+            conversionFactor = 1;
+            appendUnit = APPENDEDSECONDS;
+
+        } else if (unit.equals(MetricUnits.MINUTES)) {
+
+            conversionFactor = 60;
+            appendUnit = APPENDEDSECONDS;
+
+        } else if (unit.equals(MetricUnits.HOURS)) {
+
+            conversionFactor = 3600;
+            appendUnit = APPENDEDSECONDS;
+
+        } else if (unit.equals(MetricUnits.DAYS)) {
+
+            conversionFactor = 86400;
+            appendUnit = APPENDEDSECONDS;
+
+        } else if (unit.equals(MetricUnits.PERCENT)) {
+
+            conversionFactor = Double.NaN;
+            appendUnit = APPENDEDPERCENT;
+
+        } else if (unit.equals(MetricUnits.BYTES)) {
+
+            conversionFactor = 1;
+            appendUnit = APPENDEDBYTES;
+
+        } else if (unit.equals(MetricUnits.KILOBYTES)) {
+
+            conversionFactor = 1024;
+            appendUnit = APPENDEDBYTES;
+
+        } else if (unit.equals(MetricUnits.MEGABYTES)) {
+
+            conversionFactor = 1048576;
+            appendUnit = APPENDEDBYTES;
+
+        } else if (unit.equals(MetricUnits.GIGABYTES)) {
+
+            conversionFactor = 1073741824;
+            appendUnit = APPENDEDBYTES;
+
+        } else if (unit.equals(MetricUnits.KILOBITS)) {
+
+            conversionFactor = 125;
+            appendUnit = APPENDEDBYTES;
+
+        } else if (unit.equals(MetricUnits.MEGABITS)) {
+
+            conversionFactor = 125000;
+            appendUnit = APPENDEDBYTES;
+
+        } else if (unit.equals(MetricUnits.GIGABITS)) {
+
+            conversionFactor = 1.25e+8;
+            appendUnit = APPENDEDBYTES;
+
+        } else if (unit.equals(MetricUnits.KIBIBITS)) {
+
+            conversionFactor = 128;
+            appendUnit = APPENDEDBYTES;
+
+        } else if (unit.equals(MetricUnits.MEBIBITS)) {
+
+            conversionFactor = 131072;
+            appendUnit = APPENDEDBYTES;
+
+        } else if (unit.equals(MetricUnits.GIBIBITS)) {
+
+            conversionFactor = 1.342e+8;
+            appendUnit = APPENDEDBYTES;
+
+        } else {
+
+            conversionFactor = Double.NaN;
+            appendUnit = "_" + unit;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getTags() {
+        return tags;
+    }
+
+    public Map<String, String> getTagMap() {
+        return tagMap;
+    }
+
+    public double getConversionFactor() {
+        return conversionFactor;
+    }
+
+    public String getAppendUnit() {
+        return appendUnit;
+    }
+
+    /**
+     * @return time, when the metric was registered, in milliseconds since the epoch or 0, if unknown
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    public ExpositionTemplate getTemplate(ExpositionFormat format) {
+        return format == ExpositionFormat.OPENMETRICS ? openMetricsTemplate : template;
+    }
+
+    public void setTemplate(ExpositionFormat format, ExpositionTemplate template) {
+        if (format == ExpositionFormat.OPENMETRICS) {
+            this.openMetricsTemplate = template;
+        } else {
+            this.template = template;
+        }
+    }
+
+    public ProtobufTemplate getProtobufTemplate() {
+        return protobufTemplate;
+    }
+
+    public void setProtobufTemplate(ProtobufTemplate protobufTemplate) {
+        this.protobufTemplate = protobufTemplate;
+    }
+
+    /*
+     * Create the Prometheus metric name by sanitizing some characters
+     */
+    static String getPrometheusMetricName(String name) {
+
+        String out = CAMEL_CASE_WORD.matcher(name).replaceAll("_$1");
+        out = CAMEL_CASE_UPPER.matcher(out).replaceAll("_$1").toLowerCase();
+        out = SEPARATORS.matcher(out).replaceAll("_");
+        out = SURROUNDING_UNDERSCORES.matcher(out).replaceAll("$1");
+
+        return out;
+    }
+}
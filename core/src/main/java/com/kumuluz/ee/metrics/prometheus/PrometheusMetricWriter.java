@@ -20,216 +20,177 @@
 */
 package com.kumuluz.ee.metrics.prometheus;
 
+import com.kumuluz.ee.metrics.api.MetricAdapter;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
 import org.eclipse.microprofile.metrics.*;
 
 import java.io.IOException;
-import java.io.Writer;
-import java.util.Collections;
+import java.io.OutputStream;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.logging.Logger;
 
 /**
  * Prometheus metric writer.
  *
+ * Metrics are streamed to the output stream through a bounded {@link ExpositionBuffer} while they are being read
+ * from the registries, so the whole exposition is never held in memory.
+ *
+ * In the protobuf format, metric families are encoded with a {@link ProtobufEncoder}, which writes each family to the
+ * same buffer.
+ *
+ * The OpenMetrics exposition is terminated with an EOF line, which is only written if all metrics were written, so
+ * truncated expositions are detected by the scraper.
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
  */
 public class PrometheusMetricWriter {
 
-    private final static String APPENDEDSECONDS = "_seconds";
-    private final static String APPENDEDBYTES = "_bytes";
-    private final static String APPENDEDPERCENT = "_percent";
-
     private static final Logger log = Logger.getLogger(PrometheusMetricWriter.class.getName());
 
-    private final Writer writer;
+    private final OutputStream outputStream;
+    private final ExpositionBuffer builder;
+    private final ExpositionFormat format;
+    private final ProtobufEncoder encoder;
+
+    public PrometheusMetricWriter(OutputStream outputStream) {
+        this(outputStream, ExpositionFormat.PROMETHEUS);
+    }
 
-    public PrometheusMetricWriter(Writer writer) {
-        this.writer = writer;
+    public PrometheusMetricWriter(OutputStream outputStream, ExpositionFormat format) {
+        this.outputStream = outputStream;
+        this.builder = new ExpositionBuffer(outputStream);
+        this.format = format;
+        this.encoder = (format == ExpositionFormat.PROTOBUF) ? new ProtobufEncoder(builder) : null;
     }
 
     public void write(Map<String, MetricRegistry> metricRegistries) throws IOException {
-        StringBuilder builder = new StringBuilder();
-        for(Map.Entry<String, MetricRegistry> entry : metricRegistries.entrySet()) {
-            writeMetricsAsPrometheus(builder, entry.getKey(), entry.getValue());
+        try {
+            for (Map.Entry<String, MetricRegistry> entry : metricRegistries.entrySet()) {
+                writeMetricsAsPrometheus(entry.getKey(), entry.getValue());
+            }
+            writeEnd();
+        } finally {
+            close();
         }
-        serialize(builder);
     }
 
     public void write(String registryName, MetricRegistry registry) throws IOException {
-        StringBuilder builder = new StringBuilder();
-        writeMetricsAsPrometheus(builder, registryName, registry);
-        serialize(builder);
+        try {
+            writeMetricsAsPrometheus(registryName, registry);
+            writeEnd();
+        } finally {
+            close();
+        }
     }
 
     public void write(String registryName, MetricRegistry registry, String metricName) throws IOException {
-        StringBuilder builder = new StringBuilder();
-        writeMetricsAsPrometheus(builder, registryName, registry, metricName);
-        serialize(builder);
+        try {
+            writeMetricsAsPrometheus(registryName, registry, metricName);
+            writeEnd();
+        } finally {
+            close();
+        }
     }
 
-    private void writeMetricsAsPrometheus(StringBuilder builder, String registryName, MetricRegistry registry) {
-        writeMetricMapAsPrometheus(builder, registryName, registry.getMetrics(), registry.getMetadata());
+    /**
+     * Writes the selected metrics.
+     *
+     * @param selectedMetrics metric adapters, mapped by registry name
+     */
+    public void writeSelected(Map<String, SortedMap<String, MetricAdapter>> selectedMetrics) throws IOException {
+        try {
+            for (SortedMap<String, MetricAdapter> adapters : selectedMetrics.values()) {
+                for (MetricAdapter adapter : adapters.values()) {
+                    writeMetricAsPrometheus(adapter.getMetric(), adapter.getPrometheusMetadata());
+                }
+            }
+            writeEnd();
+        } finally {
+            close();
+        }
     }
 
-    private void writeMetricsAsPrometheus(StringBuilder builder, String registryName, MetricRegistry registry,
-                                          String metricName) {
-        writeMetricMapAsPrometheus(builder, registryName,
-                Collections.singletonMap(metricName, registry.getMetrics().get(metricName)), registry.getMetadata());
+    private void writeMetricsAsPrometheus(String registryName, MetricRegistry registry) throws IOException {
+        if (registry instanceof MetricRegistryImpl) {
+            for (MetricAdapter adapter : ((MetricRegistryImpl) registry).getMetricAdapters().values()) {
+                writeMetricAsPrometheus(adapter.getMetric(), adapter.getPrometheusMetadata());
+            }
+        } else {
+            Map<String, Metadata> metadata = registry.getMetadata();
+            for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+                writeMetricAsPrometheus(entry.getValue(),
+                        new PrometheusMetadata(registryName, metadata.get(entry.getKey())));
+            }
+        }
     }
 
-    private void writeMetricMapAsPrometheus(StringBuilder builder, String registryName, Map<String, Metric> metricMap,
-                                            Map<String, Metadata> metricMetadataMap) {
-        for (Map.Entry<String, Metric> entry : metricMap.entrySet()) {
-            String metricNamePrometheus = registryName + ":" + entry.getKey();
-            Metric metric = entry.getValue();
-            String entryName = entry.getKey();
-
-            //description
-            Metadata metricMetaData = metricMetadataMap.get(entryName);
-
-            String description;
-
-            if (metricMetaData.getDescription() == null || metricMetaData.getDescription().trim().isEmpty()) {
-                description = "";
-            } else {
-                description = metricMetaData.getDescription().trim();
+    private void writeMetricsAsPrometheus(String registryName, MetricRegistry registry, String metricName)
+            throws IOException {
+        if (registry instanceof MetricRegistryImpl) {
+            MetricAdapter adapter = ((MetricRegistryImpl) registry).getMetricAdapters().get(metricName);
+            if (adapter != null) {
+                writeMetricAsPrometheus(adapter.getMetric(), adapter.getPrometheusMetadata());
             }
+        } else {
+            Metric metric = registry.getMetrics().get(metricName);
+            if (metric != null) {
+                writeMetricAsPrometheus(metric,
+                        new PrometheusMetadata(registryName, registry.getMetadata().get(metricName)));
+            }
+        }
+    }
 
-            String tags = metricMetaData.getTagsAsString();
-
-            //appending unit to the metric name
-            String unit = metricMetaData.getUnit();
-
-            //Unit determination / translation
-            double conversionFactor;
-            String appendUnit;
-
-            if (unit == null || unit.trim().isEmpty() || unit.equals(MetricUnits.NONE)) {
-
-                conversionFactor = Double.NaN;
-                appendUnit = null;
-
-            } else if (unit.equals(MetricUnits.NANOSECONDS)) {
-
-                conversionFactor = 0.000000001;
-                appendUnit = APPENDEDSECONDS;
-
-            } else if (unit.equals(MetricUnits.MICROSECONDS)) {
-
-                conversionFactor = 0.000001;
-                appendUnit = APPENDEDSECONDS;
-
-            } else if (unit.equals(MetricUnits.MILLISECONDS)) {
-
-                conversionFactor = 0.001;
-                appendUnit = APPENDEDSECONDS;
-
-            } else if (unit.equals(MetricUnits.SECONDS)) {
-
-                conversionFactor = 1;
-                appendUnit = APPENDEDSECONDS;
-
-            } else if (unit.equals(MetricUnits.MINUTES)) {
-
-                conversionFactor = 60;
-                appendUnit = APPENDEDSECONDS;
-
-            } else if (unit.equals(MetricUnits.HOURS)) {
-
-                conversionFactor = 3600;
-                appendUnit = APPENDEDSECONDS;
-
-            } else if (unit.equals(MetricUnits.DAYS)) {
-
-                conversionFactor = 86400;
-                appendUnit = APPENDEDSECONDS;
-
-            } else if (unit.equals(MetricUnits.PERCENT)) {
-
-                conversionFactor = Double.NaN;
-                appendUnit = APPENDEDPERCENT;
-
-            } else if (unit.equals(MetricUnits.BYTES)) {
-
-                conversionFactor = 1;
-                appendUnit = APPENDEDBYTES;
-
-            } else if (unit.equals(MetricUnits.KILOBYTES)) {
-
-                conversionFactor = 1024;
-                appendUnit = APPENDEDBYTES;
-
-            } else if (unit.equals(MetricUnits.MEGABYTES)) {
-
-                conversionFactor = 1048576;
-                appendUnit = APPENDEDBYTES;
-
-            } else if (unit.equals(MetricUnits.GIGABYTES)) {
-
-                conversionFactor = 1073741824;
-                appendUnit = APPENDEDBYTES;
-
-            } else if (unit.equals(MetricUnits.KILOBITS)) {
-
-                conversionFactor = 125;
-                appendUnit = APPENDEDBYTES;
-
-            } else if (unit.equals(MetricUnits.MEGABITS)) {
-
-                conversionFactor = 125000;
-                appendUnit = APPENDEDBYTES;
-
-            } else if (unit.equals(MetricUnits.GIGABITS)) {
-
-                conversionFactor = 1.25e+8;
-                appendUnit = APPENDEDBYTES;
-
-            } else if (unit.equals(MetricUnits.KIBIBITS)) {
-
-                conversionFactor = 128;
-                appendUnit = APPENDEDBYTES;
-
-            } else if (unit.equals(MetricUnits.MEBIBITS)) {
-
-                conversionFactor = 131072;
-                appendUnit = APPENDEDBYTES;
-
-            } else if (unit.equals(MetricUnits.GIBIBITS)) {
-
-                conversionFactor = 1.342e+8;
-                appendUnit = APPENDEDBYTES;
+    private void writeMetricAsPrometheus(Metric metric, PrometheusMetadata metadata) throws IOException {
+        if (encoder != null) {
+            writeMetricAsProtobuf(metric, metadata);
+            return;
+        }
 
-            } else {
+        if (Counter.class.isInstance(metric)) {
+            PrometheusBuilder.buildCounter(builder, (Counter) metric, metadata, format);
+        } else if (Gauge.class.isInstance(metric)) {
+            PrometheusBuilder.buildGauge(builder, (Gauge) metric, metadata, format);
+        } else if (Timer.class.isInstance(metric)) {
+            PrometheusBuilder.buildTimer(builder, (Timer) metric, metadata, format);
+        } else if (Histogram.class.isInstance(metric)) {
+            PrometheusBuilder.buildHistogram(builder, (Histogram) metric, metadata, format);
+        } else if (Meter.class.isInstance(metric)) {
+            PrometheusBuilder.buildMeter(builder, (Meter) metric, metadata, format);
+        } else {
+            log.warning("Metric type '" + metric.getClass() + " for " + metadata.getName() + " is invalid.");
+        }
+    }
 
-                conversionFactor = Double.NaN;
-                appendUnit = "_" + unit;
-            }
+    private void writeMetricAsProtobuf(Metric metric, PrometheusMetadata metadata) throws IOException {
+        if (Counter.class.isInstance(metric)) {
+            ProtobufBuilder.buildCounter(encoder, (Counter) metric, metadata);
+        } else if (Gauge.class.isInstance(metric)) {
+            ProtobufBuilder.buildGauge(encoder, (Gauge) metric, metadata);
+        } else if (Timer.class.isInstance(metric)) {
+            ProtobufBuilder.buildTimer(encoder, (Timer) metric, metadata);
+        } else if (Histogram.class.isInstance(metric)) {
+            ProtobufBuilder.buildHistogram(encoder, (Histogram) metric, metadata);
+        } else if (Meter.class.isInstance(metric)) {
+            ProtobufBuilder.buildMeter(encoder, (Meter) metric, metadata);
+        } else {
+            log.warning("Metric type '" + metric.getClass() + " for " + metadata.getName() + " is invalid.");
+        }
+    }
 
-            if (Counter.class.isInstance(metric)) {
-                PrometheusBuilder.buildCounter(builder, metricNamePrometheus, (Counter) metric, description, tags);
-            } else if (Gauge.class.isInstance(metric)) {
-                PrometheusBuilder.buildGauge(builder, metricNamePrometheus, (Gauge) metric, description,
-                        conversionFactor, tags, appendUnit);
-            } else if (Timer.class.isInstance(metric)) {
-                PrometheusBuilder.buildTimer(builder, metricNamePrometheus, (Timer) metric, description, tags);
-            } else if (Histogram.class.isInstance(metric)) {
-                PrometheusBuilder.buildHistogram(builder, metricNamePrometheus, (Histogram) metric, description,
-                        conversionFactor, tags, appendUnit);
-            } else if (Meter.class.isInstance(metric)) {
-                PrometheusBuilder.buildMeter(builder, metricNamePrometheus, (Meter) metric, description, tags);
-            } else {
-                log.warning("Metric type '" + metric.getClass() + " for " + entryName + " is invalid.");
-            }
+    private void writeEnd() throws IOException {
+        if (format == ExpositionFormat.OPENMETRICS) {
+            builder.append("# EOF\n");
         }
     }
 
-    private void serialize(StringBuilder builder) throws IOException {
+    private void close() throws IOException {
         try {
-            writer.write(builder.toString());
+            builder.flush();
         } finally {
-            writer.close();
+            outputStream.close();
         }
     }
 }
@@ -0,0 +1,397 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+import com.kumuluz.ee.metrics.api.CounterImpl;
+import com.kumuluz.ee.metrics.api.DoubleGauge;
+import com.kumuluz.ee.metrics.api.Exemplar;
+import com.kumuluz.ee.metrics.api.HistogramBuckets;
+import com.kumuluz.ee.metrics.api.HistogramImpl;
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.api.MeterImpl;
+import com.kumuluz.ee.metrics.api.TimerImpl;
+import org.eclipse.microprofile.metrics.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Prometheus protobuf metrics builders.
+ *
+ * Each metric family is written as a length-delimited io.prometheus.client.MetricFamily message. Families and their
+ * names are the same as in the text format. Family headers, labels and bucket boundaries are encoded once into a
+ * {@link ProtobufTemplate}, which is kept in the metric's {@link PrometheusMetadata}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ProtobufBuilder {
+
+    private static final Logger log = Logger.getLogger(ProtobufBuilder.class.getName());
+
+    // MetricFamily fields
+    private static final int FAMILY_NAME = 1;
+    private static final int FAMILY_HELP = 2;
+    private static final int FAMILY_TYPE = 3;
+    private static final int FAMILY_METRIC = 4;
+    private static final int FAMILY_UNIT = 5;
+
+    // MetricType values
+    private static final int TYPE_COUNTER = 0;
+    private static final int TYPE_GAUGE = 1;
+    private static final int TYPE_SUMMARY = 2;
+    private static final int TYPE_HISTOGRAM = 4;
+
+    // Metric fields
+    private static final int METRIC_LABEL = 1;
+    private static final int METRIC_GAUGE = 2;
+    private static final int METRIC_COUNTER = 3;
+    private static final int METRIC_SUMMARY = 4;
+    private static final int METRIC_HISTOGRAM = 7;
+
+    // LabelPair fields
+    private static final int LABEL_NAME = 1;
+    private static final int LABEL_VALUE = 2;
+
+    // Gauge and Counter fields
+    private static final int VALUE = 1;
+    private static final int COUNTER_EXEMPLAR = 2;
+    private static final int COUNTER_CREATED = 3;
+
+    // Summary and Quantile fields
+    private static final int SUMMARY_SAMPLE_COUNT = 1;
+    private static final int SUMMARY_QUANTILE = 3;
+    private static final int SUMMARY_CREATED = 4;
+    private static final int QUANTILE_QUANTILE = 1;
+    private static final int QUANTILE_VALUE = 2;
+
+    // Histogram and Bucket fields
+    private static final int HISTOGRAM_SAMPLE_COUNT = 1;
+    private static final int HISTOGRAM_SAMPLE_SUM = 2;
+    private static final int HISTOGRAM_BUCKET = 3;
+    private static final int HISTOGRAM_CREATED = 15;
+    private static final int BUCKET_CUMULATIVE_COUNT = 1;
+    private static final int BUCKET_UPPER_BOUND = 2;
+    private static final int BUCKET_EXEMPLAR = 3;
+
+    // Exemplar and Timestamp fields
+    private static final int EXEMPLAR_LABEL = 1;
+    private static final int EXEMPLAR_VALUE = 2;
+    private static final int EXEMPLAR_TIMESTAMP = 3;
+    private static final int TIMESTAMP_SECONDS = 1;
+    private static final int TIMESTAMP_NANOS = 2;
+
+    private static final double NANOSECONDS_TO_SECONDS = 0.000000001;
+
+    public static void buildGauge(ProtobufEncoder encoder, Gauge<?> gauge, PrometheusMetadata metadata)
+            throws IOException {
+        double conversionFactor = metadata.getConversionFactor();
+
+        double value;
+        // primitive gauges are read without boxing
+        if (gauge instanceof LongGauge) {
+            value = ((LongGauge) gauge).getLongValue();
+        } else if (gauge instanceof DoubleGauge) {
+            value = ((DoubleGauge) gauge).getDoubleValue();
+        } else {
+            Object gaugeValue = gauge.getValue();
+            if (!Number.class.isInstance(gaugeValue)) {
+                log.info("Skipping Prometheus output for Gauge: " + metadata.getName() + " of type " +
+                        (gaugeValue == null ? null : gaugeValue.getClass()));
+                return;
+            }
+            value = ((Number) gaugeValue).doubleValue();
+        }
+
+        if (!Double.isNaN(conversionFactor)) {
+            value *= conversionFactor;
+        }
+
+        ProtobufTemplate template = metadata.getProtobufTemplate();
+        if (template == null) {
+            ProtobufTemplate.Builder templateBuilder = new ProtobufTemplate.Builder(encodeLabels(metadata));
+            templateBuilder.familyHeader(encodeFamilyHeader(metadata.getName(), metadata.getDescription(),
+                    TYPE_GAUGE, metadata.getAppendUnit()));
+            template = setTemplate(metadata, templateBuilder);
+        }
+
+        writeGauge(encoder, template, 0, value);
+    }
+
+    public static void buildCounter(ProtobufEncoder encoder, Counter counter, PrometheusMetadata metadata)
+            throws IOException {
+        ProtobufTemplate template = metadata.getProtobufTemplate();
+        if (template == null) {
+            ProtobufTemplate.Builder templateBuilder = new ProtobufTemplate.Builder(encodeLabels(metadata));
+            templateBuilder.familyHeader(encodeFamilyHeader(metadata.getName(), metadata.getDescription(),
+                    TYPE_COUNTER, null));
+            template = setTemplate(metadata, templateBuilder);
+        }
+
+        Exemplar exemplar = counter instanceof CounterImpl ? ((CounterImpl) counter).getExemplar() : null;
+        writeCounter(encoder, template, 0, counter.getCount(), exemplar, metadata.getCreated());
+    }
+
+    public static void buildTimer(ProtobufEncoder encoder, Timer timer, PrometheusMetadata metadata)
+            throws IOException {
+        HistogramBuckets buckets = timer instanceof TimerImpl ? ((TimerImpl) timer).getBuckets() : null;
+
+        ProtobufTemplate template = metadata.getProtobufTemplate();
+        if (template == null) {
+            ProtobufTemplate.Builder templateBuilder = new ProtobufTemplate.Builder(encodeLabels(metadata));
+            buildMeteredTemplate(templateBuilder, metadata.getName());
+            buildSamplingTemplate(templateBuilder, metadata, "_seconds", buckets, NANOSECONDS_TO_SECONDS);
+            template = setTemplate(metadata, templateBuilder);
+        }
+
+        int index = writeMetered(encoder, template, 0, timer);
+        writeSampling(encoder, template, index, timer, timer, NANOSECONDS_TO_SECONDS, buckets,
+                metadata.getCreated());
+    }
+
+    public static void buildHistogram(ProtobufEncoder encoder, Histogram histogram, PrometheusMetadata metadata)
+            throws IOException {
+        HistogramBuckets buckets = histogram instanceof HistogramImpl ? ((HistogramImpl) histogram).getBuckets() : null;
+
+        ProtobufTemplate template = metadata.getProtobufTemplate();
+        if (template == null) {
+            ProtobufTemplate.Builder templateBuilder = new ProtobufTemplate.Builder(encodeLabels(metadata));
+            buildSamplingTemplate(templateBuilder, metadata, metadata.getAppendUnit(), buckets,
+                    metadata.getConversionFactor());
+            template = setTemplate(metadata, templateBuilder);
+        }
+
+        writeSampling(encoder, template, 0, histogram, histogram, metadata.getConversionFactor(), buckets,
+                metadata.getCreated());
+    }
+
+    public static void buildMeter(ProtobufEncoder encoder, Meter meter, PrometheusMetadata metadata)
+            throws IOException {
+        ProtobufTemplate template = metadata.getProtobufTemplate();
+        if (template == null) {
+            ProtobufTemplate.Builder templateBuilder = new ProtobufTemplate.Builder(encodeLabels(metadata));
+            templateBuilder.familyHeader(encodeFamilyHeader(metadata.getName() + "_total",
+                    metadata.getDescription(), TYPE_COUNTER, null));
+            buildMeteredTemplate(templateBuilder, metadata.getName());
+            template = setTemplate(metadata, templateBuilder);
+        }
+
+        Exemplar exemplar = meter instanceof MeterImpl ? ((MeterImpl) meter).getExemplar() : null;
+        int index = writeCounter(encoder, template, 0, meter.getCount(), exemplar, metadata.getCreated());
+        writeMetered(encoder, template, index, meter);
+    }
+
+    private static ProtobufTemplate setTemplate(PrometheusMetadata metadata, ProtobufTemplate.Builder templateBuilder) {
+        ProtobufTemplate template = templateBuilder.build();
+        metadata.setProtobufTemplate(template);
+        return template;
+    }
+
+    private static void buildSamplingTemplate(ProtobufTemplate.Builder builder, PrometheusMetadata metadata,
+                                              String appendUnit, HistogramBuckets buckets,
+                                              double conversionFactor) {
+        String name = metadata.getName();
+
+        builder.familyHeader(encodeFamilyHeader(name + "_mean", null, TYPE_GAUGE, appendUnit));
+        builder.familyHeader(encodeFamilyHeader(name + "_max", null, TYPE_GAUGE, appendUnit));
+        builder.familyHeader(encodeFamilyHeader(name + "_min", null, TYPE_GAUGE, appendUnit));
+        builder.familyHeader(encodeFamilyHeader(name + "_stddev", null, TYPE_GAUGE, appendUnit));
+
+        builder.familyHeader(encodeFamilyHeader(name, metadata.getDescription(),
+                buckets != null ? TYPE_HISTOGRAM : TYPE_SUMMARY, appendUnit));
+
+        if (buckets != null) {
+            double[] upperBounds = new double[buckets.size()];
+            for (int i = 0; i < upperBounds.length; i++) {
+                upperBounds[i] = PrometheusBuilder.convertUpperBound(buckets.getUpperBound(i), conversionFactor);
+            }
+            builder.upperBounds(upperBounds);
+        }
+    }
+
+    private static void buildMeteredTemplate(ProtobufTemplate.Builder builder, String name) {
+        builder.familyHeader(encodeFamilyHeader(name + "_rate_" + MetricUnits.PER_SECOND, null, TYPE_GAUGE, null));
+        builder.familyHeader(encodeFamilyHeader(name + "_one_min_rate_" + MetricUnits.PER_SECOND, null, TYPE_GAUGE,
+                null));
+        builder.familyHeader(encodeFamilyHeader(name + "_five_min_rate_" + MetricUnits.PER_SECOND, null, TYPE_GAUGE,
+                null));
+        builder.familyHeader(encodeFamilyHeader(name + "_fifteen_min_rate_" + MetricUnits.PER_SECOND, null,
+                TYPE_GAUGE, null));
+    }
+
+    /*
+     * Name of the family is the metric name with the unit appended, the same as in the text format.
+     */
+    private static byte[] encodeFamilyHeader(String name, String description, int type, String appendUnit) {
+        ProtobufEncoder encoder = new ProtobufEncoder(null);
+        encoder.writeString(FAMILY_NAME, appendUnit == null ? name : name + appendUnit);
+        if (description != null && !description.isEmpty()) {
+            encoder.writeString(FAMILY_HELP, description);
+        }
+        encoder.writeEnum(FAMILY_TYPE, type);
+        if (appendUnit != null) {
+            encoder.writeString(FAMILY_UNIT, appendUnit.substring(1));
+        }
+
+        return encoder.toByteArray();
+    }
+
+    private static byte[] encodeLabels(PrometheusMetadata metadata) {
+        ProtobufEncoder encoder = new ProtobufEncoder(null);
+        for (Map.Entry<String, String> tag : metadata.getTagMap().entrySet()) {
+            int label = encoder.beginMessage(METRIC_LABEL);
+            encoder.writeString(LABEL_NAME, tag.getKey());
+            encoder.writeString(LABEL_VALUE, tag.getValue());
+            encoder.endMessage(label);
+        }
+
+        return encoder.toByteArray();
+    }
+
+    private static int writeSampling(ProtobufEncoder encoder, ProtobufTemplate template, int index,
+                                     Sampling sampling, Counting counting, double conversionFactor,
+                                     HistogramBuckets buckets, long created) throws IOException {
+
+        // take a single snapshot, so all the values are consistent and the reservoir is only copied once
+        Snapshot snapshot = sampling.getSnapshot();
+        double factor = Double.isNaN(conversionFactor) ? 1 : conversionFactor;
+
+        writeGauge(encoder, template, index++, snapshot.getMean() * factor);
+        writeGauge(encoder, template, index++, snapshot.getMax() * factor);
+        writeGauge(encoder, template, index++, snapshot.getMin() * factor);
+        writeGauge(encoder, template, index++, snapshot.getStdDev() * factor);
+
+        encoder.writeRaw(template.getFamilyHeader(index++));
+        int metric = encoder.beginMessage(FAMILY_METRIC);
+        encoder.writeRaw(template.getLabels());
+
+        if (buckets != null) {
+            long[] cumulativeCounts = buckets.getCumulativeCounts();
+            double[] upperBounds = template.getUpperBounds();
+
+            int histogram = encoder.beginMessage(METRIC_HISTOGRAM);
+            encoder.writeUInt64(HISTOGRAM_SAMPLE_COUNT, cumulativeCounts[cumulativeCounts.length - 1]);
+            encoder.writeDouble(HISTOGRAM_SAMPLE_SUM, buckets.getSum() * factor);
+            // the +Inf bucket is implied by the sample count
+            for (int i = 0; i < upperBounds.length; i++) {
+                int bucket = encoder.beginMessage(HISTOGRAM_BUCKET);
+                encoder.writeUInt64(BUCKET_CUMULATIVE_COUNT, cumulativeCounts[i]);
+                encoder.writeDouble(BUCKET_UPPER_BOUND, upperBounds[i]);
+                writeExemplar(encoder, BUCKET_EXEMPLAR, buckets.getExemplar(i), factor);
+                encoder.endMessage(bucket);
+            }
+            writeTimestamp(encoder, HISTOGRAM_CREATED, created);
+            encoder.endMessage(histogram);
+        } else {
+            int summary = encoder.beginMessage(METRIC_SUMMARY);
+            encoder.writeUInt64(SUMMARY_SAMPLE_COUNT, counting.getCount());
+            writeQuantile(encoder, 0.5, snapshot.getMedian() * factor);
+            writeQuantile(encoder, 0.75, snapshot.get75thPercentile() * factor);
+            writeQuantile(encoder, 0.95, snapshot.get95thPercentile() * factor);
+            writeQuantile(encoder, 0.98, snapshot.get98thPercentile() * factor);
+            writeQuantile(encoder, 0.99, snapshot.get99thPercentile() * factor);
+            writeQuantile(encoder, 0.999, snapshot.get999thPercentile() * factor);
+            writeTimestamp(encoder, SUMMARY_CREATED, created);
+            encoder.endMessage(summary);
+        }
+
+        encoder.endMessage(metric);
+        encoder.writeDelimited();
+
+        return index;
+    }
+
+    private static int writeMetered(ProtobufEncoder encoder, ProtobufTemplate template, int index,
+                                    Metered metered) throws IOException {
+        writeGauge(encoder, template, index++, metered.getMeanRate());
+        writeGauge(encoder, template, index++, metered.getOneMinuteRate());
+        writeGauge(encoder, template, index++, metered.getFiveMinuteRate());
+        writeGauge(encoder, template, index++, metered.getFifteenMinuteRate());
+
+        return index;
+    }
+
+    private static void writeGauge(ProtobufEncoder encoder, ProtobufTemplate template, int index, double value)
+            throws IOException {
+        encoder.writeRaw(template.getFamilyHeader(index));
+        int metric = encoder.beginMessage(FAMILY_METRIC);
+        encoder.writeRaw(template.getLabels());
+        int gauge = encoder.beginMessage(METRIC_GAUGE);
+        encoder.writeDouble(VALUE, value);
+        encoder.endMessage(gauge);
+        encoder.endMessage(metric);
+
+        encoder.writeDelimited();
+    }
+
+    private static int writeCounter(ProtobufEncoder encoder, ProtobufTemplate template, int index, long value,
+                                    Exemplar exemplar, long created) throws IOException {
+        encoder.writeRaw(template.getFamilyHeader(index));
+        int metric = encoder.beginMessage(FAMILY_METRIC);
+        encoder.writeRaw(template.getLabels());
+        int counter = encoder.beginMessage(METRIC_COUNTER);
+        encoder.writeDouble(VALUE, value);
+        writeExemplar(encoder, COUNTER_EXEMPLAR, exemplar, 1);
+        writeTimestamp(encoder, COUNTER_CREATED, created);
+        encoder.endMessage(counter);
+        encoder.endMessage(metric);
+
+        encoder.writeDelimited();
+        return index + 1;
+    }
+
+    private static void writeQuantile(ProtobufEncoder encoder, double quantile, double value) {
+        int message = encoder.beginMessage(SUMMARY_QUANTILE);
+        encoder.writeDouble(QUANTILE_QUANTILE, quantile);
+        encoder.writeDouble(QUANTILE_VALUE, value);
+        encoder.endMessage(message);
+    }
+
+    private static void writeExemplar(ProtobufEncoder encoder, int fieldNumber, Exemplar exemplar, double factor) {
+        if (exemplar == null) {
+            return;
+        }
+
+        int message = encoder.beginMessage(fieldNumber);
+        int label = encoder.beginMessage(EXEMPLAR_LABEL);
+        encoder.writeString(LABEL_NAME, "trace_id");
+        encoder.writeString(LABEL_VALUE, exemplar.getTraceId());
+        encoder.endMessage(label);
+        encoder.writeDouble(EXEMPLAR_VALUE, exemplar.getValue() * factor);
+        writeTimestamp(encoder, EXEMPLAR_TIMESTAMP, exemplar.getTimestamp());
+        encoder.endMessage(message);
+    }
+
+    /*
+     * Writes milliseconds since the epoch as a google.protobuf.Timestamp, unless the time is unknown (0).
+     */
+    private static void writeTimestamp(ProtobufEncoder encoder, int fieldNumber, long millis) {
+        if (millis <= 0) {
+            return;
+        }
+
+        int message = encoder.beginMessage(fieldNumber);
+        encoder.writeUInt64(TIMESTAMP_SECONDS, millis / 1000);
+        encoder.writeUInt64(TIMESTAMP_NANOS, (millis % 1000) * 1000000);
+        encoder.endMessage(message);
+    }
+}
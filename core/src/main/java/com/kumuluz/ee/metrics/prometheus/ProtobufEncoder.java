@@ -0,0 +1,243 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+import java.io.IOException;
+
+/**
+ * Minimal protocol buffers encoder, which writes length-delimited messages to an {@link ExpositionBuffer}.
+ *
+ * A message is encoded into a reusable buffer. Nested messages are written in place and their bodies are shifted
+ * behind the length prefix, once their length is known, so no intermediate objects or arrays are created. Strings
+ * are encoded as UTF-8 directly into the buffer.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ProtobufEncoder {
+
+    private static final int INITIAL_SIZE = 1024;
+    private static final int MAX_VARINT_LENGTH = 10;
+
+    private static final int WIRETYPE_VARINT = 0;
+    private static final int WIRETYPE_FIXED64 = 1;
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+
+    private final ExpositionBuffer output;
+    private final byte[] lengthPrefix;
+    private byte[] buffer;
+    private int position;
+
+    public ProtobufEncoder(ExpositionBuffer output) {
+        this.output = output;
+        this.lengthPrefix = new byte[MAX_VARINT_LENGTH];
+        this.buffer = new byte[INITIAL_SIZE];
+        this.position = 0;
+    }
+
+    /**
+     * Starts a nested message.
+     *
+     * @param fieldNumber field number of the message
+     * @return start of the message body, which has to be passed to {@link #endMessage(int)}
+     */
+    public int beginMessage(int fieldNumber) {
+        writeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED);
+        return position;
+    }
+
+    /**
+     * Ends a nested message by inserting its length in front of the body.
+     *
+     * @param start start of the message body, returned by {@link #beginMessage(int)}
+     */
+    public void endMessage(int start) {
+        int length = position - start;
+        int prefixLength = varintSize(length);
+
+        ensureCapacity(prefixLength);
+        System.arraycopy(buffer, start, buffer, start + prefixLength, length);
+
+        // capacity for the prefix is already reserved, the buffer must not grow while the position is rewound
+        position = start;
+        for (long value = length; ; value >>>= 7) {
+            if ((value & ~0x7FL) == 0) {
+                buffer[position++] = (byte) value;
+                break;
+            }
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        }
+        position += length;
+    }
+
+    /**
+     * Writes the encoded top-level message with a varint length prefix to the output and clears the buffer.
+     */
+    public void writeDelimited() throws IOException {
+        long length = position;
+        int prefixLength = 0;
+        while ((length & ~0x7FL) != 0) {
+            lengthPrefix[prefixLength++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        lengthPrefix[prefixLength++] = (byte) length;
+
+        output.write(lengthPrefix, 0, prefixLength);
+        output.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Discards the current message.
+     */
+    public void clear() {
+        position = 0;
+    }
+
+    public void writeString(int fieldNumber, String value) {
+        writeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED);
+        writeVarint(utf8Length(value));
+        writeUtf8(value);
+    }
+
+    public void writeBytes(int fieldNumber, byte[] value) {
+        writeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED);
+        writeVarint(value.length);
+        writeRaw(value);
+    }
+
+    public void writeDouble(int fieldNumber, double value) {
+        writeTag(fieldNumber, WIRETYPE_FIXED64);
+        ensureCapacity(8);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < 8; i++) {
+            buffer[position++] = (byte) (bits >>> (8 * i));
+        }
+    }
+
+    public void writeUInt64(int fieldNumber, long value) {
+        writeTag(fieldNumber, WIRETYPE_VARINT);
+        writeVarint(value);
+    }
+
+    public void writeEnum(int fieldNumber, int value) {
+        writeUInt64(fieldNumber, value);
+    }
+
+    /**
+     * Writes already encoded fields.
+     */
+    public void writeRaw(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buffer, position, value.length);
+        position += value.length;
+    }
+
+    /**
+     * @return encoded message
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[position];
+        System.arraycopy(buffer, 0, bytes, 0, position);
+        return bytes;
+    }
+
+    private void writeTag(int fieldNumber, int wireType) {
+        writeVarint((fieldNumber << 3) | wireType);
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(MAX_VARINT_LENGTH);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeUtf8(String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            ensureCapacity(4);
+
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced the same way as in String.getBytes()
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static int utf8Length(String value) {
+        int length = value.length();
+        int utf8Length = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    // surrogate pair of two chars is encoded with four bytes
+                    utf8Length += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    utf8Length += 2;
+                }
+            } else if (c >= 0x80) {
+                utf8Length++;
+            }
+        }
+
+        return utf8Length;
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+
+        return size;
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + length)];
+            System.arraycopy(buffer, 0, newBuffer, 0, position);
+            buffer = newBuffer;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-encoded parts of a metric's protobuf exposition, which do not change between scrapes.
+ *
+ * The template holds the encoded header fields (name, help, type and unit) of each metric family, the encoded labels
+ * of the metric and the converted bucket boundaries. Fields of a message may be written in any order, so the headers
+ * are written as they are, followed by the metric with its values.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ProtobufTemplate {
+
+    private final byte[][] familyHeaders;
+    private final byte[] labels;
+    private final double[] upperBounds;
+
+    private ProtobufTemplate(byte[][] familyHeaders, byte[] labels, double[] upperBounds) {
+        this.familyHeaders = familyHeaders;
+        this.labels = labels;
+        this.upperBounds = upperBounds;
+    }
+
+    public byte[] getFamilyHeader(int index) {
+        return familyHeaders[index];
+    }
+
+    /**
+     * @return encoded label fields of the Metric message
+     */
+    public byte[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return converted upper bounds of the histogram buckets or null, if the metric has no buckets
+     */
+    public double[] getUpperBounds() {
+        return upperBounds;
+    }
+
+    /**
+     * Builder for the {@link ProtobufTemplate}. Family headers are indexed in the order they are added.
+     */
+    public static class Builder {
+
+        private final List<byte[]> familyHeaders = new ArrayList<>();
+        private final byte[] labels;
+        private double[] upperBounds;
+
+        public Builder(byte[] labels) {
+            this.labels = labels;
+        }
+
+        public Builder familyHeader(byte[] familyHeader) {
+            familyHeaders.add(familyHeader);
+            return this;
+        }
+
+        public Builder upperBounds(double[] upperBounds) {
+            this.upperBounds = upperBounds;
+            return this;
+        }
+
+        public ProtobufTemplate build() {
+            return new ProtobufTemplate(familyHeaders.toArray(new byte[familyHeaders.size()][]), labels,
+                    upperBounds);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.reporters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kumuluz.ee.metrics.json.MetricsModule;
+import com.kumuluz.ee.metrics.json.models.DeltaMetricsPayload;
+import com.kumuluz.ee.metrics.json.models.MetricsPayload;
+import com.kumuluz.ee.metrics.utils.MetricsDeltaTracker;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Encodes registries as a JSON {@link MetricsPayload} or, when a delta tracker is used, as a
+ * {@link DeltaMetricsPayload}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class JsonReportFormat implements ReportFormat {
+
+    /**
+     * Format with all metrics, shared by all reporters.
+     */
+    public static final JsonReportFormat FULL = new JsonReportFormat(null);
+
+    private final ObjectMapper mapper;
+    private final MetricsDeltaTracker deltaTracker;
+
+    /**
+     * @param deltaTracker If not null, only metrics which changed since the previous report are encoded
+     */
+    public JsonReportFormat(MetricsDeltaTracker deltaTracker) {
+        this.mapper = (new ObjectMapper()).registerModule(new MetricsModule(false));
+        this.deltaTracker = deltaTracker;
+    }
+
+    @Override
+    public byte[] encode(Map<String, MetricRegistry> registries) throws IOException {
+        if (deltaTracker == null) {
+            return mapper.writeValueAsBytes(new MetricsPayload(registries));
+        }
+
+        DeltaMetricsPayload payload = deltaTracker.report(registries);
+        return payload == null ? null : mapper.writeValueAsBytes(payload);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.reporters;
+
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.Metric;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps per-metric state of a reporter (e.g. encoded names and previously reported counts) across reports.
+ *
+ * State is kept by metadata, which all reports share with the metric, or by the metric itself, if it has no metadata.
+ * State of metrics, which were not reported in the last report, is forgotten at the end of the report. The cache is
+ * not thread-safe.
+ *
+ * @param <S> type of the state
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class MetricStateCache<S> {
+
+    /**
+     * Creates the state of a metric, when it is reported for the first time.
+     */
+    public interface StateFactory<S> {
+
+        S create(String registryName, String metricName, Metadata metadata);
+    }
+
+    private final StateFactory<S> factory;
+
+    private final Map<Object, Entry<S>> states = new IdentityHashMap<>();
+    private boolean reportParity;
+
+    public MetricStateCache(StateFactory<S> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Starts a new report.
+     */
+    public void startReport() {
+        reportParity = !reportParity;
+    }
+
+    /**
+     * Returns the state of the metric and marks it as reported in the current report.
+     */
+    public S get(String registryName, String metricName, Metric metric, Metadata metadata) {
+        Object key = metadata != null ? metadata : metric;
+        Entry<S> entry = states.get(key);
+        if (entry == null) {
+            entry = new Entry<>(factory.create(registryName, metricName, metadata));
+            states.put(key, entry);
+        }
+        entry.reportParity = reportParity;
+
+        return entry.state;
+    }
+
+    /**
+     * Ends the current report and forgets removed metrics.
+     */
+    public void endReport() {
+        Iterator<Entry<S>> iterator = states.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().reportParity != reportParity) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    private static class Entry<S> {
+
+        private final S state;
+        private boolean reportParity;
+
+        private Entry(S state) {
+            this.state = state;
+        }
+    }
+}
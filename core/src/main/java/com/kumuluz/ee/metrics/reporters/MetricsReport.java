@@ -0,0 +1,102 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.reporters;
+
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.producers.MetricRegistryProducer;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metrics of a single reporting tick. Encodings of the report are cached, so every format is encoded once, regardless
+ * of the number of reporters which use it.
+ *
+ * Values of the metrics are captured once, when the report is created, so all formats report the same counts,
+ * rates, snapshots and gauge values. Only registries, which are instances of {@link MetricRegistryImpl}, are captured,
+ * other registries are read by every format.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class MetricsReport {
+
+    private static final byte[] NOTHING_TO_REPORT = new byte[0];
+
+    private final long timestamp;
+    private final Map<String, MetricRegistry> registries;
+    private final Map<ReportFormat, byte[]> encodings = new IdentityHashMap<>();
+
+    public MetricsReport(Map<String, MetricRegistry> registries) {
+        this.timestamp = System.currentTimeMillis();
+        Map<String, MetricRegistry> snapshots = new LinkedHashMap<>();
+        for (Map.Entry<String, MetricRegistry> registry : registries.entrySet()) {
+            snapshots.put(registry.getKey(), registry.getValue() instanceof MetricRegistryImpl ?
+                    ((MetricRegistryImpl) registry.getValue()).snapshot() : registry.getValue());
+        }
+        this.registries = Collections.unmodifiableMap(snapshots);
+    }
+
+    /**
+     * Creates report of the application, base and vendor registries.
+     */
+    public static MetricsReport create() {
+        Map<String, MetricRegistry> registries = new LinkedHashMap<>();
+        registries.put("application", MetricRegistryProducer.getApplicationRegistry());
+        registries.put("base", MetricRegistryProducer.getBaseRegistry());
+        registries.put("vendor", MetricRegistryProducer.getVendorRegistry());
+
+        return new MetricsReport(registries);
+    }
+
+    /**
+     * @return time of the report in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return registries with the values of the metrics at the time of the report
+     */
+    public Map<String, MetricRegistry> getRegistries() {
+        return registries;
+    }
+
+    /**
+     * Returns the registries in the given format. The returned array is shared and must not be modified.
+     *
+     * @return encoded registries or {@code null}, if the format has nothing to report
+     */
+    public synchronized byte[] encode(ReportFormat format) throws IOException {
+        byte[] encoded = encodings.get(format);
+        if (encoded == null) {
+            encoded = format.encode(registries);
+            encodings.put(format, encoded == null ? NOTHING_TO_REPORT : encoded);
+        }
+
+        return encoded == NOTHING_TO_REPORT ? null : encoded;
+    }
+}
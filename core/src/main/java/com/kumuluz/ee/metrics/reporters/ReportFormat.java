@@ -0,0 +1,41 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.reporters;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Encoding of metric registries, shared by the reporters. Every format is encoded at most once per
+ * {@link MetricsReport}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public interface ReportFormat {
+
+    /**
+     * @return encoded registries or {@code null}, if there is nothing to report
+     */
+    byte[] encode(Map<String, MetricRegistry> registries) throws IOException;
+}
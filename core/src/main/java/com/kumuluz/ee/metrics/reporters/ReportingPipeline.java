@@ -0,0 +1,164 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.reporters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Schedules all reporters on a single thread.
+ *
+ * The pipeline ticks on the greatest common divisor of the reporter periods. On every tick a single
+ * {@link MetricsReport} is created and passed to all reporters which are due, so the metric values are captured
+ * and encoded once, regardless of the number of enabled reporters, and all reporters report the same values.
+ * Reporters can use {@link #getScheduler()} for their background work (e.g. reconnects).
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ReportingPipeline {
+
+    private static final Logger log = Logger.getLogger(ReportingPipeline.class.getName());
+
+    private static final ReportingPipeline instance = new ReportingPipeline();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kumuluzee-metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<ScheduledSink> sinks = new ArrayList<>();
+    private ScheduledFuture<?> handle;
+    private long tickNanos;
+
+    ReportingPipeline() {
+    }
+
+    public static ReportingPipeline getInstance() {
+        return instance;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Registers the reporter. The reporter receives its first report immediately.
+     */
+    public synchronized void register(ReporterSink sink) {
+        if (sink.getPeriodSeconds() <= 0) {
+            throw new IllegalArgumentException("Period of the " + sink.getName() + " reporter must be positive.");
+        }
+
+        sinks.add(new ScheduledSink(sink, System.nanoTime()));
+        reschedule();
+    }
+
+    public synchronized void unregister(ReporterSink sink) {
+        sinks.removeIf(scheduled -> scheduled.sink == sink);
+        reschedule();
+    }
+
+    private void reschedule() {
+        if (handle != null) {
+            handle.cancel(false);
+            handle = null;
+        }
+
+        if (sinks.isEmpty()) {
+            return;
+        }
+
+        long tickSeconds = 0;
+        for (ScheduledSink scheduled : sinks) {
+            tickSeconds = gcd(tickSeconds, scheduled.sink.getPeriodSeconds());
+        }
+
+        tickNanos = TimeUnit.SECONDS.toNanos(tickSeconds);
+        handle = scheduler.scheduleWithFixedDelay(this::tick, 0, tickSeconds, TimeUnit.SECONDS);
+    }
+
+    synchronized void tick() {
+        long now = System.nanoTime();
+        MetricsReport report = null;
+
+        for (ScheduledSink scheduled : sinks) {
+            // ticks may drift a bit, so reporters which are due within half a tick are reported now
+            if (scheduled.nextReport - now > tickNanos / 2) {
+                continue;
+            }
+
+            long periodNanos = TimeUnit.SECONDS.toNanos(scheduled.sink.getPeriodSeconds());
+            scheduled.nextReport += periodNanos;
+            if (scheduled.nextReport - now < 0) {
+                // skip missed reports
+                scheduled.nextReport = now + periodNanos;
+            }
+
+            if (report == null) {
+                try {
+                    report = MetricsReport.create();
+                } catch (RuntimeException e) {
+                    // the scheduled task must not throw, or no further reports are made; reporters, which are due,
+                    // are reported on the next tick
+                    scheduled.nextReport = now;
+                    log.log(Level.SEVERE, "An error occurred while reading the metrics for a report.", e);
+                    return;
+                }
+            }
+
+            try {
+                scheduled.sink.report(report);
+            } catch (RuntimeException e) {
+                // the scheduled task must not throw, or no further reports are made
+                log.log(Level.SEVERE, "An error occurred in the " + scheduled.sink.getName() + " reporter.", e);
+            }
+        }
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long tmp = a % b;
+            a = b;
+            b = tmp;
+        }
+
+        return a;
+    }
+
+    private static class ScheduledSink {
+
+        private final ReporterSink sink;
+        private long nextReport;
+
+        private ScheduledSink(ReporterSink sink, long nextReport) {
+            this.sink = sink;
+            this.nextReport = nextReport;
+        }
+    }
+}
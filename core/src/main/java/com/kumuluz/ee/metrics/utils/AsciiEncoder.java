@@ -0,0 +1,173 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.utils;
+
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes numbers and ASCII strings directly into byte buffers, without allocating intermediate strings.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public final class AsciiEncoder {
+
+    /**
+     * Maximum length of an encoded long, including the sign.
+     */
+    public static final int MAX_LONG_LENGTH = 20;
+
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    // integral doubles below this value are printed by Double.toString() without an exponent
+    private static final double MAX_JAVA_PLAIN_INTEGRAL_DOUBLE = 1e7;
+
+    // integral doubles below this value are exactly representable as longs and are written without a fraction
+    private static final double MAX_PLAIN_INTEGRAL_DOUBLE = 1e15;
+
+    private AsciiEncoder() {
+    }
+
+    /**
+     * Writes the value in the same format as {@link Long#toString(long)}. The array must have at least
+     * {@link #MAX_LONG_LENGTH} bytes available after the position.
+     *
+     * @return position after the written value
+     */
+    public static int putLong(byte[] buffer, int position, long value) {
+        if (value == Long.MIN_VALUE) {
+            System.arraycopy(MIN_LONG, 0, buffer, position, MIN_LONG.length);
+            return position + MIN_LONG.length;
+        }
+
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+
+        // digits are written from the end, so they do not have to be reversed
+        int end = position + digits(value);
+        int i = end;
+        do {
+            buffer[--i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value > 0);
+
+        return end;
+    }
+
+    /**
+     * Writes the value in the same format as {@link Long#toString(long)}.
+     *
+     * @throws BufferOverflowException if the value does not fit into the remaining buffer
+     */
+    public static void putLong(ByteBuffer buffer, long value) {
+        if (value == Long.MIN_VALUE) {
+            buffer.put(MIN_LONG);
+            return;
+        }
+
+        int length = value < 0 ? digits(-value) + 1 : digits(value);
+        if (buffer.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+
+        int end = buffer.position() + digits(value);
+        int i = end;
+        do {
+            buffer.put(--i, (byte) ('0' + (value % 10)));
+            value /= 10;
+        } while (value > 0);
+        buffer.position(end);
+    }
+
+    /**
+     * Writes a finite double. Whole numbers are written without a fraction, other values in the format of
+     * {@link Double#toString(double)}.
+     *
+     * @throws BufferOverflowException if the value does not fit into the remaining buffer
+     */
+    public static void putDouble(ByteBuffer buffer, double value) {
+        if (isWhole(value)) {
+            putLong(buffer, (long) value);
+        } else {
+            putAscii(buffer, Double.toString(value));
+        }
+    }
+
+    /**
+     * Writes a finite double without an exponent. Whole numbers are written without a fraction.
+     *
+     * @throws BufferOverflowException if the value does not fit into the remaining buffer
+     */
+    public static void putPlainDouble(ByteBuffer buffer, double value) {
+        if (isWhole(value)) {
+            putLong(buffer, (long) value);
+        } else {
+            putAscii(buffer, BigDecimal.valueOf(value).toPlainString());
+        }
+    }
+
+    /**
+     * Checks, whether {@link Double#toString(double)} prints the value as its long value followed by {@code .0}, so
+     * it can be written without allocation. Negative zero is excluded, since it is printed with a sign.
+     */
+    public static boolean isJavaPlainIntegral(double value) {
+        return Math.abs(value) < MAX_JAVA_PLAIN_INTEGRAL_DOUBLE && value == (long) value &&
+                (value != 0 || Double.doubleToRawLongBits(value) == 0);
+    }
+
+    /**
+     * Writes the ASCII characters of the value.
+     *
+     * @throws BufferOverflowException if the value does not fit into the remaining buffer
+     */
+    public static void putAscii(ByteBuffer buffer, String value) {
+        if (value.length() > buffer.remaining()) {
+            throw new BufferOverflowException();
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private static boolean isWhole(double value) {
+        return Math.abs(value) < MAX_PLAIN_INTEGRAL_DOUBLE && value == (long) value;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.metrics.utils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output stream, which compresses the response body on the fly.
+ *
+ * Output is buffered until the minimum size is reached. Smaller responses are sent uncompressed, larger ones are
+ * compressed while they are being written, so the uncompressed body is never held in memory.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class CompressingOutputStream extends OutputStream {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private static final int COMPRESSION_BUFFER_SIZE = 8192;
+
+    private final HttpServletResponse response;
+    private final String encoding;
+    private final int level;
+
+    private final byte[] buffer;
+    private int count;
+
+    private OutputStream compressedStream;
+    private boolean closed;
+
+    /**
+     * @param response response, to which the body is written
+     * @param encoding content encoding, either {@link #GZIP} or {@link #DEFLATE}
+     * @param level    compression level (0-9 or -1 for default)
+     * @param minSize  minimal size of the body in bytes, for which the compression is used
+     */
+    public CompressingOutputStream(HttpServletResponse response, String encoding, int level, int minSize) {
+        this.response = response;
+        this.encoding = encoding;
+        this.level = level;
+        this.buffer = new byte[minSize];
+        this.count = 0;
+    }
+
+    /**
+     * Returns the output stream for the response body, which is compressed if the request accepts gzip or deflate.
+     * Since the response depends on the Accept-Encoding header, the Vary header is always set.
+     *
+     * @param request  request
+     * @param response response, to which the body is written
+     * @param level    compression level (0-9 or -1 for default)
+     * @param minSize  minimal size of the body in bytes, for which the compression is used
+     * @return compressing output stream or the output stream of the response, if no supported encoding is accepted
+     * @throws IOException if the output stream of the response cannot be obtained
+     */
+    public static OutputStream forRequest(HttpServletRequest request, HttpServletResponse response, int level,
+                                          int minSize) throws IOException {
+        response.addHeader("Vary", "Accept-Encoding");
+
+        String encoding = negotiateEncoding(request.getHeader("Accept-Encoding"));
+        if (encoding == null) {
+            return response.getOutputStream();
+        }
+
+        return new CompressingOutputStream(response, encoding, level, minSize);
+    }
+
+    /**
+     * Chooses the content encoding based on the Accept-Encoding request header. Gzip is preferred over deflate.
+     *
+     * @param acceptEncoding value of the Accept-Encoding header
+     * @return {@link #GZIP}, {@link #DEFLATE} or null, if neither is accepted
+     */
+    public static String negotiateEncoding(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        boolean gzip = false;
+        boolean deflate = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+
+            boolean accepted = true;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+
+            if (accepted) {
+                if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+                    gzip = true;
+                } else if (DEFLATE.equals(coding)) {
+                    deflate = true;
+                }
+            }
+        }
+
+        return gzip ? GZIP : (deflate ? DEFLATE : null);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (compressedStream == null && count < buffer.length) {
+            buffer[count++] = (byte) b;
+            return;
+        }
+
+        startCompression();
+        compressedStream.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (compressedStream == null && len <= buffer.length - count) {
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+            return;
+        }
+
+        startCompression();
+        compressedStream.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // buffered output is only written, once it is known whether it will be compressed
+        if (compressedStream != null) {
+            compressedStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (compressedStream != null) {
+            compressedStream.close();
+        } else {
+            response.setContentLength(count);
+            try (OutputStream output = response.getOutputStream()) {
+                output.write(buffer, 0, count);
+            }
+        }
+    }
+
+    private void startCompression() throws IOException {
+        if (compressedStream != null) {
+            return;
+        }
+
+        response.setHeader("Content-Encoding", encoding);
+        OutputStream output = response.getOutputStream();
+
+        if (GZIP.equals(encoding)) {
+            compressedStream = new GZIPOutputStream(output, COMPRESSION_BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        } else {
+            compressedStream = new DeflaterOutputStream(output, new Deflater(level), COMPRESSION_BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        def.end();
+                    }
+                }
+            };
+        }
+
+        compressedStream.write(buffer, 0, count);
+        count = 0;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.metrics.utils;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+
+/**
+ * Cache of rendered metric expositions, used by the metrics servlet.
+ *
+ * Rendered results are shared for the configured time to live. Concurrent requests for the same key are coalesced:
+ * only one thread renders the exposition, while the others wait for its result.
+ *
+ * Expired entries are evicted whenever a new exposition is rendered. The number of cached entries is bounded; when
+ * the cache is full, expositions are rendered without being cached.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ExpositionCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 100;
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final ConcurrentMap<String, Entry> entries;
+
+    public ExpositionCache(long ttlMillis) {
+        this(ttlMillis, DEFAULT_MAX_ENTRIES);
+    }
+
+    public ExpositionCache(long ttlMillis, int maxEntries) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = maxEntries;
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the cached exposition for the given key or renders a new one, if there is no valid exposition cached.
+     *
+     * @param key      cache key (e.g. format and requested path)
+     * @param renderer renderer, called if the exposition has to be rendered
+     * @return rendered exposition
+     * @throws IOException if rendering failed
+     */
+    public byte[] get(String key, Renderer renderer) throws IOException {
+        while (true) {
+            long now = System.nanoTime();
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.isExpired(now)) {
+                return entry.await();
+            }
+
+            evictExpired(now);
+            if (entry == null && entries.size() >= maxEntries) {
+                return renderer.render();
+            }
+
+            Entry newEntry = new Entry();
+            boolean owner = (entry == null) ? entries.putIfAbsent(key, newEntry) == null :
+                    entries.replace(key, entry, newEntry);
+
+            if (owner) {
+                return render(key, newEntry, renderer);
+            }
+            // another thread has started rendering in the meantime, wait for its result
+        }
+    }
+
+    /**
+     * @return number of cached entries, including the ones being rendered and the expired ones, not yet evicted
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private byte[] render(String key, Entry entry, Renderer renderer) throws IOException {
+        try {
+            byte[] exposition = renderer.render();
+            entry.complete(exposition, System.nanoTime() + ttlNanos);
+            return exposition;
+        } catch (Throwable e) {
+            // failed renders are not cached, waiting threads receive the same exception; errors are included, so the
+            // entry is always completed and waiting threads are never blocked
+            entries.remove(key, entry);
+            entry.fail(e);
+            throw e;
+        }
+    }
+
+    private void evictExpired(long now) {
+        entries.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    /**
+     * Renders the exposition.
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        byte[] render() throws IOException;
+    }
+
+    private static class Entry {
+
+        private final CompletableFuture<byte[]> exposition = new CompletableFuture<>();
+
+        private volatile long expiresAt;
+
+        private void complete(byte[] value, long expiresAt) {
+            this.expiresAt = expiresAt;
+            exposition.complete(value);
+        }
+
+        private void fail(Throwable e) {
+            exposition.completeExceptionally(e);
+        }
+
+        private boolean isExpired(long now) {
+            // entries are never expired while they are being rendered
+            return exposition.isDone() && now - expiresAt >= 0;
+        }
+
+        private byte[] await() throws IOException {
+            try {
+                return exposition.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the metrics exposition.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Error rendering the metrics exposition.", e.getCause());
+            }
+        }
+    }
+}
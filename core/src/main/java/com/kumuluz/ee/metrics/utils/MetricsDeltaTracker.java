@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.utils;
+
+import com.kumuluz.ee.metrics.api.DoubleGauge;
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.json.models.DeltaMetricsPayload;
+import org.eclipse.microprofile.metrics.*;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers the last reported value of every metric and builds reports, which contain only the changed metrics.
+ *
+ * Counters, meters, histograms and timers are changed when their count changes, gauges are changed when their value
+ * changes. Every {@code fullReportPeriod}-th report (including the first one) contains all metrics, so the receiver
+ * can resynchronize and observe the decay of rates and snapshots of idle metrics. When counter deltas are enabled,
+ * counters are reported as the difference to the previously reported count in partial reports and as the total count
+ * in full reports.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class MetricsDeltaTracker {
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final int fullReportPeriod;
+    private final boolean counterDeltas;
+
+    private final Map<String, Map<String, Object>> reported = new HashMap<>();
+    private int reportsSinceFull = 0;
+
+    public MetricsDeltaTracker(int fullReportPeriod, boolean counterDeltas) {
+        this.fullReportPeriod = Math.max(1, fullReportPeriod);
+        this.counterDeltas = counterDeltas;
+    }
+
+    /**
+     * Builds the next report.
+     *
+     * @return payload with the changed metrics or {@code null}, if no metric changed since the previous report
+     */
+    public synchronized DeltaMetricsPayload report(Map<String, MetricRegistry> registries) {
+        boolean full = reportsSinceFull == 0;
+        reportsSinceFull = (reportsSinceFull + 1) % fullReportPeriod;
+
+        Map<String, Map<String, Metric>> changes = collect(registries, full);
+        if (!full && changes.isEmpty()) {
+            return null;
+        }
+
+        return new DeltaMetricsPayload(changes, full);
+    }
+
+    synchronized Map<String, Map<String, Metric>> collect(Map<String, MetricRegistry> registries, boolean full) {
+        Map<String, Map<String, Metric>> changes = new LinkedHashMap<>();
+
+        for (Map.Entry<String, MetricRegistry> registry : registries.entrySet()) {
+            Map<String, Object> lastValues = reported.computeIfAbsent(registry.getKey(), k -> new HashMap<>());
+            Map<String, Metric> metrics = registry.getValue().getMetrics();
+            Map<String, Metric> changed = new LinkedHashMap<>();
+
+            for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+                Metric metric = entry.getValue();
+                Object value = valueOf(metric);
+                Object previous = lastValues.put(entry.getKey(), value);
+
+                if (counterDeltas && metric instanceof Counter) {
+                    // full reports contain the total count, so counts of lost reports are restored
+                    long count = (Long) value;
+                    long delta = full ? count : count - (previous instanceof Long ? (Long) previous : 0L);
+                    if (full || delta != 0) {
+                        changed.put(entry.getKey(), (LongGauge) () -> delta);
+                    }
+                } else if (full || !Objects.equals(value, previous)) {
+                    changed.put(entry.getKey(), reportedMetric(metric, value));
+                }
+            }
+
+            // forget removed metrics
+            lastValues.keySet().retainAll(metrics.keySet());
+
+            if (!changed.isEmpty()) {
+                changes.put(registry.getKey(), changed);
+            }
+        }
+
+        return changes;
+    }
+
+    private static Object valueOf(Metric metric) {
+        if (metric instanceof LongGauge) {
+            return ((LongGauge) metric).getLongValue();
+        } else if (metric instanceof DoubleGauge) {
+            return ((DoubleGauge) metric).getDoubleValue();
+        } else if (metric instanceof Gauge) {
+            Object value = ((Gauge) metric).getValue();
+            return value == null ? NULL_VALUE : value;
+        } else if (metric instanceof Counting) {
+            return ((Counting) metric).getCount();
+        }
+
+        return NULL_VALUE;
+    }
+
+    /**
+     * Gauges are replaced with the value they were compared with, so they are not evaluated again when the report
+     * is serialized.
+     */
+    private static Metric reportedMetric(Metric metric, Object value) {
+        if (metric instanceof LongGauge) {
+            long longValue = (Long) value;
+            return (LongGauge) () -> longValue;
+        } else if (metric instanceof DoubleGauge) {
+            double doubleValue = (Double) value;
+            return (DoubleGauge) () -> doubleValue;
+        } else if (metric instanceof Gauge) {
+            Object gaugeValue = value == NULL_VALUE ? null : value;
+            return (Gauge<Object>) () -> gaugeValue;
+        }
+
+        return metric;
+    }
+}
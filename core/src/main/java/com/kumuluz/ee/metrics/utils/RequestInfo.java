@@ -21,18 +21,25 @@
 package com.kumuluz.ee.metrics.utils;
 
 import com.kumuluz.ee.common.config.EeConfig;
+import com.kumuluz.ee.metrics.api.MetricAdapter;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.api.MetricSelector;
+import com.kumuluz.ee.metrics.prometheus.PrometheusMetadata;
 import com.kumuluz.ee.metrics.producers.MetricRegistryProducer;
 import org.eclipse.microprofile.metrics.Metadata;
 import org.eclipse.microprofile.metrics.Metric;
 import org.eclipse.microprofile.metrics.MetricRegistry;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Parser for metric servlet requests.
  *
+ * Metrics of all registries or of the registry in the path can be filtered with the name[] (regular expression,
+ * matched against the whole metric name) and tag (key:value) query parameters. A metric is selected, if it matches
+ * any of the names and all of the tags.
+ *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
@@ -40,6 +47,14 @@ import java.util.Map;
 public class RequestInfo {
 
     private static final String APPLICATION_JSON = "application/json";
+    private static final String APPLICATION_OPENMETRICS = "application/openmetrics-text";
+    private static final String APPLICATION_PROTOBUF = "application/vnd.google.protobuf";
+    private static final String PROTOBUF_PROTO = "io.prometheus.client.MetricFamily";
+    private static final String PROTOBUF_ENCODING = "delimited";
+    private static final String TEXT_PLAIN = "text/plain";
+
+    private static final String NAME_PARAMETER = "name[]";
+    private static final String TAG_PARAMETER = "tag";
 
     private String servletEndpoint;
 
@@ -47,6 +62,7 @@ public class RequestInfo {
     private String metricName;
     private Metric metric;
     private Metadata metadata;
+    private MetricSelector metricSelector;
     private MetricsRequested metricsRequested;
     private RequestType requestType;
 
@@ -54,6 +70,8 @@ public class RequestInfo {
         JSON_METRIC,
         JSON_METADATA,
         PROMETHEUS,
+        OPENMETRICS,
+        PROTOBUF,
         INVALID
     }
 
@@ -62,7 +80,8 @@ public class RequestInfo {
         REGISTRY,
         METRIC,
         NOT_FOUND,
-        NO_CONTENT
+        NO_CONTENT,
+        BAD_REQUEST
     }
 
     public RequestInfo(HttpServletRequest request) {
@@ -72,10 +91,14 @@ public class RequestInfo {
         this.metricName = null;
         this.metric = null;
         this.metadata = null;
+        this.metricSelector = null;
 
         this.requestType = determineRequestType(request);
         if (this.requestType != RequestType.INVALID) {
             determineRequestedMetrics(request.getRequestURI());
+            if (metricsRequested == MetricsRequested.ALL || metricsRequested == MetricsRequested.REGISTRY) {
+                determineMetricSelector(request);
+            }
         }
     }
 
@@ -90,13 +113,67 @@ public class RequestInfo {
             }
         } else {
             if (request.getMethod().equals("GET")) {
-                return RequestType.PROMETHEUS;
+                return negotiatePrometheusFormat(request.getHeader("Accept"));
             } else {
                 return RequestType.INVALID;
             }
         }
     }
 
+    /*
+     * OpenMetrics and protobuf are only sent, if they are explicitly accepted, e.g. by Prometheus scrapers. The
+     * accepted format with the highest quality is chosen, the first one listed if there are more.
+     */
+    private static RequestType negotiatePrometheusFormat(String accept) {
+        if (accept == null) {
+            return RequestType.PROMETHEUS;
+        }
+
+        RequestType requestType = RequestType.PROMETHEUS;
+        double bestQuality = 0;
+        for (String mediaRange : accept.split(",")) {
+            String[] params = mediaRange.split(";");
+            String mediaType = params[0].trim();
+
+            double quality = 1;
+            String proto = null;
+            String encoding = null;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                } else if (param.startsWith("proto=")) {
+                    proto = param.substring(6);
+                } else if (param.startsWith("encoding=")) {
+                    encoding = param.substring(9);
+                }
+            }
+
+            RequestType mediaRequestType;
+            if (APPLICATION_OPENMETRICS.equalsIgnoreCase(mediaType)) {
+                mediaRequestType = RequestType.OPENMETRICS;
+            } else if (APPLICATION_PROTOBUF.equalsIgnoreCase(mediaType) && PROTOBUF_PROTO.equals(proto) &&
+                    PROTOBUF_ENCODING.equals(encoding)) {
+                mediaRequestType = RequestType.PROTOBUF;
+            } else if (TEXT_PLAIN.equalsIgnoreCase(mediaType)) {
+                mediaRequestType = RequestType.PROMETHEUS;
+            } else {
+                continue;
+            }
+
+            if (quality > bestQuality) {
+                requestType = mediaRequestType;
+                bestQuality = quality;
+            }
+        }
+
+        return requestType;
+    }
+
     private void determineRequestedMetrics(String uri) {
         // remove servlet endpoint from uri to get REST parts
         int contextPathLength = EeConfig.getInstance().getServer().getContextPath().length();
@@ -114,7 +191,7 @@ public class RequestInfo {
                 metricsRequested = MetricsRequested.NOT_FOUND;
                 return;
             }
-            if (registry.getMetrics().size() == 0) {
+            if (registry.getNames().isEmpty()) {
                 metricsRequested = MetricsRequested.NO_CONTENT;
                 return;
             }
@@ -139,13 +216,13 @@ public class RequestInfo {
         }
 
         if (metricsRequested == MetricsRequested.ALL) {
-            if (MetricRegistryProducer.getApplicationRegistry().getMetrics().size() > 0) {
+            if (!MetricRegistryProducer.getApplicationRegistry().getNames().isEmpty()) {
                 requestedRegistries.put("application", MetricRegistryProducer.getApplicationRegistry());
             }
-            if (MetricRegistryProducer.getBaseRegistry().getMetrics().size() > 0) {
+            if (!MetricRegistryProducer.getBaseRegistry().getNames().isEmpty()) {
                 requestedRegistries.put("base", MetricRegistryProducer.getBaseRegistry());
             }
-            if (MetricRegistryProducer.getVendorRegistry().getMetrics().size() > 0) {
+            if (!MetricRegistryProducer.getVendorRegistry().getNames().isEmpty()) {
                 requestedRegistries.put("vendor", MetricRegistryProducer.getVendorRegistry());
             }
 
@@ -155,6 +232,52 @@ public class RequestInfo {
         }
     }
 
+    /*
+     * Query parameters are only parsed here, metrics are selected when the response is rendered, so responses served
+     * from the cache do not select them. Names and tags are sorted, so equivalent queries have the same selector.
+     */
+    private void determineMetricSelector(HttpServletRequest request) {
+        String[] names = request.getParameterValues(NAME_PARAMETER);
+        String[] tags = request.getParameterValues(TAG_PARAMETER);
+        if (names == null && tags == null) {
+            return;
+        }
+
+        try {
+            Map<String, String> requiredTags = new TreeMap<>();
+            if (tags != null) {
+                for (String tag : tags) {
+                    Map.Entry<String, String> parsedTag = MetricSelector.parseTag(tag);
+                    requiredTags.put(parsedTag.getKey(), parsedTag.getValue());
+                }
+            }
+            List<String> nameRegexes = (names == null) ? Collections.emptyList() :
+                    new ArrayList<>(new TreeSet<>(Arrays.asList(names)));
+            metricSelector = new MetricSelector(nameRegexes, requiredTags);
+        } catch (IllegalArgumentException e) {
+            // also thrown for invalid regular expressions
+            metricsRequested = MetricsRequested.BAD_REQUEST;
+        }
+    }
+
+    private static SortedMap<String, MetricAdapter> selectMetrics(String registryName, MetricRegistry registry,
+                                                                  MetricSelector selector) {
+        if (registry instanceof MetricRegistryImpl) {
+            return ((MetricRegistryImpl) registry).getMetricAdapters(selector);
+        }
+
+        SortedMap<String, MetricAdapter> selected = new TreeMap<>();
+        Map<String, Metadata> metadata = registry.getMetadata();
+        for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+            Metadata metricMetadata = metadata.get(entry.getKey());
+            if (selector.matches(entry.getKey(), metricMetadata)) {
+                selected.put(entry.getKey(), new MetricAdapter(entry.getValue(), metricMetadata,
+                        new PrometheusMetadata(registryName, metricMetadata)));
+            }
+        }
+        return selected;
+    }
+
     private MetricRegistry parseRegistry(String name) {
         if ("application".equals(name)) {
             return MetricRegistryProducer.getApplicationRegistry();
@@ -199,6 +322,31 @@ public class RequestInfo {
         return metadata;
     }
 
+    /**
+     * @return selector, parsed from the query parameters, or null if the metrics are not filtered
+     */
+    public MetricSelector getMetricSelector() {
+        return metricSelector;
+    }
+
+    /**
+     * Selects the metrics of the requested registries. Metrics are selected on every call.
+     *
+     * @return selected metrics, mapped by registry name; registries without selected metrics are omitted
+     */
+    public Map<String, SortedMap<String, MetricAdapter>> selectMetrics() {
+        Map<String, SortedMap<String, MetricAdapter>> selectedMetrics = new LinkedHashMap<>();
+        for (Map.Entry<String, MetricRegistry> registry : requestedRegistries.entrySet()) {
+            SortedMap<String, MetricAdapter> selected = selectMetrics(registry.getKey(), registry.getValue(),
+                    metricSelector);
+            if (!selected.isEmpty()) {
+                selectedMetrics.put(registry.getKey(), selected);
+            }
+        }
+
+        return selectedMetrics;
+    }
+
     public MetricsRequested getMetricsRequested() {
         return metricsRequested;
     }
@@ -206,4 +354,12 @@ public class RequestInfo {
     public RequestType getRequestType() {
         return requestType;
     }
+
+    /**
+     * @return true, if metrics were requested in one of the Prometheus formats
+     */
+    public boolean isPrometheusRequest() {
+        return requestType == RequestType.PROMETHEUS || requestType == RequestType.OPENMETRICS ||
+                requestType == RequestType.PROTOBUF;
+    }
 }
@@ -0,0 +1,178 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.api;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link HdrHistogramReservoir}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class HdrHistogramReservoirTest {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    @Test
+    public void windowExpiryTest() {
+        ManualClock clock = new ManualClock();
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir(2, 60, TimeUnit.SECONDS, clock);
+
+        reservoir.update(10);
+        assertEquals(1, reservoir.getSnapshot().size());
+
+        // values of the previous window are kept
+        clock.tick += WINDOW_NANOS;
+        reservoir.update(20);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(10, snapshot.getMin());
+        assertEquals(20, snapshot.getMax());
+
+        // values expire after two windows
+        clock.tick += WINDOW_NANOS;
+        snapshot = reservoir.getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(20, snapshot.getMin());
+
+        clock.tick += WINDOW_NANOS;
+        assertEquals(0, reservoir.getSnapshot().size());
+        assertEquals(0, reservoir.size());
+    }
+
+    @Test
+    public void idleWindowsTest() {
+        ManualClock clock = new ManualClock();
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir(2, 60, TimeUnit.SECONDS, clock);
+
+        reservoir.update(10);
+        assertEquals(1, reservoir.size());
+
+        // windows without snapshots are discarded at once
+        clock.tick += 5 * WINDOW_NANOS;
+        assertEquals(0, reservoir.getSnapshot().size());
+
+        // values recorded since the previous snapshot are assigned to the current window
+        reservoir.update(30);
+        clock.tick += 5 * WINDOW_NANOS;
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(30, snapshot.getMax());
+    }
+
+    @Test
+    public void negativeValuesTest() {
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir(2, 60, TimeUnit.SECONDS, new ManualClock());
+
+        reservoir.update(-5);
+        reservoir.update(5);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(5, snapshot.getMax());
+    }
+
+    @Test
+    public void percentileAccuracyTest() {
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir(2, 60, TimeUnit.SECONDS, new ManualClock());
+
+        // uniform distribution of 1..100000
+        for (long value = 1; value <= 100000; value++) {
+            reservoir.update(value);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(100000, snapshot.size());
+        // two significant digits keep values within 1 %
+        assertEquals(99900, snapshot.get999thPercentile(), 999);
+        assertEquals(99000, snapshot.get99thPercentile(), 990);
+        assertEquals(50000, snapshot.getMedian(), 500);
+        assertEquals(50000.5, snapshot.getMean(), 500);
+    }
+
+    @Test
+    public void concurrentUpdateTest() throws Exception {
+        int threads = 4;
+        int updates = 100000;
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir(2, 60, TimeUnit.SECONDS, new ManualClock());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier gate = new CyclicBarrier(threads + 1);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    gate.await();
+                    for (int i = 1; i <= updates; i++) {
+                        reservoir.update(i);
+                    }
+                    return null;
+                }));
+            }
+
+            // snapshots are taken while values are recorded
+            gate.await();
+            long previousSize = 0;
+            for (int i = 0; i < 100; i++) {
+                long size = reservoir.getSnapshot().size();
+                assertTrue(size >= previousSize);
+                previousSize = size;
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(threads * updates, snapshot.size());
+        assertEquals(threads * updates, reservoir.size());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(updates, snapshot.getMax(), updates / 100);
+    }
+
+    private static class ManualClock extends Clock {
+
+        private long tick;
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    }
+}
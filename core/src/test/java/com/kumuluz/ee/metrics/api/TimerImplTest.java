@@ -0,0 +1,124 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.api;
+
+import com.codahale.metrics.UniformReservoir;
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.eclipse.microprofile.metrics.Timer;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link TimerImpl} and {@link ContextImpl}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class TimerImplTest {
+
+    @Test
+    public void fastPathTest() throws Exception {
+        TimerImpl timer = new TimerImpl(new com.codahale.metrics.Timer(new UniformReservoir()));
+
+        long first = timer.stopTiming(timer.startTiming());
+        long start = timer.startTiming();
+        Thread.sleep(5);
+        long second = timer.stopTiming(start);
+
+        assertTrue(second >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(2, timer.getCount());
+
+        Snapshot snapshot = timer.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(Math.min(first, second), snapshot.getMin());
+        assertEquals(second, snapshot.getMax());
+
+        // the meter is updated together with the histogram
+        assertTrue(timer.getMeanRate() > 0);
+    }
+
+    @Test
+    public void bucketsTest() {
+        TimerImpl timer = new TimerImpl(new HistogramBuckets(new long[]{TimeUnit.HOURS.toNanos(1)}));
+
+        long elapsed = timer.stopTiming(timer.startTiming());
+        timer.update(2, TimeUnit.HOURS);
+
+        assertEquals(2, timer.getCount());
+        assertEquals(1, timer.getBuckets().getCumulativeCounts()[0]);
+        assertEquals(elapsed + TimeUnit.HOURS.toNanos(2), timer.getBuckets().getSum());
+    }
+
+    @Test
+    public void timeTest() throws Exception {
+        TimerImpl timer = new TimerImpl(new com.codahale.metrics.Timer(new UniformReservoir()));
+
+        assertEquals("result", timer.time(() -> "result"));
+        timer.time(() -> {
+        });
+        try {
+            timer.time(() -> {
+                throw new IllegalStateException("failed");
+            });
+            fail("Exception of the callable was not propagated");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // failed calls are timed too
+        assertEquals(3, timer.getCount());
+        assertEquals(3, timer.getSnapshot().size());
+    }
+
+    @Test
+    public void contextTest() throws Exception {
+        TimerImpl timer = new TimerImpl(new com.codahale.metrics.Timer(new UniformReservoir()));
+
+        Timer.Context context = timer.time();
+        Thread.sleep(5);
+        long elapsed = context.stop();
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(1, timer.getCount());
+        assertEquals(elapsed, timer.getSnapshot().getMax());
+
+        try (Timer.Context ignored = timer.time()) {
+            assertEquals(1, timer.getCount());
+        }
+        assertEquals(2, timer.getCount());
+    }
+
+    @Test
+    public void dropwizardContextTest() {
+        com.codahale.metrics.Timer dropwizardTimer = new com.codahale.metrics.Timer(new UniformReservoir());
+
+        long elapsed = new ContextImpl(dropwizardTimer.time()).stop();
+        assertEquals(1, dropwizardTimer.getCount());
+        assertEquals(elapsed, dropwizardTimer.getSnapshot().getMax());
+
+        new ContextImpl(dropwizardTimer.time()).close();
+        assertEquals(2, dropwizardTimer.getCount());
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.interceptors;
+
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import org.eclipse.microprofile.metrics.Counter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests invalidation of {@link MetricBinding}s.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class MetricBindingTest {
+
+    @Test
+    public void invalidatedByRemovalTest() {
+        MetricRegistryImpl registry = new MetricRegistryImpl();
+        Counter counter = registry.counter("counter");
+        registry.counter("other");
+
+        MetricBinding<Counter> binding = new MetricBinding<>(counter, MetricBinding.removalCount(registry));
+        assertTrue(binding.isValid(MetricBinding.removalCount(registry)));
+
+        registry.counter("new");
+        assertTrue(binding.isValid(MetricBinding.removalCount(registry)));
+
+        registry.remove("other");
+        assertFalse(binding.isValid(MetricBinding.removalCount(registry)));
+
+        binding = new MetricBinding<>(counter, MetricBinding.removalCount(registry));
+        registry.removeMatching((name, metric) -> name.equals("new"));
+        assertFalse(binding.isValid(MetricBinding.removalCount(registry)));
+    }
+}
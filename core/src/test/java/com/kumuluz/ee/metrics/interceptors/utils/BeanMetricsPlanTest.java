@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.interceptors.utils;
+
+import org.eclipse.microprofile.metrics.annotation.Counted;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+import org.eclipse.microprofile.metrics.annotation.Metered;
+import org.eclipse.microprofile.metrics.annotation.Timed;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link BeanMetricsPlan}. Plans of the same bean, computed from the metrics index and by reflection, must
+ * contain the same metrics.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class BeanMetricsPlanTest {
+
+    private static final String PACKAGE = BeanMetricsPlanTest.class.getPackage().getName();
+
+    private static final List<String> INDEX = Arrays.asList(
+            index("METERED", PlannedSubBean.class, "<init>", "", PACKAGE + ".PlannedSubBean.PlannedSubBean",
+                    "per_second"),
+            index("TIMED", PlannedSubBean.class, "timed", "java.lang.String",
+                    PACKAGE + ".PlannedSubBean.timed", "nanoseconds"),
+            index("COUNTED", PlannedBaseBean.class, "inherited", "", PACKAGE + ".PlannedBaseBean.inherited", "none"),
+            index("GAUGE", PlannedBaseBean.class, "gauge", "", PACKAGE + ".PlannedBaseBean.gauge", "none"));
+
+    @Test
+    public void reflectionPlanTest() throws Exception {
+        BeanMetricsPlan plan = BeanMetricsPlan.planByReflection(PlannedSubBean.class);
+
+        assertPlan(plan);
+    }
+
+    @Test
+    public void indexPlanTest() throws Exception {
+        List<MetricsIndex.Entry> entries = new ArrayList<>();
+        for (String line : INDEX) {
+            entries.add(MetricsIndex.parseEntry(line));
+        }
+        BeanMetricsPlan plan = BeanMetricsPlan.planFromIndex(PlannedSubBean.class, entries);
+
+        assertPlan(plan);
+    }
+
+    @Test
+    public void cachedPlanTest() {
+        assertSame(BeanMetricsPlan.forClass(PlannedSubBean.class), BeanMetricsPlan.forClass(PlannedSubBean.class));
+    }
+
+    private static void assertPlan(BeanMetricsPlan plan) throws Exception {
+        Constructor<?> constructor = PlannedSubBean.class.getDeclaredConstructor();
+
+        assertEquals(Arrays.asList("METERED " + PACKAGE + ".PlannedSubBean.PlannedSubBean per_second " + constructor),
+                describe(plan.getConstructorMetrics(constructor)));
+        assertEquals(0, plan.getConstructorMetrics(PlannedSubBean.class.getDeclaredConstructor(int.class)).size());
+
+        List<String> methodMetrics = describe(plan.getMethodMetrics());
+        methodMetrics.sort(null);
+        assertEquals(Arrays.asList(
+                "COUNTER " + PACKAGE + ".PlannedBaseBean.inherited none " +
+                        PlannedBaseBean.class.getDeclaredMethod("inherited"),
+                "TIMER " + PACKAGE + ".PlannedSubBean.timed nanoseconds " +
+                        PlannedSubBean.class.getDeclaredMethod("timed", String.class)),
+                methodMetrics);
+
+        assertEquals(1, plan.getGauges().size());
+        BeanMetricsPlan.PlannedGauge gauge = plan.getGauges().get(0);
+        assertEquals(PlannedBaseBean.class.getDeclaredMethod("gauge"), gauge.getMethod());
+        assertEquals(PACKAGE + ".PlannedBaseBean.gauge", gauge.getMetadata().getName());
+        assertEquals("none", gauge.getMetadata().getUnit());
+    }
+
+    private static List<String> describe(List<BeanMetricsPlan.PlannedMetric> metrics) {
+        List<String> descriptions = new ArrayList<>();
+        for (BeanMetricsPlan.PlannedMetric metric : metrics) {
+            descriptions.add(metric.getMetadata().getTypeRaw().name() + " " + metric.getMetadata().getName() + " " +
+                    metric.getMetadata().getUnit() + " " + metric.getElement());
+        }
+        return descriptions;
+    }
+
+    private static String index(String kind, Class<?> declaringClass, String member, String parameterTypes,
+                                String name, String unit) {
+        return String.join("\t", PlannedSubBean.class.getName(), kind, declaringClass.getName(), member,
+                parameterTypes, name, "", "", unit, "false");
+    }
+}
+
+class PlannedBaseBean {
+
+    @Counted
+    protected void inherited() {
+    }
+
+    @Gauge(unit = "none")
+    public long gauge() {
+        return 0;
+    }
+
+    @Counted
+    private void notInherited() {
+    }
+}
+
+class PlannedSubBean extends PlannedBaseBean {
+
+    @Metered
+    public PlannedSubBean() {
+    }
+
+    public PlannedSubBean(int ignored) {
+    }
+
+    @Timed
+    public void timed(String argument) {
+    }
+}
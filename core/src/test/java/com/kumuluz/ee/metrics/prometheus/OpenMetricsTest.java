@@ -0,0 +1,141 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+import com.kumuluz.ee.metrics.api.CounterImpl;
+import com.kumuluz.ee.metrics.api.ExemplarSampler;
+import com.kumuluz.ee.metrics.api.HistogramBuckets;
+import com.kumuluz.ee.metrics.api.MeterImpl;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.api.TimerImpl;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the OpenMetrics exposition.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class OpenMetricsTest {
+
+    private MetricRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new MetricRegistryImpl();
+        ExemplarSampler.getInstance().setTraceIdSupplier(() -> "4bf92f3577b34da6");
+    }
+
+    @After
+    public void tearDown() {
+        ExemplarSampler.getInstance().setTraceIdSupplier(null);
+    }
+
+    @Test
+    public void counterTest() throws IOException {
+        registry.counter(new Metadata("requests", MetricType.COUNTER)).inc(3);
+
+        List<String> lines = write();
+
+        assertTrue(lines.contains("# TYPE application:requests counter"));
+        assertTrue(getLine(lines, "application:requests_total").endsWith(" 3"));
+        assertTrue(getLine(lines, "application:requests_created").matches(".* \\d+\\.\\d{3}"));
+        assertEquals("# EOF", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void exemplarsTest() throws IOException {
+        MeterImpl meter = registry.register(new Metadata("responses", MetricType.METERED), new MeterImpl());
+        meter.markWithExemplar();
+        meter.markWithExemplar();
+
+        TimerImpl timer = registry.register(new Metadata("latency", MetricType.TIMER),
+                new TimerImpl(new HistogramBuckets(new long[]{1000000000000L})));
+        timer.stopTimingWithExemplar(timer.startTiming());
+
+        CounterImpl counter = registry.register(new Metadata("invocations", MetricType.COUNTER), new CounterImpl());
+        counter.incWithExemplar();
+
+        List<String> lines = write();
+
+        assertTrue(getLine(lines, "application:invocations_total")
+                .matches(".* 1 # \\{trace_id=\"4bf92f3577b34da6\"} 1\\.0 \\d+\\.\\d{3}"));
+
+        assertTrue(lines.contains("# TYPE application:responses counter"));
+        assertTrue(getLine(lines, "application:responses_total")
+                .matches(".* 2 # \\{trace_id=\"4bf92f3577b34da6\"} 1\\.0 \\d+\\.\\d{3}"));
+
+        assertTrue(lines.contains("# TYPE application:latency_seconds histogram"));
+        assertTrue(lines.contains("# UNIT application:latency_seconds seconds"));
+        assertTrue(getLine(lines, "application:latency_seconds_bucket").contains("le=\"1000.0\""));
+        assertTrue(getLine(lines, "application:latency_seconds_bucket")
+                .matches(".* 1 # \\{trace_id=\"4bf92f3577b34da6\"} .*"));
+        assertTrue(getLine(lines, "application:latency_seconds_created").matches(".* \\d+\\.\\d{3}"));
+        assertEquals("# EOF", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void prometheusFormatTest() throws IOException {
+        registry.counter(new Metadata("requests", MetricType.COUNTER)).inc(3);
+        MeterImpl meter = registry.register(new Metadata("responses", MetricType.METERED), new MeterImpl());
+        meter.markWithExemplar();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new PrometheusMetricWriter(outputStream).write("application", registry);
+        String exposition = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+
+        assertTrue(exposition.contains("# TYPE application:requests counter\n"));
+        assertTrue(exposition.contains("# TYPE application:responses_total counter\n"));
+        assertTrue(!exposition.contains("_created") && !exposition.contains("trace_id") &&
+                !exposition.contains("# EOF"));
+    }
+
+    private List<String> write() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new PrometheusMetricWriter(outputStream, ExpositionFormat.OPENMETRICS).write("application", registry);
+
+        return Arrays.asList(new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n"));
+    }
+
+    private static String getLine(List<String> lines, String name) {
+        for (String line : lines) {
+            if (line.startsWith(name + " ") || line.startsWith(name + "{")) {
+                return line;
+            }
+        }
+
+        throw new AssertionError("No line for " + name + " in " + lines);
+    }
+}
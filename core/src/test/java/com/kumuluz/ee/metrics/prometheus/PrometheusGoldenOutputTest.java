@@ -0,0 +1,309 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+import com.kumuluz.ee.metrics.api.DoubleGauge;
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.utils.ServiceConfigInfo;
+import org.eclipse.microprofile.metrics.*;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares the Prometheus text exposition with the output of the original {@code StringBuilder} based writer, which
+ * is stored in {@code prometheus/golden-exposition.txt}. The original writer iterated the metrics in hash order, so
+ * the golden output was written metric by metric in name order, which is the order of the registry. Values of the
+ * default tags depend on the runtime, so they are stored as placeholders.
+ *
+ * The metrics cover every metric type, tags, unit conversions, name sanitization, non-ASCII help text and the
+ * formatting of whole, fractional, large and small numbers.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class PrometheusGoldenOutputTest {
+
+    private static final String GOLDEN_FILE = "prometheus/golden-exposition.txt";
+
+    @Test
+    public void goldenOutputTest() throws IOException {
+        Assume.assumeTrue(ServiceConfigInfo.getInstance().shouldAddToTags());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new PrometheusMetricWriter(output).write(createRegistries());
+
+        byte[] golden = readGolden();
+        // strings are compared first for a readable difference, bytes also check the UTF-8 encoding
+        assertEquals(new String(golden, StandardCharsets.UTF_8), new String(output.toByteArray(),
+                StandardCharsets.UTF_8));
+        assertArrayEquals(golden, output.toByteArray());
+    }
+
+    static Map<String, MetricRegistry> createRegistries() {
+        MetricRegistry registry = new MetricRegistryImpl(MetricRegistry.Type.APPLICATION);
+
+        // counters, tags and name sanitization
+        registry.counter(new Metadata("requests", MetricType.COUNTER)).inc(42);
+        registry.counter(new Metadata("myApp.requestCount-total ", "Requests", "  Number of requests  ",
+                MetricType.COUNTER, MetricUnits.NONE, "method=GET,status=200")).inc(7);
+        registry.counter(new Metadata("HTTPServer.Latency__", MetricType.COUNTER)).inc(-3);
+        registry.counter(new Metadata("__odd..name__", "", "Števec zahtev — 処理 🚀", MetricType.COUNTER,
+                MetricUnits.NONE));
+
+        // gauges with unit conversions
+        registry.register(new Metadata("heap", "Heap", "Used heap", MetricType.GAUGE, MetricUnits.MEGABYTES,
+                "area=heap"), (LongGauge) () -> 12);
+        registry.register(new Metadata("uptime", "", "Uptime", MetricType.GAUGE, MetricUnits.MILLISECONDS),
+                (Gauge<Long>) () -> 123456789L);
+        registry.register(new Metadata("load", "", "Système load", MetricType.GAUGE, MetricUnits.PERCENT),
+                (DoubleGauge) () -> 0.75);
+        registry.register(new Metadata("threads", MetricType.GAUGE), (Gauge<Integer>) () -> 16);
+        registry.register(new Metadata("queueSize", "", "", MetricType.GAUGE, "items"),
+                (Gauge<Double>) () -> 12345678.5);
+        registry.register(new Metadata("tiny", MetricType.GAUGE, MetricUnits.KILOBYTES),
+                (Gauge<Double>) () -> 0.0001);
+        registry.register(new Metadata("negative", MetricType.GAUGE), (Gauge<Double>) () -> -0.0);
+        registry.register(new Metadata("status", MetricType.GAUGE), (Gauge<String>) () -> "UP");
+
+        // meters, histograms and timers
+        registry.register(new Metadata("calls", "", "Call rate — 通話", MetricType.METERED, MetricUnits.NONE,
+                "endpoint=/api"), new FixedMeter(1234, 1.5, 0.0, 12345678.9, 0.0001));
+        registry.register(new Metadata("payload", "", "Payload size", MetricType.HISTOGRAM, MetricUnits.BYTES,
+                "method=POST"), new FixedHistogram(5, new FixedSnapshot(10, 2048, 512.25)));
+        registry.register(new Metadata("chunks", MetricType.HISTOGRAM),
+                new FixedHistogram(3, new FixedSnapshot(1, 3, 2)));
+        registry.register(new Metadata("response", "", "Response time — čas odziva", MetricType.TIMER,
+                MetricUnits.NANOSECONDS, "method=GET"), new FixedTimer(9, 2.5, 0.125, 1e-7, 3e10,
+                new FixedSnapshot(1500000, 2500000000L, 12345678.9)));
+
+        return Collections.singletonMap("application", registry);
+    }
+
+    private static byte[] readGolden() throws IOException {
+        ServiceConfigInfo configInfo = ServiceConfigInfo.getInstance();
+        String golden = new String(readResource(GOLDEN_FILE), StandardCharsets.UTF_8)
+                .replace("${environment}", configInfo.getEnvironment())
+                .replace("${serviceName}", configInfo.getServiceName())
+                .replace("${serviceVersion}", configInfo.getServiceVersion())
+                .replace("${instanceId}", configInfo.getInstanceId());
+
+        return golden.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream stream = PrometheusGoldenOutputTest.class.getClassLoader()
+                .getResourceAsStream(name)) {
+            assertNotNull(name + " is missing", stream);
+
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return content.toByteArray();
+        }
+    }
+
+    private static class FixedSnapshot extends Snapshot {
+
+        private final long min;
+        private final long max;
+        private final double mean;
+
+        private FixedSnapshot(long min, long max, double mean) {
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            return min + (max - min) * quantile;
+        }
+
+        @Override
+        public long[] getValues() {
+            return new long[]{min, max};
+        }
+
+        @Override
+        public int size() {
+            return 2;
+        }
+
+        @Override
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public double getMean() {
+            return mean;
+        }
+
+        @Override
+        public long getMin() {
+            return min;
+        }
+
+        @Override
+        public double getStdDev() {
+            return (max - min) / 3.0;
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+        }
+    }
+
+    private static class FixedMeter implements Meter {
+
+        private final long count;
+        private final double[] rates;
+
+        private FixedMeter(long count, double... rates) {
+            this.count = count;
+            this.rates = rates;
+        }
+
+        @Override
+        public void mark() {
+        }
+
+        @Override
+        public void mark(long n) {
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public double getFifteenMinuteRate() {
+            return rates[3];
+        }
+
+        @Override
+        public double getFiveMinuteRate() {
+            return rates[2];
+        }
+
+        @Override
+        public double getMeanRate() {
+            return rates[0];
+        }
+
+        @Override
+        public double getOneMinuteRate() {
+            return rates[1];
+        }
+    }
+
+    private static class FixedHistogram implements Histogram {
+
+        private final long count;
+        private final Snapshot snapshot;
+
+        private FixedHistogram(long count, Snapshot snapshot) {
+            this.count = count;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void update(int value) {
+        }
+
+        @Override
+        public void update(long value) {
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public Snapshot getSnapshot() {
+            return snapshot;
+        }
+    }
+
+    private static class FixedTimer extends FixedMeter implements Timer {
+
+        private final Snapshot snapshot;
+
+        private FixedTimer(long count, double meanRate, double oneMinuteRate, double fiveMinuteRate,
+                           double fifteenMinuteRate, Snapshot snapshot) {
+            super(count, meanRate, oneMinuteRate, fiveMinuteRate, fifteenMinuteRate);
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void update(long duration, TimeUnit unit) {
+        }
+
+        @Override
+        public <T> T time(Callable<T> event) throws Exception {
+            return event.call();
+        }
+
+        @Override
+        public void time(Runnable event) {
+            event.run();
+        }
+
+        @Override
+        public Context time() {
+            return new Context() {
+                @Override
+                public long stop() {
+                    return 0;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public Snapshot getSnapshot() {
+            return snapshot;
+        }
+    }
+}
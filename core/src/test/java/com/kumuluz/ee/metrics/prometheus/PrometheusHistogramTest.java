@@ -0,0 +1,126 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+import com.kumuluz.ee.metrics.api.HistogramBuckets;
+import com.kumuluz.ee.metrics.api.HistogramImpl;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.api.TimerImpl;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Timer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the Prometheus histogram exposition of metrics with {@link HistogramBuckets}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class PrometheusHistogramTest {
+
+    @Test
+    public void bucketsTest() {
+        HistogramBuckets buckets = new HistogramBuckets(new long[]{10, 20, 30});
+        buckets.update(5);
+        buckets.update(10);
+        buckets.update(11);
+        buckets.update(30);
+        buckets.update(31);
+
+        assertArrayEquals(new long[]{2, 3, 4, 5}, buckets.getCumulativeCounts());
+        assertEquals(87, buckets.getSum());
+    }
+
+    @Test
+    public void timerTest() throws IOException {
+        MetricRegistry registry = new MetricRegistryImpl();
+        Timer timer = registry.register(new Metadata("requests", MetricType.TIMER),
+                new TimerImpl(new HistogramBuckets(new long[]{5000000, 1000000000})));
+        timer.update(1, TimeUnit.MILLISECONDS);
+        timer.update(500, TimeUnit.MILLISECONDS);
+        timer.update(2, TimeUnit.SECONDS);
+
+        List<String> lines = write(registry);
+
+        assertTrue(lines.contains("# TYPE application:requests_seconds histogram"));
+        assertEquals("1", getValue(lines, "application:requests_seconds_bucket", "le=\"0.005\""));
+        assertEquals("2", getValue(lines, "application:requests_seconds_bucket", "le=\"1.0\""));
+        assertEquals("3", getValue(lines, "application:requests_seconds_bucket", "le=\"+Inf\""));
+        assertEquals(2.501, Double.parseDouble(getValue(lines, "application:requests_seconds_sum", null)), 1e-9);
+        assertEquals("3", getValue(lines, "application:requests_seconds_count", null));
+        assertFalse(lines.stream().anyMatch(line -> line.contains("quantile=")));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("application:requests_max_seconds")));
+    }
+
+    @Test
+    public void histogramTest() throws IOException {
+        MetricRegistry registry = new MetricRegistryImpl();
+        Histogram histogram = registry.register(new Metadata("sizes", MetricType.HISTOGRAM),
+                new HistogramImpl(new HistogramBuckets(new long[]{100})));
+        histogram.update(50);
+        histogram.update(150);
+
+        List<String> lines = write(registry);
+
+        assertTrue(lines.contains("# TYPE application:sizes histogram"));
+        assertEquals("1", getValue(lines, "application:sizes_bucket", "le=\"100.0\""));
+        assertEquals("2", getValue(lines, "application:sizes_bucket", "le=\"+Inf\""));
+        assertEquals("200", getValue(lines, "application:sizes_sum", null));
+        assertEquals("2", getValue(lines, "application:sizes_count", null));
+    }
+
+    private static List<String> write(MetricRegistry registry) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new PrometheusMetricWriter(outputStream).write("application", registry);
+
+        List<String> lines = new ArrayList<>();
+        for (String line : new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private static String getValue(List<String> lines, String name, String label) {
+        for (String line : lines) {
+            if ((line.startsWith(name + " ") || line.startsWith(name + "{")) &&
+                    (label == null || line.contains(label))) {
+                return line.substring(line.lastIndexOf(' ') + 1);
+            }
+        }
+
+        throw new AssertionError("No line for " + name + " " + label + " in " + lines);
+    }
+}
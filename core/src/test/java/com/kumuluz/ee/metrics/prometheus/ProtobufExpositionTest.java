@@ -0,0 +1,208 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.prometheus;
+
+import com.kumuluz.ee.metrics.api.HistogramBuckets;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.api.TimerImpl;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the protobuf exposition by decoding the written messages.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ProtobufExpositionTest {
+
+    @Test
+    public void encoderTest() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ExpositionBuffer buffer = new ExpositionBuffer(outputStream);
+        ProtobufEncoder encoder = new ProtobufEncoder(buffer);
+
+        String longValue = new String(new char[300]).replace('\0', 'a') + "\u010d\ud83d\ude00";
+        encoder.writeUInt64(1, 300);
+        int nested = encoder.beginMessage(2);
+        encoder.writeString(1, longValue);
+        encoder.writeDouble(2, 2.5);
+        encoder.endMessage(nested);
+        encoder.writeDelimited();
+        buffer.flush();
+
+        List<byte[]> messages = readDelimited(outputStream.toByteArray());
+        assertEquals(1, messages.size());
+
+        Map<Integer, List<Object>> message = decode(messages.get(0));
+        assertEquals(300L, message.get(1).get(0));
+        Map<Integer, List<Object>> nestedMessage = decode((byte[]) message.get(2).get(0));
+        assertEquals(longValue, string(nestedMessage, 1));
+        assertEquals(2.5, Double.longBitsToDouble((Long) nestedMessage.get(2).get(0)), 0);
+    }
+
+    @Test
+    public void bufferGrowthTest() {
+        // nested messages ending around the initial buffer size of 1024 bytes
+        for (int padding = 990; padding < 1030; padding++) {
+            ProtobufEncoder encoder = new ProtobufEncoder(null);
+            encoder.writeBytes(1, new byte[padding]);
+            int nested = encoder.beginMessage(2);
+            // pre-encoded field 1 with value 7, written without reserving space for further fields
+            encoder.writeRaw(new byte[]{0x08, 0x07});
+            encoder.endMessage(nested);
+
+            Map<Integer, List<Object>> message = decode(encoder.toByteArray());
+            assertEquals(padding, ((byte[]) message.get(1).get(0)).length);
+            assertEquals(7L, decode((byte[]) message.get(2).get(0)).get(1).get(0));
+        }
+    }
+
+    @Test
+    public void metricFamiliesTest() throws IOException {
+        MetricRegistry registry = new MetricRegistryImpl();
+        registry.counter(new Metadata("requests", "requests", "Number of requests", MetricType.COUNTER,
+                MetricUnits.NONE)).inc(7);
+        TimerImpl timer = registry.register(new Metadata("latency", MetricType.TIMER),
+                new TimerImpl(new HistogramBuckets(new long[]{5000000, 1000000000})));
+        timer.update(1, TimeUnit.MILLISECONDS);
+        timer.update(2, TimeUnit.SECONDS);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new PrometheusMetricWriter(outputStream, ExpositionFormat.PROTOBUF).write("application", registry);
+
+        Map<String, Map<Integer, List<Object>>> families = new HashMap<>();
+        for (byte[] message : readDelimited(outputStream.toByteArray())) {
+            Map<Integer, List<Object>> family = decode(message);
+            families.put(string(family, 1), family);
+        }
+
+        Map<Integer, List<Object>> counter = families.get("application:requests");
+        assertEquals("Number of requests", string(counter, 2));
+        assertEquals(0L, counter.get(3).get(0));
+        Map<Integer, List<Object>> counterMetric = decode((byte[]) counter.get(4).get(0));
+        assertTrue(counterMetric.get(1).size() > 0);
+        Map<Integer, List<Object>> counterValue = decode((byte[]) counterMetric.get(3).get(0));
+        assertEquals(7.0, Double.longBitsToDouble((Long) counterValue.get(1).get(0)), 0);
+        assertTrue(counterValue.containsKey(3));
+
+        Map<Integer, List<Object>> histogram = families.get("application:latency_seconds");
+        assertEquals(4L, histogram.get(3).get(0));
+        assertEquals("seconds", string(histogram, 5));
+        Map<Integer, List<Object>> histogramMetric = decode((byte[]) histogram.get(4).get(0));
+        Map<Integer, List<Object>> histogramValue = decode((byte[]) histogramMetric.get(7).get(0));
+        assertEquals(2L, histogramValue.get(1).get(0));
+        assertEquals(2.001, Double.longBitsToDouble((Long) histogramValue.get(2).get(0)), 1e-9);
+        List<Object> buckets = histogramValue.get(3);
+        assertEquals(2, buckets.size());
+        Map<Integer, List<Object>> firstBucket = decode((byte[]) buckets.get(0));
+        assertEquals(1L, firstBucket.get(1).get(0));
+        assertEquals(0.005, Double.longBitsToDouble((Long) firstBucket.get(2).get(0)), 0);
+
+        assertTrue(families.containsKey("application:latency_mean_seconds"));
+        assertTrue(families.containsKey("application:latency_rate_per_second"));
+    }
+
+    private static List<byte[]> readDelimited(byte[] bytes) {
+        List<byte[]> messages = new ArrayList<>();
+        int[] position = {0};
+        while (position[0] < bytes.length) {
+            int length = (int) readVarint(bytes, position);
+            byte[] message = new byte[length];
+            System.arraycopy(bytes, position[0], message, 0, length);
+            position[0] += length;
+            messages.add(message);
+        }
+
+        return messages;
+    }
+
+    /*
+     * Decodes the fields of a message. Length-delimited fields are returned as byte arrays, varint and fixed64 fields
+     * as longs.
+     */
+    private static Map<Integer, List<Object>> decode(byte[] bytes) {
+        Map<Integer, List<Object>> fields = new HashMap<>();
+        int[] position = {0};
+        while (position[0] < bytes.length) {
+            long tag = readVarint(bytes, position);
+            Object value;
+            switch ((int) (tag & 0x7)) {
+                case 0:
+                    value = readVarint(bytes, position);
+                    break;
+                case 1:
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits |= (bytes[position[0]++] & 0xFFL) << (8 * i);
+                    }
+                    value = bits;
+                    break;
+                case 2:
+                    int length = (int) readVarint(bytes, position);
+                    byte[] field = new byte[length];
+                    System.arraycopy(bytes, position[0], field, 0, length);
+                    position[0] += length;
+                    value = field;
+                    break;
+                default:
+                    throw new AssertionError("Unexpected wire type in tag " + tag);
+            }
+            fields.computeIfAbsent((int) (tag >>> 3), k -> new ArrayList<>()).add(value);
+        }
+
+        return fields;
+    }
+
+    private static long readVarint(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position[0]++];
+            value |= (b & 0x7FL) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+    }
+
+    private static String string(Map<Integer, List<Object>> message, int fieldNumber) {
+        List<Object> values = message.getOrDefault(fieldNumber, Collections.emptyList());
+        return values.isEmpty() ? null : new String((byte[]) values.get(0), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.reporters;
+
+import com.kumuluz.ee.metrics.api.CounterImpl;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link MetricStateCache}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class MetricStateCacheTest {
+
+    @Test
+    public void forgetsRemovedMetrics() {
+        AtomicInteger created = new AtomicInteger();
+        MetricStateCache<String> cache = new MetricStateCache<>((registryName, metricName, metadata) -> {
+            created.incrementAndGet();
+            return registryName + "." + metricName;
+        });
+
+        Metadata first = new Metadata("first", MetricType.COUNTER);
+        Metadata second = new Metadata("second", MetricType.COUNTER);
+
+        cache.startReport();
+        String firstState = cache.get("application", "first", null, first);
+        assertEquals("application.first", firstState);
+        cache.get("application", "second", null, second);
+        cache.endReport();
+        assertEquals(2, cache.size());
+
+        // the second metric is removed, state of the first one is reused
+        cache.startReport();
+        assertSame(firstState, cache.get("application", "first", null, first));
+        cache.endReport();
+        assertEquals(1, cache.size());
+        assertEquals(2, created.get());
+
+        // state of the re-added metric is created again
+        cache.startReport();
+        cache.get("application", "first", null, first);
+        cache.get("application", "second", null, second);
+        cache.endReport();
+        assertEquals(2, cache.size());
+        assertEquals(3, created.get());
+    }
+
+    @Test
+    public void metricWithoutMetadata() {
+        MetricStateCache<Object> cache = new MetricStateCache<>((registryName, metricName, metadata) -> new Object());
+        Counter counter = new CounterImpl();
+
+        cache.startReport();
+        Object state = cache.get("application", "counter", counter, null);
+        assertSame(state, cache.get("application", "counter", counter, null));
+        assertNotSame(state, cache.get("application", "other", new CounterImpl(), null));
+        cache.endReport();
+        assertEquals(2, cache.size());
+    }
+}
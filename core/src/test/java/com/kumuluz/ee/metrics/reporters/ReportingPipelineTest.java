@@ -0,0 +1,213 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.reporters;
+
+import com.kumuluz.ee.metrics.api.CounterImpl;
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.producers.MetricRegistryProducer;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ReportingPipeline}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ReportingPipelineTest {
+
+    @Test
+    public void sharedReportTest() throws Exception {
+        AtomicInteger encodings = new AtomicInteger();
+        ReportFormat format = registries -> new byte[]{(byte) encodings.incrementAndGet()};
+
+        RecordingSink first = new RecordingSink(format, 3600);
+        RecordingSink second = new RecordingSink(format, 3600);
+
+        ReportingPipeline pipeline = new ReportingPipeline();
+        // the scheduled ticks wait, so the test controls the ticks
+        CountDownLatch paused = new CountDownLatch(1);
+        pipeline.getScheduler().execute(() -> {
+            try {
+                paused.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try {
+            pipeline.register(first);
+            pipeline.register(second);
+            // both sinks are reported on the first tick
+            pipeline.tick();
+
+            assertEquals(1, first.reports.size());
+            assertEquals(1, second.reports.size());
+            assertSame(first.reports.get(0), second.reports.get(0));
+            assertArrayEquals(first.encoded.get(0), second.encoded.get(0));
+            assertEquals(1, encodings.get());
+
+            // sinks are not due until their period passes
+            pipeline.tick();
+            assertEquals(1, first.reports.size());
+        } finally {
+            paused.countDown();
+            pipeline.unregister(first);
+            pipeline.unregister(second);
+            pipeline.getScheduler().shutdownNow();
+        }
+    }
+
+    @Test
+    public void failingMetricTest() throws Exception {
+        RecordingSink sink = new RecordingSink(registries -> new byte[0], 3600);
+        AtomicInteger failures = new AtomicInteger(1);
+        MetricRegistry registry = MetricRegistryProducer.getApplicationRegistry();
+        registry.register("failing", new CounterImpl() {
+            @Override
+            public long getCount() {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("Count is not available");
+                }
+                return 0;
+            }
+        });
+
+        ReportingPipeline pipeline = new ReportingPipeline();
+        CountDownLatch paused = new CountDownLatch(1);
+        pipeline.getScheduler().execute(() -> {
+            try {
+                paused.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try {
+            pipeline.register(sink);
+            // the failing metric must not stop the scheduled task
+            pipeline.tick();
+            assertEquals(0, sink.reports.size());
+
+            // the report is retried on the next tick
+            pipeline.tick();
+            assertEquals(1, sink.reports.size());
+        } finally {
+            paused.countDown();
+            pipeline.unregister(sink);
+            pipeline.getScheduler().shutdownNow();
+            registry.remove("failing");
+        }
+    }
+
+    @Test
+    public void consistentValuesTest() throws Exception {
+        MetricRegistryImpl registry = new MetricRegistryImpl();
+        Counter counter = registry.counter("counter");
+        Histogram histogram = registry.histogram("histogram");
+        Timer timer = registry.timer("timer");
+        AtomicLong gaugeValue = new AtomicLong(5);
+        registry.register("gauge", (LongGauge) gaugeValue::get);
+
+        counter.inc();
+        histogram.update(10);
+        timer.update(1, TimeUnit.SECONDS);
+
+        MetricsReport report = new MetricsReport(Collections.singletonMap("application", registry));
+
+        counter.inc();
+        histogram.update(20);
+        timer.update(2, TimeUnit.SECONDS);
+        gaugeValue.set(6);
+
+        // every format sees the values at the time of the report
+        ReportFormat counts = registries -> {
+            MetricRegistry reported = registries.get("application");
+            return new byte[]{
+                    (byte) reported.getCounters().get("counter").getCount(),
+                    (byte) reported.getHistograms().get("histogram").getCount(),
+                    (byte) reported.getHistograms().get("histogram").getSnapshot().getMax(),
+                    (byte) reported.getTimers().get("timer").getSnapshot().size(),
+                    (byte) ((LongGauge) reported.getGauges().get("gauge")).getLongValue()};
+        };
+        assertArrayEquals(new byte[]{1, 1, 10, 1, 5}, report.encode(counts));
+        assertEquals(2, counter.getCount());
+
+        try {
+            report.getRegistries().get("application").getCounters().get("counter").inc();
+            fail("Reported counter is not read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    private static class RecordingSink implements ReporterSink {
+
+        private final ReportFormat format;
+        private final long periodSeconds;
+
+        private final List<MetricsReport> reports = new ArrayList<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+
+        private RecordingSink(ReportFormat format, long periodSeconds) {
+            this.format = format;
+            this.periodSeconds = periodSeconds;
+        }
+
+        @Override
+        public String getName() {
+            return "Recording";
+        }
+
+        @Override
+        public long getPeriodSeconds() {
+            return periodSeconds;
+        }
+
+        @Override
+        public void report(MetricsReport report) {
+            try {
+                reports.add(report);
+                encoded.add(report.encode(format));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.metrics.tests;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that concurrent counter updates are not lost.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@RunWith(Arquillian.class)
+public class CounterConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int ITERATIONS = 10000;
+
+    @Inject
+    private MetricRegistry kumuluzMetricRegistry;
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class);
+    }
+
+    @Test
+    public void incrementTest() throws Exception {
+        Counter counter = kumuluzMetricRegistry.counter(new Metadata("incrementedCounter", MetricType.COUNTER));
+
+        runConcurrently(() -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                counter.inc();
+            }
+            counter.inc(ITERATIONS);
+        });
+
+        assertEquals("Counter count is not equal", 2L * THREADS * ITERATIONS, counter.getCount());
+    }
+
+    @Test
+    public void incrementDecrementTest() throws Exception {
+        Counter counter = kumuluzMetricRegistry.counter(new Metadata("inFlightCounter", MetricType.COUNTER));
+
+        // in-flight pattern, used by non-monotonic @Counted
+        runConcurrently(() -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                counter.inc();
+                counter.dec();
+            }
+            counter.inc(3);
+            counter.dec(2);
+        });
+
+        assertEquals("Counter count is not equal", THREADS, counter.getCount());
+    }
+
+    private void runConcurrently(Runnable task) throws Exception {
+        final AtomicBoolean fail = new AtomicBoolean(false);
+
+        ExecutorService es = Executors.newFixedThreadPool(THREADS);
+        final CyclicBarrier gate = new CyclicBarrier(THREADS + 1);
+
+        for (int j = 0; j < THREADS; j++) {
+            es.execute(() -> {
+                try {
+                    gate.await();
+                    task.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    fail.set(true);
+                }
+            });
+        }
+
+        //executes updates concurrently
+        gate.await();
+
+        es.shutdown();
+        boolean finished = es.awaitTermination(30, TimeUnit.SECONDS);
+        assertTrue("Threads not finished in given time", finished);
+        assertFalse(fail.get());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.tests;
+
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.Timer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that get-or-create calls, which race with removals of the same metric, do not leave removed metrics in the
+ * typed indexes of the registry.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class RegistryConcurrencyTest {
+
+    private static final int THREADS = 4;
+    private static final int NAMES = 64;
+    private static final int ROUNDS = 2000;
+
+    @Test
+    public void getOrCreateWithRemoveTest() throws Exception {
+        MetricRegistryImpl registry = new MetricRegistryImpl();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier gate = new CyclicBarrier(THREADS);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                boolean remover = t % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    gate.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = 0; i < NAMES; i++) {
+                            if (remover) {
+                                registry.remove("counter" + i);
+                                registry.remove("timer" + i);
+                            } else {
+                                registry.counter("counter" + i).inc();
+                                registry.timer("timer" + i);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < NAMES; i++) {
+            assertConsistent(registry, "counter" + i, registry.getCounters().get("counter" + i));
+            assertConsistent(registry, "timer" + i, registry.getTimers().get("timer" + i));
+
+            // metrics returned by get-or-create are registered and can be removed
+            Counter counter = registry.counter("counter" + i);
+            assertSame(counter, registry.getMetrics().get("counter" + i));
+            assertTrue(registry.remove("counter" + i));
+            Timer timer = registry.timer("timer" + i);
+            assertSame(timer, registry.getMetrics().get("timer" + i));
+            assertTrue(registry.remove("timer" + i));
+        }
+    }
+
+    private static void assertConsistent(MetricRegistryImpl registry, String name, Metric indexed) {
+        assertSame("Index of " + name + " does not match the registry", registry.getMetrics().get(name), indexed);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.utils;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link AsciiEncoder}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class AsciiEncoderTest {
+
+    private static final long[] LONGS = {0, 1, -1, 9, 10, -10, 99, 100, 123456789, -987654321, Long.MAX_VALUE,
+            Long.MIN_VALUE, Long.MIN_VALUE + 1};
+
+    @Test
+    public void longToArray() {
+        for (long value : LONGS) {
+            byte[] buffer = new byte[AsciiEncoder.MAX_LONG_LENGTH + 2];
+            buffer[0] = 'x';
+            int end = AsciiEncoder.putLong(buffer, 1, value);
+
+            assertEquals("x" + value, new String(buffer, 0, end, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void longToByteBuffer() {
+        for (long value : LONGS) {
+            for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(32), ByteBuffer.allocateDirect(32)}) {
+                buffer.put((byte) 'x');
+                AsciiEncoder.putLong(buffer, value);
+
+                assertEquals("x" + value, content(buffer));
+            }
+        }
+    }
+
+    @Test
+    public void longOverflow() {
+        ByteBuffer buffer = ByteBuffer.allocate(7);
+        buffer.put((byte) 'x');
+        try {
+            AsciiEncoder.putLong(buffer, -123456);
+            fail("Expected BufferOverflowException");
+        } catch (BufferOverflowException e) {
+            // expected
+        }
+        assertEquals(1, buffer.position());
+
+        AsciiEncoder.putLong(buffer, -12345);
+        assertEquals("x-12345", content(buffer));
+    }
+
+    @Test
+    public void doubles() {
+        assertEquals("42", putDouble(42.0, false));
+        assertEquals("-3", putDouble(-3.0, false));
+        assertEquals("0.25", putDouble(0.25, false));
+        assertEquals("1.0E-5", putDouble(0.00001, false));
+        assertEquals("1.0E20", putDouble(1e20, false));
+
+        assertEquals("42", putDouble(42.0, true));
+        assertEquals("0.000010", putDouble(0.00001, true));
+        assertEquals("100000000000000000000", putDouble(1e20, true));
+    }
+
+    @Test
+    public void javaPlainIntegral() {
+        for (double value : new double[]{0.0, 1.0, -1.0, 1234567.0, 9999999.0, -9999999.0}) {
+            assertTrue(String.valueOf(value), AsciiEncoder.isJavaPlainIntegral(value));
+            assertEquals((long) value + ".0", Double.toString(value));
+        }
+        for (double value : new double[]{-0.0, 0.5, 1e7, -1e7, 1e20, Double.NaN, Double.POSITIVE_INFINITY}) {
+            assertFalse(String.valueOf(value), AsciiEncoder.isJavaPlainIntegral(value));
+        }
+    }
+
+    private static String putDouble(double value, boolean plain) {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        if (plain) {
+            AsciiEncoder.putPlainDouble(buffer, value);
+        } else {
+            AsciiEncoder.putDouble(buffer, value);
+        }
+        return content(buffer);
+    }
+
+    private static String content(ByteBuffer buffer) {
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.utils;
+
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link CompressingOutputStream}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class CompressingOutputStreamTest {
+
+    private static final int MIN_SIZE = 1024;
+
+    @Test
+    public void negotiationTest() {
+        assertNull(CompressingOutputStream.negotiateEncoding(null));
+        assertNull(CompressingOutputStream.negotiateEncoding("identity"));
+        assertNull(CompressingOutputStream.negotiateEncoding("br, gzip;q=0"));
+        assertEquals(CompressingOutputStream.GZIP, CompressingOutputStream.negotiateEncoding("deflate, gzip"));
+        assertEquals(CompressingOutputStream.GZIP, CompressingOutputStream.negotiateEncoding("X-GZIP;q=0.5"));
+        assertEquals(CompressingOutputStream.DEFLATE, CompressingOutputStream.negotiateEncoding("gzip;q=0, deflate"));
+        assertEquals(CompressingOutputStream.DEFLATE, CompressingOutputStream.negotiateEncoding("deflate;q=invalid, " +
+                "deflate;q=1"));
+    }
+
+    @Test
+    public void gzipTest() throws IOException {
+        RecordingResponse response = new RecordingResponse();
+        byte[] body = body(10 * MIN_SIZE);
+
+        write(request("gzip, deflate"), response, body);
+
+        assertEquals("gzip", response.headers.get("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.headers.get("Vary"));
+        assertEquals(-1, response.contentLength);
+        assertArrayEquals(body, read(new GZIPInputStream(new ByteArrayInputStream(response.body.toByteArray()))));
+    }
+
+    @Test
+    public void deflateTest() throws IOException {
+        RecordingResponse response = new RecordingResponse();
+        byte[] body = body(10 * MIN_SIZE);
+
+        write(request("deflate"), response, body);
+
+        assertEquals("deflate", response.headers.get("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.headers.get("Vary"));
+        assertArrayEquals(body, read(new InflaterInputStream(new ByteArrayInputStream(response.body.toByteArray()))));
+    }
+
+    @Test
+    public void belowMinSizeTest() throws IOException {
+        RecordingResponse response = new RecordingResponse();
+        byte[] body = body(MIN_SIZE);
+
+        write(request("gzip"), response, body);
+
+        assertNull(response.headers.get("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.headers.get("Vary"));
+        assertEquals(MIN_SIZE, response.contentLength);
+        assertArrayEquals(body, response.body.toByteArray());
+    }
+
+    @Test
+    public void notAcceptedTest() throws IOException {
+        RecordingResponse response = new RecordingResponse();
+        byte[] body = body(10 * MIN_SIZE);
+
+        write(request(null), response, body);
+
+        assertNull(response.headers.get("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.headers.get("Vary"));
+        assertArrayEquals(body, response.body.toByteArray());
+    }
+
+    private static void write(HttpServletRequest request, RecordingResponse response, byte[] body)
+            throws IOException {
+        try (OutputStream output = CompressingOutputStream.forRequest(request, response.proxy(), -1, MIN_SIZE)) {
+            // written in parts, so the minimum size is crossed in the middle of a write
+            int half = body.length / 2;
+            output.write(body, 0, half);
+            output.write(body[half]);
+            output.write(body, half + 1, body.length - half - 1);
+        }
+    }
+
+    private static byte[] body(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) ('a' + i % 7);
+        }
+        return body;
+    }
+
+    private static byte[] read(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    private static HttpServletRequest request(String acceptEncoding) {
+        return (HttpServletRequest) Proxy.newProxyInstance(CompressingOutputStreamTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    if ("getHeader".equals(method.getName()) && "Accept-Encoding".equals(args[0])) {
+                        return acceptEncoding;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static class RecordingResponse {
+
+        private final Map<String, String> headers = new HashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private int contentLength = -1;
+
+        private final ServletOutputStream output = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+
+        private HttpServletResponse proxy() {
+            return (HttpServletResponse) Proxy.newProxyInstance(CompressingOutputStreamTest.class.getClassLoader(),
+                    new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "setHeader":
+                            case "addHeader":
+                                headers.put((String) args[0], (String) args[1]);
+                                return null;
+                            case "setContentLength":
+                                contentLength = (Integer) args[0];
+                                return null;
+                            case "getOutputStream":
+                                return output;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+}
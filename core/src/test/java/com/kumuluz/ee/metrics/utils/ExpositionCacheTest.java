@@ -0,0 +1,144 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ExpositionCache}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ExpositionCacheTest {
+
+    private static final byte[] EXPOSITION = {1, 2, 3};
+
+    @Test
+    public void ttlTest() throws Exception {
+        ExpositionCache cache = new ExpositionCache(50);
+        AtomicInteger renders = new AtomicInteger();
+        ExpositionCache.Renderer renderer = () -> {
+            renders.incrementAndGet();
+            return EXPOSITION;
+        };
+
+        assertArrayEquals(EXPOSITION, cache.get("key", renderer));
+        assertArrayEquals(EXPOSITION, cache.get("key", renderer));
+        assertEquals(1, renders.get());
+
+        Thread.sleep(100);
+
+        assertArrayEquals(EXPOSITION, cache.get("key", renderer));
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void coalescingTest() throws Exception {
+        ExpositionCache cache = new ExpositionCache(10000);
+        AtomicInteger renders = new AtomicInteger();
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<byte[]> owner = executor.submit(() -> cache.get("key", () -> {
+                renders.incrementAndGet();
+                rendering.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return EXPOSITION;
+            }));
+            rendering.await();
+
+            Future<byte[]> waiter = executor.submit(() -> cache.get("key", () -> {
+                renders.incrementAndGet();
+                return new byte[0];
+            }));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertArrayEquals(EXPOSITION, owner.get(5, TimeUnit.SECONDS));
+            assertArrayEquals(EXPOSITION, waiter.get(5, TimeUnit.SECONDS));
+            assertEquals(1, renders.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+        ExpositionCache cache = new ExpositionCache(10000);
+
+        try {
+            cache.get("key", () -> {
+                throw new IOException("render failed");
+            });
+            fail("Exception was not thrown");
+        } catch (IOException e) {
+            assertEquals("render failed", e.getMessage());
+        }
+        assertEquals(0, cache.size());
+
+        try {
+            cache.get("key", () -> {
+                throw new StackOverflowError();
+            });
+            fail("Error was not thrown");
+        } catch (StackOverflowError e) {
+            // expected
+        }
+        assertEquals(0, cache.size());
+
+        // failed renders are not cached
+        assertArrayEquals(EXPOSITION, cache.get("key", () -> EXPOSITION));
+    }
+
+    @Test
+    public void evictionTest() throws Exception {
+        ExpositionCache cache = new ExpositionCache(50, 2);
+
+        cache.get("first", () -> EXPOSITION);
+        cache.get("second", () -> EXPOSITION);
+        cache.get("third", () -> EXPOSITION);
+        assertEquals(2, cache.size());
+
+        Thread.sleep(100);
+
+        cache.get("fourth", () -> EXPOSITION);
+        assertEquals(1, cache.size());
+    }
+}
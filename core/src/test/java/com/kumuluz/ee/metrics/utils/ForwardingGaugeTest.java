@@ -0,0 +1,126 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.utils;
+
+import com.kumuluz.ee.metrics.api.ForwardingGauge;
+import com.kumuluz.ee.metrics.api.LongGauge;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ForwardingGauge}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class ForwardingGaugeTest {
+
+    private static final RuntimeException FAILURE = new UnsupportedOperationException();
+
+    @Test
+    public void valuesTest() throws Exception {
+        Gauges gauges = new Gauges();
+
+        Gauge<?> publicGauge = ForwardingGauge.forMethod(Gauges.class.getMethod("publicValue"), gauges);
+        Gauge<?> privateGauge = ForwardingGauge.forMethod(Gauges.class.getDeclaredMethod("privateValue"), gauges);
+        Gauge<?> objectGauge = ForwardingGauge.forMethod(Gauges.class.getMethod("objectValue"), gauges);
+
+        assertTrue(publicGauge instanceof LongGauge);
+        assertEquals(1L, ((LongGauge) publicGauge).getLongValue());
+        assertEquals(2L, ((LongGauge) privateGauge).getLongValue());
+        assertEquals("3", objectGauge.getValue());
+    }
+
+    @Test
+    public void exceptionsTest() throws Exception {
+        Gauges gauges = new Gauges();
+
+        // generated accessor, method handle and checked exception paths wrap exceptions in the same way
+        assertWrapped(ForwardingGauge.forMethod(Gauges.class.getMethod("publicFailure"), gauges), FAILURE);
+        assertWrapped(ForwardingGauge.forMethod(Gauges.class.getDeclaredMethod("privateFailure"), gauges), FAILURE);
+        assertWrapped(ForwardingGauge.forMethod(Gauges.class.getMethod("objectFailure"), gauges), FAILURE);
+        assertWrapped(ForwardingGauge.forMethod(Gauges.class.getMethod("checkedFailure"), gauges),
+                Gauges.CHECKED_FAILURE);
+
+        Gauge<?> errorGauge = ForwardingGauge.forMethod(Gauges.class.getMethod("error"), gauges);
+        try {
+            errorGauge.getValue();
+            fail("Error was not rethrown");
+        } catch (AssertionError e) {
+            assertSame(Gauges.ERROR, e);
+        }
+    }
+
+    private static void assertWrapped(Gauge<?> gauge, Throwable cause) {
+        try {
+            gauge.getValue();
+            fail("Exception was not thrown");
+        } catch (IllegalStateException e) {
+            assertSame(cause, e.getCause());
+        }
+    }
+
+    public static class Gauges {
+
+        static final IOException CHECKED_FAILURE = new IOException();
+
+        static final AssertionError ERROR = new AssertionError();
+
+        public long publicValue() {
+            return 1L;
+        }
+
+        private long privateValue() {
+            return 2L;
+        }
+
+        public String objectValue() {
+            return "3";
+        }
+
+        public long publicFailure() {
+            throw FAILURE;
+        }
+
+        private double privateFailure() {
+            throw FAILURE;
+        }
+
+        public Object objectFailure() {
+            throw FAILURE;
+        }
+
+        public long checkedFailure() throws IOException {
+            throw CHECKED_FAILURE;
+        }
+
+        public long error() {
+            throw ERROR;
+        }
+    }
+}
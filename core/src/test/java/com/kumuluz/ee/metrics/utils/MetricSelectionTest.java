@@ -0,0 +1,162 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.utils;
+
+import com.kumuluz.ee.metrics.api.MetricAdapter;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.api.MetricSelector;
+import com.kumuluz.ee.metrics.prometheus.PrometheusMetricWriter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests selection of metrics by name and tags.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class MetricSelectionTest {
+
+    private MetricRegistryImpl registry;
+
+    @Before
+    public void setUp() {
+        registry = new MetricRegistryImpl();
+
+        registry.counter("requests.get");
+        registry.counter("requests.post");
+        registry.counter("requestsTotal");
+        registry.counter("responses");
+
+        Metadata tagged = new Metadata("errors", MetricType.COUNTER);
+        tagged.addTag("status=500");
+        registry.counter(tagged);
+    }
+
+    @Test
+    public void literalPrefixTest() {
+        assertEquals("requests", prefix("requests"));
+        assertEquals("requests.", prefix("requests\\..*"));
+        assertEquals("request", prefix("requests?"));
+        assertEquals("requests", prefix("^requests.*"));
+        assertEquals("", prefix("requests|responses"));
+        assertEquals("", prefix("(?i)requests"));
+        assertEquals("", prefix("\\w+"));
+    }
+
+    @Test
+    public void nameSelectionTest() {
+        assertEquals(Arrays.asList("requests.get", "requests.post"),
+                select(Collections.singletonList("requests\\..*")));
+        assertEquals(Arrays.asList("requests.get", "requests.post", "requestsTotal"),
+                select(Collections.singletonList("requests.*")));
+        assertEquals(Arrays.asList("requests.get", "responses"), select(Arrays.asList("responses", "requests\\.get")));
+        assertEquals(Arrays.asList("errors", "responses"), select(Collections.singletonList(".*s")));
+        assertEquals(Collections.emptyList(), select(Collections.singletonList("requests")));
+    }
+
+    @Test
+    public void tagSelectionTest() {
+        Map.Entry<String, String> tag = MetricSelector.parseTag("status:500");
+        Map<String, String> tags = Collections.singletonMap(tag.getKey(), tag.getValue());
+
+        assertEquals(Collections.singletonList("errors"),
+                new ArrayList<>(registry.getMetricAdapters(new MetricSelector(Collections.emptyList(), tags))
+                        .keySet()));
+        assertTrue(registry.getMetricAdapters(new MetricSelector(Collections.singletonList("requests.*"), tags))
+                .isEmpty());
+        assertTrue(registry.getMetricAdapters(new MetricSelector(Collections.emptyList(),
+                Collections.singletonMap("status", "404"))).isEmpty());
+    }
+
+    @Test
+    public void queryTest() {
+        Map<String, String> tags = new TreeMap<>();
+        tags.put("method", "GET");
+        tags.put("status", "500");
+
+        assertEquals("name[]=requests.*&name[]=responses&tag=method:GET&tag=status:500",
+                new MetricSelector(Arrays.asList("requests.*", "responses"), tags).toString());
+        assertEquals("tag=method:GET&tag=status:500", new MetricSelector(Collections.emptyList(), tags).toString());
+    }
+
+    @Test
+    public void keyTest() {
+        MetricSelector pattern = new MetricSelector(Collections.singletonList("requests&tag=method:GET"),
+                Collections.emptyMap());
+        MetricSelector tag = new MetricSelector(Collections.singletonList("requests"),
+                Collections.singletonMap("method", "GET"));
+
+        // query strings of both selectors are equal, keys are not
+        assertEquals(pattern.toString(), tag.toString());
+        assertNotEquals(pattern.getKey(), tag.getKey());
+        assertEquals(tag.getKey(), new MetricSelector(Collections.singletonList("requests"),
+                Collections.singletonMap("method", "GET")).getKey());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTagTest() {
+        MetricSelector.parseTag("status");
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void invalidNameTest() {
+        new MetricSelector(Collections.singletonList("requests("), Collections.emptyMap());
+    }
+
+    @Test
+    public void prometheusTest() throws IOException {
+        registry.counter("responses").inc(2);
+
+        SortedMap<String, MetricAdapter> selected = registry.getMetricAdapters(
+                new MetricSelector(Collections.singletonList("responses"), Collections.emptyMap()));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new PrometheusMetricWriter(output).writeSelected(Collections.singletonMap("application", selected));
+        String exposition = new String(output.toByteArray(), StandardCharsets.UTF_8);
+
+        assertTrue(exposition.contains("# TYPE application:responses counter\n"));
+        assertTrue(exposition.contains("application:responses{"));
+        assertTrue(exposition.contains("} 2\n"));
+        assertFalse(exposition.contains("requests"));
+    }
+
+    private String prefix(String regex) {
+        return new MetricSelector(Collections.singletonList(regex), Collections.emptyMap()).getNamePrefix(0);
+    }
+
+    private List<String> select(List<String> names) {
+        return new ArrayList<>(registry.getMetricAdapters(new MetricSelector(names, Collections.emptyMap())).keySet());
+    }
+}
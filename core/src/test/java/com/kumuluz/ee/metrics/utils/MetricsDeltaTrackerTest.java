@@ -0,0 +1,106 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.utils;
+
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MetricsDeltaTracker}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class MetricsDeltaTrackerTest {
+
+    private Map<String, MetricRegistry> registries;
+    private Counter counter;
+    private AtomicLong gaugeValue;
+
+    @Before
+    public void setUp() {
+        MetricRegistry registry = new MetricRegistryImpl();
+        counter = registry.counter(new Metadata("counter", MetricType.COUNTER));
+        gaugeValue = new AtomicLong();
+        registry.register(new Metadata("gauge", MetricType.GAUGE), (LongGauge) gaugeValue::get);
+
+        registries = Collections.singletonMap("application", registry);
+    }
+
+    @Test
+    public void changedMetricsTest() {
+        MetricsDeltaTracker tracker = new MetricsDeltaTracker(10, false);
+
+        assertEquals(2, tracker.collect(registries, true).get("application").size());
+        assertTrue(tracker.collect(registries, false).isEmpty());
+
+        counter.inc(3);
+        Map<String, Metric> changed = tracker.collect(registries, false).get("application");
+        assertEquals(Collections.singleton("counter"), changed.keySet());
+        assertEquals(3L, ((Counter) changed.get("counter")).getCount());
+
+        gaugeValue.set(5);
+        changed = tracker.collect(registries, false).get("application");
+        assertEquals(Collections.singleton("gauge"), changed.keySet());
+        gaugeValue.set(6);
+        // the reported gauge keeps the compared value
+        assertEquals(5L, ((LongGauge) changed.get("gauge")).getLongValue());
+
+        assertEquals(2, tracker.collect(registries, true).get("application").size());
+    }
+
+    @Test
+    public void counterDeltasTest() {
+        MetricsDeltaTracker tracker = new MetricsDeltaTracker(10, true);
+
+        counter.inc(2);
+        assertEquals(2L, ((LongGauge) tracker.collect(registries, true).get("application").get("counter"))
+                .getLongValue());
+
+        counter.inc(5);
+        assertEquals(5L, ((LongGauge) tracker.collect(registries, false).get("application").get("counter"))
+                .getLongValue());
+
+        assertTrue(tracker.collect(registries, false).isEmpty());
+
+        // full reports contain the total count, so the receiver can resynchronize
+        assertEquals(7L, ((LongGauge) tracker.collect(registries, true).get("application").get("counter"))
+                .getLongValue());
+
+        counter.inc();
+        assertEquals(1L, ((LongGauge) tracker.collect(registries, false).get("application").get("counter"))
+                .getLongValue());
+    }
+}
@@ -21,15 +21,13 @@
 package com.kumuluz.ee.metrics.logs;
 
 import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.metrics.reporters.ReportingPipeline;
+import com.kumuluz.ee.metrics.utils.MetricsDeltaTracker;
 
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.Initialized;
 import javax.enterprise.event.Observes;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Initializes Logs reporter.
@@ -41,9 +39,7 @@ import java.util.concurrent.TimeUnit;
 @ApplicationScoped
 public class LogsInitiator {
 
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-
-    private ScheduledFuture handle;
+    private LogsSender sender;
 
     private void initialiseBean(@Observes @Initialized(ApplicationScoped.class) Object init) {
         ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
@@ -53,13 +49,22 @@ public class LogsInitiator {
         String level = configurationUtil.get("kumuluzee.metrics.logs.level").orElse("FINE");
 
         if (enabled) {
-            LogsSender sender = new LogsSender(level);
-            handle = scheduler.scheduleWithFixedDelay(sender, 0, periodSeconds, TimeUnit.SECONDS);
+            MetricsDeltaTracker deltaTracker = null;
+            if (configurationUtil.getBoolean("kumuluzee.metrics.logs.delta.enabled").orElse(false)) {
+                deltaTracker = new MetricsDeltaTracker(
+                        configurationUtil.getInteger("kumuluzee.metrics.logs.delta.full-report-period").orElse(10),
+                        configurationUtil.getBoolean("kumuluzee.metrics.logs.delta.counter-deltas").orElse(false));
+            }
+
+            sender = new LogsSender(level, periodSeconds, deltaTracker);
+            ReportingPipeline.getInstance().register(sender);
         }
     }
 
     @PreDestroy
     private void closeHandle() {
-        handle.cancel(true);
+        if (sender != null) {
+            ReportingPipeline.getInstance().unregister(sender);
+        }
     }
 }
@@ -20,46 +20,61 @@
 */
 package com.kumuluz.ee.metrics.logs;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.kumuluz.ee.metrics.json.MetricsModule;
-import com.kumuluz.ee.metrics.json.models.MetricsPayload;
-import com.kumuluz.ee.metrics.producers.MetricRegistryProducer;
-import org.eclipse.microprofile.metrics.MetricRegistry;
+import com.kumuluz.ee.metrics.reporters.JsonReportFormat;
+import com.kumuluz.ee.metrics.reporters.MetricsReport;
+import com.kumuluz.ee.metrics.reporters.ReportFormat;
+import com.kumuluz.ee.metrics.reporters.ReporterSink;
+import com.kumuluz.ee.metrics.utils.MetricsDeltaTracker;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Runnable, which logs metrics.
+ * Reporter, which logs metrics.
  *
  * @author Aljaž Blažej
  * @author Urban Malc
  * @since 1.0.0
  */
-public class LogsSender implements Runnable {
+public class LogsSender implements ReporterSink {
 
     private static final Logger log = Logger.getLogger(LogsSender.class.getName());
     private Level level;
 
-    private ObjectMapper mapper;
-
-    public LogsSender(String level) {
-        this.mapper = (new ObjectMapper()).registerModule(new MetricsModule(false));
+    private long periodSeconds;
+    private ReportFormat format;
 
+    /**
+     * @param deltaTracker If not null, only metrics which changed since the previous period are logged
+     */
+    public LogsSender(String level, long periodSeconds, MetricsDeltaTracker deltaTracker) {
         this.level = Level.parse(level.toUpperCase());
+        this.periodSeconds = periodSeconds;
+        this.format = deltaTracker == null ? JsonReportFormat.FULL : new JsonReportFormat(deltaTracker);
     }
 
     @Override
-    public void run() {
-        try {
-            Map<String, MetricRegistry> registries = new HashMap<>();
-            registries.put("application", MetricRegistryProducer.getApplicationRegistry());
-            registries.put("base", MetricRegistryProducer.getBaseRegistry());
-            registries.put("vendor", MetricRegistryProducer.getVendorRegistry());
+    public String getName() {
+        return "Logs";
+    }
+
+    @Override
+    public long getPeriodSeconds() {
+        return periodSeconds;
+    }
 
-            log.log(level, this.mapper.writer().writeValueAsString(new MetricsPayload(registries)));
+    @Override
+    public void report(MetricsReport report) {
+        if (!log.isLoggable(level)) {
+            return;
+        }
+
+        try {
+            byte[] payload = report.encode(format);
+            if (payload != null) {
+                log.log(level, new String(payload, StandardCharsets.UTF_8));
+            }
         } catch (Exception exception) {
             log.log(Level.SEVERE, "An error occurred when trying to log metrics.", exception);
         }
@@ -20,25 +20,38 @@
 */
 package com.kumuluz.ee.metrics;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.producers.MetricRegistryProducer;
+import com.kumuluz.ee.metrics.reporters.JsonReportFormat;
+import com.kumuluz.ee.metrics.reporters.MetricsReport;
+import com.kumuluz.ee.metrics.reporters.ReportFormat;
+import com.kumuluz.ee.metrics.reporters.ReporterSink;
+import com.kumuluz.ee.metrics.reporters.ReportingPipeline;
+import com.kumuluz.ee.metrics.utils.MetricsDeltaTracker;
+import org.eclipse.microprofile.metrics.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.logging.Logger;
 
 /**
- * Schedules {@link LogstashSender}.
+ * Reports metrics to Logstash with {@link LogstashSender}. Reports are scheduled by the {@link ReportingPipeline}.
  *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
  */
-public class KumuluzEELogstashReporter {
+public class KumuluzEELogstashReporter implements ReporterSink {
 
     private static final Logger log = Logger.getLogger(KumuluzEELogstashReporter.class.getName());
 
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private ScheduledFuture handle;
+    private static final String QUEUE_DEPTH_METRIC = "logstash.queue.depth";
+    private static final String DROPPED_METRIC = "logstash.dropped";
+    private static final String LATENCY_METRIC = "logstash.latency";
+    private static final String SPOOL_DEPTH_METRIC = "logstash.spool.depth";
+
+    private LogstashSender sender;
 
     private String address;
     private int port;
@@ -46,23 +59,108 @@ public class KumuluzEELogstashReporter {
 
     private int startRetryDelay;
     private int maxRetryDelay;
+    private int connectTimeout;
+    private int queueSize;
+
+    private Path spoolPath;
+    private int spoolSize;
+    private int spoolBatchSize;
+
+    private ReportFormat format;
+
+    public KumuluzEELogstashReporter(String address, int port, long periodSeconds, int startRetryDelay,
+                                     int maxRetryDelay, int connectTimeout, int queueSize, Path spoolPath,
+                                     int spoolSize, int spoolBatchSize) {
+        this(address, port, periodSeconds, startRetryDelay, maxRetryDelay, connectTimeout, queueSize, spoolPath,
+                spoolSize, spoolBatchSize, null);
+    }
 
+    /**
+     * @param deltaTracker If not null, only metrics which changed since the previous period are reported
+     */
     public KumuluzEELogstashReporter(String address, int port, long periodSeconds, int startRetryDelay,
-                                     int maxRetryDelay) {
+                                     int maxRetryDelay, int connectTimeout, int queueSize, Path spoolPath,
+                                     int spoolSize, int spoolBatchSize, MetricsDeltaTracker deltaTracker) {
         this.address = address;
         this.port = port;
         this.periodSeconds = periodSeconds;
         this.startRetryDelay = startRetryDelay;
         this.maxRetryDelay = maxRetryDelay;
+        this.connectTimeout = connectTimeout;
+        this.queueSize = queueSize;
+        this.spoolPath = spoolPath;
+        this.spoolSize = spoolSize;
+        this.spoolBatchSize = spoolBatchSize;
+        this.format = deltaTracker == null ? JsonReportFormat.FULL : new JsonReportFormat(deltaTracker);
     }
 
     public void start() {
         log.info("Starting Logstash reporter.");
-        LogstashSender sender = new LogstashSender(address, port, startRetryDelay, maxRetryDelay);
-        handle = scheduler.scheduleWithFixedDelay(sender, 0, periodSeconds, TimeUnit.SECONDS);
+
+        MetricRegistry vendorRegistry = MetricRegistryProducer.getVendorRegistry();
+        Counter dropped = vendorRegistry.counter(new Metadata(DROPPED_METRIC, "Logstash Dropped Payloads",
+                "Number of payloads, dropped because the Logstash queue was full.", MetricType.COUNTER,
+                MetricUnits.NONE));
+        Timer latency = vendorRegistry.timer(new Metadata(LATENCY_METRIC, "Logstash Latency",
+                "Time from queueing a payload until it is written to Logstash.", MetricType.TIMER,
+                MetricUnits.NANOSECONDS));
+
+        LogstashSpool spool = null;
+        if (spoolPath != null) {
+            try {
+                spool = new LogstashSpool(spoolPath, spoolSize);
+                log.info("Spooling Logstash reports to " + spoolPath + ", " + spool.size() + " reports are spooled.");
+            } catch (IOException | RuntimeException e) {
+                log.severe("Cannot open Logstash spool, reports will not be spooled: " + e.getLocalizedMessage());
+            }
+        }
+
+        sender = new LogstashSender(address, port, startRetryDelay, maxRetryDelay, connectTimeout, queueSize,
+                spool, spoolBatchSize, ReportingPipeline.getInstance().getScheduler(), dropped, latency);
+
+        // the gauge is bound to the current sender
+        vendorRegistry.remove(QUEUE_DEPTH_METRIC);
+        vendorRegistry.register(new Metadata(QUEUE_DEPTH_METRIC, "Logstash Queue Depth",
+                "Number of payloads, waiting to be written to Logstash.", MetricType.GAUGE, MetricUnits.NONE),
+                (LongGauge) sender::getQueueDepth);
+
+        if (spool != null) {
+            vendorRegistry.remove(SPOOL_DEPTH_METRIC);
+            vendorRegistry.register(new Metadata(SPOOL_DEPTH_METRIC, "Logstash Spool Depth",
+                    "Number of spooled payloads, waiting to be written to Logstash.", MetricType.GAUGE,
+                    MetricUnits.NONE), (LongGauge) sender::getSpoolDepth);
+        }
+
+        ReportingPipeline.getInstance().register(this);
     }
 
     public void stop() {
-        handle.cancel(true);
+        ReportingPipeline.getInstance().unregister(this);
+        sender.close();
+    }
+
+    @Override
+    public String getName() {
+        return "Logstash";
+    }
+
+    @Override
+    public long getPeriodSeconds() {
+        return periodSeconds;
+    }
+
+    @Override
+    public void report(MetricsReport report) {
+        try {
+            byte[] payload = report.encode(format);
+            if (payload != null) {
+                // the encoding is shared with other reporters, so the delimiter is added to a copy
+                byte[] line = Arrays.copyOf(payload, payload.length + 1);
+                line[payload.length] = '\n';
+                sender.send(line);
+            }
+        } catch (IOException e) {
+            log.severe("Cannot encode metrics for Logstash: " + e.getLocalizedMessage());
+        }
     }
 }
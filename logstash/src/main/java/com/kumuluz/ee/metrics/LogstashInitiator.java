@@ -21,11 +21,14 @@
 package com.kumuluz.ee.metrics;
 
 import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.metrics.utils.MetricsDeltaTracker;
 
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.Initialized;
 import javax.enterprise.event.Observes;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Initializes Logstash reporter.
@@ -54,9 +57,33 @@ public class LogstashInitiator {
                     .orElse(500);
             int maxRetryDelay = configurationUtil.getInteger("kumuluzee.metrics.logstash.max-retry-delay-ms")
                     .orElse(900000);
+            int connectTimeout = configurationUtil.getInteger("kumuluzee.metrics.logstash.connect-timeout-ms")
+                    .orElse(10000);
+            int queueSize = configurationUtil.getInteger("kumuluzee.metrics.logstash.queue-size").orElse(100);
+
+            Path spoolPath = null;
+            if (configurationUtil.getBoolean("kumuluzee.metrics.logstash.spool.enabled").orElse(false)) {
+                spoolPath = Paths.get(configurationUtil.get("kumuluzee.metrics.logstash.spool.path")
+                        .orElse(Paths.get(System.getProperty("java.io.tmpdir"), "kumuluzee-metrics-logstash.spool")
+                                .toString()));
+            }
+            int spoolSize = (int) Math.min(Integer.MAX_VALUE, 1024L * 1024 *
+                    configurationUtil.getInteger("kumuluzee.metrics.logstash.spool.size-mb").orElse(64));
+            int spoolBatchSize = configurationUtil.getInteger("kumuluzee.metrics.logstash.spool.batch-size")
+                    .orElse(10);
+
+            MetricsDeltaTracker deltaTracker = null;
+            if (configurationUtil.getBoolean("kumuluzee.metrics.logstash.delta.enabled").orElse(false)) {
+                deltaTracker = new MetricsDeltaTracker(
+                        configurationUtil.getInteger("kumuluzee.metrics.logstash.delta.full-report-period")
+                                .orElse(10),
+                        configurationUtil.getBoolean("kumuluzee.metrics.logstash.delta.counter-deltas")
+                                .orElse(false));
+            }
 
             logstashReporter = new KumuluzEELogstashReporter(address, port, periodSeconds,
-                    startRetryDelay, maxRetryDelay);
+                    startRetryDelay, maxRetryDelay, connectTimeout, queueSize, spoolPath, spoolSize, spoolBatchSize,
+                    deltaTracker);
             logstashReporter.start();
         }
     }
@@ -20,90 +20,345 @@
 */
 package com.kumuluz.ee.metrics;
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.kumuluz.ee.metrics.json.MetricsModule;
-import com.kumuluz.ee.metrics.json.models.MetricsPayload;
-import com.kumuluz.ee.metrics.producers.MetricRegistryProducer;
-import org.eclipse.microprofile.metrics.MetricRegistry;
-
-import java.io.BufferedOutputStream;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Timer;
+
 import java.io.IOException;
-import java.net.Socket;
-import java.util.HashMap;
-import java.util.Map;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
- * Runnable, which sends metrics to Logstash TCP port.
+ * Sends encoded metrics payloads to Logstash TCP port.
+ *
+ * Payloads are queued in a bounded queue (the oldest payloads are dropped, when the queue is full) and written with a
+ * non-blocking {@link SocketChannel}. When Logstash is not reachable, the connection is retried with an exponential
+ * backoff on the scheduler, so the calling thread is never blocked.
+ *
+ * If a {@link LogstashSpool} is given, the oldest payloads are moved to the spool instead of being dropped. The spool
+ * is replayed in batches, before the queued payloads are written. Spooled payloads are only removed from the spool
+ * once they have been written, so unsent payloads are replayed in order after a restart.
  *
  * @author Urban Malc
  * @author Aljaž Blažej
  * @since 1.0.0
  */
-public class LogstashSender implements Runnable {
+public class LogstashSender {
 
     private static final Logger log = Logger.getLogger(LogstashSender.class.getName());
 
-    private String address;
-    private int port;
-    private ObjectMapper mapper;
+    // delay between checks of a pending connect or a partially written payload
+    private static final long POLL_DELAY_MS = 50;
+
+    private final String address;
+    private final int port;
+    private final ScheduledExecutorService scheduler;
+
+    private final int queueSize;
+    private final Deque<Payload> queue;
+    private volatile int queueDepth;
+
+    private final LogstashSpool spool;
+    private final int spoolBatchSize;
+    private final Deque<Payload> spoolBatch;
+    private volatile int spoolDepth;
 
-    private Socket socket;
-    private BufferedOutputStream outputStream = null;
+    private final Counter dropped;
+    private final Timer latency;
 
-    private int startRetryDelay;
-    private int maxRetryDelay;
+    private final int startRetryDelay;
+    private final int maxRetryDelay;
+    private final int connectTimeout;
     private int currentRetryDelay;
 
-    public LogstashSender(String address, int port, int startRetryDelay, int maxRetryDelay) {
+    private SocketChannel channel;
+    private boolean connected;
+    private long connectStarted;
+    private long nextConnectAttempt;
+
+    private ScheduledFuture<?> retry;
+    private boolean closed;
+
+    public LogstashSender(String address, int port, int startRetryDelay, int maxRetryDelay, int connectTimeout,
+                          int queueSize, ScheduledExecutorService scheduler, Counter dropped, Timer latency) {
+        this(address, port, startRetryDelay, maxRetryDelay, connectTimeout, queueSize, null, 0, scheduler, dropped,
+                latency);
+    }
+
+    public LogstashSender(String address, int port, int startRetryDelay, int maxRetryDelay, int connectTimeout,
+                          int queueSize, LogstashSpool spool, int spoolBatchSize, ScheduledExecutorService scheduler,
+                          Counter dropped, Timer latency) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Queue size must be at least 1.");
+        }
+
         this.address = address;
         this.port = port;
-        this.socket = null;
         this.startRetryDelay = this.currentRetryDelay = startRetryDelay;
         this.maxRetryDelay = maxRetryDelay;
+        this.connectTimeout = connectTimeout;
+        this.queueSize = queueSize;
+        this.queue = new ArrayDeque<>(queueSize);
+        this.spool = spool;
+        this.spoolBatchSize = Math.max(spoolBatchSize, 1);
+        this.spoolBatch = new ArrayDeque<>();
+        this.spoolDepth = (spool == null) ? 0 : spool.size();
+        this.scheduler = scheduler;
+        this.dropped = dropped;
+        this.latency = latency;
+    }
+
+    /**
+     * Queues the payload and writes as much of the queue, as possible without blocking.
+     *
+     * @param payload encoded payload, including the line delimiter
+     */
+    public synchronized void send(byte[] payload) {
+        if (closed) {
+            return;
+        }
+
+        if (queue.size() == queueSize) {
+            // a partially written payload has to be completed, so the one after it is evicted instead
+            if (connected && queue.peekFirst().buffer.position() > 0) {
+                if (queue.size() == 1) {
+                    evict(new Payload(payload));
+                    flush();
+                    return;
+                }
+                Payload partial = queue.pollFirst();
+                evict(queue.pollFirst());
+                queue.addFirst(partial);
+            } else {
+                evict(queue.pollFirst());
+            }
+        }
+        queue.addLast(new Payload(payload));
+        queueDepth = queue.size();
+
+        flush();
+    }
 
-        this.mapper = (new ObjectMapper(
-                new JsonFactory().configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)))
-                .registerModule(new MetricsModule(false));
+    public int getQueueDepth() {
+        return queueDepth;
     }
 
-    @Override
-    public void run() {
-        boolean success = false;
-        while (!success) {
+    /**
+     * Returns the number of spooled payloads, which have not been written yet.
+     */
+    public int getSpoolDepth() {
+        return spoolDepth;
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        if (retry != null) {
+            retry.cancel(false);
+        }
+        disconnect();
+
+        if (spool != null) {
+            // payloads, which have not been written, are replayed after a restart; the spool batch has not been
+            // committed, so it is still in the spool, in front of the queued payloads
+            spoolBatch.clear();
+            queue.forEach(this::evict);
             try {
-                if (socket == null || !socket.isConnected() || socket.isClosed()) {
-                    socket = new Socket(address, port);
-                    outputStream = new BufferedOutputStream(socket.getOutputStream());
+                spool.close();
+            } catch (IOException e) {
+                log.warning("Cannot close Logstash spool: " + e.getLocalizedMessage());
+            }
+        }
+
+        closed = true;
+    }
+
+    private void evict(Payload payload) {
+        if (spool != null) {
+            long head = spool.getHead();
+            int removed = spool.append(payload.bytes);
+            if (removed < 0) {
+                dropped.inc();
+            } else {
+                // overwritten records of the spool batch are counted, when flush() skips them, since a partially
+                // written record is completed instead
+                dropped.inc(removed - countSpoolBatch(head, spool.getHead()));
+            }
+            spoolDepth = spool.size();
+        } else {
+            dropped.inc();
+        }
+    }
+
+    /**
+     * @return number of payloads in the spool batch, which end after {@code from} and at or before {@code to}
+     */
+    private int countSpoolBatch(long from, long to) {
+        int count = 0;
+        for (Payload payload : spoolBatch) {
+            if (payload.spoolEnd > from && payload.spoolEnd <= to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean hasPending() {
+        return !queue.isEmpty() || !spoolBatch.isEmpty() || (spool != null && !spool.isEmpty());
+    }
+
+    private synchronized void flush() {
+        if (closed || !hasPending()) {
+            return;
+        }
+
+        try {
+            if (!connected && !connect()) {
+                return;
+            }
+
+            while (true) {
+                // spooled payloads are older, so they are written first
+                if (spoolBatch.isEmpty() && spool != null && !spool.isEmpty()) {
+                    for (LogstashSpool.Record record : spool.peek(spoolBatchSize)) {
+                        spoolBatch.addLast(new Payload(record.getBytes(), -1, record.getEnd()));
+                    }
                 }
 
-                Map<String, MetricRegistry> registries = new HashMap<>();
-                registries.put("application", MetricRegistryProducer.getApplicationRegistry());
-                registries.put("base", MetricRegistryProducer.getBaseRegistry());
-                registries.put("vendor", MetricRegistryProducer.getVendorRegistry());
+                Deque<Payload> source = spoolBatch.isEmpty() ? queue : spoolBatch;
+                Payload payload = source.peekFirst();
+                if (payload == null) {
+                    break;
+                }
 
-                this.mapper.writeValue(outputStream, new MetricsPayload(registries));
-                outputStream.write("\n".getBytes("UTF-8"));
-                outputStream.flush();
+                if (source == spoolBatch && payload.buffer.position() == 0 && payload.spoolEnd <= spool.getHead()) {
+                    // the record was overwritten by newer payloads before it was written
+                    spoolBatch.pollFirst();
+                    dropped.inc();
+                    continue;
+                }
 
-                this.currentRetryDelay = startRetryDelay;
-                success = true;
-            } catch (IOException e) {
-                log.severe("Cannot write metrics to Logstash: " + e.getLocalizedMessage());
-                socket = null;
-                try {
-                    Thread.sleep(currentRetryDelay);
-                } catch (InterruptedException ignored) {
+                channel.write(payload.buffer);
+                if (payload.buffer.hasRemaining()) {
+                    // socket buffer is full, the rest is written later
+                    scheduleFlush(POLL_DELAY_MS);
+                    return;
                 }
 
-                // exponential increase, limited by maxRetryDelay
-                currentRetryDelay *= 2;
-                if (currentRetryDelay > maxRetryDelay) {
-                    currentRetryDelay = maxRetryDelay;
+                source.pollFirst();
+                if (source == queue) {
+                    queueDepth = queue.size();
+                    latency.update(System.nanoTime() - payload.queued, TimeUnit.NANOSECONDS);
+                } else {
+                    spool.commit(payload.spoolEnd);
+                    spoolDepth = spool.size();
                 }
             }
+
+            currentRetryDelay = startRetryDelay;
+        } catch (IOException e) {
+            log.severe("Cannot write metrics to Logstash: " + e.getLocalizedMessage());
+            disconnect();
+            backoff();
+        }
+    }
+
+    /**
+     * Opens or finishes a non-blocking connect.
+     *
+     * @return true, if the channel is connected
+     */
+    private boolean connect() throws IOException {
+        long now = System.currentTimeMillis();
+
+        if (channel == null) {
+            if (now < nextConnectAttempt) {
+                scheduleFlush(nextConnectAttempt - now);
+                return false;
+            }
+
+            InetSocketAddress socketAddress = new InetSocketAddress(address, port);
+            if (socketAddress.isUnresolved()) {
+                throw new IOException("Cannot resolve " + address);
+            }
+
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            connectStarted = now;
+            connected = channel.connect(socketAddress);
+        } else {
+            connected = channel.finishConnect();
+        }
+
+        if (!connected) {
+            if (now - connectStarted >= connectTimeout) {
+                throw new IOException("Connect timed out after " + connectTimeout + " ms");
+            }
+            scheduleFlush(POLL_DELAY_MS);
+            return false;
+        }
+
+        // payloads are written again from the start on the new connection
+        spoolBatch.forEach(payload -> payload.buffer.rewind());
+        queue.forEach(payload -> payload.buffer.rewind());
+
+        return true;
+    }
+
+    private void disconnect() {
+        connected = false;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    private void backoff() {
+        nextConnectAttempt = System.currentTimeMillis() + currentRetryDelay;
+        scheduleFlush(currentRetryDelay);
+
+        // exponential increase, limited by maxRetryDelay
+        currentRetryDelay = (int) Math.min((long) currentRetryDelay * 2, maxRetryDelay);
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (retry == null) {
+            retry = scheduler.schedule(this::retry, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void retry() {
+        retry = null;
+        flush();
+    }
+
+    private static class Payload {
+
+        private final byte[] bytes;
+        private final ByteBuffer buffer;
+        private final long queued;
+        private final long spoolEnd;
+
+        private Payload(byte[] bytes) {
+            this(bytes, System.nanoTime(), -1);
+        }
+
+        private Payload(byte[] bytes, long queued, long spoolEnd) {
+            this.bytes = bytes;
+            this.buffer = ByteBuffer.wrap(bytes);
+            this.queued = queued;
+            this.spoolEnd = spoolEnd;
         }
     }
 }
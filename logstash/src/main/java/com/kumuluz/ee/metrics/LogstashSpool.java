@@ -0,0 +1,314 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Size-capped spool of encoded payloads, stored in a memory-mapped file.
+ *
+ * The file is a ring buffer of length-prefixed records. When it is full, the oldest records are overwritten. The
+ * position of the records is kept in the file header, so spooled records are kept across restarts of the
+ * application. Records are written to the file by the operating system, so they are lost only if the machine
+ * crashes.
+ *
+ * Records are read with {@link #peek(int)} and only removed with {@link #commit(long)}, once they have been written,
+ * so records, which were read but not written, are kept if the application stops or crashes.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class LogstashSpool implements Closeable {
+
+    private static final Logger log = Logger.getLogger(LogstashSpool.class.getName());
+
+    private static final int MAGIC = 0x4B4D4C53;
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int HEAD_OFFSET = 8;
+    private static final int TAIL_OFFSET = 16;
+    private static final int COUNT_OFFSET = 24;
+    private static final int HEADER_SIZE = 32;
+
+    private static final int LENGTH_SIZE = 4;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    // logical positions of the oldest record and the end of the newest record
+    private long head;
+    private long tail;
+    private int count;
+
+    public LogstashSpool(Path path, int size) throws IOException {
+        if (size <= HEADER_SIZE + LENGTH_SIZE) {
+            throw new IllegalArgumentException("Spool size must be larger than " + (HEADER_SIZE + LENGTH_SIZE) +
+                    " bytes.");
+        }
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            this.lock = channel.tryLock();
+            if (lock == null) {
+                throw new IOException("Spool " + path + " is used by another process.");
+            }
+
+            // spooled records are kept, unless the size of the spool has changed
+            boolean keep = channel.size() == size;
+            if (!keep) {
+                channel.truncate(0);
+            }
+
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            this.capacity = size - HEADER_SIZE;
+
+            if (!keep || !readHeader()) {
+                if (keep) {
+                    log.warning("Spool " + path + " is not valid and will be cleared.");
+                }
+                clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends the record. If there is not enough space, the oldest records are removed.
+     *
+     * @param record record to append
+     * @return number of removed records, or -1 if the record is larger than the spool and was not appended
+     */
+    public synchronized int append(byte[] record) {
+        long length = LENGTH_SIZE + (long) record.length;
+        if (length > capacity) {
+            return -1;
+        }
+
+        int removed = 0;
+        while (capacity - (tail - head) < length) {
+            head += LENGTH_SIZE + readInt(head);
+            count--;
+            removed++;
+        }
+
+        writeInt(tail, record.length);
+        write(tail + LENGTH_SIZE, record);
+        tail += length;
+        count++;
+
+        writeHeader();
+        return removed;
+    }
+
+    /**
+     * Returns the oldest records, without removing them.
+     *
+     * @param maxRecords maximum number of returned records
+     * @return oldest records, in the order they were appended
+     */
+    public synchronized List<Record> peek(int maxRecords) {
+        List<Record> records = new ArrayList<>(Math.min(maxRecords, count));
+
+        long position = head;
+        for (int i = 0; i < count && records.size() < maxRecords; i++) {
+            byte[] record = new byte[readInt(position)];
+            read(position + LENGTH_SIZE, record);
+            position += LENGTH_SIZE + record.length;
+            records.add(new Record(record, position));
+        }
+
+        return records;
+    }
+
+    /**
+     * Removes the records up to and including the record, which ends at the given position. Records, which were
+     * already removed (e.g. overwritten by {@link #append(byte[])}), are ignored.
+     *
+     * @param end end of the last removed record, as returned by {@link Record#getEnd()}
+     */
+    public synchronized void commit(long end) {
+        if (end <= head) {
+            return;
+        }
+
+        while (head < end && count > 0) {
+            head += LENGTH_SIZE + readInt(head);
+            count--;
+        }
+
+        writeHeader();
+    }
+
+    /**
+     * Removes and returns the oldest records.
+     *
+     * @param maxRecords maximum number of returned records
+     * @return oldest records, in the order they were appended
+     */
+    public synchronized List<byte[]> poll(int maxRecords) {
+        List<Record> records = peek(maxRecords);
+        if (!records.isEmpty()) {
+            commit(records.get(records.size() - 1).getEnd());
+        }
+
+        List<byte[]> polled = new ArrayList<>(records.size());
+        for (Record record : records) {
+            polled.add(record.getBytes());
+        }
+        return polled;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return logical position of the oldest record; records, which end at or before it, were removed
+     */
+    public synchronized long getHead() {
+        return head;
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            buffer.force();
+        } finally {
+            // the lock is released when the channel is closed
+            channel.close();
+        }
+    }
+
+    /**
+     * Spooled record with its position in the spool.
+     */
+    public static final class Record {
+
+        private final byte[] bytes;
+        private final long end;
+
+        private Record(byte[] bytes, long end) {
+            this.bytes = bytes;
+            this.end = end;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return logical position of the end of the record, which is passed to {@link LogstashSpool#commit(long)}
+         */
+        public long getEnd() {
+            return end;
+        }
+    }
+
+    private boolean readHeader() {
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+            return false;
+        }
+
+        long head = buffer.getLong(HEAD_OFFSET);
+        long tail = buffer.getLong(TAIL_OFFSET);
+        int count = buffer.getInt(COUNT_OFFSET);
+        if (head < 0 || tail < head || tail - head > capacity || count < 0) {
+            return false;
+        }
+
+        this.head = head;
+        this.tail = tail;
+        this.count = count;
+        return true;
+    }
+
+    private void clear() {
+        head = 0;
+        tail = 0;
+        count = 0;
+
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        buffer.putLong(HEAD_OFFSET, head);
+        buffer.putLong(TAIL_OFFSET, tail);
+        buffer.putInt(COUNT_OFFSET, count);
+    }
+
+    private int readInt(long position) {
+        byte[] bytes = new byte[LENGTH_SIZE];
+        read(position, bytes);
+        return ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+    }
+
+    private void writeInt(long position, int value) {
+        write(position, new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+
+    // records may wrap around the end of the file
+    private void read(long position, byte[] bytes) {
+        int offset = (int) (position % capacity);
+        int first = Math.min(bytes.length, capacity - offset);
+
+        buffer.position(HEADER_SIZE + offset);
+        buffer.get(bytes, 0, first);
+        buffer.position(HEADER_SIZE);
+        buffer.get(bytes, first, bytes.length - first);
+    }
+
+    private void write(long position, byte[] bytes) {
+        int offset = (int) (position % capacity);
+        int first = Math.min(bytes.length, capacity - offset);
+
+        buffer.position(HEADER_SIZE + offset);
+        buffer.put(bytes, 0, first);
+        buffer.position(HEADER_SIZE);
+        buffer.put(bytes, first, bytes.length - first);
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics;
+
+import com.kumuluz.ee.metrics.api.CounterImpl;
+import com.kumuluz.ee.metrics.api.TimerImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests {@link LogstashSender} against a local TCP server, which stands in for Logstash.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class LogstashSenderTest {
+
+    private static final int TIMEOUT_MS = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ScheduledExecutorService scheduler;
+    private CounterImpl dropped;
+    private TimerImpl latency;
+    private LogstashSender sender;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newScheduledThreadPool(1);
+        dropped = new CounterImpl();
+        latency = new TimerImpl(new com.codahale.metrics.Timer());
+    }
+
+    @After
+    public void tearDown() {
+        if (sender != null) {
+            sender.close();
+        }
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void sendsPayloadsInOrder() throws IOException {
+        try (ServerSocket server = newServer(0)) {
+            sender = newSender(server.getLocalPort(), 10);
+
+            for (int i = 0; i < 5; i++) {
+                sender.send(payload(i));
+            }
+
+            try (Socket socket = server.accept(); BufferedReader reader = reader(socket)) {
+                for (int i = 0; i < 5; i++) {
+                    Assert.assertEquals("{\"payload\":" + i + "}", reader.readLine());
+                }
+            }
+        }
+
+        Assert.assertEquals(0, dropped.getCount());
+        Assert.assertEquals(0, sender.getQueueDepth());
+        Assert.assertEquals(5, latency.getCount());
+    }
+
+    @Test
+    public void dropsOldestPayloadsWithoutBlocking() throws Exception {
+        int port = getFreePort();
+        sender = newSender(port, 2);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            sender.send(payload(i));
+        }
+        Assert.assertTrue("Sending must not wait for Logstash",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+        Assert.assertEquals(3, dropped.getCount());
+        Assert.assertEquals(2, sender.getQueueDepth());
+
+        // the sender reconnects with backoff and writes the newest payloads
+        try (ServerSocket server = newServer(port);
+             Socket socket = server.accept();
+             BufferedReader reader = reader(socket)) {
+            Assert.assertEquals("{\"payload\":3}", reader.readLine());
+            Assert.assertEquals("{\"payload\":4}", reader.readLine());
+        }
+    }
+
+    @Test
+    public void resendsAfterConnectionLoss() throws Exception {
+        try (ServerSocket server = newServer(0)) {
+            sender = newSender(server.getLocalPort(), 10);
+
+            sender.send(payload(0));
+            try (Socket socket = server.accept(); BufferedReader reader = reader(socket)) {
+                Assert.assertEquals("{\"payload\":0}", reader.readLine());
+            }
+
+            // the first write after the peer closed the connection may still succeed, the failure is detected later
+            for (int i = 1; i < 4; i++) {
+                sender.send(payload(i));
+                Thread.sleep(50);
+            }
+
+            try (Socket socket = server.accept(); BufferedReader reader = reader(socket)) {
+                String line = reader.readLine();
+                Assert.assertNotNull(line);
+                Assert.assertTrue(line.startsWith("{\"payload\":"));
+            }
+        }
+    }
+
+    @Test
+    public void replaysSpoolBeforeQueuedPayloads() throws Exception {
+        int port = getFreePort();
+        LogstashSpool spool = new LogstashSpool(folder.getRoot().toPath().resolve("logstash.spool"), 4096);
+        sender = new LogstashSender(InetAddress.getLoopbackAddress().getHostAddress(), port, 10, 100, TIMEOUT_MS,
+                1, spool, 2, scheduler, dropped, latency);
+
+        for (int i = 0; i < 6; i++) {
+            sender.send(payload(i));
+        }
+
+        Assert.assertEquals(0, dropped.getCount());
+        Assert.assertEquals(1, sender.getQueueDepth());
+        Assert.assertEquals(5, sender.getSpoolDepth());
+
+        try (ServerSocket server = newServer(port);
+             Socket socket = server.accept();
+             BufferedReader reader = reader(socket)) {
+            for (int i = 0; i < 6; i++) {
+                Assert.assertEquals("{\"payload\":" + i + "}", reader.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void keepsUnsentPayloadsInOrderOnClose() throws Exception {
+        int port = getFreePort();
+        Path spoolPath = folder.getRoot().toPath().resolve("logstash.spool");
+        LogstashSpool spool = new LogstashSpool(spoolPath, 64 * 1024 * 1024);
+        sender = new LogstashSender(InetAddress.getLoopbackAddress().getHostAddress(), port, 10, 100, TIMEOUT_MS,
+                1, spool, 2, scheduler, dropped, latency);
+
+        // payloads are larger than the socket buffers, so the first spool batch cannot be written
+        List<byte[]> payloads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            byte[] payload = new byte[8 * 1024 * 1024];
+            Arrays.fill(payload, (byte) ('0' + i));
+            payloads.add(payload);
+            sender.send(payload);
+        }
+        Assert.assertEquals(3, sender.getSpoolDepth());
+
+        try (ServerSocket server = newServer(port); Socket ignored = server.accept()) {
+            Thread.sleep(200);
+            sender.close();
+        }
+
+        try (LogstashSpool reopened = new LogstashSpool(spoolPath, 64 * 1024 * 1024)) {
+            List<byte[]> records = reopened.poll(10);
+            Assert.assertEquals(4, records.size());
+            for (int i = 0; i < 4; i++) {
+                Assert.assertArrayEquals(payloads.get(i), records.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void countsOverwrittenSpoolBatchOnce() throws Exception {
+        int port = getFreePort();
+        // the spool holds two payloads
+        LogstashSpool spool = new LogstashSpool(folder.getRoot().toPath().resolve("logstash.spool"),
+                20 * 1024 * 1024);
+        sender = new LogstashSender(InetAddress.getLoopbackAddress().getHostAddress(), port, 10, 100, TIMEOUT_MS,
+                1, spool, 2, scheduler, dropped, latency);
+
+        // payloads are larger than the socket buffers, so the first spool batch cannot be written at once
+        for (int i = 0; i < 3; i++) {
+            sender.send(largePayload(i));
+        }
+        Assert.assertEquals(2, sender.getSpoolDepth());
+
+        try (ServerSocket server = newServer(port); Socket socket = server.accept()) {
+            Thread.sleep(200);
+
+            // payload 0 is partially written and is completed, payload 1 is overwritten before it is written
+            sender.send(largePayload(3));
+            sender.send(largePayload(4));
+
+            try (BufferedReader reader = reader(socket)) {
+                for (int i : new int[]{0, 2, 3, 4}) {
+                    String line = reader.readLine();
+                    Assert.assertNotNull(line);
+                    Assert.assertEquals((char) ('0' + i), line.charAt(0));
+                }
+            }
+        }
+
+        Assert.assertEquals(1, dropped.getCount());
+    }
+
+    private LogstashSender newSender(int port, int queueSize) {
+        return new LogstashSender(InetAddress.getLoopbackAddress().getHostAddress(), port, 10, 100, TIMEOUT_MS,
+                queueSize, scheduler, dropped, latency);
+    }
+
+    private static ServerSocket newServer(int port) throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.setSoTimeout(TIMEOUT_MS);
+        server.bind(new java.net.InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        return server;
+    }
+
+    private static int getFreePort() throws IOException {
+        try (ServerSocket server = newServer(0)) {
+            return server.getLocalPort();
+        }
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        socket.setSoTimeout(TIMEOUT_MS);
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static byte[] largePayload(int i) {
+        byte[] payload = new byte[8 * 1024 * 1024];
+        Arrays.fill(payload, (byte) ('0' + i));
+        payload[payload.length - 1] = '\n';
+        return payload;
+    }
+
+    private static byte[] payload(int i) {
+        return ("{\"payload\":" + i + "}\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
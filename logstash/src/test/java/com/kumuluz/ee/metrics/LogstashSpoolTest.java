@@ -0,0 +1,165 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link LogstashSpool}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class LogstashSpoolTest {
+
+    // 32 B header and 64 B of records
+    private static final int SIZE = 96;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pollsRecordsInOrder() throws IOException {
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE)) {
+            spool.append(record("a"));
+            spool.append(record("bb"));
+            spool.append(record("ccc"));
+
+            Assert.assertEquals(3, spool.size());
+            Assert.assertEquals("[a, bb]", poll(spool, 2).toString());
+            Assert.assertEquals("[ccc]", poll(spool, 2).toString());
+            Assert.assertTrue(spool.isEmpty());
+        }
+    }
+
+    @Test
+    public void removesOldestRecordsWhenFull() throws IOException {
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE)) {
+            // every record takes 20 B, records wrap around the end of the file
+            int removed = 0;
+            for (int i = 0; i < 10; i++) {
+                removed += spool.append(record(String.format("record-%09d", i)));
+            }
+
+            Assert.assertEquals(7, removed);
+            Assert.assertEquals("[record-000000007, record-000000008, record-000000009]",
+                    poll(spool, 10).toString());
+        }
+    }
+
+    @Test
+    public void removesPeekedRecordsOnlyOnCommit() throws IOException {
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE)) {
+            spool.append(record("a"));
+            spool.append(record("bb"));
+            spool.append(record("ccc"));
+
+            List<LogstashSpool.Record> records = spool.peek(2);
+            Assert.assertEquals(2, records.size());
+            Assert.assertEquals(3, spool.size());
+
+            spool.commit(records.get(0).getEnd());
+            Assert.assertEquals("[bb, ccc]", poll(spool, 10).toString());
+        }
+
+        // records, which were peeked but not committed, are kept across reopen
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE)) {
+            spool.append(record("d"));
+            spool.append(record("e"));
+            spool.peek(2);
+        }
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE)) {
+            Assert.assertEquals("[d, e]", poll(spool, 10).toString());
+        }
+    }
+
+    @Test
+    public void ignoresCommitOfOverwrittenRecords() throws IOException {
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE)) {
+            spool.append(record("record-000000000"));
+            List<LogstashSpool.Record> records = spool.peek(1);
+
+            // every record takes 20 B, the peeked record is overwritten
+            for (int i = 1; i < 5; i++) {
+                spool.append(record(String.format("record-%09d", i)));
+            }
+            spool.commit(records.get(0).getEnd());
+
+            Assert.assertEquals("[record-000000002, record-000000003, record-000000004]",
+                    poll(spool, 10).toString());
+        }
+    }
+
+    @Test
+    public void rejectsRecordsLargerThanSpool() throws IOException {
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE)) {
+            spool.append(record("a"));
+
+            Assert.assertEquals(-1, spool.append(new byte[SIZE]));
+            Assert.assertEquals("[a]", poll(spool, 10).toString());
+        }
+    }
+
+    @Test
+    public void keepsRecordsAcrossReopen() throws IOException {
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE)) {
+            spool.append(record("a"));
+            spool.append(record("b"));
+            poll(spool, 1);
+            spool.append(record("c"));
+        }
+
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE)) {
+            Assert.assertEquals("[b, c]", poll(spool, 10).toString());
+        }
+
+        // records are cleared, when the size changes
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE * 2)) {
+            spool.append(record("d"));
+        }
+        try (LogstashSpool spool = new LogstashSpool(spoolPath(), SIZE)) {
+            Assert.assertTrue(spool.isEmpty());
+        }
+    }
+
+    private Path spoolPath() {
+        return folder.getRoot().toPath().resolve("logstash.spool");
+    }
+
+    private static byte[] record(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> poll(LogstashSpool spool, int maxRecords) {
+        return spool.poll(maxRecords).stream()
+                .map(record -> new String(record, StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+    }
+}
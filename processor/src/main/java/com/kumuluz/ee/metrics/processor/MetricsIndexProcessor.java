@@ -0,0 +1,394 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Annotation processor, which writes an index of Counted, Timed, Metered and Gauge metrics, declared by the compiled
+ * classes.
+ *
+ * For every class, the index contains the same metrics (with precomputed metadata) as would be discovered by
+ * reflection at runtime, so the metrics extension can register them without scanning the class hierarchy.
+ *
+ * Index is written to {@value #INDEX_RESOURCE}. Every line describes one metric with tab separated fields: bean
+ * class, kind, declaring class, member name, parameter types, name, display name, description, unit, reusable and
+ * tags. Tabs, line breaks and backslashes in the fields are escaped with a backslash.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@SupportedAnnotationTypes({
+        MetricsIndexProcessor.COUNTED,
+        MetricsIndexProcessor.TIMED,
+        MetricsIndexProcessor.METERED,
+        MetricsIndexProcessor.GAUGE
+})
+public class MetricsIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_RESOURCE = "META-INF/kumuluzee/metrics.idx";
+
+    static final String COUNTED = "org.eclipse.microprofile.metrics.annotation.Counted";
+    static final String TIMED = "org.eclipse.microprofile.metrics.annotation.Timed";
+    static final String METERED = "org.eclipse.microprofile.metrics.annotation.Metered";
+    static final String GAUGE = "org.eclipse.microprofile.metrics.annotation.Gauge";
+
+    private static final String CONSTRUCTOR_NAME = "<init>";
+
+    private static final Map<String, String> METRIC_KINDS = new LinkedHashMap<>();
+
+    static {
+        METRIC_KINDS.put(COUNTED, "COUNTED");
+        METRIC_KINDS.put(TIMED, "TIMED");
+        METRIC_KINDS.put(METERED, "METERED");
+    }
+
+    // entries, grouped by the bean class, collected over all rounds
+    private final Map<String, List<String>> index = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        } else {
+            // every compiled class is indexed, since metrics may also be inherited from its superclasses
+            for (Element element : roundEnv.getRootElements()) {
+                indexTypes(element);
+            }
+        }
+
+        // annotations are not claimed, other processors may process them as well
+        return false;
+    }
+
+    private void indexTypes(Element element) {
+        if (element.getKind() == ElementKind.CLASS) {
+            TypeElement bean = (TypeElement) element;
+            List<String> entries = new ArrayList<>();
+
+            indexConstructorMetrics(entries, bean);
+            indexMethodMetrics(entries, bean);
+            indexGauges(entries, bean);
+
+            if (!entries.isEmpty()) {
+                index.put(binaryName(bean), entries);
+            }
+        }
+
+        for (Element enclosed : element.getEnclosedElements()) {
+            if (enclosed.getKind().isClass() || enclosed.getKind().isInterface()) {
+                indexTypes(enclosed);
+            }
+        }
+    }
+
+    private void indexConstructorMetrics(List<String> entries, TypeElement bean) {
+        for (Element member : bean.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR) {
+                indexMetrics(entries, bean, (ExecutableElement) member);
+            }
+        }
+    }
+
+    private void indexMethodMetrics(List<String> entries, TypeElement bean) {
+        TypeElement type = bean;
+        while (type != null && !Object.class.getName().equals(type.getQualifiedName().toString())) {
+            for (Element member : type.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.METHOD && !member.getModifiers().contains(Modifier.PRIVATE)) {
+                    indexMetrics(entries, bean, (ExecutableElement) member);
+                }
+            }
+            type = getSuperclass(type);
+        }
+    }
+
+    private void indexMetrics(List<String> entries, TypeElement bean, ExecutableElement member) {
+        for (Map.Entry<String, String> kind : METRIC_KINDS.entrySet()) {
+            // the same lookup as at runtime: the annotation on the member, or on the bean class
+            AnnotationMirror annotation = getAnnotation(member, kind.getKey());
+            boolean fromElement = annotation != null;
+            if (annotation == null) {
+                annotation = getAnnotation(bean, kind.getKey());
+            }
+
+            if (annotation != null) {
+                entries.add(buildEntry(bean, kind.getValue(), member, annotation, fromElement));
+            }
+        }
+    }
+
+    private void indexGauges(List<String> entries, TypeElement bean) {
+        TypeElement type = bean;
+        while (type != null && !Object.class.getName().equals(type.getQualifiedName().toString())) {
+            for (Element member : type.getEnclosedElements()) {
+                AnnotationMirror annotation = getAnnotation(member, GAUGE);
+                if (member.getKind() == ElementKind.METHOD && annotation != null) {
+                    entries.add(buildEntry(bean, "GAUGE", (ExecutableElement) member, annotation, true));
+                }
+            }
+            type = getSuperclass(type);
+        }
+    }
+
+    private String buildEntry(TypeElement bean, String kind, ExecutableElement member, AnnotationMirror annotation,
+                              boolean fromElement) {
+        TypeElement declaringType = (TypeElement) member.getEnclosingElement();
+        Map<String, Object> values = getValues(annotation);
+
+        String name = (String) values.getOrDefault("name", "");
+        boolean absolute = (Boolean) values.getOrDefault("absolute", false);
+        String memberName = (member.getKind() == ElementKind.CONSTRUCTOR) ?
+                declaringType.getSimpleName().toString() :
+                member.getSimpleName().toString();
+
+        String finalName;
+        if (fromElement) {
+            finalName = name.isEmpty() ? memberName : name;
+            if (!absolute) {
+                finalName = join(binaryName(declaringType), finalName);
+            }
+        } else {
+            finalName = join(name.isEmpty() ? bean.getSimpleName().toString() : name, memberName);
+            if (!absolute) {
+                finalName = join(processingEnv.getElementUtils().getPackageOf(bean).getQualifiedName().toString(),
+                        finalName);
+            }
+        }
+
+        List<String> fields = new ArrayList<>();
+        fields.add(binaryName(bean));
+        fields.add(kind);
+        fields.add(binaryName(declaringType));
+        fields.add(member.getKind() == ElementKind.CONSTRUCTOR ? CONSTRUCTOR_NAME : memberName);
+        fields.add(parameterTypes(member));
+        fields.add(finalName);
+        fields.add((String) values.getOrDefault("displayName", ""));
+        fields.add((String) values.getOrDefault("description", ""));
+        fields.add((String) values.getOrDefault("unit", ""));
+        fields.add(String.valueOf(values.getOrDefault("reusable", false)));
+
+        @SuppressWarnings("unchecked")
+        List<String> tags = (List<String>) values.getOrDefault("tags", Collections.emptyList());
+        for (String tag : tags) {
+            if (!tag.isEmpty() && !tag.contains("=")) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "Tag '" + tag + "' doesn't contain equal sign (=) and will be ignored.", member, annotation);
+            }
+            fields.add(tag);
+        }
+
+        StringBuilder entry = new StringBuilder();
+        for (String field : fields) {
+            if (entry.length() > 0) {
+                entry.append('\t');
+            }
+            escape(entry, field);
+        }
+
+        return entry.toString();
+    }
+
+    private void writeIndex() {
+        if (index.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    INDEX_RESOURCE);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# KumuluzEE Metrics index\n");
+                for (List<String> entries : index.values()) {
+                    for (String entry : entries) {
+                        writer.write(entry);
+                        writer.write('\n');
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write metrics index: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> getValues(AnnotationMirror annotation) {
+        Map<String, Object> values = new HashMap<>();
+
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value :
+                processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+            Object v = value.getValue().getValue();
+            if (v instanceof List) {
+                List<String> array = new ArrayList<>();
+                for (Object item : (List<?>) v) {
+                    array.add(String.valueOf(((AnnotationValue) item).getValue()));
+                }
+                v = array;
+            }
+            values.put(value.getKey().getSimpleName().toString(), v);
+        }
+
+        return values;
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String annotationType) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotationType)) {
+                return annotation;
+            }
+        }
+
+        return null;
+    }
+
+    private static TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return (superclass.getKind() == TypeKind.DECLARED) ? (TypeElement) ((DeclaredType) superclass).asElement() :
+                null;
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    /**
+     * Returns erased parameter types, in the format of {@link Class#getName()}, separated by commas.
+     */
+    private String parameterTypes(ExecutableElement member) {
+        StringBuilder types = new StringBuilder();
+        for (VariableElement parameter : member.getParameters()) {
+            if (types.length() > 0) {
+                types.append(',');
+            }
+            TypeMirror type = processingEnv.getTypeUtils().erasure(parameter.asType());
+            if (type.getKind() == TypeKind.ARRAY) {
+                appendDescriptor(types, type);
+            } else {
+                appendClassName(types, type);
+            }
+        }
+
+        return types.toString();
+    }
+
+    private void appendClassName(StringBuilder builder, TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            builder.append(type.getKind().name().toLowerCase(Locale.ROOT));
+        } else {
+            builder.append(binaryName((TypeElement) ((DeclaredType) type).asElement()));
+        }
+    }
+
+    private void appendDescriptor(StringBuilder builder, TypeMirror type) {
+        switch (type.getKind()) {
+            case ARRAY:
+                builder.append('[');
+                appendDescriptor(builder, ((ArrayType) type).getComponentType());
+                break;
+            case BOOLEAN:
+                builder.append('Z');
+                break;
+            case BYTE:
+                builder.append('B');
+                break;
+            case CHAR:
+                builder.append('C');
+                break;
+            case SHORT:
+                builder.append('S');
+                break;
+            case INT:
+                builder.append('I');
+                break;
+            case LONG:
+                builder.append('J');
+                break;
+            case FLOAT:
+                builder.append('F');
+                break;
+            case DOUBLE:
+                builder.append('D');
+                break;
+            default:
+                builder.append('L');
+                appendClassName(builder, type);
+                builder.append(';');
+        }
+    }
+
+    // the same as MetricRegistry.name(), empty parts are skipped
+    private static String join(String... parts) {
+        StringBuilder name = new StringBuilder();
+        for (String part : parts) {
+            if (part != null && !part.isEmpty()) {
+                if (name.length() > 0) {
+                    name.append('.');
+                }
+                name.append(part);
+            }
+        }
+
+        return name.toString();
+    }
+
+    private static void escape(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.processor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link MetricsIndexProcessor}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class MetricsIndexProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void indexesAnnotatedMembers() throws IOException {
+        List<String> index = compile("test.MethodBean",
+                "package test;\n" +
+                "import org.eclipse.microprofile.metrics.annotation.*;\n" +
+                "public class MethodBean {\n" +
+                "    @Counted public void counted() {}\n" +
+                "    @Timed(name = \"timer\", absolute = true, tags = {\"a=b\", \"c=d\"}) public void timed() {}\n" +
+                "    @Metered(description = \"multi\\nline\\tdescription\")\n" +
+                "    public void metered(int[] a, String b) {}\n" +
+                "    @Counted private void ignored() {}\n" +
+                "}\n");
+
+        Assert.assertEquals(Arrays.asList(
+                "test.MethodBean\tCOUNTED\ttest.MethodBean\tcounted\t\ttest.MethodBean.counted\t\t\tnone\tfalse",
+                "test.MethodBean\tTIMED\ttest.MethodBean\ttimed\t\ttimer\t\t\tnanoseconds\tfalse\ta=b\tc=d",
+                "test.MethodBean\tMETERED\ttest.MethodBean\tmetered\t[I,java.lang.String\ttest.MethodBean.metered" +
+                        "\t\tmulti\\nline\\tdescription\tper_second\tfalse"
+        ), index);
+    }
+
+    @Test
+    public void indexesClassAnnotations() throws IOException {
+        List<String> index = compile("test.ClassBean",
+                "package test;\n" +
+                "import org.eclipse.microprofile.metrics.annotation.*;\n" +
+                "@Counted(name = \"bean\")\n" +
+                "public class ClassBean {\n" +
+                "    public ClassBean() {}\n" +
+                "    public void method() {}\n" +
+                "}\n");
+
+        Assert.assertEquals(Arrays.asList(
+                "test.ClassBean\tCOUNTED\ttest.ClassBean\t<init>\t\ttest.bean.ClassBean\t\t\tnone\tfalse",
+                "test.ClassBean\tCOUNTED\ttest.ClassBean\tmethod\t\ttest.bean.method\t\t\tnone\tfalse"
+        ), index);
+    }
+
+    @Test
+    public void indexesInheritedMembers() throws IOException {
+        List<String> index = compile("test.SubBean",
+                "package test;\n" +
+                "import org.eclipse.microprofile.metrics.annotation.*;\n" +
+                "public class SubBean extends BaseBean {\n" +
+                "}\n" +
+                "class BaseBean {\n" +
+                "    @Counted protected void inherited() {}\n" +
+                "    @Gauge(unit = \"none\") public long gauge() { return 0; }\n" +
+                "}\n");
+
+        Assert.assertEquals(Arrays.asList(
+                "test.SubBean\tCOUNTED\ttest.BaseBean\tinherited\t\ttest.BaseBean.inherited\t\t\tnone\tfalse",
+                "test.SubBean\tGAUGE\ttest.BaseBean\tgauge\t\ttest.BaseBean.gauge\t\t\tnone\tfalse"
+        ), index);
+    }
+
+    private List<String> compile(String className, String source) throws IOException {
+        File sourceFile = new File(folder.newFolder("src"), className.replace('.', File.separatorChar) + ".java");
+        Assert.assertTrue(sourceFile.getParentFile().mkdirs());
+        Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        File output = folder.newFolder("classes");
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null,
+                StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null,
+                    Arrays.asList("-d", output.getPath(), "-classpath", System.getProperty("java.class.path")),
+                    null, fileManager.getJavaFileObjects(sourceFile));
+            task.setProcessors(Collections.singletonList(new MetricsIndexProcessor()));
+            Assert.assertTrue("Compilation failed", task.call());
+        }
+
+        // only entries of the compiled bean
+        return Files.readAllLines(new File(output, MetricsIndexProcessor.INDEX_RESOURCE).toPath(),
+                StandardCharsets.UTF_8).stream()
+                .filter(line -> line.startsWith(className + "\t"))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.statsd;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Initializes StatsD reporter.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@ApplicationScoped
+public class StatsdInitiator {
+
+    private static final Logger log = Logger.getLogger(StatsdInitiator.class.getName());
+
+    private StatsdReporter statsdReporter;
+
+    private void initialiseBean(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+
+        boolean enabled = configurationUtil.getBoolean("kumuluzee.metrics.statsd.enabled").orElse(true);
+        if (enabled) {
+            String address = configurationUtil.get("kumuluzee.metrics.statsd.address").orElse("127.0.0.1");
+            int port = configurationUtil.getInteger("kumuluzee.metrics.statsd.port").orElse(8125);
+            long periodSeconds = configurationUtil.getInteger("kumuluzee.metrics.statsd.period-s").orElse(10);
+            String prefix = configurationUtil.get("kumuluzee.metrics.statsd.prefix").orElse("");
+            boolean dogStatsd = configurationUtil.getBoolean("kumuluzee.metrics.statsd.dogstatsd").orElse(true);
+            int maxPacketSize = configurationUtil.getInteger("kumuluzee.metrics.statsd.max-packet-size")
+                    .orElse(1432);
+
+            statsdReporter = new StatsdReporter(address, port, periodSeconds, prefix, dogStatsd, maxPacketSize);
+            try {
+                statsdReporter.start();
+            } catch (IOException e) {
+                log.severe("Cannot start StatsD reporter: " + e.getLocalizedMessage());
+                statsdReporter = null;
+            }
+        }
+    }
+
+    @PreDestroy
+    private void stopReporter() {
+        if (statsdReporter != null) {
+            statsdReporter.stop();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.statsd;
+
+import com.kumuluz.ee.metrics.utils.AsciiEncoder;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Packs StatsD lines into datagrams.
+ *
+ * Lines are encoded into a preallocated buffer and appended to the current datagram, separated by new lines. When the
+ * next line does not fit into the datagram, the datagram is sent and a new one is started, so every datagram is at
+ * most {@code maxPacketSize} bytes long.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class StatsdPacketWriter {
+
+    private final DatagramChannel channel;
+    private final SocketAddress address;
+
+    private final ByteBuffer packet;
+    private final ByteBuffer line;
+
+    private long sentPackets;
+    private long droppedPackets;
+    private long droppedLines;
+
+    public StatsdPacketWriter(DatagramChannel channel, SocketAddress address, int maxPacketSize) {
+        this.channel = channel;
+        this.address = address;
+        this.packet = ByteBuffer.allocateDirect(maxPacketSize);
+        this.line = ByteBuffer.allocate(maxPacketSize);
+    }
+
+    /**
+     * Writes a line in the format {@code <name>[.<field>]:<value>|<type><tags>}.
+     *
+     * @param name  encoded metric name
+     * @param field field of the metric, appended to the name, or {@code null}
+     * @param type  StatsD metric type, e.g. {@code c} or {@code g}
+     * @param tags  encoded tags, including the leading {@code |#}, or {@code null}
+     */
+    public void writeLine(byte[] name, String field, long value, String type, byte[] tags) throws IOException {
+        line.clear();
+        try {
+            startLine(name, field);
+            AsciiEncoder.putLong(line, value);
+            endLine(type, tags);
+        } catch (BufferOverflowException e) {
+            droppedLines++;
+            return;
+        }
+
+        appendLine();
+    }
+
+    /**
+     * Writes a line with a double value. Non-finite values cannot be represented in StatsD and are skipped.
+     *
+     * @see #writeLine(byte[], String, long, String, byte[])
+     */
+    public void writeLine(byte[] name, String field, double value, String type, byte[] tags) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+
+        line.clear();
+        try {
+            startLine(name, field);
+            // StatsD servers do not parse exponents
+            AsciiEncoder.putPlainDouble(line, value);
+            endLine(type, tags);
+        } catch (BufferOverflowException e) {
+            droppedLines++;
+            return;
+        }
+
+        appendLine();
+    }
+
+    /**
+     * Sends the current datagram, if it is not empty.
+     */
+    public void flush() throws IOException {
+        if (packet.position() == 0) {
+            return;
+        }
+
+        packet.flip();
+        try {
+            // a datagram is either sent whole or not at all (e.g. when the socket buffer is full)
+            if (channel.send(packet, address) == 0) {
+                droppedPackets++;
+            } else {
+                sentPackets++;
+            }
+        } finally {
+            packet.clear();
+        }
+    }
+
+    public long getSentPackets() {
+        return sentPackets;
+    }
+
+    public long getDroppedPackets() {
+        return droppedPackets;
+    }
+
+    /**
+     * @return number of lines, which were dropped, because they did not fit into a datagram
+     */
+    public long getDroppedLines() {
+        return droppedLines;
+    }
+
+    /**
+     * Encodes a name or tags for use in the lines. Characters with a special meaning in the StatsD format are replaced
+     * with underscores.
+     */
+    public static byte[] encode(String value) {
+        StringBuilder sanitized = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            sanitized.append(c == ':' || c == '|' || c == '@' || c == '#' || c == ',' || c == '\n' ? '_' : c);
+        }
+
+        return sanitized.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void startLine(byte[] name, String field) {
+        line.put(name);
+        if (field != null) {
+            line.put((byte) '.');
+            AsciiEncoder.putAscii(line, field);
+        }
+        line.put((byte) ':');
+    }
+
+    private void endLine(String type, byte[] tags) {
+        line.put((byte) '|');
+        AsciiEncoder.putAscii(line, type);
+        if (tags != null) {
+            line.put(tags);
+        }
+    }
+
+    private void appendLine() throws IOException {
+        line.flip();
+
+        int separator = packet.position() > 0 ? 1 : 0;
+        if (line.remaining() + separator > packet.remaining()) {
+            flush();
+            separator = 0;
+        }
+
+        if (separator > 0) {
+            packet.put((byte) '\n');
+        }
+        packet.put(line);
+    }
+}
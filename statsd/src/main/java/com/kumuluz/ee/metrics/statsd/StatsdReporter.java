@@ -0,0 +1,242 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.statsd;
+
+import com.kumuluz.ee.metrics.api.DoubleGauge;
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.api.MetricAdapter;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.reporters.MetricStateCache;
+import com.kumuluz.ee.metrics.reporters.MetricsReport;
+import com.kumuluz.ee.metrics.reporters.ReporterSink;
+import com.kumuluz.ee.metrics.reporters.ReportingPipeline;
+import org.eclipse.microprofile.metrics.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Reports metrics to a StatsD server over UDP.
+ *
+ * Counts are reported as StatsD counters with the increment since the previous report, all other values (gauges,
+ * rates and snapshot values) are reported as StatsD gauges. When DogStatsD is enabled, metric tags are appended to the
+ * lines in the DogStatsD format.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class StatsdReporter implements ReporterSink {
+
+    private static final Logger log = Logger.getLogger(StatsdReporter.class.getName());
+
+    private static final String COUNTER = "c";
+    private static final String GAUGE = "g";
+
+    private String address;
+    private int port;
+    private long periodSeconds;
+    private String prefix;
+    private boolean dogStatsd;
+    private int maxPacketSize;
+
+    private DatagramChannel channel;
+    private StatsdPacketWriter writer;
+
+    // encoded names and previously reported counts
+    private final MetricStateCache<MetricState> states = new MetricStateCache<>(MetricState::new);
+
+    public StatsdReporter(String address, int port, long periodSeconds, String prefix, boolean dogStatsd,
+                          int maxPacketSize) {
+        this.address = address;
+        this.port = port;
+        this.periodSeconds = periodSeconds;
+        this.prefix = prefix;
+        this.dogStatsd = dogStatsd;
+        this.maxPacketSize = maxPacketSize;
+    }
+
+    public void start() throws IOException {
+        log.info("Starting StatsD reporter.");
+
+        open();
+        ReportingPipeline.getInstance().register(this);
+    }
+
+    public void stop() {
+        ReportingPipeline.getInstance().unregister(this);
+        close();
+    }
+
+    void open() throws IOException {
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        writer = new StatsdPacketWriter(channel, new InetSocketAddress(address, port), maxPacketSize);
+    }
+
+    synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warning("Cannot close StatsD channel: " + e.getLocalizedMessage());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "StatsD";
+    }
+
+    @Override
+    public long getPeriodSeconds() {
+        return periodSeconds;
+    }
+
+    @Override
+    public synchronized void report(MetricsReport report) {
+        states.startReport();
+        long droppedLines = writer.getDroppedLines();
+        long droppedPackets = writer.getDroppedPackets();
+
+        try {
+            for (Map.Entry<String, MetricRegistry> registry : report.getRegistries().entrySet()) {
+                if (registry.getValue() instanceof MetricRegistryImpl) {
+                    for (Map.Entry<String, MetricAdapter> entry : ((MetricRegistryImpl) registry.getValue())
+                            .getMetricAdapters().entrySet()) {
+                        writeMetric(registry.getKey(), entry.getKey(), entry.getValue().getMetric(),
+                                entry.getValue().getMetadata());
+                    }
+                } else {
+                    Map<String, Metadata> metadata = registry.getValue().getMetadata();
+                    for (Map.Entry<String, Metric> entry : registry.getValue().getMetrics().entrySet()) {
+                        writeMetric(registry.getKey(), entry.getKey(), entry.getValue(),
+                                metadata.get(entry.getKey()));
+                    }
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            log.warning("Cannot send metrics to StatsD: " + e.getLocalizedMessage());
+        }
+
+        states.endReport();
+
+        if (writer.getDroppedLines() > droppedLines) {
+            log.warning((writer.getDroppedLines() - droppedLines) + " StatsD lines were longer than " + maxPacketSize +
+                    " bytes and were not sent.");
+        }
+        if (writer.getDroppedPackets() > droppedPackets) {
+            log.warning((writer.getDroppedPackets() - droppedPackets) + " StatsD packets could not be sent.");
+        }
+    }
+
+    private void writeMetric(String registryName, String metricName, Metric metric, Metadata metadata)
+            throws IOException {
+        MetricState state = states.get(registryName, metricName, metric, metadata);
+
+        if (metric instanceof LongGauge) {
+            writer.writeLine(state.name, null, ((LongGauge) metric).getLongValue(), GAUGE, state.tags);
+        } else if (metric instanceof DoubleGauge) {
+            writer.writeLine(state.name, null, ((DoubleGauge) metric).getDoubleValue(), GAUGE, state.tags);
+        } else if (metric instanceof Gauge) {
+            Object value = ((Gauge) metric).getValue();
+            if (value instanceof Number) {
+                writer.writeLine(state.name, null, ((Number) value).doubleValue(), GAUGE, state.tags);
+            }
+        } else if (metric instanceof Counter) {
+            writeCount(state, null, ((Counter) metric).getCount());
+        } else if (metric instanceof Timer) {
+            Timer timer = (Timer) metric;
+            writeCount(state, "count", timer.getCount());
+            writeMetered(state, timer);
+            writeSnapshot(state, timer.getSnapshot());
+        } else if (metric instanceof Histogram) {
+            Histogram histogram = (Histogram) metric;
+            writeCount(state, "count", histogram.getCount());
+            writeSnapshot(state, histogram.getSnapshot());
+        } else if (metric instanceof Meter) {
+            Meter meter = (Meter) metric;
+            writeCount(state, "count", meter.getCount());
+            writeMetered(state, meter);
+        }
+    }
+
+    private void writeCount(MetricState state, String field, long count) throws IOException {
+        long increment = count - state.lastCount;
+        state.lastCount = count;
+
+        writer.writeLine(state.name, field, increment, COUNTER, state.tags);
+    }
+
+    private void writeMetered(MetricState state, Metered metered) throws IOException {
+        writer.writeLine(state.name, "meanRate", metered.getMeanRate(), GAUGE, state.tags);
+        writer.writeLine(state.name, "oneMinRate", metered.getOneMinuteRate(), GAUGE, state.tags);
+        writer.writeLine(state.name, "fiveMinRate", metered.getFiveMinuteRate(), GAUGE, state.tags);
+        writer.writeLine(state.name, "fifteenMinRate", metered.getFifteenMinuteRate(), GAUGE, state.tags);
+    }
+
+    private void writeSnapshot(MetricState state, Snapshot snapshot) throws IOException {
+        writer.writeLine(state.name, "min", snapshot.getMin(), GAUGE, state.tags);
+        writer.writeLine(state.name, "max", snapshot.getMax(), GAUGE, state.tags);
+        writer.writeLine(state.name, "mean", snapshot.getMean(), GAUGE, state.tags);
+        writer.writeLine(state.name, "stddev", snapshot.getStdDev(), GAUGE, state.tags);
+        writer.writeLine(state.name, "p50", snapshot.getMedian(), GAUGE, state.tags);
+        writer.writeLine(state.name, "p75", snapshot.get75thPercentile(), GAUGE, state.tags);
+        writer.writeLine(state.name, "p95", snapshot.get95thPercentile(), GAUGE, state.tags);
+        writer.writeLine(state.name, "p98", snapshot.get98thPercentile(), GAUGE, state.tags);
+        writer.writeLine(state.name, "p99", snapshot.get99thPercentile(), GAUGE, state.tags);
+        writer.writeLine(state.name, "p999", snapshot.get999thPercentile(), GAUGE, state.tags);
+    }
+
+    private class MetricState {
+
+        private final byte[] name;
+        private final byte[] tags;
+
+        private long lastCount;
+
+        private MetricState(String registryName, String metricName, Metadata metadata) {
+            this.name = StatsdPacketWriter.encode(prefix + registryName + "." + metricName);
+
+            if (dogStatsd && metadata != null && !metadata.getTags().isEmpty()) {
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                encoded.write('|');
+                encoded.write('#');
+                for (Map.Entry<String, String> tag : metadata.getTags().entrySet()) {
+                    if (encoded.size() > 2) {
+                        encoded.write(',');
+                    }
+                    byte[] key = StatsdPacketWriter.encode(tag.getKey());
+                    byte[] value = StatsdPacketWriter.encode(tag.getValue());
+                    encoded.write(key, 0, key.length);
+                    encoded.write(':');
+                    encoded.write(value, 0, value.length);
+                }
+                this.tags = encoded.toByteArray();
+            } else {
+                this.tags = null;
+            }
+        }
+    }
+}
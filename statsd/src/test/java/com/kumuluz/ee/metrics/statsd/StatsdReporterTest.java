@@ -0,0 +1,144 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.statsd;
+
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.reporters.MetricsReport;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests {@link StatsdReporter} against a local UDP listener, which stands in for the StatsD server.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class StatsdReporterTest {
+
+    private static final int TIMEOUT_MS = 10000;
+    private static final int MAX_PACKET_SIZE = 512;
+
+    private DatagramSocket server;
+    private MetricRegistry registry;
+    private StatsdReporter reporter;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        server.setSoTimeout(TIMEOUT_MS);
+        registry = new MetricRegistryImpl();
+    }
+
+    @After
+    public void tearDown() {
+        if (reporter != null) {
+            reporter.close();
+        }
+        server.close();
+    }
+
+    @Test
+    public void reportsCounterIncrementsAndGauges() throws IOException {
+        Metadata counterMetadata = new Metadata("requests", MetricType.COUNTER);
+        counterMetadata.addTag("method=get");
+        Counter counter = registry.counter(counterMetadata);
+        registry.register(new Metadata("queue", MetricType.GAUGE), (LongGauge) () -> 7);
+
+        reporter = newReporter(true);
+
+        counter.inc(5);
+        reporter.report(report());
+        List<String> lines = receive();
+        Assert.assertEquals(2, lines.size());
+        Assert.assertTrue(lines.get(0).startsWith("app.application.queue:7|g"));
+        assertLine("app.application.requests:5|c|#", "method:get", lines.get(1));
+
+        counter.inc(2);
+        reporter.report(report());
+        assertLine("app.application.requests:2|c|#", "method:get", receive().get(1));
+    }
+
+    @Test
+    public void packsLinesIntoDatagrams() throws IOException {
+        int counters = 50;
+        for (int i = 0; i < counters; i++) {
+            registry.counter(new Metadata("counter" + i, MetricType.COUNTER)).inc(i);
+        }
+
+        reporter = newReporter(false);
+        reporter.report(report());
+
+        List<String> lines = new ArrayList<>();
+        int datagrams = 0;
+        while (lines.size() < counters) {
+            lines.addAll(receive());
+            datagrams++;
+        }
+
+        Assert.assertEquals(counters, lines.size());
+        Assert.assertTrue("Lines were not packed", datagrams < counters);
+        for (int i = 0; i < counters; i++) {
+            Assert.assertTrue(lines.contains("app.application.counter" + i + ":" + i + "|c"));
+        }
+    }
+
+    private static void assertLine(String expectedStart, String expectedTag, String line) {
+        Assert.assertTrue(line, line.startsWith(expectedStart));
+        Assert.assertTrue(line, Arrays.asList(line.substring(expectedStart.length()).split(",")).contains(expectedTag));
+    }
+
+    private StatsdReporter newReporter(boolean dogStatsd) throws IOException {
+        StatsdReporter statsdReporter = new StatsdReporter("127.0.0.1", server.getLocalPort(), 10, "app.",
+                dogStatsd, MAX_PACKET_SIZE);
+        statsdReporter.open();
+
+        return statsdReporter;
+    }
+
+    private MetricsReport report() {
+        return new MetricsReport(Collections.singletonMap("application", registry));
+    }
+
+    private List<String> receive() throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[MAX_PACKET_SIZE * 2], MAX_PACKET_SIZE * 2);
+        server.receive(packet);
+
+        Assert.assertTrue("Datagram is too long", packet.getLength() <= MAX_PACKET_SIZE);
+        return Arrays.asList(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8).split("\n"));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.timeseries;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Graphite plaintext protocol. Every value is written as a separate line:
+ * {@code <name>.<field>;<tags> <value> <timestamp in seconds>}. Tags are written in the Graphite 1.1 format.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class GraphiteFormat implements TimeSeriesFormat {
+
+    private final boolean writeTags;
+
+    private byte[] name;
+    private byte[] tags;
+    private long timestampSeconds;
+
+    /**
+     * @param writeTags If false, tags are omitted, for servers without tag support
+     */
+    public GraphiteFormat(boolean writeTags) {
+        this.writeTags = writeTags;
+    }
+
+    @Override
+    public byte[] encodeName(String name) {
+        return sanitize(name, false).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] encodeTags(Map<String, String> tags) {
+        StringBuilder encoded = new StringBuilder();
+        if (writeTags) {
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                if (!tag.getKey().isEmpty() && tag.getValue() != null && !tag.getValue().isEmpty()) {
+                    encoded.append(';').append(sanitize(tag.getKey(), true)).append('=')
+                            .append(sanitize(tag.getValue(), true));
+                }
+            }
+        }
+
+        return encoded.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void startMetric(LineBuffer buffer, byte[] name, byte[] tags, long timestampNanos) {
+        this.name = name;
+        this.tags = tags;
+        this.timestampSeconds = timestampNanos / 1_000_000_000L;
+    }
+
+    @Override
+    public void field(LineBuffer buffer, String field, long value) {
+        startLine(buffer, field).putLong(value);
+        endLine(buffer);
+    }
+
+    @Override
+    public void field(LineBuffer buffer, String field, double value) {
+        startLine(buffer, field).putDouble(value);
+        endLine(buffer);
+    }
+
+    @Override
+    public void endMetric(LineBuffer buffer) {
+        name = null;
+        tags = null;
+    }
+
+    private LineBuffer startLine(LineBuffer buffer, String field) {
+        buffer.put(name);
+        if (field != null) {
+            buffer.put((byte) '.').putAscii(field);
+        }
+        return buffer.put(tags).put((byte) ' ');
+    }
+
+    private void endLine(LineBuffer buffer) {
+        buffer.put((byte) ' ').putLong(timestampSeconds).put((byte) '\n');
+    }
+
+    private static String sanitize(String value, boolean tag) {
+        StringBuilder sanitized = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean reserved = c == ' ' || c == ';' || c == '\n' || c == '\r' || (tag && (c == '=' || c == '~'));
+            sanitized.append(reserved ? '_' : c);
+        }
+
+        return sanitized.toString();
+    }
+}
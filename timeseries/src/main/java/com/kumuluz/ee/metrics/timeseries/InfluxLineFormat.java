@@ -0,0 +1,111 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.timeseries;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * InfluxDB line protocol. Every metric is written as a single line, with its values as fields:
+ * {@code <name>,<tags> <field>=<value>,... <timestamp in nanoseconds>}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class InfluxLineFormat implements TimeSeriesFormat {
+
+    private static final String DEFAULT_FIELD = "value";
+
+    private boolean firstField;
+    private long timestampNanos;
+
+    @Override
+    public byte[] encodeName(String name) {
+        return escape(name, false).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] encodeTags(Map<String, String> tags) {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            // empty tag values are not allowed
+            if (!tag.getKey().isEmpty() && tag.getValue() != null && !tag.getValue().isEmpty()) {
+                encoded.append(',').append(escape(tag.getKey(), true)).append('=')
+                        .append(escape(tag.getValue(), true));
+            }
+        }
+
+        return encoded.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void startMetric(LineBuffer buffer, byte[] name, byte[] tags, long timestampNanos) {
+        buffer.put(name).put(tags).put((byte) ' ');
+        this.firstField = true;
+        this.timestampNanos = timestampNanos;
+    }
+
+    @Override
+    public void field(LineBuffer buffer, String field, long value) {
+        startField(buffer, field).putLong(value).put((byte) 'i');
+    }
+
+    @Override
+    public void field(LineBuffer buffer, String field, double value) {
+        startField(buffer, field).putDouble(value);
+    }
+
+    @Override
+    public void endMetric(LineBuffer buffer) {
+        if (firstField) {
+            // a line without fields is invalid
+            buffer.reset();
+            return;
+        }
+
+        buffer.put((byte) ' ').putLong(timestampNanos).put((byte) '\n');
+    }
+
+    private LineBuffer startField(LineBuffer buffer, String field) {
+        if (!firstField) {
+            buffer.put((byte) ',');
+        }
+        firstField = false;
+
+        return buffer.putAscii(field == null ? DEFAULT_FIELD : field).put((byte) '=');
+    }
+
+    private static String escape(String value, boolean escapeEquals) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\n' || c == '\r') {
+                c = ' ';
+            }
+            if (c == ',' || c == ' ' || (escapeEquals && c == '=')) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.timeseries;
+
+import com.kumuluz.ee.metrics.utils.AsciiEncoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reusable buffer, into which the lines are encoded before they are written to the connection.
+ *
+ * Lines of a metric are added atomically: the position is marked after every complete metric and reset to the mark
+ * if a metric does not fit, so only whole lines are ever written to the connection.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class LineBuffer {
+
+    private final ByteBuffer buffer;
+    private int mark;
+
+    public LineBuffer(int size) {
+        this.buffer = ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * Marks the end of the complete content.
+     */
+    public void mark() {
+        mark = buffer.position();
+    }
+
+    /**
+     * Discards everything after the mark.
+     */
+    public void reset() {
+        buffer.position(mark);
+    }
+
+    public boolean isEmpty() {
+        return buffer.position() == 0;
+    }
+
+    public void clear() {
+        buffer.clear();
+        mark = 0;
+    }
+
+    /**
+     * Writes the content before the mark to the channel and discards the content after it. Content, which is not
+     * written, is kept in the buffer.
+     *
+     * @return number of written bytes
+     */
+    public int writeTo(WritableByteChannel channel) throws IOException {
+        reset();
+        buffer.flip();
+
+        try {
+            return channel.write(buffer);
+        } finally {
+            buffer.compact();
+            mark = buffer.position();
+        }
+    }
+
+    public LineBuffer put(byte value) {
+        buffer.put(value);
+        return this;
+    }
+
+    public LineBuffer put(byte[] value) {
+        buffer.put(value);
+        return this;
+    }
+
+    public LineBuffer putAscii(String value) {
+        AsciiEncoder.putAscii(buffer, value);
+        return this;
+    }
+
+    public LineBuffer putLong(long value) {
+        AsciiEncoder.putLong(buffer, value);
+        return this;
+    }
+
+    /**
+     * Writes a finite double. Whole numbers are written without a fraction.
+     */
+    public LineBuffer putDouble(double value) {
+        AsciiEncoder.putDouble(buffer, value);
+        return this;
+    }
+}
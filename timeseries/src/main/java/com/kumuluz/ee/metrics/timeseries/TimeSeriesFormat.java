@@ -0,0 +1,55 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.timeseries;
+
+import java.util.Map;
+
+/**
+ * Line format of the time series reporter. Names and tags are encoded once per metric with
+ * {@link #encodeName(String)} and {@link #encodeTags(Map)}, values are encoded on every report.
+ *
+ * A metric is written by calling {@link #startMetric(LineBuffer, byte[], byte[], long)}, then one of the
+ * {@code field} methods for every value of the metric and finally {@link #endMetric(LineBuffer)}.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public interface TimeSeriesFormat {
+
+    byte[] encodeName(String name);
+
+    byte[] encodeTags(Map<String, String> tags);
+
+    void startMetric(LineBuffer buffer, byte[] name, byte[] tags, long timestampNanos);
+
+    /**
+     * @param field name of the value or {@code null}, if the metric has a single value
+     */
+    void field(LineBuffer buffer, String field, long value);
+
+    /**
+     * @param field name of the value or {@code null}, if the metric has a single value
+     * @param value finite value
+     */
+    void field(LineBuffer buffer, String field, double value);
+
+    void endMetric(LineBuffer buffer);
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.timeseries;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.metrics.utils.ServiceConfigInfo;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Initializes time series (InfluxDB or Graphite) reporter.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+@ApplicationScoped
+public class TimeSeriesInitiator {
+
+    private static final Logger log = Logger.getLogger(TimeSeriesInitiator.class.getName());
+
+    private TimeSeriesReporter timeSeriesReporter;
+
+    private void initialiseBean(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+
+        boolean enabled = configurationUtil.getBoolean("kumuluzee.metrics.timeseries.enabled").orElse(true);
+        if (enabled) {
+            String formatName = configurationUtil.get("kumuluzee.metrics.timeseries.format").orElse("influx");
+
+            TimeSeriesFormat format;
+            int defaultPort;
+            if ("influx".equalsIgnoreCase(formatName)) {
+                format = new InfluxLineFormat();
+                defaultPort = 8094;
+            } else if ("graphite".equalsIgnoreCase(formatName)) {
+                format = new GraphiteFormat(configurationUtil.getBoolean("kumuluzee.metrics.timeseries.graphite-tags")
+                        .orElse(true));
+                defaultPort = 2003;
+            } else {
+                log.severe("Unknown time series format " + formatName + ", time series reporter is not started.");
+                return;
+            }
+
+            String address = configurationUtil.get("kumuluzee.metrics.timeseries.address").orElse("127.0.0.1");
+            int port = configurationUtil.getInteger("kumuluzee.metrics.timeseries.port").orElse(defaultPort);
+            long periodSeconds = configurationUtil.getInteger("kumuluzee.metrics.timeseries.period-s").orElse(10);
+            String prefix = configurationUtil.get("kumuluzee.metrics.timeseries.prefix").orElse("");
+            int bufferSize = configurationUtil.getInteger("kumuluzee.metrics.timeseries.buffer-size")
+                    .orElse(65536);
+            int connectTimeout = configurationUtil.getInteger("kumuluzee.metrics.timeseries.connect-timeout-ms")
+                    .orElse(10000);
+
+            Map<String, String> defaultTags = new HashMap<>();
+            if (configurationUtil.getBoolean("kumuluzee.metrics.timeseries.default-tags").orElse(true)) {
+                ServiceConfigInfo configInfo = ServiceConfigInfo.getInstance();
+                defaultTags.put("environment", configInfo.getEnvironment());
+                defaultTags.put("serviceName", configInfo.getServiceName());
+                defaultTags.put("serviceVersion", configInfo.getServiceVersion());
+                defaultTags.put("instanceId", configInfo.getInstanceId());
+            }
+
+            timeSeriesReporter = new TimeSeriesReporter(format, address, port, periodSeconds, prefix, defaultTags,
+                    bufferSize, connectTimeout);
+            timeSeriesReporter.start();
+        }
+    }
+
+    @PreDestroy
+    private void stopReporter() {
+        if (timeSeriesReporter != null) {
+            timeSeriesReporter.stop();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.timeseries;
+
+import com.kumuluz.ee.metrics.api.DoubleGauge;
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.api.MetricAdapter;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.reporters.MetricStateCache;
+import com.kumuluz.ee.metrics.reporters.MetricsReport;
+import com.kumuluz.ee.metrics.reporters.ReporterSink;
+import com.kumuluz.ee.metrics.reporters.ReportingPipeline;
+import org.eclipse.microprofile.metrics.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Reports metrics in a line based format (InfluxDB line protocol or Graphite plaintext) over a persistent TCP
+ * connection.
+ *
+ * Lines of a report are batched in a reusable buffer and written with as few writes as possible. The connection is
+ * non-blocking: content, which cannot be written immediately, stays in the buffer and is written with the next report.
+ * When the buffer is full, the rest of the report is dropped. After a disconnect, a new connection is opened with the
+ * next report.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class TimeSeriesReporter implements ReporterSink {
+
+    private static final Logger log = Logger.getLogger(TimeSeriesReporter.class.getName());
+
+    private String address;
+    private int port;
+    private long periodSeconds;
+    private String prefix;
+    private Map<String, String> defaultTags;
+    private long connectTimeoutNanos;
+
+    private final TimeSeriesFormat format;
+    private final LineBuffer buffer;
+
+    private SocketChannel channel;
+    private long connectStart;
+
+    // encoded names and tags
+    private final MetricStateCache<Series> series = new MetricStateCache<>(Series::new);
+
+    public TimeSeriesReporter(TimeSeriesFormat format, String address, int port, long periodSeconds, String prefix,
+                              Map<String, String> defaultTags, int bufferSize, int connectTimeout) {
+        this.format = format;
+        this.address = address;
+        this.port = port;
+        this.periodSeconds = periodSeconds;
+        this.prefix = prefix;
+        this.defaultTags = defaultTags;
+        this.connectTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+        this.buffer = new LineBuffer(bufferSize);
+    }
+
+    public void start() {
+        log.info("Starting time series reporter.");
+
+        connect();
+        ReportingPipeline.getInstance().register(this);
+    }
+
+    public void stop() {
+        ReportingPipeline.getInstance().unregister(this);
+        synchronized (this) {
+            disconnect();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Time series";
+    }
+
+    @Override
+    public long getPeriodSeconds() {
+        return periodSeconds;
+    }
+
+    @Override
+    public synchronized void report(MetricsReport report) {
+        series.startReport();
+        long timestampNanos = TimeUnit.MILLISECONDS.toNanos(report.getTimestamp());
+
+        try {
+            if (channel == null) {
+                connect();
+            }
+
+            if (channel != null) {
+                encode(report, timestampNanos);
+                flush();
+            }
+        } catch (IOException e) {
+            log.warning("Cannot write metrics to " + address + ":" + port + ": " + e.getLocalizedMessage());
+            disconnect();
+        }
+
+        series.endReport();
+    }
+
+    private void encode(MetricsReport report, long timestampNanos) throws IOException {
+        for (Map.Entry<String, MetricRegistry> registry : report.getRegistries().entrySet()) {
+            if (registry.getValue() instanceof MetricRegistryImpl) {
+                for (Map.Entry<String, MetricAdapter> entry : ((MetricRegistryImpl) registry.getValue())
+                        .getMetricAdapters().entrySet()) {
+                    if (!encode(registry.getKey(), entry.getKey(), entry.getValue().getMetric(),
+                            entry.getValue().getMetadata(), timestampNanos)) {
+                        return;
+                    }
+                }
+            } else {
+                Map<String, Metadata> metadata = registry.getValue().getMetadata();
+                for (Map.Entry<String, Metric> entry : registry.getValue().getMetrics().entrySet()) {
+                    if (!encode(registry.getKey(), entry.getKey(), entry.getValue(), metadata.get(entry.getKey()),
+                            timestampNanos)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false, if the buffer is full and the rest of the report is dropped
+     */
+    private boolean encode(String registryName, String metricName, Metric metric, Metadata metadata,
+                           long timestampNanos) throws IOException {
+        Series metricSeries = series.get(registryName, metricName, metric, metadata);
+
+        try {
+            writeMetric(metricSeries, metric, timestampNanos);
+            buffer.mark();
+            return true;
+        } catch (BufferOverflowException e) {
+            // the metric does not fit, write the complete lines to make room
+            buffer.reset();
+            flush();
+        }
+
+        if (!buffer.isEmpty()) {
+            log.warning("Buffer for time series metrics is full, the rest of the report is dropped.");
+            return false;
+        }
+
+        try {
+            writeMetric(metricSeries, metric, timestampNanos);
+            buffer.mark();
+        } catch (BufferOverflowException e) {
+            buffer.reset();
+            log.warning("Metric " + metricName + " is larger than the time series buffer and is not reported.");
+        }
+        return true;
+    }
+
+    private void writeMetric(Series metricSeries, Metric metric, long timestampNanos) {
+        format.startMetric(buffer, metricSeries.name, metricSeries.tags, timestampNanos);
+
+        if (metric instanceof LongGauge) {
+            format.field(buffer, null, ((LongGauge) metric).getLongValue());
+        } else if (metric instanceof DoubleGauge) {
+            writeDouble(null, ((DoubleGauge) metric).getDoubleValue());
+        } else if (metric instanceof Gauge) {
+            Object value = ((Gauge) metric).getValue();
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                format.field(buffer, null, ((Number) value).longValue());
+            } else if (value instanceof Number) {
+                writeDouble(null, ((Number) value).doubleValue());
+            }
+        } else if (metric instanceof Counter) {
+            format.field(buffer, "count", ((Counter) metric).getCount());
+        } else if (metric instanceof Timer) {
+            Timer timer = (Timer) metric;
+            format.field(buffer, "count", timer.getCount());
+            writeMetered(timer);
+            writeSnapshot(timer.getSnapshot());
+        } else if (metric instanceof Histogram) {
+            Histogram histogram = (Histogram) metric;
+            format.field(buffer, "count", histogram.getCount());
+            writeSnapshot(histogram.getSnapshot());
+        } else if (metric instanceof Meter) {
+            Meter meter = (Meter) metric;
+            format.field(buffer, "count", meter.getCount());
+            writeMetered(meter);
+        }
+
+        format.endMetric(buffer);
+    }
+
+    private void writeMetered(Metered metered) {
+        writeDouble("meanRate", metered.getMeanRate());
+        writeDouble("oneMinRate", metered.getOneMinuteRate());
+        writeDouble("fiveMinRate", metered.getFiveMinuteRate());
+        writeDouble("fifteenMinRate", metered.getFifteenMinuteRate());
+    }
+
+    private void writeSnapshot(Snapshot snapshot) {
+        format.field(buffer, "min", snapshot.getMin());
+        format.field(buffer, "max", snapshot.getMax());
+        writeDouble("mean", snapshot.getMean());
+        writeDouble("stddev", snapshot.getStdDev());
+        writeDouble("p50", snapshot.getMedian());
+        writeDouble("p75", snapshot.get75thPercentile());
+        writeDouble("p95", snapshot.get95thPercentile());
+        writeDouble("p98", snapshot.get98thPercentile());
+        writeDouble("p99", snapshot.get99thPercentile());
+        writeDouble("p999", snapshot.get999thPercentile());
+    }
+
+    private void writeDouble(String field, double value) {
+        // non-finite values cannot be represented in the line formats
+        if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+            format.field(buffer, field, value);
+        }
+    }
+
+    /**
+     * Writes buffered lines, as far as the connection allows without blocking.
+     */
+    private void flush() throws IOException {
+        if (channel == null) {
+            return;
+        }
+
+        if (channel.isConnectionPending()) {
+            if (!channel.finishConnect()) {
+                if (System.nanoTime() - connectStart > connectTimeoutNanos) {
+                    throw new IOException("Connect timed out");
+                }
+                return;
+            }
+            log.info("Connected to " + address + ":" + port + ".");
+        }
+
+        buffer.writeTo(channel);
+    }
+
+    private void connect() {
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(new InetSocketAddress(address, port));
+            connectStart = System.nanoTime();
+        } catch (IOException e) {
+            log.warning("Cannot connect to " + address + ":" + port + ": " + e.getLocalizedMessage());
+            disconnect();
+        }
+    }
+
+    private void disconnect() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warning("Cannot close connection to " + address + ":" + port + ": " + e.getLocalizedMessage());
+            }
+            channel = null;
+        }
+
+        // a partially written line would corrupt the stream of the next connection
+        buffer.clear();
+    }
+
+    private class Series {
+
+        private final byte[] name;
+        private final byte[] tags;
+
+        private Series(String registryName, String metricName, Metadata metadata) {
+            this.name = format.encodeName(prefix + registryName + "." + metricName);
+
+            Map<String, String> metricTags = new TreeMap<>(defaultTags);
+            if (metadata != null) {
+                metricTags.putAll(metadata.getTags());
+            }
+            this.tags = format.encodeTags(metricTags);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.metrics.timeseries;
+
+import com.kumuluz.ee.metrics.api.LongGauge;
+import com.kumuluz.ee.metrics.api.MetricRegistryImpl;
+import com.kumuluz.ee.metrics.reporters.MetricsReport;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests {@link TimeSeriesReporter} against a local TCP server, which stands in for the time series backend.
+ *
+ * @author gpor89
+ * @since 1.2.0
+ */
+public class TimeSeriesReporterTest {
+
+    private static final int TIMEOUT_MS = 10000;
+
+    private ServerSocket server;
+    private MetricRegistry registry;
+    private TimeSeriesReporter reporter;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        server.setSoTimeout(TIMEOUT_MS);
+
+        registry = new MetricRegistryImpl();
+        Metadata counterMetadata = new Metadata("requests", MetricType.COUNTER);
+        counterMetadata.addTag("method=get");
+        Counter counter = registry.counter(counterMetadata);
+        counter.inc(5);
+        registry.register(new Metadata("queue", MetricType.GAUGE), (LongGauge) () -> 7);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (reporter != null) {
+            reporter.stop();
+        }
+        server.close();
+    }
+
+    @Test
+    public void writesInfluxLines() throws IOException {
+        reporter = newReporter(new InfluxLineFormat());
+
+        MetricsReport report = new MetricsReport(Collections.singletonMap("application", registry));
+        try (BufferedReader reader = accept(report)) {
+            long timestamp = TimeUnit.MILLISECONDS.toNanos(report.getTimestamp());
+
+            assertInfluxLine(reader.readLine(), "app.application.queue", "value=7i", timestamp);
+            assertInfluxLine(reader.readLine(), "app.application.requests", "count=5i", timestamp);
+        }
+    }
+
+    @Test
+    public void writesGraphiteLines() throws IOException {
+        reporter = newReporter(new GraphiteFormat(true));
+
+        MetricsReport report = new MetricsReport(Collections.singletonMap("application", registry));
+        try (BufferedReader reader = accept(report)) {
+            long timestamp = TimeUnit.MILLISECONDS.toSeconds(report.getTimestamp());
+
+            assertGraphiteLine(reader.readLine(), "app.application.queue", "7", timestamp);
+            assertGraphiteLine(reader.readLine(), "app.application.requests.count", "5", timestamp);
+        }
+    }
+
+    @Test
+    public void writesReportsLargerThanBuffer() throws IOException {
+        int counters = 100;
+        MetricRegistry large = new MetricRegistryImpl();
+        for (int i = 0; i < counters; i++) {
+            large.counter(new Metadata("counter" + i, MetricType.COUNTER)).inc(i);
+        }
+
+        reporter = new TimeSeriesReporter(new InfluxLineFormat(), "127.0.0.1", server.getLocalPort(), 10, "",
+                Collections.emptyMap(), 512, TIMEOUT_MS);
+
+        // the first report may be truncated while the connection is pending
+        try (BufferedReader reader = accept(new MetricsReport(Collections.singletonMap("application", large)))) {
+            MetricsReport report = new MetricsReport(Collections.singletonMap("application", large));
+            reporter.report(report);
+            String suffix = " " + TimeUnit.MILLISECONDS.toNanos(report.getTimestamp());
+
+            // lines are sorted by name
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < counters; i++) {
+                names.add("application.counter" + i);
+            }
+            Collections.sort(names);
+
+            String line;
+            do {
+                line = reader.readLine();
+            } while (!line.endsWith(suffix));
+
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    line = reader.readLine();
+                }
+                String series = line.substring(0, line.indexOf(' '));
+                Assert.assertTrue(line, series.equals(names.get(i)) || series.startsWith(names.get(i) + ","));
+                Assert.assertTrue(line, line.endsWith(suffix));
+            }
+        }
+    }
+
+    @Test
+    public void escapesInfluxNamesAndTags() {
+        InfluxLineFormat format = new InfluxLineFormat();
+        Map<String, String> tags = new HashMap<>();
+        tags.put("a b", "c,d=e");
+
+        Assert.assertEquals("my\\ metric\\,name", new String(format.encodeName("my metric,name"),
+                StandardCharsets.UTF_8));
+        Assert.assertEquals(",a\\ b=c\\,d\\=e", new String(format.encodeTags(tags), StandardCharsets.UTF_8));
+    }
+
+    private TimeSeriesReporter newReporter(TimeSeriesFormat format) {
+        return new TimeSeriesReporter(format, "127.0.0.1", server.getLocalPort(), 10, "app.",
+                Collections.singletonMap("env", "test"), 4096, TIMEOUT_MS);
+    }
+
+    private BufferedReader accept(MetricsReport report) throws IOException {
+        reporter.report(report);
+        Socket socket = server.accept();
+        // lines, which were buffered while the connection was pending, are written with the next report
+        reporter.report(new MetricsReport(Collections.emptyMap()));
+
+        socket.setSoTimeout(TIMEOUT_MS);
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static void assertInfluxLine(String line, String name, String fields, long timestamp) {
+        String[] parts = line.split(" ");
+        Assert.assertEquals(line, 3, parts.length);
+
+        List<String> series = Arrays.asList(parts[0].split(","));
+        Assert.assertEquals(line, name, series.get(0));
+        Assert.assertTrue(line, series.contains("env=test"));
+        Assert.assertEquals(line, fields, parts[1]);
+        Assert.assertEquals(line, Long.toString(timestamp), parts[2]);
+    }
+
+    private static void assertGraphiteLine(String line, String name, String value, long timestamp) {
+        String[] parts = line.split(" ");
+        Assert.assertEquals(line, 3, parts.length);
+
+        List<String> series = Arrays.asList(parts[0].split(";"));
+        Assert.assertEquals(line, name, series.get(0));
+        Assert.assertTrue(line, series.contains("env=test"));
+        Assert.assertEquals(line, value, parts[1]);
+        Assert.assertEquals(line, Long.toString(timestamp), parts[2]);
+    }
+}